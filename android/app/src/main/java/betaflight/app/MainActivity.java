@@ -7,6 +7,7 @@ import android.os.Bundle;
 import betaflight.app.protocols.serial.BetaflightSerialPlugin;
 import com.getcapacitor.BridgeActivity;
 import betaflight.app.protocols.tcp.BetaflightTcpPlugin;
+import betaflight.app.protocols.udp.BetaflightUdpPlugin;
 import betaflight.app.protocols.ble.BetaflightBlePlugin;
 import betaflight.app.protocols.dfu.BetaflightDfuPlugin;
 import betaflight.app.file.BetaflightFilePlugin;
@@ -17,6 +18,7 @@ public class MainActivity extends BridgeActivity {
     registerPlugin(BetaflightSerialPlugin.class);
     registerPlugin(BetaflightBlePlugin.class);
     registerPlugin(BetaflightTcpPlugin.class);
+    registerPlugin(BetaflightUdpPlugin.class);
     registerPlugin(BetaflightDfuPlugin.class);
     registerPlugin(BetaflightFilePlugin.class);
 
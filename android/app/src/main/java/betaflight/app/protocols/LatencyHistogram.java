@@ -0,0 +1,110 @@
+package betaflight.app.protocols;
+
+import com.getcapacitor.JSObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ *
+ * Values are recorded in microseconds. Each power of two is split into 16
+ * linear sub-buckets, so a reported percentile is within 1/16 (6.25%) of the
+ * recorded value from 16 us up to the ~9.5 hour cap, and exact below that.
+ * record() is a couple of atomic increments and can be called from any thread;
+ * percentiles are computed from a copy of the counts when stats are requested.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Highest power of two (in us) with its own buckets; larger values go into the last bucket
+    private static final int MAX_EXPONENT = 35;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketIndex(micros));
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Clear all recorded values. Values recorded concurrently may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    /**
+     * Count, mean, p50/p90/p99/p99.9 and max, in milliseconds.
+     */
+    public JSObject toJSObject() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long max = maxMicros.get();
+
+        JSObject stats = new JSObject();
+        stats.put("count", count);
+        stats.put("meanMs", count > 0 ? totalMicros.sum() / 1000.0 / count : 0);
+        stats.put("p50Ms", percentile(snapshot, count, 0.50, max) / 1000.0);
+        stats.put("p90Ms", percentile(snapshot, count, 0.90, max) / 1000.0);
+        stats.put("p99Ms", percentile(snapshot, count, 0.99, max) / 1000.0);
+        stats.put("p999Ms", percentile(snapshot, count, 0.999, max) / 1000.0);
+        stats.put("maxMs", max / 1000.0);
+        return stats;
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Largest value (in us) that falls into the given bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    private static long percentile(long[] snapshot, long count, double quantile, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                // The bucket bound can overshoot the largest value actually recorded
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,233 @@
+package betaflight.app.protocols;
+
+import com.getcapacitor.JSObject;
+
+import java.util.ArrayDeque;
+
+/**
+ * Infers loss, reordering and round-trip time from MSP request/response pairs.
+ *
+ * Network bridges add no sequence numbers, but MSP is request/response: each
+ * request should be answered by a frame with the same code, in order. A
+ * response that skips over older outstanding requests marks those as lost;
+ * if one of them is answered later after all, it moves from lost to
+ * reordered. Requests still unanswered after lossTimeoutMs count as lost too.
+ * Responses that match no request (pushed frames, duplicates) are counted as
+ * unsolicited. Requests repeating a code that is still outstanding cannot be
+ * told apart, so they are matched oldest first.
+ *
+ * Matched pairs also feed a smoothed RTT estimate (SRTT, RTTVAR and an RTO
+ * as in RFC 6298) that callers can use to size request timeouts. As in Karn's
+ * algorithm, a request re-sent while the first copy is still outstanding
+ * gives no sample, since it is unknown which copy was answered.
+ *
+ * onSent() may be called from any thread; onReceived() feeds an internal
+ * decoder and must only be called from the one thread that reads the link.
+ */
+public final class MspExchangeTracker {
+    private static final int MAX_OUTSTANDING = 128;
+    private static final int MAX_PRESUMED_LOST = 128;
+    private static final long CLOCK_GRANULARITY_NANOS = 1_000_000L;
+    // RFC 6298 (2.4): the RTO is rounded up to 1 s
+    private static final long MIN_RTO_NANOS = 1_000_000_000L;
+
+    private static final class Request {
+        final int code;
+        final long sentNanos;
+        boolean ambiguous = false;
+
+        Request(int code, long sentNanos) {
+            this.code = code;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    private final long lossTimeoutNanos;
+    private final ArrayDeque<Request> outstanding = new ArrayDeque<>();
+    // Codes of requests counted as lost, oldest first, in case their response turns up late
+    private final ArrayDeque<Integer> presumedLost = new ArrayDeque<>();
+    private final LatencyHistogram rtt = new LatencyHistogram();
+    private final MspFrameDecoder responseDecoder;
+
+    private long requests = 0;
+    private long responses = 0;
+    private long lost = 0;
+    private long reordered = 0;
+    private long unsolicited = 0;
+    private long corrupt = 0;
+    private long rttSamples = 0;
+    private long srttNanos = 0;
+    private long rttVarNanos = 0;
+
+    public MspExchangeTracker(int lossTimeoutMs) {
+        this.lossTimeoutNanos = Math.max(1, lossTimeoutMs) * 1_000_000L;
+        this.responseDecoder = new MspFrameDecoder(new MspFrameDecoder.Listener() {
+            @Override
+            public void onFrame(int version, char direction, int flags, int code, byte[] payload, int length,
+                                int checksum, int computedChecksum) {
+                if (checksum != computedChecksum) {
+                    onCorruptFrame();
+                } else if (direction != '<') {
+                    onResponse(code, System.nanoTime());
+                }
+            }
+
+            @Override
+            public void onPassthrough(byte[] data, int length) {
+                // Only frames matter here
+            }
+        });
+    }
+
+    /**
+     * Record the MSP requests in data just written to the link.
+     */
+    public void onSent(byte[] data, int offset, int count) {
+        int end = offset + count;
+        long now = System.nanoTime();
+        while (offset < end) {
+            int length = MspFrameDecoder.frameLength(data, offset, end - offset);
+            if (length <= 0 || offset + length > end) {
+                offset++;
+                continue;
+            }
+            if (data[offset + 2] == '<') {
+                int code = data[offset + 4] & 0xFF;
+                if (data[offset + 1] == 'X') {
+                    code |= (data[offset + 5] & 0xFF) << 8;
+                }
+                onRequest(code, now);
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * Feed data read from the link; responses in it are matched against requests.
+     */
+    public void onReceived(byte[] data, int offset, int count) {
+        responseDecoder.feed(data, offset, count);
+    }
+
+    public synchronized void onRequest(int code, long nowNanos) {
+        expire(nowNanos);
+        for (Request request : outstanding) {
+            if (request.code == code) {
+                request.ambiguous = true;
+            }
+        }
+        if (outstanding.size() == MAX_OUTSTANDING) {
+            markLost(outstanding.poll());
+        }
+        outstanding.add(new Request(code, nowNanos));
+        requests++;
+    }
+
+    public synchronized void onResponse(int code, long nowNanos) {
+        responses++;
+        Request match = null;
+        for (Request request : outstanding) {
+            if (request.code == code) {
+                match = request;
+                break;
+            }
+        }
+        if (match != null) {
+            // Everything sent before the matched request was skipped over
+            while (outstanding.peek() != match) {
+                markLost(outstanding.poll());
+            }
+            outstanding.poll();
+            if (!match.ambiguous) {
+                sampleRtt(nowNanos - match.sentNanos);
+            }
+        } else if (presumedLost.removeFirstOccurrence(code)) {
+            lost--;
+            reordered++;
+        } else {
+            unsolicited++;
+        }
+        expire(nowNanos);
+    }
+
+    public synchronized void onCorruptFrame() {
+        corrupt++;
+    }
+
+    /**
+     * The retransmission timeout for the current estimate in ms, at least 1 s, or -1 before the first sample.
+     */
+    public synchronized double getRtoMs() {
+        if (rttSamples == 0) {
+            return -1;
+        }
+        long rtoNanos = srttNanos + Math.max(CLOCK_GRANULARITY_NANOS, 4 * rttVarNanos);
+        return Math.max(MIN_RTO_NANOS, rtoNanos) / 1_000_000.0;
+    }
+
+    public synchronized JSObject getRttEstimate() {
+        JSObject estimate = new JSObject();
+        estimate.put("samples", rttSamples);
+        estimate.put("srttMs", rttSamples > 0 ? srttNanos / 1_000_000.0 : -1);
+        estimate.put("rttVarMs", rttSamples > 0 ? rttVarNanos / 1_000_000.0 : -1);
+        estimate.put("rtoMs", getRtoMs());
+        return estimate;
+    }
+
+    public synchronized JSObject toJSObject(long nowNanos) {
+        expire(nowNanos);
+        JSObject result = new JSObject();
+        result.put("requests", requests);
+        result.put("responses", responses);
+        result.put("outstanding", outstanding.size());
+        result.put("lost", lost);
+        result.put("reordered", reordered);
+        result.put("unsolicited", unsolicited);
+        result.put("corrupt", corrupt);
+        result.put("lossRate", requests > 0 ? (double) lost / requests : 0);
+        result.put("rtt", rtt.toJSObject());
+        result.put("rttEstimate", getRttEstimate());
+        return result;
+    }
+
+    /**
+     * Start new counters. The RTT estimate is kept, since it describes the link rather than a window.
+     */
+    public synchronized void reset() {
+        outstanding.clear();
+        presumedLost.clear();
+        rtt.reset();
+        requests = 0;
+        responses = 0;
+        lost = 0;
+        reordered = 0;
+        unsolicited = 0;
+        corrupt = 0;
+    }
+
+    private void sampleRtt(long sampleNanos) {
+        rtt.recordNanos(sampleNanos);
+        if (rttSamples == 0) {
+            srttNanos = sampleNanos;
+            rttVarNanos = sampleNanos / 2;
+        } else {
+            rttVarNanos = (3 * rttVarNanos + Math.abs(srttNanos - sampleNanos)) / 4;
+            srttNanos = (7 * srttNanos + sampleNanos) / 8;
+        }
+        rttSamples++;
+    }
+
+    private void expire(long nowNanos) {
+        while (!outstanding.isEmpty() && nowNanos - outstanding.peek().sentNanos > lossTimeoutNanos) {
+            markLost(outstanding.poll());
+        }
+    }
+
+    private void markLost(Request request) {
+        lost++;
+        if (presumedLost.size() == MAX_PRESUMED_LOST) {
+            presumedLost.poll();
+        }
+        presumedLost.add(request.code);
+    }
+}
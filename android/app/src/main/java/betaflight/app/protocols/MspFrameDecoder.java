@@ -0,0 +1,303 @@
+package betaflight.app.protocols;
+
+/**
+ * Incremental MSP v1/v2 frame decoder.
+ *
+ * Mirrors the state machine of MSP.read() in src/js/msp.js, including v1 jumbo
+ * frames, so complete messages can be delivered to JS instead of raw bytes.
+ * The payload buffer is sized for the largest possible frame up front and
+ * checksums are computed as bytes arrive, so feeding data never allocates.
+ *
+ * Bytes that are not part of an MSP frame (CLI output, boot banners) are
+ * handed to the listener as passthrough data in their original order.
+ */
+public final class MspFrameDecoder {
+    public static final int PROTOCOL_V1 = 1;
+    public static final int PROTOCOL_V2 = 2;
+    public static final int MAX_PAYLOAD = 0xFFFF;
+
+    private static final int BEGIN = '$';
+    private static final int PROTO_V1 = 'M';
+    private static final int PROTO_V2 = 'X';
+    private static final int JUMBO_FRAME_MIN_SIZE = 255;
+    private static final int PASSTHROUGH_CAPACITY = 4096;
+
+    private static final int IDLE = 0;
+    private static final int PROTO_IDENTIFIER = 1;
+    private static final int DIRECTION_V1 = 2;
+    private static final int DIRECTION_V2 = 3;
+    private static final int FLAG_V2 = 4;
+    private static final int PAYLOAD_LENGTH_V1 = 5;
+    private static final int PAYLOAD_LENGTH_JUMBO_LOW = 6;
+    private static final int PAYLOAD_LENGTH_JUMBO_HIGH = 7;
+    private static final int PAYLOAD_LENGTH_V2_LOW = 8;
+    private static final int PAYLOAD_LENGTH_V2_HIGH = 9;
+    private static final int CODE_V1 = 10;
+    private static final int CODE_JUMBO_V1 = 11;
+    private static final int CODE_V2_LOW = 12;
+    private static final int CODE_V2_HIGH = 13;
+    private static final int PAYLOAD_V1 = 14;
+    private static final int PAYLOAD_V2 = 15;
+    private static final int CHECKSUM_V1 = 16;
+    private static final int CHECKSUM_V2 = 17;
+
+    private static final byte[] CRC8_DVB_S2_TABLE = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0xD5) & 0xFF : (crc << 1) & 0xFF;
+            }
+            CRC8_DVB_S2_TABLE[i] = (byte) crc;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * A complete frame was decoded. The payload array is reused after the call returns.
+         *
+         * @param direction '>' (from FC), '<' (to FC) or '!' (unsupported command)
+         * @param checksum the checksum byte received on the wire
+         * @param computedChecksum the checksum calculated over the frame
+         */
+        void onFrame(int version, char direction, int flags, int code, byte[] payload, int length,
+                     int checksum, int computedChecksum);
+
+        /**
+         * Bytes outside of any MSP frame. The array is reused after the call returns.
+         */
+        void onPassthrough(byte[] data, int length);
+    }
+
+    private final Listener listener;
+    private final byte[] payload = new byte[MAX_PAYLOAD];
+    private final byte[] passthrough = new byte[PASSTHROUGH_CAPACITY];
+    private int passthroughLength = 0;
+
+    private int state = IDLE;
+    private int version;
+    private char direction;
+    private int flags;
+    private int code;
+    private int lengthExpected;
+    private int lengthReceived;
+    private int checksum;
+
+    private long framesDecoded = 0;
+    private long checksumErrors = 0;
+
+    public MspFrameDecoder(Listener listener) {
+        this.listener = listener;
+    }
+
+    public static int crc8DvbS2(int crc, int value) {
+        return CRC8_DVB_S2_TABLE[(crc ^ value) & 0xFF] & 0xFF;
+    }
+
+    /**
+     * Total length of the MSP v1/v2 frame starting at offset, header and checksum
+     * included, or -1 if the bytes there do not start a frame or its header is cut off.
+     */
+    public static int frameLength(byte[] data, int offset, int count) {
+        if (count < 6 || data[offset] != BEGIN) {
+            return -1;
+        }
+        int proto = data[offset + 1];
+        if (proto == PROTO_V1) {
+            int length = data[offset + 3] & 0xFF;
+            if (length != JUMBO_FRAME_MIN_SIZE) {
+                return length + 6;
+            }
+            if (count < 7) {
+                return -1;
+            }
+            // $ M dir 255 code lenLow lenHigh payload checksum
+            return ((data[offset + 5] & 0xFF) | (data[offset + 6] & 0xFF) << 8) + 8;
+        }
+        if (proto == PROTO_V2) {
+            if (count < 8) {
+                return -1;
+            }
+            // $ X dir flag codeLow codeHigh lenLow lenHigh payload checksum
+            return ((data[offset + 6] & 0xFF) | (data[offset + 7] & 0xFF) << 8) + 9;
+        }
+        return -1;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getChecksumErrors() {
+        return checksumErrors;
+    }
+
+    public void reset() {
+        state = IDLE;
+        lengthReceived = 0;
+        passthroughLength = 0;
+    }
+
+    /**
+     * Whether no frame is in progress, so decoding can stop without cutting one in half.
+     */
+    public boolean isIdle() {
+        return state == IDLE;
+    }
+
+    /**
+     * Feed bytes only until the frame in progress ends; returns how many were consumed.
+     * Returns 0 straight away when no frame is in progress.
+     */
+    public int feedToFrameBoundary(byte[] data, int offset, int count) {
+        int consumed = 0;
+        while (consumed < count && state != IDLE) {
+            step(data[offset + consumed++] & 0xFF);
+        }
+        flushPassthrough();
+        return consumed;
+    }
+
+    public void feed(byte[] data, int offset, int count) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            step(data[i] & 0xFF);
+        }
+        flushPassthrough();
+    }
+
+    private void step(int b) {
+        switch (state) {
+            case IDLE:
+                if (b == BEGIN) {
+                    state = PROTO_IDENTIFIER;
+                } else {
+                    appendPassthrough(b);
+                }
+                break;
+            case PROTO_IDENTIFIER:
+                if (b == PROTO_V1) {
+                    version = PROTOCOL_V1;
+                    state = DIRECTION_V1;
+                } else if (b == PROTO_V2) {
+                    version = PROTOCOL_V2;
+                    state = DIRECTION_V2;
+                } else {
+                    // Not a frame after all: the '$' was ordinary data
+                    appendPassthrough(BEGIN);
+                    state = IDLE;
+                    step(b);
+                }
+                break;
+            case DIRECTION_V1:
+            case DIRECTION_V2:
+                direction = (char) b;
+                flags = 0;
+                state = state == DIRECTION_V1 ? PAYLOAD_LENGTH_V1 : FLAG_V2;
+                break;
+            case FLAG_V2:
+                flags = b;
+                checksum = crc8DvbS2(0, b);
+                state = CODE_V2_LOW;
+                break;
+            case PAYLOAD_LENGTH_V1:
+                lengthExpected = b;
+                checksum = b;
+                state = b == JUMBO_FRAME_MIN_SIZE ? CODE_JUMBO_V1 : CODE_V1;
+                break;
+            case CODE_V1:
+            case CODE_JUMBO_V1:
+                code = b;
+                checksum ^= b;
+                lengthReceived = 0;
+                if (state == CODE_JUMBO_V1) {
+                    state = PAYLOAD_LENGTH_JUMBO_LOW;
+                } else {
+                    state = lengthExpected > 0 ? PAYLOAD_V1 : CHECKSUM_V1;
+                }
+                break;
+            case PAYLOAD_LENGTH_JUMBO_LOW:
+                lengthExpected = b;
+                checksum ^= b;
+                state = PAYLOAD_LENGTH_JUMBO_HIGH;
+                break;
+            case PAYLOAD_LENGTH_JUMBO_HIGH:
+                lengthExpected |= b << 8;
+                checksum ^= b;
+                state = lengthExpected > 0 ? PAYLOAD_V1 : CHECKSUM_V1;
+                break;
+            case CODE_V2_LOW:
+                code = b;
+                checksum = crc8DvbS2(checksum, b);
+                state = CODE_V2_HIGH;
+                break;
+            case CODE_V2_HIGH:
+                code |= b << 8;
+                checksum = crc8DvbS2(checksum, b);
+                state = PAYLOAD_LENGTH_V2_LOW;
+                break;
+            case PAYLOAD_LENGTH_V2_LOW:
+                lengthExpected = b;
+                checksum = crc8DvbS2(checksum, b);
+                state = PAYLOAD_LENGTH_V2_HIGH;
+                break;
+            case PAYLOAD_LENGTH_V2_HIGH:
+                lengthExpected |= b << 8;
+                checksum = crc8DvbS2(checksum, b);
+                lengthReceived = 0;
+                state = lengthExpected > 0 ? PAYLOAD_V2 : CHECKSUM_V2;
+                break;
+            case PAYLOAD_V1:
+                payload[lengthReceived++] = (byte) b;
+                checksum ^= b;
+                if (lengthReceived >= lengthExpected) {
+                    state = CHECKSUM_V1;
+                }
+                break;
+            case PAYLOAD_V2:
+                payload[lengthReceived++] = (byte) b;
+                checksum = crc8DvbS2(checksum, b);
+                if (lengthReceived >= lengthExpected) {
+                    state = CHECKSUM_V2;
+                }
+                break;
+            case CHECKSUM_V1:
+            case CHECKSUM_V2:
+                dispatch(b);
+                break;
+            default:
+                state = IDLE;
+                break;
+        }
+    }
+
+    private void dispatch(int receivedChecksum) {
+        // Keep passthrough bytes ordered ahead of the frame that followed them
+        flushPassthrough();
+
+        framesDecoded++;
+        if (receivedChecksum != checksum) {
+            checksumErrors++;
+        }
+        state = IDLE;
+        int length = lengthReceived;
+        lengthReceived = 0;
+        listener.onFrame(version, direction, flags, code, payload, length, receivedChecksum, checksum);
+    }
+
+    private void appendPassthrough(int b) {
+        if (passthroughLength == passthrough.length) {
+            flushPassthrough();
+        }
+        passthrough[passthroughLength++] = (byte) b;
+    }
+
+    private void flushPassthrough() {
+        if (passthroughLength > 0) {
+            int length = passthroughLength;
+            passthroughLength = 0;
+            listener.onPassthrough(passthrough, length);
+        }
+    }
+}
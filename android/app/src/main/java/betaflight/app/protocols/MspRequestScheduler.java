@@ -0,0 +1,402 @@
+package betaflight.app.protocols;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Native MSP request/response engine.
+ *
+ * Takes batches of MSP requests, keeps up to a configurable number of them in
+ * flight, matches responses by code and retries on timeout from its own
+ * thread, then reports each batch back in one piece. The rules follow
+ * MSP._transmit() in src/js/msp.js: an identical request (same code and
+ * payload) that is already in flight is not sent again but shares the
+ * response, and a request whose code is in flight with a different payload
+ * waits, because responses can only be told apart by code.
+ */
+public final class MspRequestScheduler {
+    public static final int DEFAULT_WINDOW = 8;
+    public static final int DEFAULT_TIMEOUT_MS = 1000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_UNSUPPORTED = "unsupported";
+    public static final String STATUS_TIMEOUT = "timeout";
+    public static final String STATUS_ERROR = "error";
+    public static final String STATUS_CANCELLED = "cancelled";
+
+    public interface Transmitter {
+        void transmit(byte[] frame) throws IOException;
+    }
+
+    public interface BatchCallback {
+        void onComplete(Result[] results);
+    }
+
+    public static final class Result {
+        public final int code;
+        public String status;
+        public char direction = '>';
+        public byte[] payload = new byte[0];
+        public int attempts;
+        public long latencyNanos;
+
+        Result(int code) {
+            this.code = code;
+        }
+    }
+
+    private static final class Batch {
+        final Result[] results;
+        final BatchCallback callback;
+        final int window;
+        final long timeoutNanos;
+        final int maxAttempts;
+        int remaining;
+
+        Batch(int size, BatchCallback callback, int window, long timeoutNanos, int maxAttempts) {
+            this.results = new Result[size];
+            this.callback = callback;
+            this.window = window;
+            this.timeoutNanos = timeoutNanos;
+            this.maxAttempts = maxAttempts;
+            this.remaining = size;
+        }
+    }
+
+    private static final class Request {
+        final Batch batch;
+        final int index;
+        final int code;
+        final byte[] payload;
+
+        Request(Batch batch, int index, int code, byte[] payload) {
+            this.batch = batch;
+            this.index = index;
+            this.code = code;
+            this.payload = payload;
+        }
+    }
+
+    private static final class InFlight {
+        final int code;
+        final byte[] payload;
+        final byte[] frame;
+        final List<Request> waiters = new ArrayList<>();
+        long firstSentNanos;
+        long deadlineNanos;
+        int attempts;
+
+        InFlight(Request first) {
+            this.code = first.code;
+            this.payload = first.payload;
+            this.frame = encodeFrame(first.code, first.payload);
+            this.waiters.add(first);
+        }
+
+        boolean matches(Request request) {
+            return code == request.code && Arrays.equals(payload, request.payload);
+        }
+    }
+
+    private final Transmitter transmitter;
+    private final Object lock = new Object();
+    private final ArrayDeque<Request> pending = new ArrayDeque<>();
+    private final List<InFlight> inFlight = new ArrayList<>();
+    private final Thread thread;
+    private boolean running = true;
+
+    private long requestsSent = 0;
+    private long requestsDeduplicated = 0;
+    private long retries = 0;
+    private long timeouts = 0;
+
+    public MspRequestScheduler(Transmitter transmitter) {
+        this.transmitter = transmitter;
+        this.thread = new Thread(this::run, "MspRequestScheduler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue a batch of requests. The callback runs once, after every request
+     * has been answered, has timed out or was cancelled.
+     */
+    public void submit(int[] codes, byte[][] payloads, int window, long timeoutMs, int maxAttempts,
+                       BatchCallback callback) {
+        Batch batch = new Batch(codes.length, callback, Math.max(1, window),
+            Math.max(1, timeoutMs) * 1_000_000L, Math.max(1, maxAttempts));
+        for (int i = 0; i < codes.length; i++) {
+            batch.results[i] = new Result(codes[i]);
+        }
+        if (codes.length == 0) {
+            callback.onComplete(batch.results);
+            return;
+        }
+
+        synchronized (lock) {
+            if (!running) {
+                for (int i = 0; i < codes.length; i++) {
+                    batch.results[i].status = STATUS_CANCELLED;
+                }
+            } else {
+                for (int i = 0; i < codes.length; i++) {
+                    byte[] payload = payloads[i] != null ? payloads[i] : new byte[0];
+                    pending.add(new Request(batch, i, codes[i], payload));
+                }
+                lock.notifyAll();
+                return;
+            }
+        }
+        callback.onComplete(batch.results);
+    }
+
+    /**
+     * Offer a decoded response frame; returns whether it answered a scheduled
+     * request. The frame is not claimed: callers forward it to JS as well, so
+     * a JS request for the same code gets the same reply.
+     */
+    public boolean onResponse(int code, char direction, byte[] payload, int length) {
+        List<Batch> completed = new ArrayList<>();
+        synchronized (lock) {
+            InFlight match = null;
+            for (InFlight entry : inFlight) {
+                if (entry.code == code) {
+                    match = entry;
+                    break;
+                }
+            }
+            if (match == null) {
+                return false;
+            }
+            inFlight.remove(match);
+
+            long latency = System.nanoTime() - match.firstSentNanos;
+            byte[] copy = Arrays.copyOf(payload, length);
+            String status = direction == '!' ? STATUS_UNSUPPORTED : STATUS_OK;
+            for (Request waiter : match.waiters) {
+                Result result = waiter.batch.results[waiter.index];
+                result.payload = copy;
+                result.direction = direction;
+                result.attempts = match.attempts;
+                result.latencyNanos = latency;
+                finish(waiter, status, completed);
+            }
+            lock.notifyAll();
+        }
+        complete(completed);
+        return true;
+    }
+
+    /**
+     * Stop the scheduler thread and cancel everything still queued or in flight.
+     */
+    public void close() {
+        List<Batch> completed = new ArrayList<>();
+        synchronized (lock) {
+            running = false;
+            for (InFlight entry : inFlight) {
+                for (Request waiter : entry.waiters) {
+                    finish(waiter, STATUS_CANCELLED, completed);
+                }
+            }
+            inFlight.clear();
+            for (Request request : pending) {
+                finish(request, STATUS_CANCELLED, completed);
+            }
+            pending.clear();
+            lock.notifyAll();
+        }
+        thread.interrupt();
+        complete(completed);
+    }
+
+    public long[] getCounters() {
+        synchronized (lock) {
+            return new long[] {requestsSent, requestsDeduplicated, retries, timeouts};
+        }
+    }
+
+    private void run() {
+        List<InFlight> toSend = new ArrayList<>();
+        List<Batch> completed = new ArrayList<>();
+        while (true) {
+            synchronized (lock) {
+                while (running && toSend.isEmpty() && completed.isEmpty()) {
+                    long now = System.nanoTime();
+                    dispatchPending(now, toSend);
+                    expireInFlight(now, toSend, completed);
+                    if (!toSend.isEmpty() || !completed.isEmpty()) {
+                        break;
+                    }
+                    long deadline = nextDeadline();
+                    try {
+                        if (deadline == Long.MAX_VALUE) {
+                            lock.wait();
+                        } else if (deadline > now) {
+                            long waitNanos = deadline - now;
+                            lock.wait(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+                        }
+                    } catch (InterruptedException e) {
+                        if (!running) {
+                            return;
+                        }
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+            }
+
+            for (InFlight entry : toSend) {
+                try {
+                    transmitter.transmit(entry.frame);
+                } catch (IOException e) {
+                    synchronized (lock) {
+                        if (inFlight.remove(entry)) {
+                            for (Request waiter : entry.waiters) {
+                                finish(waiter, STATUS_ERROR, completed);
+                            }
+                        }
+                    }
+                }
+            }
+            toSend.clear();
+            complete(completed);
+            completed.clear();
+        }
+    }
+
+    private void dispatchPending(long now, List<InFlight> toSend) {
+        Iterator<Request> it = pending.iterator();
+        while (it.hasNext()) {
+            Request request = it.next();
+            InFlight sameCode = null;
+            for (InFlight entry : inFlight) {
+                if (entry.code == request.code) {
+                    sameCode = entry;
+                    break;
+                }
+            }
+
+            if (sameCode != null) {
+                if (sameCode.matches(request)) {
+                    // Identical request already on the wire: share its response
+                    sameCode.waiters.add(request);
+                    requestsDeduplicated++;
+                    it.remove();
+                }
+                // A different payload for a busy code waits its turn
+                continue;
+            }
+
+            if (inFlight.size() >= request.batch.window) {
+                continue;
+            }
+
+            InFlight entry = new InFlight(request);
+            entry.attempts = 1;
+            entry.firstSentNanos = now;
+            entry.deadlineNanos = now + request.batch.timeoutNanos;
+            inFlight.add(entry);
+            toSend.add(entry);
+            requestsSent++;
+            it.remove();
+        }
+    }
+
+    private void expireInFlight(long now, List<InFlight> toSend, List<Batch> completed) {
+        Iterator<InFlight> it = inFlight.iterator();
+        while (it.hasNext()) {
+            InFlight entry = it.next();
+            if (entry.deadlineNanos > now) {
+                continue;
+            }
+            Batch owner = entry.waiters.get(0).batch;
+            if (entry.attempts < owner.maxAttempts) {
+                entry.attempts++;
+                entry.deadlineNanos = now + owner.timeoutNanos;
+                toSend.add(entry);
+                retries++;
+                continue;
+            }
+            it.remove();
+            timeouts++;
+            for (Request waiter : entry.waiters) {
+                Result result = waiter.batch.results[waiter.index];
+                result.attempts = entry.attempts;
+                result.latencyNanos = now - entry.firstSentNanos;
+                finish(waiter, STATUS_TIMEOUT, completed);
+            }
+        }
+    }
+
+    private long nextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (InFlight entry : inFlight) {
+            next = Math.min(next, entry.deadlineNanos);
+        }
+        return next;
+    }
+
+    private static void finish(Request request, String status, List<Batch> completed) {
+        Result result = request.batch.results[request.index];
+        if (result.status != null) {
+            return;
+        }
+        result.status = status;
+        if (--request.batch.remaining == 0) {
+            completed.add(request.batch);
+        }
+    }
+
+    private static void complete(List<Batch> completed) {
+        for (Batch batch : completed) {
+            batch.callback.onComplete(batch.results);
+        }
+    }
+
+    /**
+     * Encode a request frame the way MSP.encode_message_v1/v2 do: v1 for codes
+     * up to 254 with short payloads, v2 otherwise.
+     */
+    static byte[] encodeFrame(int code, byte[] payload) {
+        int length = payload.length;
+        if (code <= 254 && length < 255) {
+            byte[] frame = new byte[length + 6];
+            frame[0] = '$';
+            frame[1] = 'M';
+            frame[2] = '<';
+            frame[3] = (byte) length;
+            frame[4] = (byte) code;
+            int checksum = length ^ code;
+            for (int i = 0; i < length; i++) {
+                frame[5 + i] = payload[i];
+                checksum ^= payload[i] & 0xFF;
+            }
+            frame[5 + length] = (byte) checksum;
+            return frame;
+        }
+
+        byte[] frame = new byte[length + 9];
+        frame[0] = '$';
+        frame[1] = 'X';
+        frame[2] = '<';
+        frame[3] = 0;
+        frame[4] = (byte) (code & 0xFF);
+        frame[5] = (byte) ((code >> 8) & 0xFF);
+        frame[6] = (byte) (length & 0xFF);
+        frame[7] = (byte) ((length >> 8) & 0xFF);
+        System.arraycopy(payload, 0, frame, 8, length);
+        int crc = 0;
+        for (int i = 3; i < frame.length - 1; i++) {
+            crc = MspFrameDecoder.crc8DvbS2(crc, frame[i]);
+        }
+        frame[frame.length - 1] = (byte) crc;
+        return frame;
+    }
+}
@@ -0,0 +1,106 @@
+package betaflight.app.protocols;
+
+import android.util.Base64;
+
+/**
+ * Byte payload encodings shared by the transport plugins.
+ *
+ * Capacitor only carries JSON across the bridge, so binary payloads travel as
+ * strings. Hex is the historical format of the serial and DFU plugins and is
+ * kept as the fallback; base64 (already used by BetaflightTcp and BetaflightBle)
+ * is a third smaller on the wire and is decoded natively by the WebView's atob().
+ */
+public final class PayloadCodec {
+    public static final String HEX = "hex";
+    public static final String BASE64 = "base64";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        java.util.Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private PayloadCodec() {}
+
+    /**
+     * Returns true if the given encoding name is understood by this codec.
+     */
+    public static boolean isSupported(String encoding) {
+        return HEX.equals(encoding) || BASE64.equals(encoding);
+    }
+
+    /**
+     * Resolve a requested encoding to one this codec supports, falling back to hex.
+     */
+    public static String negotiate(String requested) {
+        return isSupported(requested) ? requested : HEX;
+    }
+
+    public static String encode(byte[] data, String encoding) {
+        return encode(data, 0, data.length, encoding);
+    }
+
+    public static String encode(byte[] data, int offset, int length, String encoding) {
+        if (BASE64.equals(encoding)) {
+            return Base64.encodeToString(data, offset, length, Base64.NO_WRAP);
+        }
+        return toHex(data, offset, length);
+    }
+
+    public static byte[] decode(String data, String encoding) {
+        if (data == null || data.isEmpty()) {
+            return new byte[0];
+        }
+        if (BASE64.equals(encoding)) {
+            return Base64.decode(data, Base64.NO_WRAP);
+        }
+        return fromHex(data);
+    }
+
+    /**
+     * Convert bytes to a lowercase hex string using a lookup table.
+     * Example: [0x24, 0x58, 0x00, 0x00, 0xfb] -> "24580000fb"
+     */
+    public static String toHex(byte[] data, int offset, int length) {
+        char[] out = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + i] & 0xFF;
+            out[i * 2] = HEX_DIGITS[b >>> 4];
+            out[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+        return new String(out);
+    }
+
+    /**
+     * Convert a hex string to bytes using a lookup table.
+     * Example: "24580000fb" -> [0x24, 0x58, 0x00, 0x00, 0xfb]
+     */
+    public static byte[] fromHex(String hex) {
+        int len = hex.length();
+        if ((len & 1) != 0) {
+            throw new IllegalArgumentException("Hex string must have even length");
+        }
+        byte[] out = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            int high = hexValue(hex.charAt(i));
+            int low = hexValue(hex.charAt(i + 1));
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex character at position " + i);
+            }
+            out[i / 2] = (byte) ((high << 4) | low);
+        }
+        return out;
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
+    }
+}
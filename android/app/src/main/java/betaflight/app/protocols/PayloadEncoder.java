@@ -0,0 +1,77 @@
+package betaflight.app.protocols;
+
+/**
+ * Reusable hex/base64 encoder for the receive hot path.
+ *
+ * PayloadCodec.encode() allocates scratch arrays on every call (Base64 builds
+ * a byte[] before the String). This encoder keeps one growable char buffer,
+ * so encoding a chunk only allocates the String handed to the bridge. An
+ * instance is not thread safe; give each reader thread its own.
+ */
+public final class PayloadEncoder {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private char[] out;
+
+    public PayloadEncoder(int initialBytes) {
+        this.out = new char[base64Length(Math.max(1, initialBytes))];
+    }
+
+    public String encode(byte[] data, int offset, int length, String encoding) {
+        if (PayloadCodec.BASE64.equals(encoding)) {
+            return base64(data, offset, length);
+        }
+        return hex(data, offset, length);
+    }
+
+    public String hex(byte[] data, int offset, int length) {
+        char[] chars = ensure(length * 2);
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[b >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+        return new String(chars, 0, length * 2);
+    }
+
+    /**
+     * Standard padded base64 without line breaks, as Base64.NO_WRAP produces.
+     */
+    public String base64(byte[] data, int offset, int length) {
+        int outLength = base64Length(length);
+        char[] chars = ensure(outLength);
+        int end = offset + length;
+        int i = offset;
+        int o = 0;
+        while (end - i >= 3) {
+            int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            chars[o++] = BASE64_ALPHABET[bits >>> 18];
+            chars[o++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            chars[o++] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+            chars[o++] = BASE64_ALPHABET[bits & 0x3F];
+            i += 3;
+        }
+        int remaining = end - i;
+        if (remaining > 0) {
+            int bits = (data[i] & 0xFF) << 16 | (remaining == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+            chars[o++] = BASE64_ALPHABET[bits >>> 18];
+            chars[o++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            chars[o++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3F] : '=';
+            chars[o++] = '=';
+        }
+        return new String(chars, 0, o);
+    }
+
+    private char[] ensure(int size) {
+        if (out.length < size) {
+            out = new char[size];
+        }
+        return out;
+    }
+
+    private static int base64Length(int bytes) {
+        return (bytes + 2) / 3 * 4;
+    }
+}
@@ -0,0 +1,159 @@
+package betaflight.app.protocols;
+
+import com.getcapacitor.JSObject;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects small incoming chunks and hands them on as larger ones.
+ *
+ * USB and BLE links deliver data in packets of a few dozen bytes. Forwarding
+ * each one as its own bridge event floods the WebView, so bytes are buffered
+ * here and flushed once flushBytes have accumulated or flushIntervalMs have
+ * passed since the first buffered byte, whichever comes first. A zero interval
+ * disables buffering and flushes every chunk straight away.
+ */
+public final class ReceiveCoalescer {
+    public static final int DEFAULT_FLUSH_BYTES = 4096;
+    public static final int DEFAULT_FLUSH_INTERVAL_MS = 2;
+
+    public enum FlushReason {
+        SIZE,
+        DEADLINE,
+        IMMEDIATE,
+        CLOSE
+    }
+
+    public interface Sink {
+        /**
+         * Receives a flushed chunk. The array is reused after the call returns.
+         */
+        void onFlush(byte[] data, int length, FlushReason reason);
+    }
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ReceiveCoalescerTimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Sink sink;
+    private final int flushBytes;
+    private final long flushIntervalMs;
+    private final byte[] buffer;
+    private final Runnable deadlineFlush = () -> flush(FlushReason.DEADLINE);
+
+    private int length = 0;
+    private ScheduledFuture<?> pendingDeadline;
+    private boolean closed = false;
+
+    private long eventsEmitted = 0;
+    private long bytesEmitted = 0;
+    private long bytesReceived = 0;
+    private long chunksReceived = 0;
+    private final long[] flushCounts = new long[FlushReason.values().length];
+
+    public ReceiveCoalescer(Sink sink, int flushBytes, long flushIntervalMs) {
+        this.sink = sink;
+        this.flushBytes = Math.max(1, flushBytes);
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+        this.buffer = new byte[this.flushBytes];
+    }
+
+    public synchronized void append(byte[] data, int offset, int count) {
+        if (closed || count <= 0) {
+            return;
+        }
+        chunksReceived++;
+        bytesReceived += count;
+
+        if (flushIntervalMs == 0) {
+            emitDirect(data, offset, count, FlushReason.IMMEDIATE);
+            return;
+        }
+
+        while (count > 0) {
+            int space = flushBytes - length;
+            int n = Math.min(space, count);
+            System.arraycopy(data, offset, buffer, length, n);
+            if (length == 0) {
+                pendingDeadline = TIMER.schedule(deadlineFlush, flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+            length += n;
+            offset += n;
+            count -= n;
+            if (length >= flushBytes) {
+                flushLocked(FlushReason.SIZE);
+            }
+        }
+    }
+
+    public synchronized void flush(FlushReason reason) {
+        flushLocked(reason);
+    }
+
+    /**
+     * Flush whatever is left and stop accepting data.
+     */
+    public synchronized void close() {
+        flushLocked(FlushReason.CLOSE);
+        closed = true;
+    }
+
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("flushBytes", flushBytes);
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("chunksReceived", chunksReceived);
+        stats.put("bytesReceived", bytesReceived);
+        stats.put("eventsEmitted", eventsEmitted);
+        stats.put("bytesEmitted", bytesEmitted);
+        stats.put("bytesPerEvent", eventsEmitted > 0 ? (double) bytesEmitted / eventsEmitted : 0);
+        JSObject reasons = new JSObject();
+        for (FlushReason reason : FlushReason.values()) {
+            reasons.put(reason.name().toLowerCase(java.util.Locale.ROOT), flushCounts[reason.ordinal()]);
+        }
+        stats.put("flushReasons", reasons);
+        return stats;
+    }
+
+    private void flushLocked(FlushReason reason) {
+        if (pendingDeadline != null) {
+            pendingDeadline.cancel(false);
+            pendingDeadline = null;
+        }
+        if (length == 0) {
+            return;
+        }
+        int count = length;
+        length = 0;
+        record(count, reason);
+        sink.onFlush(buffer, count, reason);
+    }
+
+    private void emitDirect(byte[] data, int offset, int count, FlushReason reason) {
+        if (offset == 0) {
+            record(count, reason);
+            sink.onFlush(data, count, reason);
+            return;
+        }
+        // The sink contract is zero-based; copy through the buffer in flushBytes slices.
+        while (count > 0) {
+            int n = Math.min(count, flushBytes);
+            System.arraycopy(data, offset, buffer, 0, n);
+            record(n, reason);
+            sink.onFlush(buffer, n, reason);
+            offset += n;
+            count -= n;
+        }
+    }
+
+    private void record(int count, FlushReason reason) {
+        eventsEmitted++;
+        bytesEmitted += count;
+        flushCounts[reason.ordinal()]++;
+    }
+}
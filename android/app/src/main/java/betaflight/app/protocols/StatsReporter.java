@@ -0,0 +1,48 @@
+package betaflight.app.protocols;
+
+import android.os.Handler;
+
+/**
+ * Runs a report callback at a fixed interval on a Handler, for the plugins'
+ * optional periodic "stats" event. An interval of 0 stops it.
+ */
+public final class StatsReporter {
+    public static final long MIN_INTERVAL_MS = 100;
+
+    private final Handler handler;
+    private final Runnable report;
+    private long intervalMs = 0;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            report.run();
+            synchronized (StatsReporter.this) {
+                if (intervalMs > 0) {
+                    handler.postDelayed(this, intervalMs);
+                }
+            }
+        }
+    };
+
+    public StatsReporter(Handler handler, Runnable report) {
+        this.handler = handler;
+        this.report = report;
+    }
+
+    /**
+     * Returns the interval actually used; non-zero values are raised to MIN_INTERVAL_MS.
+     */
+    public synchronized long setInterval(long intervalMs) {
+        handler.removeCallbacks(tick);
+        this.intervalMs = intervalMs > 0 ? Math.max(MIN_INTERVAL_MS, intervalMs) : 0;
+        if (this.intervalMs > 0) {
+            handler.postDelayed(tick, this.intervalMs);
+        }
+        return this.intervalMs;
+    }
+
+    public void stop() {
+        setInterval(0);
+    }
+}
@@ -0,0 +1,148 @@
+package betaflight.app.protocols;
+
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and latency counters for one transport connection.
+ *
+ * Shared by the serial, TCP and BLE plugins so their getStats() results line
+ * up. Latency is kept in three histograms that split a slow exchange into its
+ * parts:
+ *  - transfer: time spent in the link itself (USB bulk transfer, socket write, GATT write)
+ *  - write: time from a write call reaching the plugin until it completed, including queueing
+ *  - emit: time spent handing an event to the Capacitor bridge
+ * Gauges (e.g. write queue depth) are read when stats are requested.
+ * Transports add their own named histograms (e.g. TCP reconnect time) with histogram().
+ *
+ * All record methods are lock-free and may be called from the reader, writer
+ * and plugin threads at the same time.
+ */
+public final class TransportMetrics {
+
+    public interface Gauge {
+        long get();
+    }
+
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder eventsEmitted = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram transferLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram emitLatency = new LatencyHistogram();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private volatile String lastError;
+    private volatile long startedAt = SystemClock.elapsedRealtime();
+
+    public void addGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * The histogram with this name, created empty on first use and reported under "histograms".
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Bytes delivered by one read from the link.
+     */
+    public void recordRead(int length) {
+        bytesIn.add(length);
+        reads.increment();
+    }
+
+    /**
+     * One write to the link and how long it took.
+     */
+    public void recordTransfer(int length, long nanos) {
+        bytesOut.add(length);
+        transfers.increment();
+        transferLatency.recordNanos(nanos);
+    }
+
+    /**
+     * One plugin write call completing, timed from when it was received.
+     */
+    public void recordWrite(long nanos) {
+        writes.increment();
+        writeLatency.recordNanos(nanos);
+    }
+
+    public void recordEmit(long nanos) {
+        eventsEmitted.increment();
+        emitLatency.recordNanos(nanos);
+    }
+
+    public void recordError(String message) {
+        errors.increment();
+        lastError = message;
+    }
+
+    /**
+     * Start a new measurement window. Gauges are kept.
+     */
+    public void reset() {
+        bytesIn.reset();
+        reads.reset();
+        bytesOut.reset();
+        transfers.reset();
+        writes.reset();
+        eventsEmitted.reset();
+        errors.reset();
+        transferLatency.reset();
+        writeLatency.reset();
+        emitLatency.reset();
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        lastError = null;
+        startedAt = SystemClock.elapsedRealtime();
+    }
+
+    public JSObject toJSObject() {
+        long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - startedAt);
+        long in = bytesIn.sum();
+        long out = bytesOut.sum();
+
+        JSObject stats = new JSObject();
+        stats.put("elapsedMs", elapsedMs);
+        stats.put("bytesIn", in);
+        stats.put("reads", reads.sum());
+        stats.put("bytesOut", out);
+        stats.put("transfers", transfers.sum());
+        stats.put("writes", writes.sum());
+        stats.put("eventsEmitted", eventsEmitted.sum());
+        stats.put("errors", errors.sum());
+        stats.put("lastError", lastError);
+        stats.put("bytesInPerSecond", in * 1000.0 / elapsedMs);
+        stats.put("bytesOutPerSecond", out * 1000.0 / elapsedMs);
+        stats.put("transferLatency", transferLatency.toJSObject());
+        stats.put("writeLatency", writeLatency.toJSObject());
+        stats.put("emitLatency", emitLatency.toJSObject());
+
+        JSObject gaugeValues = new JSObject();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            gaugeValues.put(entry.getKey(), entry.getValue().get());
+        }
+        stats.put("gauges", gaugeValues);
+
+        JSObject histogramValues = new JSObject();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            histogramValues.put(entry.getKey(), entry.getValue().toJSObject());
+        }
+        stats.put("histograms", histogramValues);
+        return stats;
+    }
+}
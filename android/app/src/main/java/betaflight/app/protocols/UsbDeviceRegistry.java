@@ -0,0 +1,179 @@
+package betaflight.app.protocols;
+
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of attached USB devices and what a plugin made of them.
+ *
+ * Probing (for the serial plugin, matching a usb-serial driver against the
+ * device descriptors) is done once per device, when it is attached or first
+ * seen in a refresh, and the result is cached by device key. Lookups for
+ * getDevices/connect are then served from the table without touching the
+ * descriptors again. The plugins keep it current from their existing
+ * ACTION_USB_DEVICE_ATTACHED/DETACHED receivers; refresh() reconciles it with
+ * UsbManager in case a broadcast was missed, probing only devices it has not
+ * seen yet.
+ *
+ * Probe timings and the gap between a device going away and the same VID:PID
+ * coming back (e.g. an FC rebooting) are kept for getStats().
+ */
+public final class UsbDeviceRegistry<T> {
+
+    public interface Prober<T> {
+        /**
+         * Returns the cached value for a device, or null if the plugin does not handle it.
+         */
+        T probe(UsbDevice device);
+    }
+
+    private final UsbManager usbManager;
+    private final Prober<T> prober;
+    private final Map<String, T> entries = new LinkedHashMap<>();
+    // Keys of attached devices the prober rejected, so refresh() does not probe them again
+    private final Map<String, Boolean> ignored = new HashMap<>();
+    // Last detach time per VID:PID, to measure how long a rebooting device is away
+    private final Map<String, Long> detachedAt = new HashMap<>();
+
+    private long probes = 0;
+    private long probeNanos = 0;
+    private long lastProbeNanos = 0;
+    private long maxProbeNanos = 0;
+    private long refreshes = 0;
+    private long lastRefreshNanos = 0;
+    private long lookups = 0;
+    private long cacheMisses = 0;
+    private long lastReattachMs = -1;
+
+    public UsbDeviceRegistry(UsbManager usbManager, Prober<T> prober) {
+        this.usbManager = usbManager;
+        this.prober = prober;
+    }
+
+    public static String getDeviceKey(UsbDevice device) {
+        return device.getVendorId() + ":" + device.getProductId() + ":" + device.getDeviceId();
+    }
+
+    /**
+     * Look up a device by key, refreshing once from UsbManager on a miss.
+     */
+    public synchronized T find(String deviceKey) {
+        lookups++;
+        T entry = entries.get(deviceKey);
+        if (entry == null) {
+            cacheMisses++;
+            refresh();
+            entry = entries.get(deviceKey);
+        }
+        return entry;
+    }
+
+    public synchronized List<T> list() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Probe and add a newly attached device. Returns its entry, or null if not handled.
+     */
+    public synchronized T onAttached(UsbDevice device) {
+        String key = getDeviceKey(device);
+        Long detached = detachedAt.remove(getModelKey(device));
+        if (detached != null) {
+            lastReattachMs = SystemClock.elapsedRealtime() - detached;
+        }
+        T entry = entries.get(key);
+        if (entry == null && !ignored.containsKey(key)) {
+            entry = probeAndStore(key, device);
+        }
+        return entry;
+    }
+
+    /**
+     * Drop a detached device. Returns the entry it had, if any.
+     */
+    public synchronized T onDetached(UsbDevice device) {
+        String key = getDeviceKey(device);
+        ignored.remove(key);
+        T entry = entries.remove(key);
+        if (entry != null) {
+            detachedAt.put(getModelKey(device), SystemClock.elapsedRealtime());
+        }
+        return entry;
+    }
+
+    /**
+     * Reconcile with UsbManager: drop devices that are gone and probe new ones.
+     */
+    public synchronized void refresh() {
+        long start = SystemClock.elapsedRealtimeNanos();
+        Map<String, UsbDevice> attached = usbManager.getDeviceList();
+
+        List<String> attachedKeys = keysOf(attached);
+        entries.keySet().retainAll(attachedKeys);
+        ignored.keySet().retainAll(attachedKeys);
+        for (UsbDevice device : attached.values()) {
+            String key = getDeviceKey(device);
+            if (!entries.containsKey(key) && !ignored.containsKey(key)) {
+                probeAndStore(key, device);
+            }
+        }
+
+        refreshes++;
+        lastRefreshNanos = SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("devices", entries.size());
+        stats.put("probes", probes);
+        stats.put("probeTimeMs", probeNanos / 1_000_000.0);
+        stats.put("lastProbeMs", lastProbeNanos / 1_000_000.0);
+        stats.put("maxProbeMs", maxProbeNanos / 1_000_000.0);
+        stats.put("refreshes", refreshes);
+        stats.put("lastRefreshMs", lastRefreshNanos / 1_000_000.0);
+        stats.put("lookups", lookups);
+        stats.put("cacheMisses", cacheMisses);
+        // -1 until a device has been seen leaving and coming back
+        stats.put("lastReattachMs", lastReattachMs);
+        return stats;
+    }
+
+    private T probeAndStore(String key, UsbDevice device) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        T entry = prober.probe(device);
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+
+        probes++;
+        probeNanos += elapsed;
+        lastProbeNanos = elapsed;
+        maxProbeNanos = Math.max(maxProbeNanos, elapsed);
+
+        if (entry != null) {
+            entries.put(key, entry);
+        } else {
+            ignored.put(key, Boolean.TRUE);
+        }
+        return entry;
+    }
+
+    private static List<String> keysOf(Map<String, UsbDevice> devices) {
+        List<String> keys = new ArrayList<>(devices.size());
+        for (UsbDevice device : devices.values()) {
+            keys.add(getDeviceKey(device));
+        }
+        return keys;
+    }
+
+    private static String getModelKey(UsbDevice device) {
+        return device.getVendorId() + ":" + device.getProductId();
+    }
+}
@@ -0,0 +1,253 @@
+package betaflight.app.protocols;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered write queue that merges small frames into larger transfers.
+ *
+ * MSP and CLI traffic is made of many short frames; writing each one with its
+ * own blocking call costs a bulk transfer (and a bridge round trip) per frame.
+ * Batches queued here are copied back to back into a transfer buffer and
+ * written from a dedicated thread, so a run of frames leaves in as few
+ * transfers as possible. The queue is bounded by maxQueuedBytes: enqueue()
+ * waits for room, which keeps a fast producer from buffering a whole
+ * "diff all" restore in memory. Each batch completes once all of its bytes
+ * have been written, or fails with the write error that stopped it.
+ */
+public final class WriteCoalescer {
+    public static final int DEFAULT_TRANSFER_BYTES = 4096;
+    public static final int DEFAULT_MAX_QUEUED_BYTES = 64 * 1024;
+
+    public interface Sink {
+        void write(byte[] data, int length) throws IOException;
+    }
+
+    public interface Completion {
+        /**
+         * Called on the writer thread. error is null on success.
+         */
+        void onComplete(int bytesWritten, IOException error);
+    }
+
+    private static final class Batch {
+        final byte[][] frames;
+        final int totalBytes;
+        final Completion completion;
+        int frameIndex = 0;
+        int frameOffset = 0;
+        int copied = 0;
+
+        Batch(byte[][] frames, int totalBytes, Completion completion) {
+            this.frames = frames;
+            this.totalBytes = totalBytes;
+            this.completion = completion;
+        }
+
+        /**
+         * Copy as much of the remaining data as fits into dest. Returns the byte count.
+         */
+        int copyTo(byte[] dest, int offset, int space) {
+            int start = offset;
+            while (space > 0 && frameIndex < frames.length) {
+                byte[] frame = frames[frameIndex];
+                int n = Math.min(space, frame.length - frameOffset);
+                System.arraycopy(frame, frameOffset, dest, offset, n);
+                offset += n;
+                space -= n;
+                frameOffset += n;
+                if (frameOffset == frame.length) {
+                    frameIndex++;
+                    frameOffset = 0;
+                }
+            }
+            copied += offset - start;
+            return offset - start;
+        }
+
+        boolean isCopied() {
+            return copied == totalBytes;
+        }
+    }
+
+    private final Sink sink;
+    private final int maxQueuedBytes;
+    private final byte[] buffer;
+    private final Object lock = new Object();
+    private final ArrayDeque<Batch> queue = new ArrayDeque<>();
+    private final Thread thread;
+    private boolean running = true;
+    private int queuedBytes = 0;
+
+    private long batches = 0;
+    private long frames = 0;
+    private long bytesWritten = 0;
+    private long transfers = 0;
+    private long backpressureWaits = 0;
+    private long writeErrors = 0;
+
+    public WriteCoalescer(Sink sink, int transferBytes, int maxQueuedBytes, String threadName) {
+        this.sink = sink;
+        this.buffer = new byte[Math.max(1, transferBytes)];
+        this.maxQueuedBytes = Math.max(this.buffer.length, maxQueuedBytes);
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue frames to be written in order as one batch.
+     *
+     * Waits up to timeoutMs for queue space. A batch larger than the whole
+     * queue is still accepted once the queue has drained, so it never blocks
+     * forever. Returns false if the queue stayed full or has been closed; the
+     * completion is not called in that case.
+     */
+    public boolean enqueue(byte[][] data, Completion completion, long timeoutMs) throws InterruptedException {
+        int total = 0;
+        for (byte[] frame : data) {
+            total += frame.length;
+        }
+        if (total == 0) {
+            completion.onComplete(0, null);
+            return true;
+        }
+
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            boolean waited = false;
+            while (running && queuedBytes > 0 && queuedBytes + total > maxQueuedBytes) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                waited = true;
+                lock.wait(remaining);
+            }
+            if (!running) {
+                return false;
+            }
+            if (waited) {
+                backpressureWaits++;
+            }
+            queue.add(new Batch(data, total, completion));
+            queuedBytes += total;
+            batches++;
+            frames += data.length;
+            lock.notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Stop the writer thread. Batches not yet written fail with an IOException.
+     */
+    public void close() {
+        List<Batch> failed;
+        synchronized (lock) {
+            running = false;
+            failed = new ArrayList<>(queue);
+            queue.clear();
+            queuedBytes = 0;
+            lock.notifyAll();
+        }
+        thread.interrupt();
+        fail(failed, new IOException("Write queue closed"));
+    }
+
+    public int getQueuedBytes() {
+        synchronized (lock) {
+            return queuedBytes;
+        }
+    }
+
+    public JSObject getStats() {
+        synchronized (lock) {
+            JSObject stats = new JSObject();
+            stats.put("transferBytes", buffer.length);
+            stats.put("maxQueuedBytes", maxQueuedBytes);
+            stats.put("queuedBytes", queuedBytes);
+            stats.put("batches", batches);
+            stats.put("frames", frames);
+            stats.put("bytesWritten", bytesWritten);
+            stats.put("transfers", transfers);
+            stats.put("bytesPerTransfer", transfers > 0 ? (double) bytesWritten / transfers : 0);
+            stats.put("backpressureWaits", backpressureWaits);
+            stats.put("writeErrors", writeErrors);
+            return stats;
+        }
+    }
+
+    private void run() {
+        List<Batch> copied = new ArrayList<>();
+        while (true) {
+            int length = 0;
+            synchronized (lock) {
+                while (running && queue.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Re-checked below
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                while (length < buffer.length && !queue.isEmpty()) {
+                    Batch batch = queue.peek();
+                    length += batch.copyTo(buffer, length, buffer.length - length);
+                    if (!batch.isCopied()) {
+                        // Transfer buffer is full; the rest goes out next time
+                        break;
+                    }
+                    copied.add(queue.poll());
+                }
+            }
+
+            IOException error = null;
+            try {
+                sink.write(buffer, length);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            List<Batch> failed = null;
+            synchronized (lock) {
+                queuedBytes -= length;
+                if (error == null) {
+                    bytesWritten += length;
+                    transfers++;
+                } else {
+                    // Nothing queued behind a failed transfer can be delivered in order
+                    writeErrors++;
+                    failed = new ArrayList<>(queue);
+                    for (Batch batch : queue) {
+                        queuedBytes -= batch.totalBytes - batch.copied;
+                    }
+                    queue.clear();
+                }
+                lock.notifyAll();
+            }
+
+            if (error == null) {
+                for (Batch batch : copied) {
+                    batch.completion.onComplete(batch.totalBytes, null);
+                }
+            } else {
+                fail(copied, error);
+                fail(failed, error);
+            }
+            copied.clear();
+        }
+    }
+
+    private static void fail(List<Batch> batches, IOException error) {
+        for (Batch batch : batches) {
+            batch.completion.onComplete(0, error);
+        }
+    }
+}
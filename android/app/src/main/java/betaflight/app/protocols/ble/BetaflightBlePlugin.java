@@ -36,8 +36,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import betaflight.app.protocols.ReceiveCoalescer;
+import betaflight.app.protocols.StatsReporter;
+import betaflight.app.protocols.TransportMetrics;
+
+import org.json.JSONException;
 
 import no.nordicsemi.android.ble.BleManager;
+import no.nordicsemi.android.ble.PhyRequest;
+import no.nordicsemi.android.ble.callback.PhyCallback;
 import no.nordicsemi.android.ble.observer.ConnectionObserver;
 import no.nordicsemi.android.ble.WriteRequest;
 import no.nordicsemi.android.ble.data.Data;
@@ -137,11 +146,32 @@ public class BetaflightBlePlugin extends Plugin {
 	private boolean scanning = false;
 	private boolean fallbackScan = false;
 	private List<UUID> requestedServices = new ArrayList<>();
+	// The getDevices() call the current scan will resolve; scan state is only touched on the main thread
+	private PluginCall scanCall;
+	private Runnable scanDeadline;
+	private boolean stopOnFirst = false;
+	private String targetAddress;
+	private long scanStartNanos;
+	private long firstDeviceNanos;
+	// Set once the unfiltered pass has run for the current scan
+	private boolean fallbackScanDone = false;
 
 	private static final int DESIRED_MTU = 247;
+	private static final String FRAMING_RAW = "raw";
+	private static final String FRAMING_MSP = "msp";
 
 	private BleBridgeManager bleManager;
 	private String connectedAddress;
+	// Created once the MTU is known, i.e. when the device is ready
+	private volatile BleTransmitter transmitter;
+	// Replaced on each connect
+	private volatile BleReceiver receiver;
+
+	// Sends queued on the transmitter and not yet written
+	private final AtomicInteger pendingWrites = new AtomicInteger();
+	// Counters for the current connection; replaced on each connect
+	private volatile TransportMetrics metrics = createMetrics();
+	private final StatsReporter statsReporter = new StatsReporter(handler, this::emitStats);
 
 	private boolean hasBlePermissions() {
 		Context context = getContext();
@@ -182,6 +212,17 @@ public class BetaflightBlePlugin extends Plugin {
 		}
 	}
 
+	/**
+	 * Scan for known bridges and resolve with the devices found.
+	 *
+	 * The first pass is filtered by service UUID (serviceUuids, or every known
+	 * profile), so the controller drops other advertisers before they reach the
+	 * app. Each new device is reported at once with a "deviceFound" event. The
+	 * scan ends after SCAN_DURATION_MS, or as soon as the first device
+	 * (stopOnFirst) or the device at targetAddress turns up. Only if the
+	 * filtered pass finds nothing does an unfiltered pass follow, which also
+	 * matches by advertised name, for bridges that do not advertise their service.
+	 */
 	@PluginMethod
 	public void getDevices(PluginCall call) {
 		if (!ensurePermissions(call)) {
@@ -195,20 +236,14 @@ public class BetaflightBlePlugin extends Plugin {
 			return;
 		}
 
-		scanner = BluetoothLeScannerCompat.getScanner();
-
-		discoveredDevices.clear();
-		loggedUnknownAddresses.clear();
-		scanning = true;
-
-		requestedServices.clear();
+		List<UUID> services = new ArrayList<>();
 		JSArray serviceArray = call.getArray("serviceUuids");
 		if (serviceArray != null) {
 			try {
 				for (Object raw : serviceArray.toList()) {
 					if (raw instanceof String) {
 						try {
-							requestedServices.add(UUID.fromString(((String) raw).toLowerCase()));
+							services.add(UUID.fromString(((String) raw).toLowerCase()));
 						} catch (IllegalArgumentException ignored) {
 							// Skip invalid UUID strings
 						}
@@ -219,57 +254,112 @@ public class BetaflightBlePlugin extends Plugin {
 			}
 		}
 
-		if (requestedServices.isEmpty()) {
+		if (services.isEmpty()) {
 			for (String service : KNOWN_DEVICES.keySet()) {
-				requestedServices.add(UUID.fromString(service));
+				services.add(UUID.fromString(service));
+			}
+		}
+
+		boolean firstOnly = call.getBoolean("stopOnFirst", false);
+		String target = call.getString("targetAddress");
+		handler.post(() -> startScan(call, services, firstOnly, target));
+	}
+
+	/**
+	 * End the scan in progress early; its getDevices() call resolves with what has been found so far.
+	 */
+	@PluginMethod
+	public void cancelScan(PluginCall call) {
+		handler.post(() -> {
+			if (scanCall != null) {
+				finishScan(scanCall, true);
 			}
+			call.resolve();
+		});
+	}
+
+	private void startScan(PluginCall call, List<UUID> services, boolean firstOnly, String target) {
+		if (scanCall != null) {
+			call.reject("Scan already in progress");
+			return;
+		}
+
+		scanner = BluetoothLeScannerCompat.getScanner();
+
+		discoveredDevices.clear();
+		loggedUnknownAddresses.clear();
+		requestedServices = services;
+		stopOnFirst = firstOnly;
+		targetAddress = target;
+		scanStartNanos = System.nanoTime();
+		firstDeviceNanos = 0;
+		scanCall = call;
+		scanning = true;
+
+		List<ScanFilter> filters = new ArrayList<>();
+		for (UUID service : services) {
+			filters.add(new ScanFilter.Builder().setServiceUuid(new ParcelUuid(service)).build());
+		}
+		if (target != null) {
+			// Filters are OR-ed: the target is found even if it does not advertise a service
+			filters.add(new ScanFilter.Builder().setDeviceAddress(target).build());
 		}
 
 		ScanSettings settings = new ScanSettings.Builder()
 			.setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+			.setReportDelay(0)
+			.setUseHardwareFilteringIfSupported(true)
 			.build();
 
 		try {
-			scanner.startScan(null, settings, scanCallback); // unfiltered for fastest discovery
-			handler.postDelayed(() -> finishScan(call, false), SCAN_DURATION_MS);
+			scanner.startScan(filters, settings, scanCallback);
+			scheduleScanDeadline(() -> finishScan(call, false), SCAN_DURATION_MS);
 		} catch (SecurityException se) {
 			scanning = false;
+			scanCall = null;
 			call.reject("BLE scan permission denied: " + se.getMessage());
 		}
 	}
 
-	private void finishScan(PluginCall call, boolean fromFallback) {
+	private void scheduleScanDeadline(Runnable task, long delayMs) {
+		scanDeadline = task;
+		handler.postDelayed(task, delayMs);
+	}
+
+	private void finishScan(PluginCall call, boolean early) {
+		if (call != scanCall) {
+			return;
+		}
 		stopScan();
 
-		if (discoveredDevices.isEmpty() && !fromFallback) {
+		if (discoveredDevices.isEmpty() && !early && !fallbackScanDone) {
 			startFallbackScan(call);
 			return;
 		}
 
 		JSArray devices = new JSArray();
 		for (DiscoveredDevice device : discoveredDevices.values()) {
-			JSObject obj = new JSObject();
-			obj.put("address", device.address);
-			obj.put("name", device.name);
-			obj.put("rssi", device.rssi);
-			obj.put("serviceUuid", device.profile.serviceUuid);
-			obj.put("writeCharacteristic", device.profile.writeUuid);
-			obj.put("notifyCharacteristic", device.profile.notifyUuid);
-			devices.put(obj);
+			devices.put(describeDevice(device));
 		}
 
 		JSObject result = new JSObject();
 		result.put("devices", devices);
+		result.put("scanMs", (System.nanoTime() - scanStartNanos) / 1_000_000L);
+		result.put("firstDeviceMs", firstDeviceNanos != 0 ? (firstDeviceNanos - scanStartNanos) / 1_000_000L : -1);
+		scanCall = null;
+		fallbackScanDone = false;
 		call.resolve(result);
 	}
 
 	private void startFallbackScan(PluginCall call) {
 		if (scanner == null) {
+			scanCall = null;
 			call.reject("Bluetooth LE scanner unavailable");
 			return;
 		}
 
 		fallbackScan = true;
+		fallbackScanDone = true;
 		scanning = true;
 
 		ScanSettings settings = new ScanSettings.Builder()
@@ -278,9 +368,11 @@ public class BetaflightBlePlugin extends Plugin {
 
 		try {
 			scanner.startScan(null, settings, fallbackScanCallback);
-			handler.postDelayed(() -> finishScan(call, true), FALLBACK_SCAN_DURATION_MS);
+			scheduleScanDeadline(() -> finishScan(call, false), FALLBACK_SCAN_DURATION_MS);
 		} catch (SecurityException se) {
 			scanning = false;
+			scanCall = null;
+			fallbackScanDone = false;
 			call.reject("BLE fallback scan permission denied: " + se.getMessage());
 		}
 	}
@@ -319,10 +411,25 @@ public class BetaflightBlePlugin extends Plugin {
 			return;
 		}
 
+		BleLinkProfile linkProfile = BleLinkProfile.from(call.getString("linkProfile", BleLinkProfile.BALANCED.id));
+		if (linkProfile == null) {
+			call.reject("Unknown link profile: " + call.getString("linkProfile"));
+			return;
+		}
+
 		KnownDevice profile = KNOWN_DEVICES.getOrDefault(serviceUuid.toLowerCase(),
 			new KnownDevice("Unknown", serviceUuid, writeUuid, notifyUuid));
 
-		bleManager = new BleBridgeManager(getContext(), this, profile);
+		bleManager = new BleBridgeManager(getContext(), this, profile, linkProfile);
+		metrics = createMetrics();
+		BleReceiver previousReceiver = receiver;
+		receiver = new BleReceiver(this::emit,
+			Math.max(1, call.getInt("flushBytes", ReceiveCoalescer.DEFAULT_FLUSH_BYTES)),
+			Math.max(0, call.getInt("flushIntervalMs", ReceiveCoalescer.DEFAULT_FLUSH_INTERVAL_MS)),
+			FRAMING_MSP.equals(call.getString("framing", FRAMING_RAW)));
+		if (previousReceiver != null) {
+			previousReceiver.close();
+		}
 		bleManager.setConnectionObserver(new ConnectionObserver() {
 			@Override
 			public void onDeviceConnecting(@NonNull BluetoothDevice device) {
@@ -341,13 +448,21 @@ public class BetaflightBlePlugin extends Plugin {
 			@Override
 			public void onDeviceFailedToConnect(@NonNull BluetoothDevice device, int reason) {
 				connectedAddress = null;
+				metrics.recordError("Connection failed: " + reason);
 				call.reject("Connection failed: " + reason);
 			}
 
 			@Override
 			public void onDeviceReady(@NonNull BluetoothDevice device) {
+				BleBridgeManager manager = bleManager;
+				closeTransmitter();
+				transmitter = new BleTransmitter(manager::send, metrics, manager.negotiatedMtu, "BleWriter");
 				JSObject res = new JSObject();
 				res.put("success", true);
+				res.put("mtu", manager.negotiatedMtu);
+				res.put("link", manager.describeLink());
+				BleReceiver currentReceiver = receiver;
+				res.put("framing", currentReceiver != null && currentReceiver.isMspFraming() ? FRAMING_MSP : FRAMING_RAW);
 				call.resolve(res);
 			}
 
@@ -359,6 +474,10 @@ public class BetaflightBlePlugin extends Plugin {
 			@Override
 			public void onDeviceDisconnected(@NonNull BluetoothDevice device, int reason) {
 				connectedAddress = null;
+				closeTransmitter();
+				if (reason == REASON_LINK_LOSS || reason == REASON_TIMEOUT) {
+					metrics.recordError("Disconnected: " + reason);
+				}
 				JSObject evt = new JSObject();
 				evt.put("address", device.getAddress());
 				evt.put("reason", reason);
@@ -368,6 +487,7 @@ public class BetaflightBlePlugin extends Plugin {
 
 		bleManager.connect(device)
 			.useAutoConnect(false)
+			.usePreferredPhy(linkProfile.phyMask)
 			.timeout(15_000)
 			.fail((dev, status) -> {
 				connectedAddress = null;
@@ -389,6 +509,7 @@ public class BetaflightBlePlugin extends Plugin {
 			.timeout(5_000)
 			.done(device -> {
 				connectedAddress = null;
+				closeTransmitter();
 				JSObject res = new JSObject();
 				res.put("success", true);
 				call.resolve(res);
@@ -400,9 +521,15 @@ public class BetaflightBlePlugin extends Plugin {
 			.enqueue();
 	}
 
+	/**
+	 * Queue a base64 payload. It is merged with other queued frames and written
+	 * in MTU-sized chunks (see BleTransmitter); the call resolves once all of
+	 * its bytes are written.
+	 */
 	@PluginMethod
 	public void send(PluginCall call) {
-		if (bleManager == null || !bleManager.isConnected()) {
+		BleTransmitter current = transmitter;
+		if (bleManager == null || !bleManager.isConnected() || current == null) {
 			call.reject("Not connected");
 			return;
 		}
@@ -413,27 +540,109 @@ public class BetaflightBlePlugin extends Plugin {
 			return;
 		}
 
-		byte[] payload = Base64.decode(b64, Base64.NO_WRAP);
-		WriteRequest request = bleManager.send(payload);
+		enqueueWrite(call, current, new byte[][] {Base64.decode(b64, Base64.NO_WRAP)});
+	}
 
-		if (request == null) {
-			call.reject("Not ready to send data");
+	/**
+	 * Write many base64 frames with one bridge call, in order and coalesced like
+	 * send(). Resolves once the whole batch has been written.
+	 */
+	@PluginMethod
+	public void sendBatch(PluginCall call) {
+		BleTransmitter current = transmitter;
+		if (bleManager == null || !bleManager.isConnected() || current == null) {
+			call.reject("Not connected");
+			return;
+		}
+		JSArray encodedFrames = call.getArray("frames");
+		if (encodedFrames == null) {
+			call.reject("frames is required");
 			return;
 		}
 
-		request
-			.done(device -> {
-				JSObject res = new JSObject();
-				res.put("bytesSent", payload.length);
-				call.resolve(res);
-			})
-			.fail((device, status) -> call.reject("Send failed: " + status))
-			.enqueue();
+		byte[][] frames = new byte[encodedFrames.length()][];
+		try {
+			for (int i = 0; i < frames.length; i++) {
+				frames[i] = Base64.decode(encodedFrames.getString(i), Base64.NO_WRAP);
+			}
+		} catch (JSONException | IllegalArgumentException e) {
+			call.reject("Invalid frame: " + e.getMessage());
+			return;
+		}
+
+		enqueueWrite(call, current, frames);
+	}
+
+	/**
+	 * Report transmit counters for the current connection: bursts, chunks per
+	 * burst, bytes per chunk and throughput while writing.
+	 */
+	@PluginMethod
+	public void getWriteStats(PluginCall call) {
+		BleTransmitter current = transmitter;
+		if (current == null) {
+			call.reject("Not connected");
+			return;
+		}
+		call.resolve(current.getStats());
+	}
+
+	/**
+	 * Switch the connection parameters: "bulk" (high priority, LE 2M), "balanced"
+	 * or "lowPower"; see BleLinkProfile. Resolves with the negotiated link
+	 * parameters once the requests have completed; a "linkUpdated" event follows
+	 * whenever the stack reports a change.
+	 */
+	@PluginMethod
+	public void setLinkProfile(PluginCall call) {
+		BleBridgeManager manager = bleManager;
+		if (manager == null || !manager.isConnected()) {
+			call.reject("Not connected");
+			return;
+		}
+		BleLinkProfile profile = BleLinkProfile.from(call.getString("profile"));
+		if (profile == null) {
+			call.reject("Unknown link profile: " + call.getString("profile"));
+			return;
+		}
+		manager.requestLinkProfile(profile, () -> call.resolve(manager.describeLink()));
+	}
+
+	/**
+	 * Report throughput, latency histograms, errors and queue depth for the
+	 * current connection. Pass reset: true to start a new measurement window afterwards.
+	 */
+	@PluginMethod
+	public void getStats(PluginCall call) {
+		TransportMetrics current = metrics;
+		JSObject stats = createStats(current);
+		if (call.getBoolean("reset", false)) {
+			current.reset();
+		}
+		call.resolve(stats);
+	}
+
+	/**
+	 * Emit a "stats" event each intervalMs while connected; 0 turns it off.
+	 */
+	@PluginMethod
+	public void setStatsInterval(PluginCall call) {
+		int intervalMs = call.getInt("intervalMs", 0);
+		JSObject result = new JSObject();
+		result.put("intervalMs", statsReporter.setInterval(intervalMs));
+		call.resolve(result);
 	}
 
 	@Override
 	protected void handleOnDestroy() {
+		statsReporter.stop();
 		stopScan();
+		closeTransmitter();
+		BleReceiver closingReceiver = receiver;
+		receiver = null;
+		if (closingReceiver != null) {
+			closingReceiver.close();
+		}
 		try {
 			if (bleManager != null) {
 				bleManager.close();
@@ -445,6 +654,10 @@ public class BetaflightBlePlugin extends Plugin {
 	}
 
 	private void stopScan() {
+		if (scanDeadline != null) {
+			handler.removeCallbacks(scanDeadline);
+			scanDeadline = null;
+		}
 		if (scanner != null && scanning) {
 			try {
 				scanner.stopScan(scanCallback);
@@ -472,6 +685,10 @@ public class BetaflightBlePlugin extends Plugin {
 		@Override
 		public void onScanFailed(int errorCode) {
 			Log.e(TAG, "BLE scan failed: " + errorCode);
+			// Go straight to the unfiltered pass rather than waiting out the window
+			if (scanCall != null && !fallbackScanDone) {
+				finishScan(scanCall, false);
+			}
 		}
 	};
 
@@ -495,7 +712,8 @@ public class BetaflightBlePlugin extends Plugin {
 	};
 
 	private void handleResult(ScanResult result, boolean allowNameMatch) {
-		if (result == null || result.getDevice() == null) {
+		// Results already queued when the scan stopped are dropped
+		if (!scanning || result == null || result.getDevice() == null) {
 			return;
 		}
 
@@ -524,6 +742,28 @@ public class BetaflightBlePlugin extends Plugin {
 
 		DiscoveredDevice d = new DiscoveredDevice(address, name, result.getRssi(), profile);
 		discoveredDevices.put(address, d);
+		if (firstDeviceNanos == 0) {
+			firstDeviceNanos = System.nanoTime();
+		}
+
+		JSObject found = describeDevice(d);
+		found.put("elapsedMs", (System.nanoTime() - scanStartNanos) / 1_000_000L);
+		notifyListeners("deviceFound", found);
+
+		if (scanCall != null && (stopOnFirst || address.equalsIgnoreCase(targetAddress))) {
+			finishScan(scanCall, true);
+		}
+	}
+
+	private static JSObject describeDevice(DiscoveredDevice device) {
+		JSObject obj = new JSObject();
+		obj.put("address", device.address);
+		obj.put("name", device.name);
+		obj.put("rssi", device.rssi);
+		obj.put("serviceUuid", device.profile.serviceUuid);
+		obj.put("writeCharacteristic", device.profile.writeUuid);
+		obj.put("notifyCharacteristic", device.profile.notifyUuid);
+		return obj;
 	}
 
 	private KnownDevice findProfileForResult(ScanResult result, boolean allowNameMatch) {
@@ -612,9 +852,93 @@ public class BetaflightBlePlugin extends Plugin {
 			return;
 		}
 		byte[] bytes = data.getValue();
-		JSObject payload = new JSObject();
-		payload.put("data", Base64.encodeToString(bytes, Base64.NO_WRAP));
-		notifyListeners("dataReceived", payload);
+		metrics.recordRead(bytes.length);
+		BleReceiver current = receiver;
+		if (current != null) {
+			current.onNotification(bytes);
+		}
+	}
+
+	private void emit(String eventName, JSObject data) {
+		long emitStart = System.nanoTime();
+		notifyListeners(eventName, data);
+		metrics.recordEmit(System.nanoTime() - emitStart);
+	}
+
+	private void enqueueWrite(PluginCall call, BleTransmitter current, byte[][] frames) {
+		final TransportMetrics sendMetrics = metrics;
+		final long start = System.nanoTime();
+		boolean queued;
+		pendingWrites.incrementAndGet();
+		try {
+			queued = current.enqueue(frames, (bytesWritten, error) -> {
+				pendingWrites.decrementAndGet();
+				if (error != null) {
+					sendMetrics.recordError("Send failed: " + error.getMessage());
+					call.reject("Send failed: " + error.getMessage());
+					return;
+				}
+				sendMetrics.recordWrite(System.nanoTime() - start);
+				JSObject res = new JSObject();
+				res.put("bytesSent", bytesWritten);
+				res.put("frames", frames.length);
+				call.resolve(res);
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			queued = false;
+		}
+		if (!queued) {
+			pendingWrites.decrementAndGet();
+			call.reject("Send failed: write queue is full");
+		}
+	}
+
+	private void closeTransmitter() {
+		BleTransmitter closing = transmitter;
+		transmitter = null;
+		if (closing != null) {
+			closing.close();
+		}
+	}
+
+	void onLinkUpdated(BleBridgeManager manager) {
+		if (manager == bleManager) {
+			notifyListeners("linkUpdated", manager.describeLink());
+		}
+	}
+
+	private TransportMetrics createMetrics() {
+		TransportMetrics created = new TransportMetrics();
+		created.addGauge("pendingWrites", pendingWrites::get);
+		return created;
+	}
+
+	private JSObject createStats(TransportMetrics current) {
+		JSObject stats = current.toJSObject();
+		BleBridgeManager manager = bleManager;
+		stats.put("connected", manager != null && manager.isConnected());
+		stats.put("address", connectedAddress);
+		stats.put("mtu", manager != null ? manager.negotiatedMtu : 0);
+		if (manager != null) {
+			stats.put("link", manager.describeLink());
+		}
+		BleTransmitter currentTransmitter = transmitter;
+		if (currentTransmitter != null) {
+			stats.put("writer", currentTransmitter.getStats());
+		}
+		BleReceiver currentReceiver = receiver;
+		if (currentReceiver != null) {
+			stats.put("receive", currentReceiver.getStats());
+		}
+		return stats;
+	}
+
+	private void emitStats() {
+		BleBridgeManager manager = bleManager;
+		if (manager != null && manager.isConnected()) {
+			notifyListeners("stats", createStats(metrics));
+		}
 	}
 
 	private static class DiscoveredDevice {
@@ -652,13 +976,22 @@ public class BetaflightBlePlugin extends Plugin {
 		private UUID notifyUuid;
 		private String profileName;
 		private int negotiatedMtu = 23;
+		// Link parameters as last reported by the stack; -1 or 0 until then
+		private volatile BleLinkProfile linkProfile;
+		private volatile int connectionInterval = -1;
+		private volatile int peripheralLatency = -1;
+		private volatile int supervisionTimeout = -1;
+		private volatile int txPhy = 0;
+		private volatile int rxPhy = 0;
 
 		private BluetoothGattCharacteristic writeCharacteristic;
 		private BluetoothGattCharacteristic notifyCharacteristic;
 
-		BleBridgeManager(@NonNull Context context, BetaflightBlePlugin plugin, KnownDevice profile) {
+		BleBridgeManager(@NonNull Context context, BetaflightBlePlugin plugin, KnownDevice profile,
+				BleLinkProfile linkProfile) {
 			super(context);
 			this.plugin = plugin;
+			this.linkProfile = linkProfile;
 			this.serviceUuid = UUID.fromString(profile.serviceUuid);
 			this.writeUuid = UUID.fromString(profile.writeUuid);
 			this.notifyUuid = UUID.fromString(profile.notifyUuid);
@@ -723,6 +1056,7 @@ public class BetaflightBlePlugin extends Plugin {
 					.with((device, mtu) -> negotiatedMtu = mtu)
 					.fail((device, status) -> Log.w(TAG, "MTU request failed with status " + status))
 					.enqueue();
+				requestLinkProfile(linkProfile, null);
 
 				if (notifyCharacteristic != null) {
 					enableNotifications(notifyCharacteristic).enqueue();
@@ -736,6 +1070,84 @@ public class BetaflightBlePlugin extends Plugin {
 			}
 		}
 
+		/**
+		 * Queue the connection priority and PHY requests for profile. onDone runs
+		 * once both have completed or failed; a failure leaves the previous setting.
+		 */
+		void requestLinkProfile(BleLinkProfile profile, Runnable onDone) {
+			linkProfile = profile;
+			// No PHY selection before Android 8.0; the priority request is then the last one
+			boolean selectPhy = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+			Runnable finish = () -> {
+				if (onDone != null) {
+					onDone.run();
+				}
+			};
+
+			requestConnectionPriority(profile.connectionPriority)
+				// Reported on Android 8.0+ only
+				.with((device, interval, latency, timeout) -> {
+					connectionInterval = interval;
+					peripheralLatency = latency;
+					supervisionTimeout = timeout;
+					plugin.onLinkUpdated(this);
+				})
+				.done(device -> {
+					if (!selectPhy) {
+						finish.run();
+					}
+				})
+				.fail((device, status) -> {
+					Log.w(TAG, "Connection priority request failed with status " + status);
+					if (!selectPhy) {
+						finish.run();
+					}
+				})
+				.enqueue();
+
+			if (!selectPhy) {
+				return;
+			}
+			setPreferredPhy(profile.phyMask, profile.phyMask, PhyRequest.PHY_OPTION_NO_PREFERRED)
+				.with((device, tx, rx) -> {
+					txPhy = tx;
+					rxPhy = rx;
+					plugin.onLinkUpdated(this);
+				})
+				.done(device -> finish.run())
+				.fail((device, status) -> {
+					// The peer or the phone may not support 2M; the link stays on 1M
+					Log.w(TAG, "PHY request failed with status " + status);
+					finish.run();
+				})
+				.enqueue();
+		}
+
+		JSObject describeLink() {
+			JSObject link = new JSObject();
+			link.put("profile", linkProfile.id);
+			link.put("mtu", negotiatedMtu);
+			link.put("intervalMs", connectionInterval >= 0 ? connectionInterval * 1.25 : -1);
+			link.put("peripheralLatency", peripheralLatency);
+			link.put("supervisionTimeoutMs", supervisionTimeout >= 0 ? supervisionTimeout * 10 : -1);
+			link.put("txPhy", describePhy(txPhy));
+			link.put("rxPhy", describePhy(rxPhy));
+			return link;
+		}
+
+		private static String describePhy(int phy) {
+			switch (phy) {
+				case PhyCallback.PHY_LE_1M:
+					return "1M";
+				case PhyCallback.PHY_LE_2M:
+					return "2M";
+				case PhyCallback.PHY_LE_CODED:
+					return "coded";
+				default:
+					return "unknown";
+			}
+		}
+
 		WriteRequest send(byte[] data) {
 			if (writeCharacteristic == null) {
 				return null;
@@ -0,0 +1,42 @@
+package betaflight.app.protocols.ble;
+
+import no.nordicsemi.android.ble.ConnectionPriorityRequest;
+import no.nordicsemi.android.ble.PhyRequest;
+
+/**
+ * Connection parameters requested for a BLE bridge.
+ *
+ * bulk asks for the shortest connection interval (7.5-15 ms on most phones)
+ * and the LE 2M PHY, which halves the air time of each packet; JS switches to
+ * it around dataflash downloads and CLI dumps. balanced, the default, keeps 2M
+ * but lets the interval grow so the radio is not at high duty all session,
+ * and lowPower uses the longest interval and 1M for range. Data length extension has no Android API: the stack enables it on
+ * its own once the MTU is raised, so there is nothing to request here.
+ */
+enum BleLinkProfile {
+	BULK("bulk", ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH, PhyRequest.PHY_LE_2M_MASK),
+	BALANCED("balanced", ConnectionPriorityRequest.CONNECTION_PRIORITY_BALANCED, PhyRequest.PHY_LE_2M_MASK),
+	LOW_POWER("lowPower", ConnectionPriorityRequest.CONNECTION_PRIORITY_LOW_POWER, PhyRequest.PHY_LE_1M_MASK);
+
+	final String id;
+	final int connectionPriority;
+	final int phyMask;
+
+	BleLinkProfile(String id, int connectionPriority, int phyMask) {
+		this.id = id;
+		this.connectionPriority = connectionPriority;
+		this.phyMask = phyMask;
+	}
+
+	/**
+	 * The profile named id, or null if there is none.
+	 */
+	static BleLinkProfile from(String id) {
+		for (BleLinkProfile profile : values()) {
+			if (profile.id.equals(id)) {
+				return profile;
+			}
+		}
+		return null;
+	}
+}
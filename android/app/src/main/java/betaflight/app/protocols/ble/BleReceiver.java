@@ -0,0 +1,108 @@
+package betaflight.app.protocols.ble;
+
+import com.getcapacitor.JSObject;
+
+import betaflight.app.protocols.MspFrameDecoder;
+import betaflight.app.protocols.PayloadEncoder;
+import betaflight.app.protocols.ReceiveCoalescer;
+
+/**
+ * Receive path for one GATT connection.
+ *
+ * With a 247-byte MTU and a 7.5 ms connection interval a bridge can deliver
+ * several notifications per interval, and a bridge event per notification
+ * costs more than the bytes it carries. Notifications are merged in a
+ * ReceiveCoalescer and leave as one "dataReceived" event per flushBytes or
+ * flushIntervalMs. With MSP framing on, complete frames are decoded here
+ * instead and leave as one "mspFrame" event each, as on the serial plugin;
+ * bytes outside frames (CLI output) still go through the coalescer. Events
+ * are base64-encoded through reused buffers.
+ */
+final class BleReceiver {
+	interface Events {
+		void emit(String eventName, JSObject data);
+	}
+
+	private final Events events;
+	private final ReceiveCoalescer coalescer;
+	// Only used from the coalescer sink, which the coalescer serializes
+	private final PayloadEncoder receiveEncoder = new PayloadEncoder(ReceiveCoalescer.DEFAULT_FLUSH_BYTES);
+	// Only used on the notification thread
+	private final PayloadEncoder frameEncoder = new PayloadEncoder(ReceiveCoalescer.DEFAULT_FLUSH_BYTES);
+	private final MspFrameDecoder mspDecoder;
+	private volatile long notifications = 0;
+	private volatile long framesEmitted = 0;
+
+	BleReceiver(Events events, int flushBytes, int flushIntervalMs, boolean mspFraming) {
+		this.events = events;
+		this.coalescer = new ReceiveCoalescer(this::emitReceivedData, flushBytes, flushIntervalMs);
+		this.mspDecoder = mspFraming ? createMspDecoder() : null;
+	}
+
+	boolean isMspFraming() {
+		return mspDecoder != null;
+	}
+
+	/**
+	 * One notification's value. Called on the BLE manager's callback thread.
+	 */
+	void onNotification(byte[] data) {
+		notifications++;
+		if (mspDecoder != null) {
+			mspDecoder.feed(data, 0, data.length);
+		} else {
+			coalescer.append(data, 0, data.length);
+		}
+	}
+
+	void close() {
+		coalescer.close();
+	}
+
+	JSObject getStats() {
+		JSObject stats = coalescer.getStats();
+		long currentNotifications = notifications;
+		long emitted = stats.optLong("eventsEmitted", 0) + framesEmitted;
+		stats.put("notifications", currentNotifications);
+		stats.put("framing", mspDecoder != null ? "msp" : "raw");
+		stats.put("framesEmitted", framesEmitted);
+		stats.put("notificationsPerEvent", emitted > 0 ? (double) currentNotifications / emitted : 0);
+		if (mspDecoder != null) {
+			stats.put("checksumErrors", mspDecoder.getChecksumErrors());
+		}
+		return stats;
+	}
+
+	private MspFrameDecoder createMspDecoder() {
+		return new MspFrameDecoder(new MspFrameDecoder.Listener() {
+			@Override
+			public void onFrame(int version, char direction, int flags, int code, byte[] payload, int length,
+								int checksum, int computedChecksum) {
+				// Raw bytes received before this frame must reach JS first
+				coalescer.flush(ReceiveCoalescer.FlushReason.IMMEDIATE);
+
+				JSObject frame = new JSObject();
+				frame.put("version", version);
+				frame.put("direction", String.valueOf(direction));
+				frame.put("flags", flags);
+				frame.put("code", code);
+				frame.put("payload", frameEncoder.base64(payload, 0, length));
+				frame.put("checksum", checksum);
+				frame.put("computedChecksum", computedChecksum);
+				framesEmitted++;
+				events.emit("mspFrame", frame);
+			}
+
+			@Override
+			public void onPassthrough(byte[] data, int length) {
+				coalescer.append(data, 0, length);
+			}
+		});
+	}
+
+	private void emitReceivedData(byte[] data, int length, ReceiveCoalescer.FlushReason reason) {
+		JSObject payload = new JSObject();
+		payload.put("data", receiveEncoder.base64(data, 0, length));
+		events.emit("dataReceived", payload);
+	}
+}
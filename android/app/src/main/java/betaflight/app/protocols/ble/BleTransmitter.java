@@ -0,0 +1,131 @@
+package betaflight.app.protocols.ble;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import betaflight.app.protocols.TransportMetrics;
+import betaflight.app.protocols.WriteCoalescer;
+
+import no.nordicsemi.android.ble.WriteRequest;
+
+/**
+ * MTU-aware transmit path for one GATT connection.
+ *
+ * Sends go through a WriteCoalescer, so frames queued while a burst is on the
+ * air are merged and leave together in the next one. A burst is up to
+ * BURST_CHUNKS chunks of MTU - 3 bytes (the largest ATT write payload) and is
+ * handed to the BLE manager as one split write; with WRITE_NO_RESPONSE that is
+ * a run of full-size packets in back-to-back connection events instead of one
+ * acknowledged write per MSP frame. The writer thread waits for each burst to
+ * finish before starting the next, which is the flow control: the queue ahead
+ * of it is bounded, and enqueue() waits for room like the serial writer.
+ */
+final class BleTransmitter {
+	static final int BURST_CHUNKS = 8;
+	static final long ENQUEUE_WAIT_MS = 1000;
+	private static final long BURST_TIMEOUT_MS = 5000;
+	// ATT header of a write command
+	private static final int ATT_WRITE_OVERHEAD = 3;
+
+	interface Link {
+		/**
+		 * A write of data to the bridge's write characteristic, or null if not ready.
+		 */
+		WriteRequest write(byte[] data);
+	}
+
+	private final Link link;
+	private final TransportMetrics metrics;
+	private final int chunkBytes;
+	private final WriteCoalescer coalescer;
+
+	// Written on the writer thread only
+	private volatile long bursts = 0;
+	private volatile long chunks = 0;
+	private volatile long busyNanos = 0;
+	private volatile long bytesWritten = 0;
+
+	BleTransmitter(Link link, TransportMetrics metrics, int mtu, String threadName) {
+		this.link = link;
+		this.metrics = metrics;
+		this.chunkBytes = Math.max(20, mtu - ATT_WRITE_OVERHEAD);
+		this.coalescer = new WriteCoalescer(this::writeBurst, chunkBytes * BURST_CHUNKS,
+			WriteCoalescer.DEFAULT_MAX_QUEUED_BYTES, threadName);
+		metrics.addGauge("writeQueueBytes", coalescer::getQueuedBytes);
+	}
+
+	/**
+	 * Queue frames as one batch; see WriteCoalescer.enqueue().
+	 */
+	boolean enqueue(byte[][] frames, WriteCoalescer.Completion completion) throws InterruptedException {
+		return coalescer.enqueue(frames, completion, ENQUEUE_WAIT_MS);
+	}
+
+	void close() {
+		coalescer.close();
+	}
+
+	int getChunkBytes() {
+		return chunkBytes;
+	}
+
+	JSObject getStats() {
+		JSObject stats = coalescer.getStats();
+		long currentBursts = bursts;
+		long currentChunks = chunks;
+		long currentBusyNanos = busyNanos;
+		stats.put("chunkBytes", chunkBytes);
+		stats.put("bursts", currentBursts);
+		stats.put("chunks", currentChunks);
+		stats.put("chunksPerBurst", currentBursts > 0 ? (double) currentChunks / currentBursts : 0);
+		stats.put("bytesPerChunk", currentChunks > 0 ? (double) bytesWritten / currentChunks : 0);
+		// Throughput while a burst was on the air, i.e. what the link delivers when kept busy
+		stats.put("effectiveBytesPerSecond", currentBusyNanos > 0 ? bytesWritten * 1e9 / currentBusyNanos : 0);
+		return stats;
+	}
+
+	private void writeBurst(byte[] data, int length) throws IOException {
+		// The coalescer reuses its buffer; the request keeps a reference until it is done
+		byte[] burst = Arrays.copyOf(data, length);
+		WriteRequest request = link.write(burst);
+		if (request == null) {
+			throw new IOException("Not ready to send data");
+		}
+
+		CountDownLatch done = new CountDownLatch(1);
+		AtomicInteger failure = new AtomicInteger(Integer.MIN_VALUE);
+		long start = System.nanoTime();
+		request
+			.split()
+			.done(device -> done.countDown())
+			.fail((device, status) -> {
+				failure.set(status);
+				done.countDown();
+			})
+			.enqueue();
+
+		try {
+			if (!done.await(BURST_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				throw new IOException("Write timed out");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Write interrupted", e);
+		}
+		if (failure.get() != Integer.MIN_VALUE) {
+			throw new IOException("Write failed: " + failure.get());
+		}
+
+		long elapsed = System.nanoTime() - start;
+		metrics.recordTransfer(length, elapsed);
+		bursts++;
+		chunks += (length + chunkBytes - 1) / chunkBytes;
+		busyNanos += elapsed;
+		bytesWritten += length;
+	}
+}
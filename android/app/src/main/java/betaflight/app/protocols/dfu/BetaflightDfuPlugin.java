@@ -21,10 +21,18 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
+import betaflight.app.protocols.PayloadCodec;
+import betaflight.app.protocols.UsbDeviceRegistry;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Capacitor plugin for USB DFU (Device Firmware Update) communication.
@@ -34,10 +42,15 @@ import java.util.Map;
  * DFU protocol on Android via native USB APIs.
  *
  * Features:
- * - DFU device discovery filtered by known bootloader VID/PIDs
+ * - DFU device discovery filtered by known bootloader VID/PIDs, cached per device
  * - USB permission handling (Android 14+ compatible)
- * - USB control transfers (IN and OUT) for DFU commands
+ * - USB control transfers (IN and OUT) for DFU commands, singly or as a batch,
+ *   with hex (default) or base64 payloads
  * - USB descriptor reading (string, interface, functional)
+ * - Whole-image erase/download and readback verify on a dedicated USB thread
+ * - Several devices open at once, addressed by handle, each with its own USB
+ *   worker, so boards on a hub can be flashed in parallel; concurrent transfers
+ *   per USB bus are capped by a DfuBusScheduler
  * - Device attach/detach detection
  */
 @CapacitorPlugin(
@@ -53,6 +66,8 @@ public class BetaflightDfuPlugin extends Plugin {
     private static final String TAG = "BetaflightDfu";
     private static final String ACTION_USB_PERMISSION = "com.betaflight.DFU_USB_PERMISSION";
     private static final int DEFAULT_TIMEOUT_MS = 5000;
+    // Upper bound on transfers in one controlTransferSequence call
+    private static final int MAX_SEQUENCE_TRANSFERS = 256;
 
     // Known DFU bootloader VID/PID pairs
     private static final int[][] DFU_DEVICE_FILTERS = {
@@ -69,9 +84,13 @@ public class BetaflightDfuPlugin extends Plugin {
     private static final int USB_RECIP_INTERFACE = 0x01;
 
     private UsbManager usbManager;
-    private UsbDevice currentDevice;
-    private UsbDeviceConnection connection;
-    private UsbInterface claimedInterface;
+    // Attached DFU devices by device key, kept current by the attach/detach receivers
+    private UsbDeviceRegistry<UsbDevice> deviceRegistry;
+    // Open devices by handle; openDevice() adds, closeDevice()/detach remove
+    private final Map<String, DfuConnection> connections = new ConcurrentHashMap<>();
+    // Used by calls that carry no handle, so single-device callers keep working unchanged
+    private volatile DfuConnection defaultConnection;
+    private final DfuBusScheduler busScheduler = new DfuBusScheduler();
 
     private final Map<String, UsbDevice> permissionRequestedDevices = new HashMap<>();
     private PluginCall pendingPermissionCall;
@@ -96,6 +115,8 @@ public class BetaflightDfuPlugin extends Plugin {
         super.load();
         sInstance = new java.lang.ref.WeakReference<>(this);
         usbManager = (UsbManager) getContext().getSystemService(Context.USB_SERVICE);
+        deviceRegistry = new UsbDeviceRegistry<>(usbManager, device -> isDfuDevice(device) ? device : null);
+        deviceRegistry.refresh();
 
         IntentFilter filter = new IntentFilter();
         filter.addAction(ACTION_USB_PERMISSION);
@@ -114,7 +135,7 @@ public class BetaflightDfuPlugin extends Plugin {
     @Override
     protected void handleOnDestroy() {
         try {
-            closeDeviceInternal();
+            closeAllConnections();
             getContext().unregisterReceiver(usbReceiver);
         } catch (Exception e) {
             Log.e(TAG, "Error in handleOnDestroy", e);
@@ -131,10 +152,9 @@ public class BetaflightDfuPlugin extends Plugin {
     public void getDevices(PluginCall call) {
         try {
             JSArray devices = new JSArray();
-            Map<String, UsbDevice> deviceList = usbManager.getDeviceList();
 
-            for (UsbDevice device : deviceList.values()) {
-                if (isDfuDevice(device) && usbManager.hasPermission(device)) {
+            for (UsbDevice device : deviceRegistry.list()) {
+                if (usbManager.hasPermission(device)) {
                     devices.put(createDeviceInfo(device));
                 }
             }
@@ -159,14 +179,9 @@ public class BetaflightDfuPlugin extends Plugin {
                 return;
             }
 
-            Map<String, UsbDevice> deviceList = usbManager.getDeviceList();
-            java.util.List<UsbDevice> dfuDevices = new java.util.ArrayList<>();
-
-            for (UsbDevice device : deviceList.values()) {
-                if (isDfuDevice(device)) {
-                    dfuDevices.add(device);
-                }
-            }
+            // Pick up anything plugged in without a broadcast reaching us
+            deviceRegistry.refresh();
+            java.util.List<UsbDevice> dfuDevices = deviceRegistry.list();
 
             if (dfuDevices.isEmpty()) {
                 JSObject result = new JSObject();
@@ -228,10 +243,25 @@ public class BetaflightDfuPlugin extends Plugin {
         }
     }
 
+    /**
+     * Report device table counters, including how long the last DFU device
+     * that re-enumerated was away.
+     */
+    @PluginMethod
+    public void getProbeStats(PluginCall call) {
+        call.resolve(deviceRegistry.getStats());
+    }
+
     // ===== Device Lifecycle =====
 
     /**
      * Open a DFU USB device and optionally select configuration.
+     *
+     * Several devices can be open at once. The result carries a handle that
+     * the other calls and "flashProgress" events are keyed by. Calls without
+     * one go to the most recently opened device, and are rejected while more
+     * than one device is open. Opening a device that is already open reopens
+     * it; other open devices are left alone.
      */
     @PluginMethod
     public void openDevice(PluginCall call) {
@@ -242,8 +272,6 @@ public class BetaflightDfuPlugin extends Plugin {
         }
 
         try {
-            closeDeviceInternal();
-
             UsbDevice device = findDfuDevice(deviceId);
             if (device == null) {
                 call.reject("DFU device not found: " + deviceId);
@@ -255,17 +283,25 @@ public class BetaflightDfuPlugin extends Plugin {
                 return;
             }
 
-            connection = usbManager.openDevice(device);
-            if (connection == null) {
+            String handle = getDeviceKey(device);
+            closeConnection(connections.get(handle));
+
+            UsbDeviceConnection usbConnection = usbManager.openDevice(device);
+            if (usbConnection == null) {
                 call.reject("Failed to open device connection");
                 return;
             }
 
-            currentDevice = device;
+            DfuConnection connection = new DfuConnection(handle, device, usbConnection,
+                busScheduler.busFor(device.getDeviceName()));
+            connections.put(handle, connection);
+            defaultConnection = connection;
 
             // Report configuration and interface count
             JSObject result = new JSObject();
             result.put("success", true);
+            result.put("handle", handle);
+            result.put("bus", connection.bus.name);
             result.put("productName", device.getProductName());
             result.put("manufacturerName", device.getManufacturerName());
             result.put("serialNumber", device.getSerialNumber());
@@ -278,11 +314,10 @@ public class BetaflightDfuPlugin extends Plugin {
                 result.put("configurationValue", device.getConfiguration(0).getId());
             }
 
-            Log.d(TAG, "Opened DFU device: " + deviceId);
+            Log.d(TAG, "Opened DFU device: " + deviceId + " on bus " + connection.bus.name);
             call.resolve(result);
         } catch (Exception e) {
             Log.e(TAG, "Error opening device", e);
-            closeDeviceInternal();
             call.reject("Failed to open device: " + e.getMessage());
         }
     }
@@ -292,24 +327,23 @@ public class BetaflightDfuPlugin extends Plugin {
      */
     @PluginMethod
     public void claimInterface(PluginCall call) {
-        if (connection == null || currentDevice == null) {
-            call.reject("No device is open");
+        DfuConnection connection = getConnection(call);
+        if (connection == null) {
             return;
         }
 
         int interfaceNum = call.getInt("interfaceNumber", 0);
 
         try {
-            if (interfaceNum < 0 || interfaceNum >= currentDevice.getInterfaceCount()) {
+            if (interfaceNum < 0 || interfaceNum >= connection.device.getInterfaceCount()) {
                 call.reject("Interface number out of range: " + interfaceNum);
                 return;
             }
 
-            UsbInterface iface = currentDevice.getInterface(interfaceNum);
-            boolean claimed = connection.claimInterface(iface, true);
+            UsbInterface iface = connection.device.getInterface(interfaceNum);
+            boolean claimed = connection.claimInterface(iface);
 
             if (claimed) {
-                claimedInterface = iface;
                 Log.d(TAG, "Claimed interface: " + interfaceNum);
 
                 JSObject result = new JSObject();
@@ -329,24 +363,21 @@ public class BetaflightDfuPlugin extends Plugin {
      */
     @PluginMethod
     public void releaseInterface(PluginCall call) {
-        if (connection == null || currentDevice == null) {
-            call.reject("No device is open");
+        DfuConnection connection = getConnection(call);
+        if (connection == null) {
             return;
         }
 
         int interfaceNum = call.getInt("interfaceNumber", 0);
 
         try {
-            if (interfaceNum < 0 || interfaceNum >= currentDevice.getInterfaceCount()) {
+            if (interfaceNum < 0 || interfaceNum >= connection.device.getInterfaceCount()) {
                 call.reject("Interface number out of range: " + interfaceNum);
                 return;
             }
 
-            UsbInterface iface = currentDevice.getInterface(interfaceNum);
+            UsbInterface iface = connection.device.getInterface(interfaceNum);
             connection.releaseInterface(iface);
-            if (claimedInterface == iface) {
-                claimedInterface = null;
-            }
 
             Log.d(TAG, "Released interface: " + interfaceNum);
             JSObject result = new JSObject();
@@ -359,11 +390,14 @@ public class BetaflightDfuPlugin extends Plugin {
     }
 
     /**
-     * Close the current USB device connection.
+     * Close the device given by handle, or the most recently opened one.
      */
     @PluginMethod
     public void closeDevice(PluginCall call) {
-        closeDeviceInternal();
+        if (rejectIfAmbiguous(call)) {
+            return;
+        }
+        closeConnection(findConnection(call));
         JSObject result = new JSObject();
         result.put("success", true);
         call.resolve(result);
@@ -376,22 +410,59 @@ public class BetaflightDfuPlugin extends Plugin {
     public void resetDevice(PluginCall call) {
         // Android UsbDeviceConnection does not expose a reset method.
         // Closing and reopening is the closest equivalent.
-        closeDeviceInternal();
+        if (rejectIfAmbiguous(call)) {
+            return;
+        }
+        closeConnection(findConnection(call));
         JSObject result = new JSObject();
         result.put("success", true);
         call.resolve(result);
     }
 
+    /**
+     * List open devices with their handle, bus and whether a flash or verify is running.
+     */
+    @PluginMethod
+    public void getOpenDevices(PluginCall call) {
+        JSArray list = new JSArray();
+        for (DfuConnection connection : connections.values()) {
+            JSObject info = new JSObject();
+            info.put("handle", connection.handle);
+            info.put("bus", connection.bus.name);
+            info.put("productName", connection.device.getProductName());
+            info.put("busy", connection.activeJob != null);
+            list.put(info);
+        }
+        JSObject result = new JSObject();
+        result.put("devices", list);
+        call.resolve(result);
+    }
+
+    /**
+     * Set how many control transfers may run at once on one USB bus (at least
+     * one), and report per-bus transfer counts, waits and peak concurrency.
+     * Without maxTransfersPerBus this only reports.
+     */
+    @PluginMethod
+    public void setBusConcurrency(PluginCall call) {
+        Integer max = call.getInt("maxTransfersPerBus");
+        if (max != null) {
+            busScheduler.setMaxTransfersPerBus(max);
+        }
+        call.resolve(busScheduler.toJSObject());
+    }
+
     // ===== USB Control Transfers =====
 
     /**
      * Perform a USB control transfer IN (device -> host).
      * Used for DFU GETSTATUS, GETSTATE, UPLOAD requests.
+     * The received bytes come back as hex (default) or base64, as given by "encoding".
      */
     @PluginMethod
     public void controlTransferIn(PluginCall call) {
+        DfuConnection connection = getConnection(call);
         if (connection == null) {
-            call.reject("No device is open");
             return;
         }
 
@@ -402,40 +473,30 @@ public class BetaflightDfuPlugin extends Plugin {
         int index = call.getInt("index", 0);
         int length = call.getInt("length", 0);
         int timeout = call.getInt("timeout", DEFAULT_TIMEOUT_MS);
+        String encoding = PayloadCodec.negotiate(call.getString("encoding", PayloadCodec.HEX));
 
-        try {
-            byte[] buffer = new byte[length];
-            int result = connection.controlTransfer(requestType, request, value, index,
-                buffer, length, timeout);
-
-            JSObject response = new JSObject();
-            if (result >= 0) {
-                response.put("status", "ok");
-                // Return only the bytes actually received
-                byte[] received = new byte[result];
-                System.arraycopy(buffer, 0, received, 0, result);
-                response.put("data", byteArrayToHexString(received));
-                response.put("length", result);
-            } else {
-                response.put("status", "error");
-                response.put("data", "");
-                response.put("length", result);
+        connection.execute(() -> {
+            try {
+                JSObject response = connection.transferIn(requestType, request, value, index, length, timeout,
+                    encoding);
+                response.put("encoding", encoding);
+                call.resolve(response);
+            } catch (Exception e) {
+                Log.e(TAG, "controlTransferIn failed", e);
+                call.reject("Control transfer IN failed: " + e.getMessage());
             }
-            call.resolve(response);
-        } catch (Exception e) {
-            Log.e(TAG, "controlTransferIn failed", e);
-            call.reject("Control transfer IN failed: " + e.getMessage());
-        }
+        });
     }
 
     /**
      * Perform a USB control transfer OUT (host -> device).
      * Used for DFU DNLOAD, CLRSTATUS, ABORT, DETACH requests.
+     * Data is a hex (default) or base64 string, as given by "encoding".
      */
     @PluginMethod
     public void controlTransferOut(PluginCall call) {
+        DfuConnection connection = getConnection(call);
         if (connection == null) {
-            call.reject("No device is open");
             return;
         }
 
@@ -444,30 +505,253 @@ public class BetaflightDfuPlugin extends Plugin {
         int request = call.getInt("request", 0);
         int value = call.getInt("value", 0);
         int index = call.getInt("index", 0);
-        String hexData = call.getString("data", "");
+        String encodedData = call.getString("data", "");
+        String encoding = call.getString("encoding", PayloadCodec.HEX);
         int timeout = call.getInt("timeout", DEFAULT_TIMEOUT_MS);
 
-        try {
-            byte[] data = (hexData != null && !hexData.isEmpty())
-                ? hexStringToByteArray(hexData)
-                : new byte[0];
+        connection.execute(() -> {
+            try {
+                byte[] data = PayloadCodec.decode(encodedData, encoding);
+                call.resolve(connection.transferOut(requestType, request, value, index, data, timeout));
+            } catch (Exception e) {
+                Log.e(TAG, "controlTransferOut failed", e);
+                call.reject("Control transfer OUT failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Run a list of control transfers back to back in one call.
+     *
+     * "transfers" is an array of {direction: "in" | "out", requestType,
+     * request, value, index, length (IN), data (OUT), timeout}, with the same
+     * defaults as controlTransferIn/Out; payloads in both directions use
+     * "encoding" (hex by default, or base64). Resolves with one result per
+     * transfer that ran ({status, length, data for IN}) and completed, the
+     * number that succeeded. With stopOnError (the default) the first failed
+     * transfer ends the sequence. This turns the DNLOAD + GETSTATUS pairs of
+     * usbdfu.js into one bridge round trip instead of two.
+     */
+    @PluginMethod
+    public void controlTransferSequence(PluginCall call) {
+        DfuConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+        if (connection.activeJob != null) {
+            call.reject("A flash or verify is in progress");
+            return;
+        }
+        JSONArray transfers = call.getArray("transfers");
+        if (transfers == null || transfers.length() == 0) {
+            call.reject("transfers are required");
+            return;
+        }
+        if (transfers.length() > MAX_SEQUENCE_TRANSFERS) {
+            call.reject("At most " + MAX_SEQUENCE_TRANSFERS + " transfers per sequence");
+            return;
+        }
+        String encoding = PayloadCodec.negotiate(call.getString("encoding", PayloadCodec.HEX));
+        boolean stopOnError = call.getBoolean("stopOnError", true);
 
-            int result = connection.controlTransfer(requestType, request, value, index,
-                data, data.length, timeout);
+        connection.execute(() -> runSequence(call, connection, transfers, encoding, stopOnError));
+    }
 
-            JSObject response = new JSObject();
-            if (result >= 0) {
-                response.put("status", "ok");
-                response.put("length", result);
-            } else {
-                response.put("status", "error");
-                response.put("length", result);
+    private void runSequence(PluginCall call, DfuConnection connection, JSONArray transfers, String encoding,
+                             boolean stopOnError) {
+        try {
+            long start = System.nanoTime();
+            JSArray results = new JSArray();
+            int completed = 0;
+            for (int i = 0; i < transfers.length(); i++) {
+                JSONObject transfer = transfers.getJSONObject(i);
+                boolean in = "in".equals(transfer.optString("direction", "out"));
+                int requestType = transfer.optInt("requestType", (in ? UsbConstants.USB_DIR_IN
+                    : UsbConstants.USB_DIR_OUT) | UsbConstants.USB_TYPE_CLASS | USB_RECIP_INTERFACE);
+                int request = transfer.optInt("request", 0);
+                int value = transfer.optInt("value", 0);
+                int index = transfer.optInt("index", 0);
+                int timeout = transfer.optInt("timeout", DEFAULT_TIMEOUT_MS);
+
+                JSObject result = in
+                    ? connection.transferIn(requestType, request, value, index, transfer.optInt("length", 0),
+                        timeout, encoding)
+                    : connection.transferOut(requestType, request, value, index,
+                        PayloadCodec.decode(transfer.optString("data", ""), encoding), timeout);
+                results.put(result);
+                if ("ok".equals(result.getString("status"))) {
+                    completed++;
+                } else if (stopOnError) {
+                    break;
+                }
             }
+
+            JSObject response = new JSObject();
+            response.put("results", results);
+            response.put("completed", completed);
+            response.put("encoding", encoding);
+            response.put("elapsedUs", (System.nanoTime() - start) / 1000L);
             call.resolve(response);
         } catch (Exception e) {
-            Log.e(TAG, "controlTransferOut failed", e);
-            call.reject("Control transfer OUT failed: " + e.getMessage());
+            Log.e(TAG, "controlTransferSequence failed", e);
+            call.reject("Control transfer sequence failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Native side of the per-transfer overhead benchmark: GETSTATUS latency on
+     * the open device without the bridge, and payload encode/decode cost per
+     * encoding, see DfuBenchmark. CapacitorDfu.benchmarkTransfers() sets this
+     * against bridged single and batched transfers.
+     */
+    @PluginMethod
+    public void benchmarkTransfers(PluginCall call) {
+        DfuConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+        if (connection.activeJob != null) {
+            call.reject("A flash or verify is in progress");
+            return;
+        }
+        int transfers = Math.max(1, Math.min(10_000, call.getInt("transfers", 200)));
+        int payloadSize = Math.max(1, Math.min(4096, call.getInt("payloadSize", 2048)));
+        DfuBenchmark benchmark = new DfuBenchmark(connection.createCommands(DEFAULT_TIMEOUT_MS), transfers,
+            payloadSize);
+
+        connection.execute(() -> {
+            try {
+                call.resolve(benchmark.run());
+            } catch (Exception e) {
+                Log.e(TAG, "DFU transfer benchmark failed", e);
+                call.reject("Benchmark failed: " + e.getMessage());
+            }
+        });
+    }
+
+    // ===== Image Download and Verify =====
+
+    /**
+     * Erase and write a whole image, optionally leaving DFU afterwards.
+     *
+     * Takes segments ([{address, data}] with base64 data), sectors (the flash
+     * memory map as parsed by usbdfu.js), transferSize (wTransferSize),
+     * eraseChip (erase every page rather than just those the image touches),
+     * differential (read the touched pages back first and only erase and
+     * write those that differ) and leave. Runs on the USB thread and reports
+     * "flashProgress" events ({phase: "compare" | "erase" | "write", done,
+     * total}); resolves with page, byte and timing counts, including
+     * pagesSkipped and pagesErased, or rejects with the step that failed. The
+     * device must be open with its interface claimed and in dfuIDLE. Each open
+     * device runs its own job, so several can flash at once; their events
+     * carry the device's handle.
+     */
+    @PluginMethod
+    public void flashImage(PluginCall call) {
+        DfuConnection connection = getConnection(call);
+        DfuImage image = connection != null ? parseImage(call, connection) : null;
+        if (image == null) {
+            return;
         }
+        startJob(call, connection, "flashImage", new DfuDownloader(connection.createCommands(DEFAULT_TIMEOUT_MS),
+            image, call.getInt("transferSize"), call.getBoolean("eraseChip", false),
+            call.getBoolean("differential", false), call.getBoolean("leave", false),
+            progress -> notifyProgress(connection, progress)));
+    }
+
+    /**
+     * Read the image's address ranges back with DFU_UPLOAD and compare them
+     * with the image, on the USB thread.
+     *
+     * Takes segments, sectors and transferSize as flashImage does, plus
+     * granularity ("byte" for exact differing ranges, "page" for the flash
+     * pages whose CRC32 differs) and stopOnMismatch. Reports "flashProgress"
+     * with phase "verify" and resolves with verified, bytesRead and at most 64
+     * mismatches ({address, length}, plus crc and expectedCrc per page).
+     */
+    @PluginMethod
+    public void verifyImage(PluginCall call) {
+        DfuConnection connection = getConnection(call);
+        DfuImage image = connection != null ? parseImage(call, connection) : null;
+        if (image == null) {
+            return;
+        }
+        String granularity = call.getString("granularity", DfuVerifier.GRANULARITY_BYTE);
+        if (!DfuVerifier.GRANULARITY_BYTE.equals(granularity) && !DfuVerifier.GRANULARITY_PAGE.equals(granularity)) {
+            call.reject("Unknown granularity: " + granularity);
+            return;
+        }
+        startJob(call, connection, "verifyImage", new DfuVerifier(connection.createCommands(DEFAULT_TIMEOUT_MS),
+            image, call.getInt("transferSize"), granularity, call.getBoolean("stopOnMismatch", false),
+            progress -> notifyProgress(connection, progress)));
+    }
+
+    /**
+     * Stop a running flashImage or verifyImage at the next page or block; its
+     * call rejects. Only the device given by handle, or the one open device
+     * when none is given.
+     */
+    @PluginMethod
+    public void abortFlash(PluginCall call) {
+        if (rejectIfAmbiguous(call)) {
+            return;
+        }
+        String handle = call.getString("handle");
+        boolean aborted = false;
+        for (DfuConnection connection : connections.values()) {
+            DfuJob job = connection.activeJob;
+            if (job != null && (handle == null || handle.equals(connection.handle))) {
+                job.cancel();
+                aborted = true;
+            }
+        }
+        JSObject result = new JSObject();
+        result.put("success", aborted);
+        call.resolve(result);
+    }
+
+    /**
+     * The image and transfer size of a flashImage/verifyImage call, or null
+     * after rejecting the call.
+     */
+    private DfuImage parseImage(PluginCall call, DfuConnection connection) {
+        if (connection.activeJob != null) {
+            call.reject("A flash or verify is already in progress");
+            return null;
+        }
+        int transferSize = call.getInt("transferSize", 0);
+        if (transferSize <= 0) {
+            call.reject("transferSize must be positive");
+            return null;
+        }
+        try {
+            return DfuImage.from(call.getArray("segments"), call.getArray("sectors"));
+        } catch (JSONException | IllegalArgumentException e) {
+            call.reject("Invalid image: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void notifyProgress(DfuConnection connection, JSObject progress) {
+        progress.put("handle", connection.handle);
+        notifyListeners("flashProgress", progress);
+    }
+
+    private void startJob(PluginCall call, DfuConnection connection, String name, DfuJob job) {
+        connection.activeJob = job;
+        connection.execute(() -> {
+            try {
+                JSObject result = job.run();
+                result.put("handle", connection.handle);
+                call.resolve(result);
+            } catch (IOException | RuntimeException e) {
+                // An unchecked failure must still settle the call, or JS awaits it forever
+                Log.e(TAG, name + " failed on " + connection.handle, e);
+                call.reject(name + " failed: " + e.getMessage());
+            } finally {
+                connection.activeJob = null;
+            }
+        });
     }
 
     // ===== USB Descriptor Reading =====
@@ -478,103 +762,107 @@ public class BetaflightDfuPlugin extends Plugin {
      */
     @PluginMethod
     public void getStringDescriptor(PluginCall call) {
+        DfuConnection connection = getConnection(call);
         if (connection == null) {
-            call.reject("No device is open");
             return;
         }
 
         int index = call.getInt("index", 0);
 
-        try {
-            // Standard USB GET_DESCRIPTOR for string
-            int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
-            byte[] buffer = new byte[255];
-            int result = connection.controlTransfer(
-                requestType,
-                0x06,              // GET_DESCRIPTOR
-                0x0300 | index,    // STRING descriptor type | index
-                0,                 // language ID
-                buffer, 255, DEFAULT_TIMEOUT_MS
-            );
+        connection.execute(() -> {
+            try {
+                // Standard USB GET_DESCRIPTOR for string
+                int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
+                byte[] buffer = new byte[255];
+                int result = connection.controlTransfer(
+                    requestType,
+                    0x06,              // GET_DESCRIPTOR
+                    0x0300 | index,    // STRING descriptor type | index
+                    0,                 // language ID
+                    buffer, 255, DEFAULT_TIMEOUT_MS
+                );
 
-            JSObject response = new JSObject();
-            if (result > 2) {
-                int length = buffer[0] & 0xFF;
-                StringBuilder sb = new StringBuilder();
-                for (int i = 2; i + 1 < length && i + 1 < result; i += 2) {
-                    int charCode = (buffer[i] & 0xFF) | ((buffer[i + 1] & 0xFF) << 8);
-                    sb.append((char) charCode);
+                JSObject response = new JSObject();
+                if (result > 2) {
+                    int length = buffer[0] & 0xFF;
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 2; i + 1 < length && i + 1 < result; i += 2) {
+                        int charCode = (buffer[i] & 0xFF) | ((buffer[i + 1] & 0xFF) << 8);
+                        sb.append((char) charCode);
+                    }
+                    response.put("status", "ok");
+                    response.put("descriptor", sb.toString());
+                } else {
+                    response.put("status", "error");
+                    response.put("descriptor", "");
                 }
-                response.put("status", "ok");
-                response.put("descriptor", sb.toString());
-            } else {
-                response.put("status", "error");
-                response.put("descriptor", "");
+                call.resolve(response);
+            } catch (Exception e) {
+                Log.e(TAG, "getStringDescriptor failed", e);
+                call.reject("Failed to read string descriptor: " + e.getMessage());
             }
-            call.resolve(response);
-        } catch (Exception e) {
-            Log.e(TAG, "getStringDescriptor failed", e);
-            call.reject("Failed to read string descriptor: " + e.getMessage());
-        }
+        });
     }
 
     /**
      * Read the configuration descriptor to extract interface descriptor info.
-     * Returns the raw descriptor bytes as hex for JS-side parsing.
+     * Returns the interface descriptor's fields, parsed natively.
      */
     @PluginMethod
     public void getInterfaceDescriptor(PluginCall call) {
+        DfuConnection connection = getConnection(call);
         if (connection == null) {
-            call.reject("No device is open");
             return;
         }
 
         int interfaceIndex = call.getInt("interfaceIndex", 0);
 
-        try {
-            if (interfaceIndex < 0) {
-                call.reject("Interface index out of range: " + interfaceIndex);
-                return;
-            }
-
-            // Note: assumes interface descriptors are contiguous at fixed 9-byte intervals
-            // starting at offset 9 (after the config descriptor). This matches the original
-            // webusbdfu.js implementation and is reliable for simple DFU-only configurations.
-            int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
-            int requestedLength = 18 + (interfaceIndex + 1) * 9;
-            byte[] buffer = new byte[requestedLength];
-            int result = connection.controlTransfer(
-                requestType,
-                0x06,    // GET_DESCRIPTOR
-                0x0200,  // CONFIGURATION descriptor type
-                0,
-                buffer, requestedLength, DEFAULT_TIMEOUT_MS
-            );
+        connection.execute(() -> {
+            try {
+                if (interfaceIndex < 0) {
+                    call.reject("Interface index out of range: " + interfaceIndex);
+                    return;
+                }
 
-            JSObject response = new JSObject();
-            if (result >= 18 + interfaceIndex * 9 + 9) {
-                int offset = 9 + interfaceIndex * 9;
-                JSObject descriptor = new JSObject();
-                descriptor.put("bLength", buffer[offset] & 0xFF);
-                descriptor.put("bDescriptorType", buffer[offset + 1] & 0xFF);
-                descriptor.put("bInterfaceNumber", buffer[offset + 2] & 0xFF);
-                descriptor.put("bAlternateSetting", buffer[offset + 3] & 0xFF);
-                descriptor.put("bNumEndpoints", buffer[offset + 4] & 0xFF);
-                descriptor.put("bInterfaceClass", buffer[offset + 5] & 0xFF);
-                descriptor.put("bInterfaceSubclass", buffer[offset + 6] & 0xFF);
-                descriptor.put("bInterfaceProtocol", buffer[offset + 7] & 0xFF);
-                descriptor.put("iInterface", buffer[offset + 8] & 0xFF);
+                // Note: assumes interface descriptors are contiguous at fixed 9-byte intervals
+                // starting at offset 9 (after the config descriptor). This matches the original
+                // webusbdfu.js implementation and is reliable for simple DFU-only configurations.
+                int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
+                int requestedLength = 18 + (interfaceIndex + 1) * 9;
+                byte[] buffer = new byte[requestedLength];
+                int result = connection.controlTransfer(
+                    requestType,
+                    0x06,    // GET_DESCRIPTOR
+                    0x0200,  // CONFIGURATION descriptor type
+                    0,
+                    buffer, requestedLength, DEFAULT_TIMEOUT_MS
+                );
 
-                response.put("status", "ok");
-                response.put("descriptor", descriptor);
-            } else {
-                response.put("status", "error");
+                JSObject response = new JSObject();
+                if (result >= 18 + interfaceIndex * 9 + 9) {
+                    int offset = 9 + interfaceIndex * 9;
+                    JSObject descriptor = new JSObject();
+                    descriptor.put("bLength", buffer[offset] & 0xFF);
+                    descriptor.put("bDescriptorType", buffer[offset + 1] & 0xFF);
+                    descriptor.put("bInterfaceNumber", buffer[offset + 2] & 0xFF);
+                    descriptor.put("bAlternateSetting", buffer[offset + 3] & 0xFF);
+                    descriptor.put("bNumEndpoints", buffer[offset + 4] & 0xFF);
+                    descriptor.put("bInterfaceClass", buffer[offset + 5] & 0xFF);
+                    descriptor.put("bInterfaceSubclass", buffer[offset + 6] & 0xFF);
+                    descriptor.put("bInterfaceProtocol", buffer[offset + 7] & 0xFF);
+                    descriptor.put("iInterface", buffer[offset + 8] & 0xFF);
+
+                    response.put("status", "ok");
+                    response.put("descriptor", descriptor);
+                } else {
+                    response.put("status", "error");
+                }
+                call.resolve(response);
+            } catch (Exception e) {
+                Log.e(TAG, "getInterfaceDescriptor failed", e);
+                call.reject("Failed to read interface descriptor: " + e.getMessage());
             }
-            call.resolve(response);
-        } catch (Exception e) {
-            Log.e(TAG, "getInterfaceDescriptor failed", e);
-            call.reject("Failed to read interface descriptor: " + e.getMessage());
-        }
+        });
     }
 
     /**
@@ -583,78 +871,80 @@ public class BetaflightDfuPlugin extends Plugin {
      */
     @PluginMethod
     public void getInterfaceDescriptors(PluginCall call) {
-        if (connection == null || currentDevice == null) {
-            call.reject("No device is open");
+        DfuConnection connection = getConnection(call);
+        if (connection == null) {
             return;
         }
 
         int interfaceNum = call.getInt("interfaceNumber", 0);
 
-        try {
-            // First, get the full configuration descriptor to know the total length
-            int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
-
-            // Read the first 4 bytes to get wTotalLength
-            byte[] header = new byte[4];
-            int headerResult = connection.controlTransfer(
-                requestType, 0x06, 0x0200, 0,
-                header, 4, DEFAULT_TIMEOUT_MS
-            );
-
-            if (headerResult < 4) {
-                call.reject("Failed to read configuration descriptor header");
-                return;
-            }
-
-            int totalLength = (header[2] & 0xFF) | ((header[3] & 0xFF) << 8);
-
-            // Now read the full configuration descriptor
-            byte[] configDesc = new byte[totalLength];
-            int result = connection.controlTransfer(
-                requestType, 0x06, 0x0200, 0,
-                configDesc, totalLength, DEFAULT_TIMEOUT_MS
-            );
+        connection.execute(() -> {
+            try {
+                // First, get the full configuration descriptor to know the total length
+                int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
+
+                // Read the first 4 bytes to get wTotalLength
+                byte[] header = new byte[4];
+                int headerResult = connection.controlTransfer(
+                    requestType, 0x06, 0x0200, 0,
+                    header, 4, DEFAULT_TIMEOUT_MS
+                );
 
-            if (result < totalLength) {
-                Log.w(TAG, "Configuration descriptor truncated: got " + result + " of " + totalLength);
-            }
+                if (headerResult < 4) {
+                    call.reject("Failed to read configuration descriptor header");
+                    return;
+                }
 
-            // Parse through the descriptor to find interface descriptors
-            JSArray descriptorStrings = new JSArray();
-            int pos = 0;
-            while (pos < result) {
-                if (pos + 1 >= result) break;
-                int bLength = configDesc[pos] & 0xFF;
-                if (bLength < 2) break;
-                if (pos + bLength > result) break;
+                int totalLength = (header[2] & 0xFF) | ((header[3] & 0xFF) << 8);
 
-                int bDescriptorType = configDesc[pos + 1] & 0xFF;
+                // Now read the full configuration descriptor
+                byte[] configDesc = new byte[totalLength];
+                int result = connection.controlTransfer(
+                    requestType, 0x06, 0x0200, 0,
+                    configDesc, totalLength, DEFAULT_TIMEOUT_MS
+                );
 
-                // Interface descriptor type = 4
-                if (bDescriptorType == 4 && pos + 9 <= result) {
-                    int bInterfaceNumber = configDesc[pos + 2] & 0xFF;
-                    int iInterface = configDesc[pos + 8] & 0xFF;
+                if (result < totalLength) {
+                    Log.w(TAG, "Configuration descriptor truncated: got " + result + " of " + totalLength);
+                }
 
-                    if (bInterfaceNumber == interfaceNum && iInterface != 0) {
-                        // Read the string descriptor
-                        String descStr = readStringDescriptor(iInterface);
-                        if (descStr != null) {
-                            descriptorStrings.put(descStr);
+                // Parse through the descriptor to find interface descriptors
+                JSArray descriptorStrings = new JSArray();
+                int pos = 0;
+                while (pos < result) {
+                    if (pos + 1 >= result) break;
+                    int bLength = configDesc[pos] & 0xFF;
+                    if (bLength < 2) break;
+                    if (pos + bLength > result) break;
+
+                    int bDescriptorType = configDesc[pos + 1] & 0xFF;
+
+                    // Interface descriptor type = 4
+                    if (bDescriptorType == 4 && pos + 9 <= result) {
+                        int bInterfaceNumber = configDesc[pos + 2] & 0xFF;
+                        int iInterface = configDesc[pos + 8] & 0xFF;
+
+                        if (bInterfaceNumber == interfaceNum && iInterface != 0) {
+                            // Read the string descriptor
+                            String descStr = readStringDescriptor(connection, iInterface);
+                            if (descStr != null) {
+                                descriptorStrings.put(descStr);
+                            }
                         }
                     }
+
+                    pos += bLength;
                 }
 
-                pos += bLength;
+                JSObject response = new JSObject();
+                response.put("status", "ok");
+                response.put("descriptors", descriptorStrings);
+                call.resolve(response);
+            } catch (Exception e) {
+                Log.e(TAG, "getInterfaceDescriptors failed", e);
+                call.reject("Failed to read interface descriptors: " + e.getMessage());
             }
-
-            JSObject response = new JSObject();
-            response.put("status", "ok");
-            response.put("descriptors", descriptorStrings);
-            call.resolve(response);
-        } catch (Exception e) {
-            Log.e(TAG, "getInterfaceDescriptors failed", e);
-            call.reject("Failed to read interface descriptors: " + e.getMessage());
-        }
+        });
     }
 
     /**
@@ -663,31 +953,33 @@ public class BetaflightDfuPlugin extends Plugin {
      */
     @PluginMethod
     public void getFunctionalDescriptor(PluginCall call) {
+        DfuConnection connection = getConnection(call);
         if (connection == null) {
-            call.reject("No device is open");
             return;
         }
 
-        try {
-            JSObject descriptor = parseFunctionalDescriptorFromConfig();
+        connection.execute(() -> {
+            try {
+                JSObject descriptor = parseFunctionalDescriptorFromConfig(connection);
 
-            // Fallback: direct GET_DESCRIPTOR request (works on STM32)
-            if (descriptor == null) {
-                descriptor = requestFunctionalDescriptorDirect();
-            }
+                // Fallback: direct GET_DESCRIPTOR request (works on STM32)
+                if (descriptor == null) {
+                    descriptor = requestFunctionalDescriptorDirect(connection);
+                }
 
-            JSObject response = new JSObject();
-            if (descriptor != null) {
-                response.put("status", "ok");
-                response.put("descriptor", descriptor);
-            } else {
-                response.put("status", "error");
+                JSObject response = new JSObject();
+                if (descriptor != null) {
+                    response.put("status", "ok");
+                    response.put("descriptor", descriptor);
+                } else {
+                    response.put("status", "error");
+                }
+                call.resolve(response);
+            } catch (Exception e) {
+                Log.e(TAG, "getFunctionalDescriptor failed", e);
+                call.reject("Failed to read functional descriptor: " + e.getMessage());
             }
-            call.resolve(response);
-        } catch (Exception e) {
-            Log.e(TAG, "getFunctionalDescriptor failed", e);
-            call.reject("Failed to read functional descriptor: " + e.getMessage());
-        }
+        });
     }
 
     /**
@@ -695,7 +987,7 @@ public class BetaflightDfuPlugin extends Plugin {
      * Per USB DFU spec, the functional descriptor follows the DFU interface descriptor
      * within the configuration descriptor. This works on all DFU-compliant devices.
      */
-    private JSObject parseFunctionalDescriptorFromConfig() {
+    private JSObject parseFunctionalDescriptorFromConfig(DfuConnection connection) {
         try {
             int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
 
@@ -754,7 +1046,7 @@ public class BetaflightDfuPlugin extends Plugin {
      * Fallback: request DFU functional descriptor directly via GET_DESCRIPTOR.
      * Works on STM32 but may not work on all DFU implementations.
      */
-    private JSObject requestFunctionalDescriptorDirect() {
+    private JSObject requestFunctionalDescriptorDirect(DfuConnection connection) {
         try {
             int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_INTERFACE;
             byte[] buffer = new byte[255];
@@ -824,17 +1116,47 @@ public class BetaflightDfuPlugin extends Plugin {
     }
 
     private UsbDevice findDfuDevice(String deviceId) {
-        Map<String, UsbDevice> deviceList = usbManager.getDeviceList();
-        for (UsbDevice device : deviceList.values()) {
-            if (isDfuDevice(device) && getDeviceKey(device).equals(deviceId)) {
-                return device;
-            }
+        return deviceRegistry.find(deviceId);
+    }
+
+    /**
+     * The open device a call refers to: its "handle", or the most recently
+     * opened device when none is given. Rejects the call and returns null if
+     * that device is not open, or if no handle is given while several are.
+     */
+    private DfuConnection getConnection(PluginCall call) {
+        if (rejectIfAmbiguous(call)) {
+            return null;
         }
-        return null;
+        DfuConnection connection = findConnection(call);
+        if (connection == null) {
+            String handle = call.getString("handle");
+            call.reject(handle != null ? "DFU device is not open: " + handle : "No device is open");
+        }
+        return connection;
+    }
+
+    private DfuConnection findConnection(PluginCall call) {
+        String handle = call.getString("handle");
+        return handle != null ? connections.get(handle) : defaultConnection;
+    }
+
+    /**
+     * Reject a call that carries no handle while several devices are open: the
+     * default device may belong to another caller, whose flash it would close
+     * or cancel.
+     */
+    private boolean rejectIfAmbiguous(PluginCall call) {
+        int open = connections.size();
+        if (call.getString("handle") == null && open > 1) {
+            call.reject("A handle is required while " + open + " DFU devices are open");
+            return true;
+        }
+        return false;
     }
 
     private String getDeviceKey(UsbDevice device) {
-        return device.getVendorId() + ":" + device.getProductId() + ":" + device.getDeviceId();
+        return UsbDeviceRegistry.getDeviceKey(device);
     }
 
     private JSObject createDeviceInfo(UsbDevice device) throws JSONException {
@@ -852,10 +1174,9 @@ public class BetaflightDfuPlugin extends Plugin {
     private void resolveWithDeviceList(PluginCall call) {
         try {
             JSArray devices = new JSArray();
-            Map<String, UsbDevice> deviceList = usbManager.getDeviceList();
 
-            for (UsbDevice device : deviceList.values()) {
-                if (isDfuDevice(device) && usbManager.hasPermission(device)) {
+            for (UsbDevice device : deviceRegistry.list()) {
+                if (usbManager.hasPermission(device)) {
                     devices.put(createDeviceInfo(device));
                 }
             }
@@ -874,6 +1195,7 @@ public class BetaflightDfuPlugin extends Plugin {
         if (device == null || !isDfuDevice(device)) return;
 
         Log.d(TAG, "DFU device attached: " + getDeviceKey(device));
+        deviceRegistry.onAttached(device);
 
         if (!usbManager.hasPermission(device)) {
             Log.d(TAG, "DFU device attached but no permission yet, skipping notification");
@@ -893,11 +1215,10 @@ public class BetaflightDfuPlugin extends Plugin {
         if (device == null || !isDfuDevice(device)) return;
 
         Log.d(TAG, "DFU device detached: " + getDeviceKey(device));
+        deviceRegistry.onDetached(device);
 
-        // Close connection if it's the current device
-        if (currentDevice != null && currentDevice.equals(device)) {
-            closeDeviceInternal();
-        }
+        // Close the connection if this device was open
+        closeConnection(connections.get(getDeviceKey(device)));
 
         try {
             JSObject deviceInfo = createDeviceInfo(device);
@@ -907,27 +1228,25 @@ public class BetaflightDfuPlugin extends Plugin {
         }
     }
 
-    private void closeDeviceInternal() {
-        if (claimedInterface != null && connection != null) {
-            try {
-                connection.releaseInterface(claimedInterface);
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing interface", e);
-            }
-            claimedInterface = null;
+    private void closeConnection(DfuConnection connection) {
+        if (connection == null) {
+            return;
         }
-
-        if (connection != null) {
-            connection.close();
-            connection = null;
+        connections.remove(connection.handle, connection);
+        if (defaultConnection == connection) {
+            defaultConnection = null;
         }
+        connection.close();
+    }
 
-        currentDevice = null;
-        Log.d(TAG, "DFU device closed");
+    private void closeAllConnections() {
+        for (DfuConnection connection : connections.values()) {
+            closeConnection(connection);
+        }
     }
 
-    private String readStringDescriptor(int index) {
-        if (connection == null || index == 0) return null;
+    private String readStringDescriptor(DfuConnection connection, int index) throws InterruptedIOException {
+        if (index == 0) return null;
 
         int requestType = UsbConstants.USB_DIR_IN | UsbConstants.USB_TYPE_STANDARD | USB_RECIP_DEVICE;
         byte[] buffer = new byte[255];
@@ -951,36 +1270,4 @@ public class BetaflightDfuPlugin extends Plugin {
 
         return null;
     }
-
-    private byte[] hexStringToByteArray(String hexString) {
-        if (hexString == null || hexString.isEmpty()) {
-            return new byte[0];
-        }
-        int len = hexString.length();
-        if (len % 2 != 0) {
-            throw new IllegalArgumentException("Hex string must have even length");
-        }
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            int high = Character.digit(hexString.charAt(i), 16);
-            int low = Character.digit(hexString.charAt(i + 1), 16);
-            if (high == -1 || low == -1) {
-                throw new IllegalArgumentException("Invalid hex character at position " + i);
-            }
-            data[i / 2] = (byte) ((high << 4) + low);
-        }
-        return data;
-    }
-
-    private String byteArrayToHexString(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xFF & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
-        }
-        return hexString.toString();
-    }
 }
@@ -0,0 +1,100 @@
+package betaflight.app.protocols.dfu;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+
+import betaflight.app.protocols.LatencyHistogram;
+import betaflight.app.protocols.PayloadCodec;
+import betaflight.app.protocols.PayloadEncoder;
+
+/**
+ * Native half of the per-transfer overhead benchmark.
+ *
+ * Times GETSTATUS round trips on the open device with nothing but the USB
+ * stack in the way, which is the floor a bridged controlTransferIn or a
+ * controlTransferSequence step is compared against on the JS side. Also
+ * times encoding one payload of payloadSize bytes the way the plugin used to
+ * (StringBuilder and Integer.toHexString), with the shared PayloadEncoder in
+ * hex and base64, and decoding each back with PayloadCodec.
+ */
+final class DfuBenchmark {
+    private static final int CODEC_ROUNDS = 10_000;
+
+    private final DfuCommands commands;
+    private final int transfers;
+    private final int payloadSize;
+
+    DfuBenchmark(DfuCommands commands, int transfers, int payloadSize) {
+        this.commands = commands;
+        this.transfers = transfers;
+        this.payloadSize = payloadSize;
+    }
+
+    JSObject run() throws IOException {
+        LatencyHistogram latency = new LatencyHistogram();
+        long passStart = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            long start = System.nanoTime();
+            commands.getStatus();
+            latency.recordNanos(System.nanoTime() - start);
+        }
+        long passNanos = System.nanoTime() - passStart;
+
+        byte[] payload = new byte[payloadSize];
+        for (int i = 0; i < payloadSize; i++) {
+            payload[i] = (byte) (i * 31);
+        }
+        PayloadEncoder encoder = new PayloadEncoder(payloadSize);
+        String hex = encoder.hex(payload, 0, payloadSize);
+        String base64 = encoder.base64(payload, 0, payloadSize);
+
+        JSObject codec = new JSObject();
+        codec.put("payloadSize", payloadSize);
+        codec.put("legacyHexEncodeNs", timeNanos(() -> legacyHex(payload)));
+        codec.put("hexEncodeNs", timeNanos(() -> encoder.hex(payload, 0, payloadSize)));
+        codec.put("base64EncodeNs", timeNanos(() -> encoder.base64(payload, 0, payloadSize)));
+        codec.put("hexDecodeNs", timeNanos(() -> PayloadCodec.decode(hex, PayloadCodec.HEX)));
+        codec.put("base64DecodeNs", timeNanos(() -> PayloadCodec.decode(base64, PayloadCodec.BASE64)));
+        codec.put("hexChars", hex.length());
+        codec.put("base64Chars", base64.length());
+
+        JSObject result = new JSObject();
+        result.put("transfers", transfers);
+        result.put("latency", latency.toJSObject());
+        result.put("transfersPerSecond", transfers * 1e9 / passNanos);
+        result.put("codec", codec);
+        return result;
+    }
+
+    // ===== Private helper methods =====
+
+    /**
+     * Mean nanoseconds per call over CODEC_ROUNDS calls, after as many to warm up.
+     */
+    private static double timeNanos(Runnable task) {
+        for (int i = 0; i < CODEC_ROUNDS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < CODEC_ROUNDS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / (double) CODEC_ROUNDS;
+    }
+
+    /**
+     * The encoder controlTransferIn used before PayloadEncoder, kept as the baseline.
+     */
+    private static String legacyHex(byte[] bytes) {
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : bytes) {
+            String hex = Integer.toHexString(0xFF & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package betaflight.app.protocols.dfu;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caps how many control transfers run at once on each USB bus.
+ *
+ * Every open DFU device has its own worker thread, so boards on one powered
+ * hub would otherwise all hit the hub's single upstream link at the same
+ * time. A worker holds a slot of its bus only for the duration of one control
+ * transfer, not across bwPollTimeout waits, so a board that is busy erasing
+ * or programming never keeps the others off the bus. The bus is taken from
+ * the device node (/dev/bus/usb/BBB/DDD); devices behind the same root port
+ * share it.
+ */
+final class DfuBusScheduler {
+    static final int DEFAULT_TRANSFERS_PER_BUS = 4;
+
+    private final Map<String, Bus> buses = new HashMap<>();
+    private volatile int maxTransfersPerBus = DEFAULT_TRANSFERS_PER_BUS;
+
+    /**
+     * The transfer slots of one bus.
+     */
+    final class Bus {
+        final String name;
+        private int active = 0;
+        private int peakActive = 0;
+        private long transfers = 0;
+        private long waits = 0;
+        private long waitNanos = 0;
+
+        private Bus(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Block until a slot is free; pair with release() in a finally.
+         */
+        synchronized void acquire() throws InterruptedIOException {
+            if (active >= maxTransfersPerBus) {
+                long start = System.nanoTime();
+                waits++;
+                try {
+                    while (active >= maxTransfersPerBus) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for bus " + name);
+                } finally {
+                    waitNanos += System.nanoTime() - start;
+                }
+            }
+            active++;
+            transfers++;
+            peakActive = Math.max(peakActive, active);
+        }
+
+        synchronized void release() {
+            active--;
+            notifyAll();
+        }
+
+        private synchronized void wake() {
+            notifyAll();
+        }
+
+        synchronized JSObject toJSObject() {
+            JSObject stats = new JSObject();
+            stats.put("bus", name);
+            stats.put("active", active);
+            stats.put("peakActive", peakActive);
+            stats.put("transfers", transfers);
+            stats.put("waits", waits);
+            stats.put("waitMs", waitNanos / 1_000_000L);
+            return stats;
+        }
+    }
+
+    /**
+     * The bus a device node such as /dev/bus/usb/001/004 sits on.
+     */
+    synchronized Bus busFor(String deviceName) {
+        return buses.computeIfAbsent(busName(deviceName), Bus::new);
+    }
+
+    void setMaxTransfersPerBus(int max) {
+        maxTransfersPerBus = Math.max(1, max);
+        Bus[] toWake;
+        synchronized (this) {
+            toWake = buses.values().toArray(new Bus[0]);
+        }
+        // Transfers waiting for the old limit re-check the new one
+        for (Bus bus : toWake) {
+            bus.wake();
+        }
+    }
+
+    JSObject toJSObject() {
+        JSArray list = new JSArray();
+        Bus[] snapshot;
+        synchronized (this) {
+            snapshot = buses.values().toArray(new Bus[0]);
+        }
+        for (Bus bus : snapshot) {
+            list.put(bus.toJSObject());
+        }
+        JSObject result = new JSObject();
+        result.put("maxTransfersPerBus", maxTransfersPerBus);
+        result.put("buses", list);
+        return result;
+    }
+
+    static String busName(String deviceName) {
+        if (deviceName == null) {
+            return "";
+        }
+        int end = deviceName.lastIndexOf('/');
+        int start = end > 0 ? deviceName.lastIndexOf('/', end - 1) : -1;
+        return start >= 0 ? deviceName.substring(start + 1, end) : deviceName;
+    }
+}
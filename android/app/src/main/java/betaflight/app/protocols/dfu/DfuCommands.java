@@ -0,0 +1,259 @@
+package betaflight.app.protocols.dfu;
+
+import android.hardware.usb.UsbDeviceConnection;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * DFU 1.1 / ST DfuSe requests on one open interface, as blocking calls for a
+ * USB worker thread.
+ *
+ * These are the same sequences usbdfu.js drives through controlTransferIn/Out
+ * (load address, page erase, block download, clear status, leave), including
+ * its handling of bootloaders that wedge in dfuDNBUSY after an erase. Failures
+ * are thrown as IOException with the state the device reported. Each request
+ * holds a slot of the device's bus, if given, while it is on the wire.
+ */
+final class DfuCommands {
+    private static final String TAG = "BetaflightDfu";
+
+    static final int REQUEST_DNLOAD = 0x01;
+    static final int REQUEST_UPLOAD = 0x02;
+    static final int REQUEST_GETSTATUS = 0x03;
+    static final int REQUEST_CLRSTATUS = 0x04;
+    static final int REQUEST_ABORT = 0x06;
+
+    static final int STATE_DFU_IDLE = 2;
+    static final int STATE_DNBUSY = 4;
+    static final int STATE_DNLOAD_IDLE = 5;
+    static final int STATE_UPLOAD_IDLE = 9;
+    static final int STATE_ERROR = 10;
+
+    // bmRequestType for class requests to an interface
+    private static final int REQUEST_TYPE_OUT = 0x21;
+    private static final int REQUEST_TYPE_IN = 0xA1;
+
+    private static final int DFUSE_SET_ADDRESS = 0x21;
+    private static final int DFUSE_ERASE_PAGE = 0x41;
+
+    // Same bound as clearStatus() in usbdfu.js
+    private static final int CLEAR_STATUS_ATTEMPTS = 100;
+    // A block write normally settles after one bwPollTimeout; this bounds slow ones
+    private static final int BUSY_POLLS = 50;
+
+    private final UsbDeviceConnection connection;
+    private final int interfaceNumber;
+    private final int timeoutMs;
+    private final DfuBusScheduler.Bus bus;
+    private final byte[] statusBuffer = new byte[6];
+    private final byte[] commandBuffer = new byte[5];
+
+    /**
+     * One GETSTATUS response.
+     */
+    static final class Status {
+        int status;
+        int pollTimeoutMs;
+        int state;
+    }
+
+    private final Status lastStatus = new Status();
+
+    DfuCommands(UsbDeviceConnection connection, int interfaceNumber, int timeoutMs) {
+        this(connection, interfaceNumber, timeoutMs, null);
+    }
+
+    DfuCommands(UsbDeviceConnection connection, int interfaceNumber, int timeoutMs, DfuBusScheduler.Bus bus) {
+        this.connection = connection;
+        this.interfaceNumber = interfaceNumber;
+        this.timeoutMs = timeoutMs;
+        this.bus = bus;
+    }
+
+    /**
+     * DFU_GETSTATUS. The returned object is reused by the next call.
+     */
+    Status getStatus() throws IOException {
+        int result = transfer(REQUEST_TYPE_IN, REQUEST_GETSTATUS, 0, statusBuffer, 0, statusBuffer.length);
+        if (result < 6) {
+            throw new IOException("GETSTATUS failed: " + result);
+        }
+        lastStatus.status = statusBuffer[0] & 0xFF;
+        lastStatus.pollTimeoutMs = (statusBuffer[1] & 0xFF) | ((statusBuffer[2] & 0xFF) << 8)
+            | ((statusBuffer[3] & 0xFF) << 16);
+        lastStatus.state = statusBuffer[4] & 0xFF;
+        return lastStatus;
+    }
+
+    /**
+     * DFU_DNLOAD of length bytes from data at offset; a zero length is allowed.
+     */
+    void download(int blockNum, byte[] data, int offset, int length) throws IOException {
+        int result = transfer(REQUEST_TYPE_OUT, REQUEST_DNLOAD, blockNum, data, offset, length);
+        if (result < 0) {
+            throw new IOException("DNLOAD of block " + blockNum + " failed: " + result);
+        }
+    }
+
+    /**
+     * DFU_UPLOAD into buffer at offset; returns the number of bytes received.
+     */
+    int upload(int blockNum, byte[] buffer, int offset, int length) throws IOException {
+        int result = transfer(REQUEST_TYPE_IN, REQUEST_UPLOAD, blockNum, buffer, offset, length);
+        if (result < 0) {
+            throw new IOException("UPLOAD of block " + blockNum + " failed: " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Bring the device back to dfuIDLE: ABORT from the idle transfer states,
+     * CLRSTATUS from dfuERROR, and poll through busy states. With busyIsStuck
+     * the caller has already waited out bwPollTimeout, so dfuDNBUSY is treated
+     * as wedged and cleared like dfuERROR.
+     */
+    void clearStatus(boolean busyIsStuck) throws IOException {
+        for (int attempt = 0; attempt < CLEAR_STATUS_ATTEMPTS; attempt++) {
+            Status status = getStatus();
+            if (status.state == STATE_DFU_IDLE) {
+                return;
+            }
+            sleep(status.pollTimeoutMs);
+            if (status.state == STATE_DNLOAD_IDLE || status.state == STATE_UPLOAD_IDLE) {
+                request(REQUEST_ABORT);
+            } else if (status.state == STATE_ERROR || (busyIsStuck && status.state == STATE_DNBUSY)) {
+                request(REQUEST_CLRSTATUS);
+            }
+        }
+        throw new IOException("Device did not reach dfuIDLE after " + CLEAR_STATUS_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * DfuSe "set address pointer"; leaves the device in dfuDNLOAD_IDLE.
+     */
+    void loadAddress(int address) throws IOException {
+        Status status = command(DFUSE_SET_ADDRESS, address);
+        if (status.state != STATE_DNBUSY) {
+            throw new IOException("Failed to request address load, state " + status.state);
+        }
+        sleep(status.pollTimeoutMs);
+        status = getStatus();
+        if (status.state != STATE_DNLOAD_IDLE) {
+            throw new IOException("Failed to execute address load, state " + status.state);
+        }
+    }
+
+    /**
+     * DfuSe "erase page" at address, waiting for the erase to finish.
+     */
+    void erasePage(int address) throws IOException {
+        Status status = command(DFUSE_ERASE_PAGE, address);
+        if (status.state != STATE_DNBUSY) {
+            throw new IOException("Failed to initiate page erase at 0x" + Integer.toHexString(address));
+        }
+        sleep(status.pollTimeoutMs);
+        status = getStatus();
+        if (status.state == STATE_DNBUSY) {
+            // H743 Rev.V stays in dfuDNBUSY past the reported delay; the erase itself has completed
+            Log.d(TAG, "Erase: dfuDNBUSY after timeout at 0x" + Integer.toHexString(address) + ", clearing");
+            clearStatus(true);
+        } else if (status.state != STATE_DNLOAD_IDLE) {
+            throw new IOException("Failed to erase page at 0x" + Integer.toHexString(address)
+                + ", state " + status.state);
+        }
+    }
+
+    /**
+     * Download one block (wBlockNum >= 2 for data) and wait until it is programmed.
+     */
+    void writeBlock(int blockNum, byte[] data, int offset, int length) throws IOException {
+        download(blockNum, data, offset, length);
+        Status status = getStatus();
+        if (status.state != STATE_DNBUSY) {
+            throw new IOException("Failed to initiate write of block " + blockNum + ", state " + status.state);
+        }
+        for (int poll = 0; status.state == STATE_DNBUSY && poll < BUSY_POLLS; poll++) {
+            sleep(status.pollTimeoutMs);
+            status = getStatus();
+        }
+        if (status.state != STATE_DNLOAD_IDLE) {
+            throw new IOException("Failed to write block " + blockNum + ", state " + status.state);
+        }
+    }
+
+    /**
+     * Point the device at address and bring it back to dfuIDLE, after which
+     * UPLOAD block n (from FIRST_DATA_BLOCK) reads from address + (n - 2) *
+     * the upload length. Same sequence as the verify step in usbdfu.js.
+     */
+    void startUpload(int address) throws IOException {
+        clearStatus(false);
+        loadAddress(address);
+        clearStatus(false);
+    }
+
+    /**
+     * Leave DFU: a zero-length download at the start address followed by
+     * GETSTATUS makes STM32 bootloaders jump to the application. The device
+     * usually drops off the bus during the final request, so that one's
+     * failure is ignored.
+     */
+    void leave(int address) throws IOException {
+        clearStatus(false);
+        loadAddress(address);
+        download(0, commandBuffer, 0, 0);
+        try {
+            getStatus();
+        } catch (IOException e) {
+            Log.d(TAG, "Device left DFU before answering GETSTATUS");
+        }
+    }
+
+    // ===== Private helper methods =====
+
+    private Status command(int command, int address) throws IOException {
+        commandBuffer[0] = (byte) command;
+        commandBuffer[1] = (byte) address;
+        commandBuffer[2] = (byte) (address >> 8);
+        commandBuffer[3] = (byte) (address >> 16);
+        commandBuffer[4] = (byte) (address >> 24);
+        download(0, commandBuffer, 0, commandBuffer.length);
+        return getStatus();
+    }
+
+    private void request(int request) throws IOException {
+        int result = transfer(REQUEST_TYPE_OUT, request, 0, null, 0, 0);
+        if (result < 0) {
+            throw new IOException("DFU request " + request + " failed: " + result);
+        }
+    }
+
+    private int transfer(int requestType, int request, int value, byte[] buffer, int offset, int length)
+            throws InterruptedIOException {
+        if (bus == null) {
+            return connection.controlTransfer(requestType, request, value, interfaceNumber, buffer, offset, length,
+                timeoutMs);
+        }
+        bus.acquire();
+        try {
+            return connection.controlTransfer(requestType, request, value, interfaceNumber, buffer, offset, length,
+                timeoutMs);
+        } finally {
+            bus.release();
+        }
+    }
+
+    static void sleep(int ms) throws InterruptedIOException {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the device");
+        }
+    }
+}
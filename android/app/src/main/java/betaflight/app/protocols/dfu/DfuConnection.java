@@ -0,0 +1,150 @@
+package betaflight.app.protocols.dfu;
+
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbInterface;
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import betaflight.app.protocols.PayloadEncoder;
+
+/**
+ * One open DFU device and everything that belongs to it: its USB device
+ * connection, claimed interface, running flash or verify job, and a USB worker
+ * thread of its own. Every transfer for the device runs on that worker, so
+ * several boards on a hub can be flashed at once and one board's erase waits
+ * never hold up calls for another. Transfers still share the device's bus
+ * through a DfuBusScheduler.Bus.
+ */
+final class DfuConnection {
+    private static final String TAG = "BetaflightDfu";
+
+    // The device key; calls and "flashProgress" events are tagged with it
+    final String handle;
+    final UsbDevice device;
+    final UsbDeviceConnection connection;
+    final DfuBusScheduler.Bus bus;
+
+    private final ExecutorService worker;
+    private volatile UsbInterface claimedInterface;
+    volatile DfuJob activeJob;
+
+    // Only used on the worker
+    private final PayloadEncoder payloadEncoder = new PayloadEncoder(256);
+    private byte[] transferBuffer = new byte[256];
+
+    DfuConnection(String handle, UsbDevice device, UsbDeviceConnection connection, DfuBusScheduler.Bus bus) {
+        this.handle = handle;
+        this.device = device;
+        this.connection = connection;
+        this.bus = bus;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "BetaflightDfuUsb-" + handle));
+    }
+
+    /**
+     * Run a task on this device's USB worker, after anything already queued for it.
+     */
+    void execute(Runnable task) {
+        worker.execute(task);
+    }
+
+    boolean claimInterface(UsbInterface iface) {
+        if (!connection.claimInterface(iface, true)) {
+            return false;
+        }
+        claimedInterface = iface;
+        return true;
+    }
+
+    void releaseInterface(UsbInterface iface) {
+        connection.releaseInterface(iface);
+        if (claimedInterface == iface) {
+            claimedInterface = null;
+        }
+    }
+
+    int getClaimedInterfaceNumber() {
+        UsbInterface iface = claimedInterface;
+        return iface != null ? iface.getId() : 0;
+    }
+
+    DfuCommands createCommands(int timeoutMs) {
+        return new DfuCommands(connection, getClaimedInterfaceNumber(), timeoutMs, bus);
+    }
+
+    /**
+     * A control transfer that holds a slot of the device's bus while on the wire.
+     */
+    int controlTransfer(int requestType, int request, int value, int index, byte[] buffer, int length, int timeout)
+            throws InterruptedIOException {
+        bus.acquire();
+        try {
+            return connection.controlTransfer(requestType, request, value, index, buffer, length, timeout);
+        } finally {
+            bus.release();
+        }
+    }
+
+    /**
+     * Control transfer IN; the received bytes are returned in the given encoding.
+     */
+    JSObject transferIn(int requestType, int request, int value, int index, int length, int timeout,
+                        String encoding) throws InterruptedIOException {
+        if (transferBuffer.length < length) {
+            transferBuffer = new byte[length];
+        }
+        int result = controlTransfer(requestType, request, value, index, transferBuffer, length, timeout);
+
+        JSObject response = new JSObject();
+        if (result >= 0) {
+            response.put("status", "ok");
+            // Return only the bytes actually received
+            response.put("data", payloadEncoder.encode(transferBuffer, 0, result, encoding));
+        } else {
+            response.put("status", "error");
+            response.put("data", "");
+        }
+        response.put("length", result);
+        return response;
+    }
+
+    JSObject transferOut(int requestType, int request, int value, int index, byte[] data, int timeout)
+            throws InterruptedIOException {
+        int result = controlTransfer(requestType, request, value, index, data, data.length, timeout);
+
+        JSObject response = new JSObject();
+        response.put("status", result >= 0 ? "ok" : "error");
+        response.put("length", result);
+        return response;
+    }
+
+    /**
+     * Cancel any running job and close the device once the worker has finished
+     * what is queued for it.
+     */
+    void close() {
+        DfuJob job = activeJob;
+        if (job != null) {
+            job.cancel();
+        }
+        worker.execute(() -> {
+            UsbInterface iface = claimedInterface;
+            if (iface != null) {
+                try {
+                    connection.releaseInterface(iface);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error releasing interface", e);
+                }
+                claimedInterface = null;
+            }
+            connection.close();
+            Log.d(TAG, "DFU device closed: " + handle);
+        });
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,247 @@
+package betaflight.app.protocols.dfu;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a whole DfuImage in one go on the calling (USB worker) thread:
+ * page erase, then per segment a load address and the DNLOAD/GETSTATUS loop
+ * in transferSize blocks, honouring bwPollTimeout, and optionally the leave
+ * sequence. This is the loop usbdfu.js otherwise runs as two bridge calls per
+ * block; here the only traffic to JS is the progress events.
+ *
+ * In differential mode every page the image touches is first read back and
+ * compared with what it would hold after a rewrite (the image's bytes, 0xFF
+ * where the image does not reach); only pages that differ are erased and
+ * written. Reading a page back is far quicker than erasing and programming
+ * it, so reflashing a build that changed in a few places mostly costs one
+ * read of the image. A full chip erase ignores the mode. A bootloader that
+ * refuses or cuts short the read-back gets every touched page rewritten
+ * instead, and the result says why.
+ */
+final class DfuDownloader extends DfuJob {
+    private static final String TAG = "BetaflightDfu";
+    // wBlockNum 0 and 1 are DfuSe commands; data blocks start at 2
+    static final int FIRST_DATA_BLOCK = 2;
+
+    private final DfuImage image;
+    private final int transferSize;
+    private final boolean eraseChip;
+    private final boolean differential;
+    private final boolean leave;
+
+    DfuDownloader(DfuCommands commands, DfuImage image, int transferSize, boolean eraseChip, boolean differential,
+                  boolean leave, Listener listener) {
+        super(commands, listener);
+        this.image = image;
+        this.transferSize = transferSize;
+        this.eraseChip = eraseChip;
+        this.differential = differential && !eraseChip;
+        this.leave = leave;
+    }
+
+    @Override
+    JSObject run() throws IOException {
+        long start = System.nanoTime();
+
+        List<DfuImage.Page> touched = image.pagesToErase(eraseChip);
+        if (touched.isEmpty()) {
+            throw new IOException("No flash pages to erase");
+        }
+
+        List<DfuImage.Page> pages = touched;
+        long compareNanos = 0;
+        String fallbackReason = null;
+        if (differential) {
+            try {
+                pages = changedPages(touched);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                // Nothing has been erased yet, so a plain rewrite of every page is still safe
+                fallbackReason = e.getMessage();
+                pages = touched;
+                Log.w(TAG, "Differential read-back failed, rewriting all " + touched.size() + " pages: "
+                    + fallbackReason);
+            }
+            compareNanos = System.nanoTime() - start;
+            // Back to dfuIDLE from dfuUPLOAD_IDLE (or dfuERROR after a refused UPLOAD) before erasing
+            commands.clearStatus(false);
+            if (fallbackReason == null) {
+                Log.d(TAG, "Compared " + touched.size() + " pages in " + compareNanos / 1_000_000L + " ms, "
+                    + pages.size() + " changed");
+            }
+        }
+        boolean compared = differential && fallbackReason == null;
+
+        long eraseStart = System.nanoTime();
+        long erasedBytes = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            checkCancelled();
+            DfuImage.Page page = pages.get(i);
+            commands.erasePage(page.address);
+            erasedBytes += page.size;
+            progress("erase", i + 1, pages.size());
+        }
+        long eraseNanos = System.nanoTime() - eraseStart;
+        Log.d(TAG, "Erased " + pages.size() + " pages in " + eraseNanos / 1_000_000L + " ms");
+
+        long writeStart = System.nanoTime();
+        List<long[]> ranges = compared ? mergePages(pages) : null;
+        long toWrite = compared ? bytesInRanges(ranges) : image.totalBytes;
+        long written = 0;
+        int blocks = 0;
+        for (DfuImage.Segment segment : image.segments) {
+            long segmentStart = Integer.toUnsignedLong(segment.address);
+            if (!compared) {
+                blocks += writeRange(segment, 0, segment.data.length, written, toWrite);
+                written += segment.data.length;
+                continue;
+            }
+            for (long[] range : ranges) {
+                long from = Math.max(range[0], segmentStart);
+                long to = Math.min(range[1], segment.end());
+                if (from < to) {
+                    blocks += writeRange(segment, (int) (from - segmentStart), (int) (to - segmentStart), written,
+                        toWrite);
+                    written += to - from;
+                }
+            }
+        }
+        long writeNanos = System.nanoTime() - writeStart;
+        Log.d(TAG, "Wrote " + written + " bytes in " + writeNanos / 1_000_000L + " ms");
+
+        if (leave) {
+            commands.leave(image.segments.get(0).address);
+        }
+
+        JSObject result = new JSObject();
+        result.put("differential", compared);
+        result.put("differentialFallback", fallbackReason != null);
+        if (fallbackReason != null) {
+            result.put("fallbackReason", fallbackReason);
+        }
+        result.put("pagesCompared", compared ? touched.size() : 0);
+        result.put("pagesSkipped", touched.size() - pages.size());
+        result.put("bytesSkipped", image.totalBytes - written);
+        result.put("pagesErased", pages.size());
+        result.put("erasedBytes", erasedBytes);
+        result.put("bytesWritten", written);
+        result.put("blocks", blocks);
+        result.put("compareMs", compareNanos / 1_000_000L);
+        result.put("eraseMs", eraseNanos / 1_000_000L);
+        result.put("writeMs", writeNanos / 1_000_000L);
+        result.put("totalMs", (System.nanoTime() - start) / 1_000_000L);
+        result.put("bytesPerSecond", writeNanos > 0 ? written * 1e9 / writeNanos : 0);
+        return result;
+    }
+
+    // ===== Private helper methods =====
+
+    /**
+     * Write segment.data[from, to) starting with a load address; returns the number of blocks.
+     */
+    private int writeRange(DfuImage.Segment segment, int from, int to, long writtenBefore, long toWrite)
+            throws IOException {
+        commands.loadAddress(segment.address + from);
+        int blockNum = FIRST_DATA_BLOCK;
+        int blocks = 0;
+        for (int offset = from; offset < to; offset += transferSize) {
+            checkCancelled();
+            int length = Math.min(transferSize, to - offset);
+            commands.writeBlock(blockNum++, segment.data, offset, length);
+            blocks++;
+            progress("write", writtenBefore + offset + length - from, toWrite);
+        }
+        return blocks;
+    }
+
+    /**
+     * The pages whose flash content differs from what the image would leave there.
+     */
+    private List<DfuImage.Page> changedPages(List<DfuImage.Page> pages) throws IOException {
+        List<DfuImage.Page> changed = new ArrayList<>();
+        byte[] readback = new byte[0];
+        byte[] expected = new byte[0];
+        // Where the next UPLOAD block continues without a new load address, or -1
+        long nextAddress = -1;
+        int blockNum = FIRST_DATA_BLOCK;
+
+        for (int i = 0; i < pages.size(); i++) {
+            checkCancelled();
+            DfuImage.Page page = pages.get(i);
+            long address = Integer.toUnsignedLong(page.address);
+            if (readback.length < page.size) {
+                readback = new byte[page.size];
+                expected = new byte[page.size];
+            }
+
+            if (address != nextAddress) {
+                commands.startUpload(page.address);
+                blockNum = FIRST_DATA_BLOCK;
+            }
+            for (int offset = 0; offset < page.size; offset += transferSize) {
+                int length = Math.min(transferSize, page.size - offset);
+                int received = commands.upload(blockNum++, readback, offset, length);
+                if (received < length) {
+                    throw new IOException("Short UPLOAD at 0x" + Long.toHexString(address + offset) + ": "
+                        + received + " of " + length + " bytes");
+                }
+            }
+            // Blocks only line up with the next page if this one was a whole number of them
+            nextAddress = page.size % transferSize == 0 ? address + page.size : -1;
+
+            image.expectedContent(address, expected, page.size);
+            if (!regionEquals(readback, expected, page.size)) {
+                changed.add(page);
+            }
+            progress("compare", i + 1, pages.size());
+        }
+        return changed;
+    }
+
+    private static boolean regionEquals(byte[] a, byte[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adjacent pages merged into [start, end) address ranges.
+     */
+    private static List<long[]> mergePages(List<DfuImage.Page> pages) {
+        List<long[]> ranges = new ArrayList<>();
+        long[] current = null;
+        for (DfuImage.Page page : pages) {
+            long start = Integer.toUnsignedLong(page.address);
+            if (current != null && current[1] == start) {
+                current[1] += page.size;
+            } else {
+                current = new long[] {start, start + page.size};
+                ranges.add(current);
+            }
+        }
+        return ranges;
+    }
+
+    private long bytesInRanges(List<long[]> ranges) {
+        long total = 0;
+        for (DfuImage.Segment segment : image.segments) {
+            for (long[] range : ranges) {
+                long from = Math.max(range[0], Integer.toUnsignedLong(segment.address));
+                long to = Math.min(range[1], segment.end());
+                total += Math.max(0, to - from);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,167 @@
+package betaflight.app.protocols.dfu;
+
+import android.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A firmware image and the flash layout it goes into, as passed from JS:
+ * segments are the contiguous blocks of the parsed hex ({address, data} with
+ * base64 data) and sectors the memory map from the DFU interface string
+ * ({start_address, num_pages, page_size}, as usbdfu.js parses it).
+ * Addresses are held as int, so 0x90000000 external flash is negative and
+ * ranges are compared as unsigned longs.
+ */
+final class DfuImage {
+    static final byte ERASED = (byte) 0xFF;
+
+    static final class Segment {
+        final int address;
+        final byte[] data;
+
+        Segment(int address, byte[] data) {
+            this.address = address;
+            this.data = data;
+        }
+
+        long end() {
+            return Integer.toUnsignedLong(address) + data.length;
+        }
+    }
+
+    static final class Sector {
+        final int startAddress;
+        final int numPages;
+        final int pageSize;
+
+        Sector(int startAddress, int numPages, int pageSize) {
+            this.startAddress = startAddress;
+            this.numPages = numPages;
+            this.pageSize = pageSize;
+        }
+
+        int pageAddress(int page) {
+            return startAddress + page * pageSize;
+        }
+    }
+
+    static final class Page {
+        final int address;
+        final int size;
+
+        Page(int address, int size) {
+            this.address = address;
+            this.size = size;
+        }
+    }
+
+    final List<Segment> segments;
+    final List<Sector> sectors;
+    final long totalBytes;
+
+    DfuImage(List<Segment> segments, List<Sector> sectors) {
+        this.segments = segments;
+        this.sectors = sectors;
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.data.length;
+        }
+        this.totalBytes = total;
+    }
+
+    static DfuImage from(JSONArray segmentArray, JSONArray sectorArray) throws JSONException {
+        if (segmentArray == null || segmentArray.length() == 0) {
+            throw new IllegalArgumentException("segments are required");
+        }
+        if (sectorArray == null || sectorArray.length() == 0) {
+            throw new IllegalArgumentException("sectors are required");
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < segmentArray.length(); i++) {
+            JSONObject segment = segmentArray.getJSONObject(i);
+            byte[] data = Base64.decode(segment.getString("data"), Base64.DEFAULT);
+            segments.add(new Segment((int) segment.getLong("address"), data));
+        }
+
+        List<Sector> sectors = new ArrayList<>();
+        for (int i = 0; i < sectorArray.length(); i++) {
+            JSONObject sector = sectorArray.getJSONObject(i);
+            int pageSize = sector.getInt("page_size");
+            if (pageSize <= 0) {
+                throw new IllegalArgumentException("Invalid page size in sector " + i);
+            }
+            sectors.add(new Sector((int) sector.getLong("start_address"), sector.getInt("num_pages"), pageSize));
+        }
+        return new DfuImage(segments, sectors);
+    }
+
+    /**
+     * Start addresses of the pages to erase: all of them, or those any segment touches.
+     */
+    List<Page> pagesToErase(boolean eraseChip) {
+        List<Page> pages = new ArrayList<>();
+        for (Sector sector : sectors) {
+            for (int page = 0; page < sector.numPages; page++) {
+                int pageAddress = sector.pageAddress(page);
+                if (eraseChip || overlapsSegment(pageAddress, sector.pageSize)) {
+                    pages.add(new Page(pageAddress, sector.pageSize));
+                }
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * End (exclusive, unsigned) of the flash page holding address, capped at limit.
+     */
+    long pageEnd(long address, long limit) {
+        for (Sector sector : sectors) {
+            long start = Integer.toUnsignedLong(sector.startAddress);
+            long size = (long) sector.numPages * sector.pageSize;
+            if (address >= start && address < start + size) {
+                long end = start + ((address - start) / sector.pageSize + 1) * sector.pageSize;
+                return Math.min(end, limit);
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * What the length bytes at address hold after erasing and writing this
+     * image: the image's bytes where a segment covers them, erased (0xFF)
+     * elsewhere.
+     */
+    void expectedContent(long address, byte[] out, int length) {
+        Arrays.fill(out, 0, length, ERASED);
+        long end = address + length;
+        for (Segment segment : segments) {
+            long start = Math.max(address, Integer.toUnsignedLong(segment.address));
+            long stop = Math.min(end, segment.end());
+            if (start < stop) {
+                System.arraycopy(segment.data, (int) (start - Integer.toUnsignedLong(segment.address)),
+                    out, (int) (start - address), (int) (stop - start));
+            }
+        }
+    }
+
+    /**
+     * Whether [address, address + length) overlaps any segment.
+     */
+    boolean overlapsSegment(int address, int length) {
+        long start = Integer.toUnsignedLong(address);
+        long end = start + length;
+        for (Segment segment : segments) {
+            if (Integer.toUnsignedLong(segment.address) < end && segment.end() > start) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,63 @@
+package betaflight.app.protocols.dfu;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * A long-running DFU operation that runs on the plugin's USB thread: one at a
+ * time per device, cancellable between transfers, reporting throttled
+ * "flashProgress" events.
+ */
+abstract class DfuJob {
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    interface Listener {
+        /**
+         * Called on the worker thread.
+         */
+        void onProgress(JSObject progress);
+    }
+
+    protected final DfuCommands commands;
+    private final Listener listener;
+    private volatile boolean cancelled = false;
+    private long lastProgressNanos = 0;
+
+    DfuJob(DfuCommands commands, Listener listener) {
+        this.commands = commands;
+        this.listener = listener;
+    }
+
+    /**
+     * Run to completion on the calling thread and return the result for JS.
+     */
+    abstract JSObject run() throws IOException;
+
+    /**
+     * Stop at the next transfer boundary; run() then throws.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    protected void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Aborted");
+        }
+    }
+
+    protected void progress(String phase, long done, long total) {
+        long now = System.nanoTime();
+        if (done < total && now - lastProgressNanos < PROGRESS_INTERVAL_MS * 1_000_000L) {
+            return;
+        }
+        lastProgressNanos = now;
+        JSObject progress = new JSObject();
+        progress.put("phase", phase);
+        progress.put("done", done);
+        progress.put("total", total);
+        listener.onProgress(progress);
+    }
+}
@@ -0,0 +1,182 @@
+package betaflight.app.protocols.dfu;
+
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a DfuImage's address ranges back with DFU_UPLOAD and compares them
+ * with the image, returning only what differs.
+ *
+ * Each block is uploaded into one reused buffer and compared as soon as it
+ * arrives, so nothing is kept once a block has been checked. With "byte"
+ * granularity differing bytes are merged into contiguous ranges; with "page"
+ * each flash page's readback and expected bytes go through CRC32 and the
+ * pages whose checksums differ are reported, which is the unit a rewrite
+ * works in. stopOnMismatch ends the read at the first block that differs.
+ */
+final class DfuVerifier extends DfuJob {
+    private static final String TAG = "BetaflightDfu";
+    static final String GRANULARITY_BYTE = "byte";
+    static final String GRANULARITY_PAGE = "page";
+    // Ranges past this are counted but not listed
+    private static final int MAX_REPORTED_RANGES = 64;
+
+    private final DfuImage image;
+    private final int transferSize;
+    private final boolean pageGranularity;
+    private final boolean stopOnMismatch;
+    private final byte[] block;
+
+    private final JSArray mismatches = new JSArray();
+    private int mismatchCount = 0;
+    private long mismatchedBytes = 0;
+    // Byte granularity: the open mismatch range, or -1
+    private long rangeStart = -1;
+    private long rangeEnd = 0;
+    // Page granularity: the page being checksummed, or -1
+    private final CRC32 readCrc = new CRC32();
+    private final CRC32 expectedCrc = new CRC32();
+    private long pageStart = -1;
+    private long pageEnd = 0;
+    private long pageCompared = 0;
+
+    DfuVerifier(DfuCommands commands, DfuImage image, int transferSize, String granularity, boolean stopOnMismatch,
+                Listener listener) {
+        super(commands, listener);
+        this.image = image;
+        this.transferSize = transferSize;
+        this.pageGranularity = GRANULARITY_PAGE.equals(granularity);
+        this.stopOnMismatch = stopOnMismatch;
+        this.block = new byte[transferSize];
+    }
+
+    @Override
+    JSObject run() throws IOException {
+        long start = System.nanoTime();
+        long read = 0;
+
+        segments:
+        for (DfuImage.Segment segment : image.segments) {
+            commands.startUpload(segment.address);
+            int blockNum = DfuDownloader.FIRST_DATA_BLOCK;
+            for (int offset = 0; offset < segment.data.length; offset += transferSize) {
+                checkCancelled();
+                int length = Math.min(transferSize, segment.data.length - offset);
+                int received = commands.upload(blockNum++, block, 0, length);
+                long address = Integer.toUnsignedLong(segment.address) + offset;
+                if (received < length) {
+                    throw new IOException("Short UPLOAD at 0x" + Long.toHexString(address) + ": " + received
+                        + " of " + length + " bytes");
+                }
+
+                if (pageGranularity) {
+                    comparePages(segment, offset, address, length);
+                } else {
+                    compareBytes(segment.data, offset, address, length);
+                }
+                read += length;
+                progress("verify", read, image.totalBytes);
+
+                if (stopOnMismatch && mismatchedBytes > 0) {
+                    break segments;
+                }
+            }
+        }
+        closeRange();
+        finishPage();
+
+        long readNanos = System.nanoTime() - start;
+        boolean verified = mismatchCount == 0 && read == image.totalBytes;
+        Log.d(TAG, "Verified " + read + " bytes in " + readNanos / 1_000_000L + " ms: "
+            + (verified ? "match" : mismatchCount + " mismatched ranges"));
+
+        JSObject result = new JSObject();
+        result.put("verified", verified);
+        result.put("granularity", pageGranularity ? GRANULARITY_PAGE : GRANULARITY_BYTE);
+        result.put("bytesRead", read);
+        result.put("mismatchCount", mismatchCount);
+        result.put("mismatchedBytes", mismatchedBytes);
+        result.put("mismatches", mismatches);
+        result.put("readMs", readNanos / 1_000_000L);
+        result.put("bytesPerSecond", readNanos > 0 ? read * 1e9 / readNanos : 0);
+        return result;
+    }
+
+    // ===== Private helper methods =====
+
+    private void compareBytes(byte[] expected, int offset, long address, int length) {
+        for (int i = 0; i < length; i++) {
+            if (block[i] == expected[offset + i]) {
+                continue;
+            }
+            long at = address + i;
+            if (rangeStart >= 0 && at == rangeEnd) {
+                rangeEnd++;
+            } else {
+                closeRange();
+                rangeStart = at;
+                rangeEnd = at + 1;
+            }
+            mismatchedBytes++;
+        }
+    }
+
+    private void closeRange() {
+        if (rangeStart < 0) {
+            return;
+        }
+        addMismatch(rangeStart, rangeEnd, null);
+        rangeStart = -1;
+    }
+
+    private void comparePages(DfuImage.Segment segment, int offset, long address, int length) {
+        int done = 0;
+        while (done < length) {
+            long at = address + done;
+            if (pageStart < 0) {
+                pageStart = at;
+                pageEnd = image.pageEnd(at, segment.end());
+                readCrc.reset();
+                expectedCrc.reset();
+            }
+            int piece = (int) Math.min(length - done, pageEnd - at);
+            readCrc.update(block, done, piece);
+            expectedCrc.update(segment.data, offset + done, piece);
+            done += piece;
+            pageCompared = at + piece;
+            if (pageCompared == pageEnd) {
+                finishPage();
+            }
+        }
+    }
+
+    private void finishPage() {
+        if (pageStart < 0) {
+            return;
+        }
+        if (readCrc.getValue() != expectedCrc.getValue()) {
+            JSObject crcs = new JSObject();
+            crcs.put("crc", readCrc.getValue());
+            crcs.put("expectedCrc", expectedCrc.getValue());
+            addMismatch(pageStart, pageCompared, crcs);
+            mismatchedBytes += pageCompared - pageStart;
+        }
+        pageStart = -1;
+    }
+
+    private void addMismatch(long start, long end, JSObject extra) {
+        mismatchCount++;
+        if (mismatchCount > MAX_REPORTED_RANGES) {
+            return;
+        }
+        JSObject range = extra != null ? extra : new JSObject();
+        range.put("address", start);
+        range.put("length", end - start);
+        mismatches.put(range);
+    }
+}
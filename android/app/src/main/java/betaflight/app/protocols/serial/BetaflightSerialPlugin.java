@@ -9,6 +9,9 @@ import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbManager;
 import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.getcapacitor.JSArray;
@@ -21,15 +24,26 @@ import com.getcapacitor.annotation.Permission;
 import com.hoho.android.usbserial.driver.UsbSerialDriver;
 import com.hoho.android.usbserial.driver.UsbSerialPort;
 import com.hoho.android.usbserial.driver.UsbSerialProber;
-import com.hoho.android.usbserial.util.SerialInputOutputManager;
+
+import betaflight.app.protocols.BufferPool;
+import betaflight.app.protocols.MspRequestScheduler;
+import betaflight.app.protocols.PayloadCodec;
+import betaflight.app.protocols.PayloadEncoder;
+import betaflight.app.protocols.ReceiveCoalescer;
+import betaflight.app.protocols.StatsReporter;
+import betaflight.app.protocols.UsbDeviceRegistry;
+import betaflight.app.protocols.WriteCoalescer;
 
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Capacitor plugin for USB Serial communication
@@ -38,9 +52,15 @@ import java.util.Map;
  * Features:
  * - Automatic USB device permission handling
  * - Support for multiple USB-to-serial chipsets (FTDI, CP210x, CH34x, PL2303, etc.)
- * - Binary data transmission using hex string encoding
- * - Real-time data reception via event listeners
- * - Device attach/detach detection
+ * - Binary data transmission negotiated per connection (base64, with hex as fallback)
+ * - Real-time data reception via event listeners, coalesced by size or time window
+ * - Allocation-free read loop using pooled buffers and reusable payload encoders
+ * - Optional native MSP framing ("mspFrame" events) with raw passthrough for CLI
+ * - Batched MSP requests pipelined natively, with dedup, timeouts and retries
+ * - Queued writes merged into larger USB transfers on a writer thread (writeBatch)
+ * - Several ports open at once, addressed by connectionId (including multi-port chips)
+ * - Device attach/detach detection, with probed drivers cached per device
+ * - Optional auto-reconnect: the port is reopened natively when the FC re-enumerates
  */
 @CapacitorPlugin(
     name = "BetaflightSerial",
@@ -48,19 +68,72 @@ import java.util.Map;
         @Permission(strings = {}, alias = "usb")
     }
 )
-public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputManager.Listener {
+public class BetaflightSerialPlugin extends Plugin implements SerialConnection.Events {
     // Hold a static reference for forwarding permission callbacks from an explicit BroadcastReceiver
     private static java.lang.ref.WeakReference<BetaflightSerialPlugin> sInstance = new java.lang.ref.WeakReference<>(null);
     private static final String TAG = "BetaflightSerial";
     private static final String ACTION_USB_PERMISSION = "com.betaflight.USB_PERMISSION";
-    private static final int WRITE_WAIT_MILLIS = 2000;
     private static final int READ_WAIT_MILLIS = 2000;
+    private static final String FRAMING_RAW = "raw";
+    private static final String FRAMING_MSP = "msp";
+    private static final int BENCHMARK_DEFAULT_CHUNK = 4096;
+    private static final int BENCHMARK_DEFAULT_TOTAL = 1 << 20;
+    // How long a dropped auto-reconnect connection waits for its device, and a reopened one for JS
+    private static final int RECONNECT_WINDOW_MS = 60000;
 
     private UsbManager usbManager;
-    private UsbSerialPort serialPort;
-    private UsbSerialDriver currentDriver;
-    private UsbDeviceConnection connection;
-    private SerialInputOutputManager ioManager;
+    // Probed usb-serial drivers by device key, kept current by the attach/detach receivers
+    private UsbDeviceRegistry<UsbSerialDriver> deviceRegistry;
+    // Open ports by connectionId; connect() adds, disconnect()/detach/errors remove
+    private final Map<String, SerialConnection> connections = new ConcurrentHashMap<>();
+    // Used by calls that carry no connectionId, so single-port callers keep working unchanged
+    private volatile SerialConnection defaultConnection;
+    private volatile boolean benchmarkRunning = false;
+    // Auto-reconnect connections that dropped, by their old connectionId
+    private final Map<String, ReconnectTarget> reconnectTargets = new ConcurrentHashMap<>();
+    // Reopened connections waiting for their first MSP response, by new connectionId
+    private final Map<String, ReconnectTarget> awaitingResponse = new ConcurrentHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Emits a "stats" event per open connection while an interval is set
+    private final StatsReporter statsReporter = new StatsReporter(mainHandler, this::emitStats);
+    private long reconnects = 0;
+    private double lastDowntimeMs = -1;
+    private double lastReopenMs = -1;
+    private double lastReopenToResponseMs = -1;
+    private double lastDetachToResponseMs = -1;
+
+    /**
+     * What is needed to find and reopen a dropped connection once its device is back.
+     * The device id changes on re-enumeration, so it is matched on VID/PID and serial number.
+     */
+    private static final class ReconnectTarget {
+        final String previousConnectionId;
+        final int vendorId;
+        final int productId;
+        final String serialNumber;
+        final int portIndex;
+        final SerialConnection.Options options;
+        final long droppedAtNanos;
+        boolean permissionRequested = false;
+        // Set once reopened, for time-to-first-response
+        volatile long reopenedAtNanos;
+
+        ReconnectTarget(SerialConnection connection, String serialNumber) {
+            UsbDevice device = connection.driver.getDevice();
+            this.previousConnectionId = connection.id;
+            this.vendorId = device.getVendorId();
+            this.productId = device.getProductId();
+            this.serialNumber = serialNumber;
+            this.portIndex = connection.portIndex;
+            this.options = connection.options;
+            this.droppedAtNanos = System.nanoTime();
+        }
+
+        boolean matches(UsbDevice device, String deviceSerial) {
+            return device.getVendorId() == vendorId && device.getProductId() == productId
+                && (serialNumber == null || deviceSerial == null || serialNumber.equals(deviceSerial));
+        }
+    }
 
     private final Map<String, UsbDevice> permissionRequestedDevices = new HashMap<>();
     private PluginCall pendingPermissionCall;
@@ -85,6 +158,9 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
         super.load();
         sInstance = new java.lang.ref.WeakReference<>(this);
         usbManager = (UsbManager) getContext().getSystemService(Context.USB_SERVICE);
+        deviceRegistry = new UsbDeviceRegistry<>(usbManager,
+            device -> UsbSerialProber.getDefaultProber().probeDevice(device));
+        deviceRegistry.refresh();
 
         // Register USB broadcast receivers
         IntentFilter filter = new IntentFilter();
@@ -104,7 +180,8 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
     @Override
     protected void handleOnDestroy() {
         try {
-            closeSerialPort();
+            statsReporter.stop();
+            closeAllConnections();
             getContext().unregisterReceiver(usbReceiver);
         } catch (Exception e) {
             Log.e(TAG, "Error in handleOnDestroy", e);
@@ -124,7 +201,9 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
                 return;
             }
 
-            List<UsbSerialDriver> availableDrivers = UsbSerialProber.getDefaultProber().findAllDrivers(usbManager);
+            // Pick up anything plugged in without a broadcast reaching us; only new devices are probed
+            deviceRegistry.refresh();
+            List<UsbSerialDriver> availableDrivers = deviceRegistry.list();
 
             if (availableDrivers.isEmpty()) {
                 JSObject result = new JSObject();
@@ -150,39 +229,8 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
             permissionRequestedDevices.clear();
 
             for (UsbDevice device : devicesNeedingPermission) {
-                String deviceKey = getDeviceKey(device);
-                permissionRequestedDevices.put(deviceKey, device);
-
-                // Create fully explicit broadcast intent with component
-                Intent permissionAction = new Intent(ACTION_USB_PERMISSION);
-                permissionAction.setComponent(new android.content.ComponentName(
-                    getContext(),
-                    UsbPermissionReceiver.class
-                ));
-                permissionAction.putExtra(UsbManager.EXTRA_DEVICE, device);
-
-                int requestCode = device.getDeviceId();
-                int flags;
-
-                if (Build.VERSION.SDK_INT >= 34) { // Android 14+ (U / API 34)
-                    // Android 14+ requires IMMUTABLE for explicit intents
-                    flags = PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE;
-                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                    // Android 12-13 requires MUTABLE for UsbManager
-                    flags = PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_MUTABLE;
-                } else {
-                    flags = PendingIntent.FLAG_UPDATE_CURRENT;
-                }
-
-                PendingIntent permissionIntent = PendingIntent.getBroadcast(
-                    getContext(),
-                    requestCode,
-                    permissionAction,
-                    flags
-                );
-
-                usbManager.requestPermission(device, permissionIntent);
-                Log.d(TAG, "Requested permission for device: " + deviceKey);
+                permissionRequestedDevices.put(getDeviceKey(device), device);
+                requestDevicePermission(device);
             }
         } catch (Exception e) {
             Log.e(TAG, "Error requesting permission", e);
@@ -200,8 +248,22 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
         resolveWithDeviceList(call);
     }
 
+    /**
+     * Report device table counters: probes and their timings, cache misses,
+     * and how long the last device that re-enumerated (e.g. after an FC reboot) was away.
+     */
+    @PluginMethod
+    public void getProbeStats(PluginCall call) {
+        call.resolve(deviceRegistry.getStats());
+    }
+
     /**
      * Connect to a USB serial device
+     *
+     * Several ports can be open at once. The result carries a connectionId that
+     * reads, writes and events are keyed by; "portIndex" selects a port on
+     * multi-port chips (FT2232/FT4232, CP2105). Connecting to a port that is
+     * already open reopens it with the new settings.
      */
     @PluginMethod
     public void connect(PluginCall call) {
@@ -212,71 +274,77 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
                 return;
             }
 
-            int baudRate = call.getInt("baudRate", 115200);
-            int dataBits = call.getInt("dataBits", 8);
-            int stopBits = call.getInt("stopBits", UsbSerialPort.STOPBITS_1);
-            int parity = parseParity(call.getString("parity", "none"));
+            int portIndex = call.getInt("portIndex", 0);
+            SerialConnection.Options options = new SerialConnection.Options();
+            options.baudRate = call.getInt("baudRate", 115200);
+            options.dataBits = call.getInt("dataBits", 8);
+            options.stopBits = call.getInt("stopBits", UsbSerialPort.STOPBITS_1);
+            options.parity = parseParity(call.getString("parity", "none"));
+            options.encoding = PayloadCodec.negotiate(call.getString("encoding", PayloadCodec.HEX));
+            // Latency/throughput knobs: flushIntervalMs = 0 forwards every USB packet as-is
+            options.flushBytes = call.getInt("flushBytes", ReceiveCoalescer.DEFAULT_FLUSH_BYTES);
+            options.flushIntervalMs = call.getInt("flushIntervalMs", ReceiveCoalescer.DEFAULT_FLUSH_INTERVAL_MS);
+            options.mspFraming = FRAMING_MSP.equals(call.getString("framing", FRAMING_RAW));
+            options.writeTransferBytes = call.getInt("writeTransferBytes", WriteCoalescer.DEFAULT_TRANSFER_BYTES);
+            options.maxQueuedWriteBytes = call.getInt("maxQueuedWriteBytes", WriteCoalescer.DEFAULT_MAX_QUEUED_BYTES);
+            options.autoReconnect = call.getBoolean("autoReconnect", false);
+
+            String connectionId = getConnectionKey(deviceId, portIndex);
+
+            // Already reopened natively after a reboot: hand it over instead of opening again
+            SerialConnection existing = connections.get(connectionId);
+            if (existing != null && existing.adopt(options)) {
+                defaultConnection = existing;
+                Log.d(TAG, "Adopted reconnected device: " + connectionId);
+                JSObject result = createConnectResult(existing);
+                result.put("reconnected", true);
+                call.resolve(result);
+                return;
+            }
 
-            // Close existing connection if any
-            closeSerialPort();
+            // Reopen if this port is already connected
+            closeConnection(existing);
 
             // Find the device
-            List<UsbSerialDriver> availableDrivers = UsbSerialProber.getDefaultProber().findAllDrivers(usbManager);
-            UsbSerialDriver targetDriver = null;
-
-            for (UsbSerialDriver driver : availableDrivers) {
-                UsbDevice device = driver.getDevice();
-                if (getDeviceKey(device).equals(deviceId)) {
-                    if (!usbManager.hasPermission(device)) {
-                        call.reject("Permission not granted for device: " + deviceId);
-                        return;
-                    }
-                    targetDriver = driver;
-                    break;
-                }
-            }
-
+            UsbSerialDriver targetDriver = deviceRegistry.find(deviceId);
             if (targetDriver == null) {
                 call.reject("Device not found: " + deviceId);
                 return;
             }
-
-            // Open connection
-            connection = usbManager.openDevice(targetDriver.getDevice());
-            if (connection == null) {
-                call.reject("Failed to open device connection");
+            if (!usbManager.hasPermission(targetDriver.getDevice())) {
+                call.reject("Permission not granted for device: " + deviceId);
                 return;
             }
 
-            // Get the first port (most devices have only one port)
-            List<UsbSerialPort> ports = targetDriver.getPorts();
-            if (ports.isEmpty()) {
-                if (connection != null) {
-                    connection.close();
-                    connection = null;
-                }
+            int portCount = targetDriver.getPorts().size();
+            if (portCount == 0) {
                 call.reject("No serial ports available on device: " + deviceId);
                 return;
             }
-            serialPort = ports.get(0);
-            serialPort.open(connection);
-            serialPort.setParameters(baudRate, dataBits, stopBits, parity);
+            if (portIndex < 0 || portIndex >= portCount) {
+                call.reject("Port " + portIndex + " not available on device: " + deviceId + " (" + portCount + " ports)");
+                return;
+            }
 
-            // Start I/O manager for reading data
-            ioManager = new SerialInputOutputManager(serialPort, this);
-            ioManager.start();
+            // Each port gets its own device connection so ports can be opened and closed independently
+            UsbDeviceConnection usbConnection = usbManager.openDevice(targetDriver.getDevice());
+            if (usbConnection == null) {
+                call.reject("Failed to open device connection");
+                return;
+            }
 
-            currentDriver = targetDriver;
+            SerialConnection connection = new SerialConnection(connectionId, deviceId, portIndex, targetDriver,
+                usbConnection, options, this);
+            connections.put(connectionId, connection);
+            defaultConnection = connection;
 
-            Log.d(TAG, "Connected to device: " + deviceId + " at " + baudRate + " baud");
+            Log.d(TAG, "Connected to device: " + connectionId + " at " + options.baudRate + " baud ("
+                + connection.encoding + ")");
 
-            JSObject result = new JSObject();
-            result.put("success", true);
-            call.resolve(result);
+            call.resolve(createConnectResult(connection));
 
         } catch (IOException e) {
             Log.e(TAG, "Error connecting to device", e);
-            closeSerialPort();
             JSObject result = new JSObject();
             result.put("success", false);
             result.put("error", e.getMessage());
@@ -288,25 +356,73 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
     }
 
     /**
-     * Disconnect from the current serial device
+     * Disconnect one connection, or all of them when no connectionId is given.
+     * An intentional disconnect also cancels any pending auto-reconnect for it.
      */
     @PluginMethod
     public void disconnect(PluginCall call) {
-        closeSerialPort();
+        String connectionId = call.getString("connectionId");
+        if (connectionId != null) {
+            reconnectTargets.remove(connectionId);
+            closeConnection(connections.get(connectionId));
+        } else {
+            reconnectTargets.clear();
+            closeAllConnections();
+        }
         JSObject result = new JSObject();
         result.put("success", true);
         call.resolve(result);
     }
 
+    /**
+     * Report auto-reconnect timings for the last reconnect: how long the device was
+     * gone (downtimeMs), how long reopening took once it was back (reopenMs), and the
+     * time to the first MSP response from the reopen and from the drop.
+     * -1 means not measured yet.
+     */
+    @PluginMethod
+    public void getReconnectStats(PluginCall call) {
+        JSObject result = new JSObject();
+        synchronized (reconnectTargets) {
+            result.put("reconnects", reconnects);
+            result.put("pending", reconnectTargets.size());
+            result.put("lastDowntimeMs", lastDowntimeMs);
+            result.put("lastReopenMs", lastReopenMs);
+            result.put("lastReopenToResponseMs", lastReopenToResponseMs);
+            result.put("lastDetachToResponseMs", lastDetachToResponseMs);
+        }
+        call.resolve(result);
+    }
+
+    /**
+     * List open connections
+     */
+    @PluginMethod
+    public void getConnections(PluginCall call) {
+        JSArray list = new JSArray();
+        for (SerialConnection connection : connections.values()) {
+            JSObject info = new JSObject();
+            info.put("connectionId", connection.id);
+            info.put("deviceId", connection.deviceId);
+            info.put("portIndex", connection.portIndex);
+            info.put("encoding", connection.encoding);
+            info.put("framing", connection.isMspFraming() ? FRAMING_MSP : FRAMING_RAW);
+            list.put(info);
+        }
+        JSObject result = new JSObject();
+        result.put("connections", list);
+        call.resolve(result);
+    }
+
     /**
      * Write data to the serial port
-     * Data is provided as a hex string and converted to bytes
+     * Data is provided as a hex (default) or base64 string, as given by "encoding"
      */
     @PluginMethod
     public void write(PluginCall call) {
         try {
-            String hexData = call.getString("data");
-            if (hexData == null || hexData.isEmpty()) {
+            String encodedData = call.getString("data");
+            if (encodedData == null || encodedData.isEmpty()) {
                 // Treat empty payload as no-op for robustness
                 JSObject result = new JSObject();
                 result.put("bytesSent", 0);
@@ -314,54 +430,85 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
                 return;
             }
 
-            if (serialPort == null || !serialPort.isOpen()) {
-                call.reject("Serial port is not open");
+            SerialConnection connection = getConnection(call);
+            if (connection == null) {
                 return;
             }
 
-            // Convert hex string to bytes
-            byte[] data = hexStringToByteArray(hexData);
-
-            // Write data to serial port
-            serialPort.write(data, WRITE_WAIT_MILLIS);
+            byte[] data = PayloadCodec.decode(encodedData, call.getString("encoding", PayloadCodec.HEX));
 
-            JSObject result = new JSObject();
-            result.put("bytesSent", data.length);
-            call.resolve(result);
+            // Queue behind any pending batches; resolves once the bytes are on the wire
+            enqueueWrite(call, connection, new byte[][] {data});
 
-        } catch (IOException e) {
-            Log.e(TAG, "Error writing to serial port", e);
-            call.reject("Failed to write data: " + e.getMessage());
         } catch (Exception e) {
             Log.e(TAG, "Unexpected error writing", e);
             call.reject("Failed to write data: " + e.getMessage());
         }
     }
 
+    /**
+     * Write many frames with one bridge call.
+     * "frames" is an array of hex (default) or base64 strings, as given by "encoding".
+     * Frames are written in order, merged into transfers of up to writeTransferBytes,
+     * and the call resolves once the whole batch has been written. If the write queue
+     * stays full for WRITE_WAIT_MILLIS the call is rejected and nothing is queued.
+     */
+    @PluginMethod
+    public void writeBatch(PluginCall call) {
+        JSArray encodedFrames = call.getArray("frames");
+        if (encodedFrames == null) {
+            call.reject("frames is required");
+            return;
+        }
+        SerialConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+
+        String frameEncoding = call.getString("encoding", PayloadCodec.HEX);
+        byte[][] frames = new byte[encodedFrames.length()][];
+        try {
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = PayloadCodec.decode(encodedFrames.getString(i), frameEncoding);
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            call.reject("Invalid frame: " + e.getMessage());
+            return;
+        }
+
+        enqueueWrite(call, connection, frames);
+    }
+
+    /**
+     * Report write queue counters for the current connection:
+     * transfers issued, bytes per transfer and backpressure waits.
+     */
+    @PluginMethod
+    public void getWriteStats(PluginCall call) {
+        SerialConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+        call.resolve(connection.getWriter().getStats());
+    }
+
     /**
      * Read available data from the serial port
-     * Returns data as a hex string
+     * Returns data in the encoding negotiated at connect time
      */
     @PluginMethod
     public void read(PluginCall call) {
         try {
-            if (serialPort == null || !serialPort.isOpen()) {
-                call.reject("Serial port is not open");
+            SerialConnection connection = getConnection(call);
+            if (connection == null) {
                 return;
             }
 
-            byte[] buffer = new byte[8192];
-            int numBytes = serialPort.read(buffer, READ_WAIT_MILLIS);
-
-            String hexData = "";
-            if (numBytes > 0) {
-                byte[] data = new byte[numBytes];
-                System.arraycopy(buffer, 0, data, 0, numBytes);
-                hexData = byteArrayToHexString(data);
-            }
+            String encodedData = connection.readEncoded(READ_WAIT_MILLIS);
 
             JSObject result = new JSObject();
-            result.put("data", hexData);
+            result.put("data", encodedData);
+            result.put("encoding", connection.encoding);
             call.resolve(result);
 
         } catch (IOException e) {
@@ -373,26 +520,559 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
         }
     }
 
-    // ===== SerialInputOutputManager.Listener implementation =====
+    /**
+     * Switch between native MSP framing ("msp") and raw byte delivery ("raw").
+     * CLI mode should use raw so text output is never interpreted as frames.
+     */
+    @PluginMethod
+    public void setFraming(PluginCall call) {
+        String framing = call.getString("framing", FRAMING_RAW);
+        if (!FRAMING_RAW.equals(framing) && !FRAMING_MSP.equals(framing)) {
+            call.reject("Unknown framing mode: " + framing);
+            return;
+        }
+
+        SerialConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+        connection.setMspFraming(FRAMING_MSP.equals(framing));
+
+        JSObject result = new JSObject();
+        result.put("framing", framing);
+        call.resolve(result);
+    }
+
+    /**
+     * Send a batch of MSP requests and resolve once with all responses.
+     *
+     * Requests are pipelined natively up to "window" at a time, identical
+     * in-flight requests are sent once, and timeouts are retried on the
+     * scheduler thread. Needs MSP framing, since responses are matched from
+     * decoded frames; answered frames are returned here and are also emitted
+     * as mspFrame events like any other.
+     */
+    @PluginMethod
+    public void mspBatch(PluginCall call) {
+        SerialConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+        if (!connection.isMspFraming()) {
+            call.reject("MSP framing is not enabled");
+            return;
+        }
+
+        JSArray requests = call.getArray("requests");
+        if (requests == null) {
+            call.reject("requests is required");
+            return;
+        }
+
+        int[] codes = new int[requests.length()];
+        byte[][] payloads = new byte[requests.length()][];
+        try {
+            for (int i = 0; i < requests.length(); i++) {
+                JSONObject request = requests.getJSONObject(i);
+                codes[i] = request.getInt("code");
+                payloads[i] = PayloadCodec.decode(request.optString("payload", ""),
+                    request.optString("encoding", connection.encoding));
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            call.reject("Invalid request: " + e.getMessage());
+            return;
+        }
+
+        int window = call.getInt("window", MspRequestScheduler.DEFAULT_WINDOW);
+        int timeoutMs = call.getInt("timeoutMs", MspRequestScheduler.DEFAULT_TIMEOUT_MS);
+        int maxAttempts = call.getInt("retries", MspRequestScheduler.DEFAULT_MAX_ATTEMPTS);
+        String batchEncoding = connection.encoding;
+
+        connection.getMspScheduler().submit(codes, payloads, window, timeoutMs, maxAttempts, results -> {
+            JSArray responses = new JSArray();
+            for (MspRequestScheduler.Result r : results) {
+                JSObject response = new JSObject();
+                response.put("code", r.code);
+                response.put("status", r.status);
+                response.put("direction", String.valueOf(r.direction));
+                response.put("payload", PayloadCodec.encode(r.payload, batchEncoding));
+                response.put("encoding", batchEncoding);
+                response.put("attempts", r.attempts);
+                response.put("latencyMs", r.latencyNanos / 1_000_000.0);
+                responses.put(response);
+            }
+            JSObject result = new JSObject();
+            result.put("connectionId", connection.id);
+            result.put("responses", responses);
+            call.resolve(result);
+        });
+    }
+
+    /**
+     * Report receive coalescing counters for the current connection:
+     * events emitted, bytes per event and how often each flush reason fired.
+     */
+    @PluginMethod
+    public void getReceiveStats(PluginCall call) {
+        SerialConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+        call.resolve(connection.getReceiveStats());
+    }
+
+    /**
+     * Report throughput, latency histograms, errors and queue depth for a
+     * connection. Pass reset: true to start a new measurement window afterwards.
+     */
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        SerialConnection connection = getConnection(call);
+        if (connection == null) {
+            return;
+        }
+        JSObject stats = createStats(connection);
+        if (call.getBoolean("reset", false)) {
+            connection.metrics.reset();
+        }
+        call.resolve(stats);
+    }
+
+    /**
+     * Emit a "stats" event for every open connection each intervalMs; 0 turns it off.
+     */
+    @PluginMethod
+    public void setStatsInterval(PluginCall call) {
+        int intervalMs = call.getInt("intervalMs", 0);
+        JSObject result = new JSObject();
+        result.put("intervalMs", statsReporter.setInterval(intervalMs));
+        call.resolve(result);
+    }
+
+    /**
+     * Measure bridge throughput for one payload encoding.
+     *
+     * Emits "benchmarkData" events carrying synthetic payloads until totalBytes
+     * have been sent, then resolves with the native-side timings. The JS side
+     * times decoding of the same events, giving end-to-end bytes/s per encoding.
+     */
+    @PluginMethod
+    public void benchmarkBridge(PluginCall call) {
+        String benchEncoding = call.getString("encoding", PayloadCodec.HEX);
+        if (!PayloadCodec.isSupported(benchEncoding)) {
+            call.reject("Unsupported encoding: " + benchEncoding);
+            return;
+        }
+        if (benchmarkRunning) {
+            call.reject("A benchmark is already running");
+            return;
+        }
+
+        int chunkSize = Math.max(1, call.getInt("chunkSize", BENCHMARK_DEFAULT_CHUNK));
+        int totalBytes = Math.max(chunkSize, call.getInt("totalBytes", BENCHMARK_DEFAULT_TOTAL));
+        benchmarkRunning = true;
+
+        new Thread(() -> {
+            try {
+                byte[] chunk = new byte[chunkSize];
+                new java.util.Random(0x4D5350).nextBytes(chunk);
+
+                long encodeNanos = 0;
+                int sent = 0;
+                int events = 0;
+                long start = System.nanoTime();
+                while (sent < totalBytes) {
+                    int length = Math.min(chunkSize, totalBytes - sent);
+                    long t0 = System.nanoTime();
+                    String payload = PayloadCodec.encode(chunk, 0, length, benchEncoding);
+                    encodeNanos += System.nanoTime() - t0;
+
+                    JSObject eventData = new JSObject();
+                    eventData.put("data", payload);
+                    eventData.put("encoding", benchEncoding);
+                    eventData.put("sequence", events);
+                    notifyListeners("benchmarkData", eventData);
+                    sent += length;
+                    events++;
+                }
+                long elapsedNanos = System.nanoTime() - start;
+
+                JSObject result = new JSObject();
+                result.put("encoding", benchEncoding);
+                result.put("bytes", sent);
+                result.put("events", events);
+                result.put("elapsedMs", elapsedNanos / 1_000_000.0);
+                result.put("encodeMs", encodeNanos / 1_000_000.0);
+                result.put("nativeBytesPerSecond", elapsedNanos > 0 ? sent * 1e9 / elapsedNanos : 0);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Bridge benchmark failed", e);
+                call.reject("Benchmark failed: " + e.getMessage());
+            } finally {
+                benchmarkRunning = false;
+            }
+        }, "SerialBridgeBenchmark").start();
+    }
+
+    /**
+     * Measure allocations and GC activity of the receive hot path.
+     *
+     * Streams synthetic packets at the given baud rate (2 Mbaud by default)
+     * through two versions of the native receive path: "unpooled" allocates a
+     * read buffer and a packet copy per read and encodes with PayloadCodec, as
+     * the SerialInputOutputManager based path did; "pooled" reads into a pooled
+     * buffer and encodes with a PayloadEncoder. Each packet is encoded on its
+     * own, the worst case of flushIntervalMs = 0. Allocation counts cover the
+     * benchmark thread; GC counts and times come from the ART runtime stats.
+     */
+    @PluginMethod
+    public void benchmarkReadPath(PluginCall call) {
+        String benchEncoding = call.getString("encoding", PayloadCodec.BASE64);
+        if (!PayloadCodec.isSupported(benchEncoding)) {
+            call.reject("Unsupported encoding: " + benchEncoding);
+            return;
+        }
+        if (benchmarkRunning) {
+            call.reject("A benchmark is already running");
+            return;
+        }
+
+        int packetSize = Math.max(1, Math.min(SerialConnection.READ_BUFFER_BYTES, call.getInt("packetSize", 64)));
+        int baudRate = Math.max(9600, call.getInt("baudRate", 2_000_000));
+        int durationMs = Math.max(100, call.getInt("durationMs", 3000));
+        benchmarkRunning = true;
+
+        new Thread(() -> {
+            try {
+                JSObject result = new JSObject();
+                result.put("encoding", benchEncoding);
+                result.put("packetSize", packetSize);
+                result.put("baudRate", baudRate);
+                result.put("unpooled", runReadPathPass(false, benchEncoding, packetSize, baudRate, durationMs));
+                result.put("pooled", runReadPathPass(true, benchEncoding, packetSize, baudRate, durationMs));
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Read path benchmark failed", e);
+                call.reject("Benchmark failed: " + e.getMessage());
+            } finally {
+                benchmarkRunning = false;
+            }
+        }, "SerialReadBenchmark").start();
+    }
+
+    // ===== SerialConnection.Events implementation =====
 
     @Override
-    public void onNewData(byte[] data) {
-        // Convert received data to hex string and notify listeners
-        String hexData = byteArrayToHexString(data);
+    public void emit(String eventName, JSObject data) {
+        notifyListeners(eventName, data);
+    }
 
-        JSObject eventData = new JSObject();
-        eventData.put("data", hexData);
-        notifyListeners("dataReceived", eventData);
+    @Override
+    public void onConnectionError(SerialConnection connection, Exception e) {
+        Log.e(TAG, "Serial communication error on " + connection.id, e);
+        // A rebooting FC usually shows up here before the detach broadcast arrives
+        rememberForReconnect(connection);
+        closeConnection(connection);
     }
 
     @Override
-    public void onRunError(Exception e) {
-        Log.e(TAG, "Serial communication error", e);
-        closeSerialPort();
+    public void onFirstResponse(SerialConnection connection, long responseNanos) {
+        ReconnectTarget target = awaitingResponse.remove(connection.id);
+        if (target == null) {
+            return;
+        }
+
+        JSObject event = new JSObject();
+        synchronized (reconnectTargets) {
+            lastReopenToResponseMs = (responseNanos - target.reopenedAtNanos) / 1_000_000.0;
+            lastDetachToResponseMs = (responseNanos - target.droppedAtNanos) / 1_000_000.0;
+            event.put("reopenToResponseMs", lastReopenToResponseMs);
+            event.put("detachToResponseMs", lastDetachToResponseMs);
+        }
+        event.put("connectionId", connection.id);
+        Log.d(TAG, "First MSP response on " + connection.id + " " + lastDetachToResponseMs + " ms after drop");
+        notifyListeners("firstResponse", event);
     }
 
     // ===== Private helper methods =====
 
+    private JSObject runReadPathPass(boolean pooled, String benchEncoding, int packetSize, int baudRate,
+                                     int durationMs) throws InterruptedException {
+        byte[] source = new byte[packetSize];
+        new java.util.Random(0x4D5350).nextBytes(source);
+        BufferPool pool = new BufferPool(SerialConnection.READ_BUFFER_BYTES, 2);
+        PayloadEncoder encoder = new PayloadEncoder(SerialConnection.READ_BUFFER_BYTES);
+        // 10 bits per byte on the wire (start + 8 data + stop)
+        double bytesPerMs = baudRate / 10.0 / 1000.0;
+
+        long gcCount = runtimeStat("art.gc.gc-count");
+        long gcTime = runtimeStat("art.gc.gc-time");
+        long blockingGcCount = runtimeStat("art.gc.blocking-gc-count");
+        long blockingGcTime = runtimeStat("art.gc.blocking-gc-time");
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+
+        long packets = 0;
+        long bytes = 0;
+        long encodedChars = 0;
+        long start = System.nanoTime();
+        long elapsedMs;
+        while ((elapsedMs = (System.nanoTime() - start) / 1_000_000L) < durationMs) {
+            // Deliver whatever the link would have carried by now, then yield until the next tick
+            long due = (long) (elapsedMs * bytesPerMs);
+            while (bytes + packetSize <= due) {
+                String encoded;
+                if (pooled) {
+                    byte[] readBuffer = pool.acquire();
+                    System.arraycopy(source, 0, readBuffer, 0, packetSize);
+                    encoded = encoder.encode(readBuffer, 0, packetSize, benchEncoding);
+                    pool.release(readBuffer);
+                } else {
+                    byte[] buffer = new byte[SerialConnection.READ_BUFFER_BYTES];
+                    System.arraycopy(source, 0, buffer, 0, packetSize);
+                    byte[] packet = Arrays.copyOf(buffer, packetSize);
+                    encoded = PayloadCodec.encode(packet, benchEncoding);
+                }
+                encodedChars += encoded.length();
+                packets++;
+                bytes += packetSize;
+            }
+            Thread.sleep(1);
+        }
+
+        int allocCount = Debug.getThreadAllocCount();
+        int allocSize = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        JSObject pass = new JSObject();
+        pass.put("packets", packets);
+        pass.put("bytes", bytes);
+        pass.put("encodedChars", encodedChars);
+        pass.put("elapsedMs", (System.nanoTime() - start) / 1_000_000.0);
+        pass.put("allocCount", allocCount);
+        pass.put("allocBytes", allocSize);
+        pass.put("allocBytesPerPacket", packets > 0 ? (double) allocSize / packets : 0);
+        pass.put("bufferAllocations", pooled ? pool.getAllocations() : packets);
+        pass.put("bufferReuses", pool.getReuses());
+        pass.put("gcCount", runtimeStat("art.gc.gc-count") - gcCount);
+        pass.put("gcTimeMs", runtimeStat("art.gc.gc-time") - gcTime);
+        pass.put("blockingGcCount", runtimeStat("art.gc.blocking-gc-count") - blockingGcCount);
+        pass.put("blockingGcTimeMs", runtimeStat("art.gc.blocking-gc-time") - blockingGcTime);
+        return pass;
+    }
+
+    private static long runtimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private JSObject createStats(SerialConnection connection) {
+        JSObject stats = connection.metrics.toJSObject();
+        stats.put("connectionId", connection.id);
+        return stats;
+    }
+
+    private void emitStats() {
+        for (SerialConnection connection : connections.values()) {
+            notifyListeners("stats", createStats(connection));
+        }
+    }
+
+    /**
+     * Look up the connection a call refers to: its "connectionId", or the most
+     * recently opened connection when none is given. Rejects the call and
+     * returns null if that connection is not open.
+     */
+    private SerialConnection getConnection(PluginCall call) {
+        String connectionId = call.getString("connectionId");
+        SerialConnection connection = connectionId != null ? connections.get(connectionId) : defaultConnection;
+        if (connection == null || !connection.isOpen()) {
+            call.reject(connectionId != null ? "Serial port is not open: " + connectionId : "Serial port is not open");
+            return null;
+        }
+        return connection;
+    }
+
+    private JSObject createConnectResult(SerialConnection connection) {
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("connectionId", connection.id);
+        result.put("portIndex", connection.portIndex);
+        result.put("portCount", connection.driver.getPorts().size());
+        result.put("encoding", connection.encoding);
+        result.put("framing", connection.isMspFraming() ? FRAMING_MSP : FRAMING_RAW);
+        return result;
+    }
+
+    private void rememberForReconnect(SerialConnection connection) {
+        if (!connection.options.autoReconnect || !connections.containsKey(connection.id)) {
+            return;
+        }
+        awaitingResponse.remove(connection.id);
+        reconnectTargets.put(connection.id,
+            new ReconnectTarget(connection, getSerialNumber(connection.driver.getDevice())));
+        Log.d(TAG, "Waiting for " + connection.id + " to come back");
+    }
+
+    /**
+     * Reopen dropped auto-reconnect connections that belong to a device that just
+     * appeared. Asks for permission first if the re-enumerated device lost it.
+     */
+    private void tryAutoReconnect(UsbDevice device, UsbSerialDriver driver) {
+        if (driver == null || reconnectTargets.isEmpty()) {
+            return;
+        }
+
+        String serialNumber = getSerialNumber(device);
+        long now = System.nanoTime();
+        for (ReconnectTarget target : reconnectTargets.values()) {
+            if (now - target.droppedAtNanos > RECONNECT_WINDOW_MS * 1_000_000L) {
+                reconnectTargets.remove(target.previousConnectionId);
+                continue;
+            }
+            if (!target.matches(device, serialNumber) || target.portIndex >= driver.getPorts().size()) {
+                continue;
+            }
+            if (!usbManager.hasPermission(device)) {
+                if (!target.permissionRequested) {
+                    target.permissionRequested = true;
+                    requestDevicePermission(device);
+                }
+                continue;
+            }
+            reconnectTargets.remove(target.previousConnectionId);
+            reopen(target, driver, now);
+        }
+    }
+
+    private void reopen(ReconnectTarget target, UsbSerialDriver driver, long attachedAtNanos) {
+        String deviceId = getDeviceKey(driver.getDevice());
+        String connectionId = getConnectionKey(deviceId, target.portIndex);
+        closeConnection(connections.get(connectionId));
+
+        UsbDeviceConnection usbConnection = usbManager.openDevice(driver.getDevice());
+        if (usbConnection == null) {
+            Log.e(TAG, "Auto-reconnect could not open " + deviceId);
+            return;
+        }
+
+        final SerialConnection connection;
+        try {
+            connection = new SerialConnection(connectionId, deviceId, target.portIndex, driver, usbConnection,
+                target.options, this);
+        } catch (IOException e) {
+            Log.e(TAG, "Auto-reconnect failed for " + deviceId, e);
+            return;
+        }
+        target.reopenedAtNanos = System.nanoTime();
+        connection.setAdoptable(true);
+        awaitingResponse.put(connectionId, target);
+        connection.watchFirstResponse();
+        connections.put(connectionId, connection);
+        defaultConnection = connection;
+
+        JSObject event = createConnectResult(connection);
+        synchronized (reconnectTargets) {
+            reconnects++;
+            lastDowntimeMs = (attachedAtNanos - target.droppedAtNanos) / 1_000_000.0;
+            lastReopenMs = (target.reopenedAtNanos - attachedAtNanos) / 1_000_000.0;
+            event.put("downtimeMs", lastDowntimeMs);
+            event.put("reopenMs", lastReopenMs);
+        }
+        event.put("previousConnectionId", target.previousConnectionId);
+        event.put("deviceId", deviceId);
+        Log.d(TAG, "Reconnected " + target.previousConnectionId + " as " + connectionId);
+        notifyListeners("reconnected", event);
+
+        // Let the port go again if JS never connects to it
+        mainHandler.postDelayed(() -> {
+            if (connection.isAdoptable()) {
+                Log.d(TAG, "Reconnected device not claimed, closing: " + connectionId);
+                awaitingResponse.remove(connectionId);
+                closeConnection(connection);
+            }
+        }, RECONNECT_WINDOW_MS);
+    }
+
+    private void requestDevicePermission(UsbDevice device) {
+        // Create fully explicit broadcast intent with component
+        Intent permissionAction = new Intent(ACTION_USB_PERMISSION);
+        permissionAction.setComponent(new android.content.ComponentName(
+            getContext(),
+            UsbPermissionReceiver.class
+        ));
+        permissionAction.putExtra(UsbManager.EXTRA_DEVICE, device);
+
+        int requestCode = device.getDeviceId();
+        int flags;
+
+        if (Build.VERSION.SDK_INT >= 34) { // Android 14+ (U / API 34)
+            // Android 14+ requires IMMUTABLE for explicit intents
+            flags = PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE;
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            // Android 12-13 requires MUTABLE for UsbManager
+            flags = PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_MUTABLE;
+        } else {
+            flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        }
+
+        PendingIntent permissionIntent = PendingIntent.getBroadcast(
+            getContext(),
+            requestCode,
+            permissionAction,
+            flags
+        );
+
+        usbManager.requestPermission(device, permissionIntent);
+        Log.d(TAG, "Requested permission for device: " + getDeviceKey(device));
+    }
+
+    /**
+     * Serial number of a device, or null if it has none or we may not read it yet
+     * (Android 10+ only allows it once permission is granted).
+     */
+    private String getSerialNumber(UsbDevice device) {
+        try {
+            return device.getSerialNumber();
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    private void enqueueWrite(PluginCall call, SerialConnection connection, byte[][] frames) {
+        long start = System.nanoTime();
+        boolean queued;
+        try {
+            queued = connection.getWriter().enqueue(frames, (bytesWritten, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Error writing to serial port", error);
+                    connection.metrics.recordError(error.getMessage());
+                    call.reject("Failed to write data: " + error.getMessage());
+                    return;
+                }
+                connection.metrics.recordWrite(System.nanoTime() - start);
+                JSObject result = new JSObject();
+                result.put("bytesSent", bytesWritten);
+                result.put("frames", frames.length);
+                call.resolve(result);
+            }, SerialConnection.WRITE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            call.reject("Failed to write data: write queue is full");
+        }
+    }
+
     public void handlePermissionResult(Intent intent) {
         UsbDevice device = intent.getParcelableExtra(UsbManager.EXTRA_DEVICE);
         if (device == null) return;
@@ -409,6 +1089,11 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
             resolveWithDeviceList(pendingPermissionCall);
             pendingPermissionCall = null;
         }
+
+        // The permission may have been asked for by auto-reconnect
+        if (granted) {
+            tryAutoReconnect(device, deviceRegistry.onAttached(device));
+        }
     }
 
     // Static entry point for the explicit BroadcastReceiver to forward the permission result
@@ -425,6 +1110,10 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
 
         Log.d(TAG, "USB device attached: " + getDeviceKey(device));
 
+        // Probe now, while nobody is waiting on it, so getDevices/connect hit the cache
+        UsbSerialDriver driver = deviceRegistry.onAttached(device);
+        tryAutoReconnect(device, driver);
+
         // Only notify about devices that have permission
         // This prevents auto-selection of unpermitted devices that show the "Open with" dialog
         if (!usbManager.hasPermission(device)) {
@@ -434,6 +1123,9 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
 
         try {
             JSObject deviceInfo = createDeviceInfo(device);
+            if (driver != null) {
+                deviceInfo.put("portCount", driver.getPorts().size());
+            }
             notifyListeners("deviceAttached", deviceInfo);
         } catch (JSONException e) {
             Log.e(TAG, "Error creating device info", e);
@@ -445,10 +1137,14 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
         if (device == null) return;
 
         Log.d(TAG, "USB device detached: " + getDeviceKey(device));
+        deviceRegistry.onDetached(device);
 
-        // Close connection if it's the current device
-        if (currentDriver != null && currentDriver.getDevice().equals(device)) {
-            closeSerialPort();
+        // Close every connection to this device
+        for (SerialConnection connection : connections.values()) {
+            if (connection.driver.getDevice().equals(device)) {
+                rememberForReconnect(connection);
+                closeConnection(connection);
+            }
         }
 
         try {
@@ -461,13 +1157,14 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
 
     private void resolveWithDeviceList(PluginCall call) {
         try {
-            List<UsbSerialDriver> availableDrivers = UsbSerialProber.getDefaultProber().findAllDrivers(usbManager);
             JSArray devices = new JSArray();
 
-            for (UsbSerialDriver driver : availableDrivers) {
+            for (UsbSerialDriver driver : deviceRegistry.list()) {
                 UsbDevice device = driver.getDevice();
                 if (usbManager.hasPermission(device)) {
-                    devices.put(createDeviceInfo(device));
+                    JSObject info = createDeviceInfo(device);
+                    info.put("portCount", driver.getPorts().size());
+                    devices.put(info);
                 }
             }
 
@@ -499,31 +1196,31 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
     }
 
     private String getDeviceKey(UsbDevice device) {
-        return device.getVendorId() + ":" + device.getProductId() + ":" + device.getDeviceId();
+        return UsbDeviceRegistry.getDeviceKey(device);
     }
 
-    private void closeSerialPort() {
-        if (ioManager != null) {
-            ioManager.stop();
-            ioManager = null;
-        }
+    /**
+     * Connection ids extend the device key with the port index, e.g. "1027:24593:1002/1"
+     */
+    private String getConnectionKey(String deviceId, int portIndex) {
+        return deviceId + "/" + portIndex;
+    }
 
-        if (serialPort != null) {
-            try {
-                serialPort.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Error closing serial port", e);
-            }
-            serialPort = null;
+    private void closeConnection(SerialConnection connection) {
+        if (connection == null) {
+            return;
         }
-
-        if (connection != null) {
-            connection.close();
-            connection = null;
+        connections.remove(connection.id, connection);
+        if (defaultConnection == connection) {
+            defaultConnection = null;
         }
+        connection.close();
+    }
 
-        currentDriver = null;
-        Log.d(TAG, "Serial port closed");
+    private void closeAllConnections() {
+        for (SerialConnection connection : connections.values()) {
+            closeConnection(connection);
+        }
     }
 
     private int parseParity(String parity) {
@@ -542,34 +1239,4 @@ public class BetaflightSerialPlugin extends Plugin implements SerialInputOutputM
                 return UsbSerialPort.PARITY_NONE;
         }
     }
-
-    /**
-     * Convert hex string to byte array
-     * Example: "24580000fb" -> [0x24, 0x58, 0x00, 0x00, 0xfb]
-     */
-    private byte[] hexStringToByteArray(String hexString) {
-        int len = hexString.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
-                    + Character.digit(hexString.charAt(i + 1), 16));
-        }
-        return data;
-    }
-
-    /**
-     * Convert byte array to hex string
-     * Example: [0x24, 0x58, 0x00, 0x00, 0xfb] -> "24580000fb"
-     */
-    private String byteArrayToHexString(byte[] bytes) {
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes) {
-            String hex = Integer.toHexString(0xFF & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
-        }
-        return hexString.toString();
-    }
 }
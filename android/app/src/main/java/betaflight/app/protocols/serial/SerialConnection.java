@@ -0,0 +1,396 @@
+package betaflight.app.protocols.serial;
+
+import android.hardware.usb.UsbDeviceConnection;
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+import com.hoho.android.usbserial.driver.UsbSerialDriver;
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+
+import java.io.IOException;
+
+import betaflight.app.protocols.BufferPool;
+import betaflight.app.protocols.MspFrameDecoder;
+import betaflight.app.protocols.MspRequestScheduler;
+import betaflight.app.protocols.PayloadCodec;
+import betaflight.app.protocols.PayloadEncoder;
+import betaflight.app.protocols.ReceiveCoalescer;
+import betaflight.app.protocols.TransportMetrics;
+import betaflight.app.protocols.WriteCoalescer;
+
+/**
+ * One open serial port and everything that belongs to it: its USB device
+ * connection, read loop, receive coalescer, optional MSP decoder and request
+ * scheduler, and write queue. Each connection runs its own reader and writer
+ * threads, so several ports (an FC, an ESC passthrough adapter, a receiver,
+ * or the ports of an FT4232/CP2105) can stream at the same time. Events are
+ * tagged with the connection id so JS can tell them apart.
+ */
+final class SerialConnection implements SerialReader.Listener {
+    private static final String TAG = "BetaflightSerial";
+    static final int WRITE_WAIT_MILLIS = 2000;
+    static final int READ_BUFFER_BYTES = 16384;
+
+    interface Events {
+        void emit(String eventName, JSObject data);
+
+        /**
+         * The read loop failed; the connection should be closed and forgotten.
+         */
+        void onConnectionError(SerialConnection connection, Exception e);
+
+        /**
+         * First MSP response seen after watchFirstResponse() was called.
+         */
+        void onFirstResponse(SerialConnection connection, long responseNanos);
+    }
+
+    static final class Options {
+        int baudRate = 115200;
+        int dataBits = 8;
+        int stopBits = UsbSerialPort.STOPBITS_1;
+        int parity = UsbSerialPort.PARITY_NONE;
+        String encoding;
+        int flushBytes = ReceiveCoalescer.DEFAULT_FLUSH_BYTES;
+        int flushIntervalMs = ReceiveCoalescer.DEFAULT_FLUSH_INTERVAL_MS;
+        boolean mspFraming = false;
+        int writeTransferBytes = WriteCoalescer.DEFAULT_TRANSFER_BYTES;
+        int maxQueuedWriteBytes = WriteCoalescer.DEFAULT_MAX_QUEUED_BYTES;
+        // Reopen natively when the same device comes back after a reboot or DFU flash
+        boolean autoReconnect = false;
+    }
+
+    final String id;
+    final String deviceId;
+    final int portIndex;
+    final UsbSerialDriver driver;
+    final UsbSerialPort port;
+    // Encoding used for data sent to JS; negotiated in connect()
+    final String encoding;
+    final Options options;
+    final TransportMetrics metrics = new TransportMetrics();
+
+    private final Events events;
+    private final UsbDeviceConnection usbConnection;
+    // Shared by the read loop and read(); two buffers cover both after warm-up
+    private final BufferPool readPool = new BufferPool(READ_BUFFER_BYTES, 2);
+    // Only used from the coalescer sink, which the coalescer serializes
+    private final PayloadEncoder receiveEncoder = new PayloadEncoder(ReceiveCoalescer.DEFAULT_FLUSH_BYTES);
+    // Only used on the read loop thread
+    private final PayloadEncoder frameEncoder = new PayloadEncoder(READ_BUFFER_BYTES);
+
+    private final ReceiveCoalescer receiveCoalescer;
+    // Every write goes through this queue so write, writeBatch and mspBatch stay ordered
+    private final WriteCoalescer writeCoalescer;
+    private final SerialReader reader;
+    // Non-null while MSP framing is enabled; only created, fed and dropped by the read loop
+    private volatile MspFrameDecoder mspDecoder;
+    // What setMspFraming() asked for; the read loop catches mspDecoder up with it
+    private volatile boolean mspFramingRequested;
+    // Created on the first mspBatch call
+    private volatile MspRequestScheduler mspScheduler;
+    private volatile boolean closed = false;
+    // Set while a natively reopened connection waits for JS to connect() to it
+    private boolean adoptable = false;
+    // Set while waiting for the first MSP response; see watchFirstResponse()
+    private volatile boolean watchingFirstResponse = false;
+    private int responseMatch = 0;
+
+    /**
+     * Open and configure the port, then start its reader and writer threads.
+     * On failure the USB connection is closed again before the exception is rethrown.
+     */
+    SerialConnection(String id, String deviceId, int portIndex, UsbSerialDriver driver,
+                     UsbDeviceConnection usbConnection, Options options, Events events) throws IOException {
+        this.id = id;
+        this.deviceId = deviceId;
+        this.portIndex = portIndex;
+        this.driver = driver;
+        this.usbConnection = usbConnection;
+        this.events = events;
+        this.port = driver.getPorts().get(portIndex);
+
+        this.encoding = options.encoding;
+        this.options = options;
+        // Drivers throw UnsupportedOperationException for parameters they cannot set, and the
+        // coalescers reject bad sizes; none of that may leave the port, device connection or
+        // receive coalescer open
+        ReceiveCoalescer receiver = null;
+        try {
+            port.open(usbConnection);
+            port.setParameters(options.baudRate, options.dataBits, options.stopBits, options.parity);
+            receiver = new ReceiveCoalescer(this::emitReceivedData, options.flushBytes, options.flushIntervalMs);
+            this.receiveCoalescer = receiver;
+            this.mspFramingRequested = options.mspFraming;
+            this.mspDecoder = options.mspFraming ? createMspDecoder() : null;
+            this.writeCoalescer = new WriteCoalescer(this::writeToPort, options.writeTransferBytes,
+                options.maxQueuedWriteBytes, "SerialWriter-" + id);
+        } catch (IOException | RuntimeException e) {
+            if (receiver != null) {
+                receiver.close();
+            }
+            try {
+                port.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+            usbConnection.close();
+            throw e;
+        }
+
+        metrics.addGauge("writeQueueBytes", writeCoalescer::getQueuedBytes);
+        metrics.addGauge("readBufferAllocations", readPool::getAllocations);
+        metrics.addGauge("readBufferReuses", readPool::getReuses);
+        this.reader = new SerialReader(port, readPool, this);
+        this.reader.start();
+    }
+
+    boolean isOpen() {
+        return !closed && port.isOpen();
+    }
+
+    boolean isMspFraming() {
+        return mspFramingRequested;
+    }
+
+    /**
+     * Request MSP framing on or off. The reader thread applies it between reads,
+     * and when turning it off lets the frame in progress finish first, so no
+     * frame is split between the decoder and the raw byte stream.
+     */
+    void setMspFraming(boolean enable) {
+        mspFramingRequested = enable;
+    }
+
+    /**
+     * Mark a connection reopened by auto-reconnect as available to the next connect() call.
+     */
+    synchronized void setAdoptable(boolean adoptable) {
+        this.adoptable = adoptable;
+    }
+
+    synchronized boolean isAdoptable() {
+        return adoptable;
+    }
+
+    /**
+     * Hand a reopened connection to a connect() call asking for the same port and
+     * settings. Returns false if it was not waiting or the settings differ.
+     */
+    synchronized boolean adopt(Options requested) {
+        if (!adoptable || closed || requested.baudRate != options.baudRate
+                || !requested.encoding.equals(options.encoding)) {
+            return false;
+        }
+        adoptable = false;
+        setMspFraming(requested.mspFraming);
+        return true;
+    }
+
+    /**
+     * Report the next MSP response ("$M>", "$X>" or an error "!") through
+     * Events.onFirstResponse(). Used to time how long the FC takes to answer after a reboot.
+     */
+    void watchFirstResponse() {
+        responseMatch = 0;
+        watchingFirstResponse = true;
+    }
+
+    WriteCoalescer getWriter() {
+        return writeCoalescer;
+    }
+
+    MspRequestScheduler getMspScheduler() {
+        MspRequestScheduler scheduler = mspScheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                if (mspScheduler == null) {
+                    mspScheduler = new MspRequestScheduler(this::transmitFrame);
+                }
+                scheduler = mspScheduler;
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Blocking read used by the read() plugin call; returns the data in the session encoding.
+     */
+    String readEncoded(int timeoutMs) throws IOException {
+        byte[] buffer = readPool.acquire();
+        try {
+            int numBytes = port.read(buffer, timeoutMs);
+            return numBytes > 0 ? PayloadCodec.encode(buffer, 0, numBytes, encoding) : "";
+        } finally {
+            readPool.release(buffer);
+        }
+    }
+
+    JSObject getReceiveStats() {
+        JSObject stats = receiveCoalescer.getStats();
+        MspFrameDecoder decoder = mspDecoder;
+        if (decoder != null) {
+            stats.put("mspFrames", decoder.getFramesDecoded());
+            stats.put("mspChecksumErrors", decoder.getChecksumErrors());
+        }
+        MspRequestScheduler scheduler = mspScheduler;
+        if (scheduler != null) {
+            long[] counters = scheduler.getCounters();
+            stats.put("mspRequestsSent", counters[0]);
+            stats.put("mspRequestsDeduplicated", counters[1]);
+            stats.put("mspRetries", counters[2]);
+            stats.put("mspTimeouts", counters[3]);
+        }
+        return stats;
+    }
+
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.stop();
+        receiveCoalescer.close();
+        mspDecoder = null;
+        if (mspScheduler != null) {
+            mspScheduler.close();
+            mspScheduler = null;
+        }
+        writeCoalescer.close();
+
+        try {
+            port.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing serial port", e);
+        }
+        usbConnection.close();
+        Log.d(TAG, "Serial port closed: " + id);
+    }
+
+    // ===== SerialReader.Listener implementation =====
+
+    @Override
+    public void onNewData(byte[] data, int length) {
+        metrics.recordRead(length);
+        if (watchingFirstResponse) {
+            scanForResponse(data, length);
+        }
+        int offset = 0;
+        MspFrameDecoder decoder = mspDecoder;
+        if (mspFramingRequested && decoder == null) {
+            decoder = createMspDecoder();
+            mspDecoder = decoder;
+        } else if (!mspFramingRequested && decoder != null) {
+            offset = decoder.feedToFrameBoundary(data, 0, length);
+            if (decoder.isIdle()) {
+                decoder = null;
+                mspDecoder = null;
+            }
+        }
+        if (decoder != null) {
+            decoder.feed(data, offset, length - offset);
+            return;
+        }
+        receiveCoalescer.append(data, offset, length - offset);
+    }
+
+    @Override
+    public void onRunError(Exception e) {
+        metrics.recordError(e.getMessage());
+        events.onConnectionError(this, e);
+    }
+
+    // ===== Private helper methods =====
+
+    private void scanForResponse(byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            int b = data[i];
+            if (responseMatch == 0) {
+                responseMatch = b == '$' ? 1 : 0;
+            } else if (responseMatch == 1) {
+                responseMatch = b == 'M' || b == 'X' ? 2 : (b == '$' ? 1 : 0);
+            } else if (b == '>' || b == '!') {
+                watchingFirstResponse = false;
+                events.onFirstResponse(this, System.nanoTime());
+                return;
+            } else {
+                responseMatch = b == '$' ? 1 : 0;
+            }
+        }
+    }
+
+    private MspFrameDecoder createMspDecoder() {
+        return new MspFrameDecoder(new MspFrameDecoder.Listener() {
+            @Override
+            public void onFrame(int version, char direction, int flags, int code, byte[] payload, int length,
+                                int checksum, int computedChecksum) {
+                // Raw bytes received before this frame must reach JS first
+                receiveCoalescer.flush(ReceiveCoalescer.FlushReason.IMMEDIATE);
+
+                JSObject frame = new JSObject();
+                frame.put("connectionId", id);
+                frame.put("version", version);
+                frame.put("direction", String.valueOf(direction));
+                frame.put("flags", flags);
+                frame.put("code", code);
+                frame.put("payload", frameEncoder.encode(payload, 0, length, encoding));
+                frame.put("encoding", encoding);
+                frame.put("checksum", checksum);
+                frame.put("computedChecksum", computedChecksum);
+                emit("mspFrame", frame);
+
+                // Every frame reaches JS, where MSP.read also answers its own requests for the code,
+                // as MSP._transmit shares a reply. Emitted first, so MSPHelper has processed it by
+                // the time the batch it completes resolves.
+                MspRequestScheduler scheduler = mspScheduler;
+                if (scheduler != null && checksum == computedChecksum && direction != '<') {
+                    scheduler.onResponse(code, direction, payload, length);
+                }
+            }
+
+            @Override
+            public void onPassthrough(byte[] data, int length) {
+                receiveCoalescer.append(data, 0, length);
+            }
+        });
+    }
+
+    private void transmitFrame(byte[] frame) throws IOException {
+        boolean queued;
+        try {
+            queued = writeCoalescer.enqueue(new byte[][] {frame}, (bytesWritten, error) -> {
+                // A lost request surfaces as a scheduler timeout
+                if (error != null) {
+                    Log.e(TAG, "Error writing MSP request", error);
+                    metrics.recordError(error.getMessage());
+                }
+            }, WRITE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing MSP request");
+        }
+        if (!queued) {
+            throw new IOException("Write queue is full");
+        }
+    }
+
+    private void emitReceivedData(byte[] data, int length, ReceiveCoalescer.FlushReason reason) {
+        JSObject eventData = new JSObject();
+        eventData.put("connectionId", id);
+        eventData.put("data", receiveEncoder.encode(data, 0, length, encoding));
+        eventData.put("encoding", encoding);
+        emit("dataReceived", eventData);
+    }
+
+    private void emit(String eventName, JSObject data) {
+        long start = System.nanoTime();
+        events.emit(eventName, data);
+        metrics.recordEmit(System.nanoTime() - start);
+    }
+
+    private void writeToPort(byte[] data, int length) throws IOException {
+        long start = System.nanoTime();
+        port.write(data, length, WRITE_WAIT_MILLIS);
+        metrics.recordTransfer(length, System.nanoTime() - start);
+    }
+}
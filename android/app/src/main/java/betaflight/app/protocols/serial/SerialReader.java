@@ -0,0 +1,81 @@
+package betaflight.app.protocols.serial;
+
+import android.util.Log;
+
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+
+import java.io.IOException;
+
+import betaflight.app.protocols.BufferPool;
+
+/**
+ * Read loop for an open serial port.
+ *
+ * Replaces usb-serial's SerialInputOutputManager, which copies every USB
+ * packet into a new byte[] before handing it on. Here a single pooled buffer
+ * is read into for the lifetime of the loop and passed to the listener with
+ * its length, so steady streaming allocates nothing per packet.
+ */
+class SerialReader implements Runnable {
+    private static final String TAG = "BetaflightSerial";
+
+    interface Listener {
+        /**
+         * New bytes from the port. The array is reused after the call returns.
+         */
+        void onNewData(byte[] data, int length);
+
+        void onRunError(Exception e);
+    }
+
+    private final UsbSerialPort port;
+    private final BufferPool pool;
+    private final Listener listener;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    SerialReader(UsbSerialPort port, BufferPool pool, Listener listener) {
+        this.port = port;
+        this.pool = pool;
+        this.listener = listener;
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "SerialReader");
+        thread.start();
+    }
+
+    /**
+     * Stop reading. A read blocked in the driver returns once the port is closed.
+     */
+    void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        byte[] buffer = pool.acquire();
+        try {
+            while (running) {
+                // Timeout 0 uses the driver's asynchronous UsbRequest path and blocks until data arrives
+                int length = port.read(buffer, 0);
+                if (length > 0 && running) {
+                    listener.onNewData(buffer, length);
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                running = false;
+                listener.onRunError(e);
+            } else {
+                Log.d(TAG, "Serial reader stopped");
+            }
+        } catch (Exception e) {
+            running = false;
+            listener.onRunError(e);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+}
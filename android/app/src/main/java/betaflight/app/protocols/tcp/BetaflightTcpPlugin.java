@@ -1,25 +1,50 @@
 package betaflight.app.protocols.tcp;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Base64;
 import android.util.Log;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
-import java.io.ByteArrayOutputStream;
+
+import betaflight.app.protocols.PayloadEncoder;
+import betaflight.app.protocols.StatsReporter;
+import betaflight.app.protocols.TransportMetrics;
+
+import org.json.JSONException;
+
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Capacitor plugin that provides raw TCP socket functionality with thread safety,
- * robust resource management, and comprehensive error handling.
+ * Capacitor plugin that provides raw TCP socket functionality.
+ *
+ * Connect, send, receive and disconnect all run on one NIO event loop thread
+ * (see TcpEventLoop/TcpConnection), so no thread is created per call and sends
+ * reach the socket in the order they were made.
+ *
+ * The outbound queue is bounded (maxQueuedBytes on connect). A send or
+ * sendBatch that does not fit is rejected with ERROR_QUEUE_FULL and a
+ * "writeBackpressure" event with active: true; a second one with active: false
+ * follows once the queue has drained to half.
+ *
+ * With autoReconnect on, a lost link does not end the session: the plugin
+ * reconnects with jittered exponential backoff (see ReconnectPolicy), emitting
+ * "reconnecting" before each attempt and "reconnected" once through. Frames
+ * not yet written when the link dropped, and sends made meanwhile, go out on
+ * the new connection in order. Only when the policy gives up does JS see
+ * "reconnectFailed" and the usual "dataReceivedError".
+ *
+ * Link liveness comes from a LinkMonitor per connection (heartbeat option on
+ * connect, or setHeartbeat()): a "linkState" event reports when replies stop
+ * for timeoutMs and when they resume, together with an MSP RTT estimate. With
+ * closeOnTimeout the stale connection is failed, which hands it to
+ * autoReconnect if that is on.
  */
 @CapacitorPlugin(name = "BetaflightTcp")
 public class BetaflightTcpPlugin extends Plugin {
@@ -33,34 +58,78 @@ public class BetaflightTcpPlugin extends Plugin {
     private static final String ERROR_DATA_REQUIRED = "Data is required";
     private static final String ERROR_CONNECTION_LOST = "Connection lost";
     private static final String ERROR_CONNECTION_CLOSED = "Connection closed by peer";
+    private static final String ERROR_FRAMES_REQUIRED = "frames is required";
+    private static final String ERROR_QUEUE_FULL = "Write queue is full";
 
     // Connection settings
     private static final int DEFAULT_TIMEOUT_MS = 30_000;
     private static final int MIN_PORT = 1;
     private static final int MAX_PORT = 65535;
+    private static final int DEFAULT_MAX_QUEUED_BYTES = 64 * 1024;
+    private static final int MIN_MAX_QUEUED_BYTES = 1024;
+
+    private static final String COMPLETION_BATCH = "batch";
+    private static final String COMPLETION_FRAME = "frame";
+    private static final String RECONNECT_HISTOGRAM = "reconnectTime";
 
     private enum ConnectionState {
         DISCONNECTED,
         CONNECTING,
         CONNECTED,
+        RECONNECTING,
         DISCONNECTING,
         ERROR
     }
 
-    // Thread-safe state and locks
+    /**
+     * What a reconnect needs to open the same link again; kept from connect() until disconnect().
+     */
+    private static final class Session {
+        final String host;
+        final int port;
+        final TcpSocketOptions socketOptions;
+        final int maxQueuedBytes;
+        // null unless autoReconnect was requested
+        final ReconnectPolicy reconnectPolicy;
+        // Replaced by setHeartbeat()
+        volatile LinkMonitor.Settings heartbeat;
+        // Only touched on the event loop thread
+        int attempts = 0;
+        long downSinceNanos = 0;
+        volatile long reconnects = 0;
+
+        Session(String host, int port, TcpSocketOptions socketOptions, int maxQueuedBytes,
+                ReconnectPolicy reconnectPolicy, LinkMonitor.Settings heartbeat) {
+            this.host = host;
+            this.port = port;
+            this.socketOptions = socketOptions;
+            this.maxQueuedBytes = maxQueuedBytes;
+            this.reconnectPolicy = reconnectPolicy;
+            this.heartbeat = heartbeat;
+        }
+    }
+
     private final AtomicReference<ConnectionState> state = new AtomicReference<>(ConnectionState.DISCONNECTED);
-    private final ReentrantLock socketLock = new ReentrantLock();
-    private final ReentrantLock writerLock = new ReentrantLock();
 
-    private Socket socket;
-    private InputStream input;
-    private OutputStream output;
-    private Thread readerThread;
-    private volatile boolean readerRunning = false;
+    // Created on the first connect and kept until the plugin is destroyed
+    private TcpEventLoop eventLoop;
+    private volatile TcpConnection connection;
+    private volatile Session session;
+    // Watches the connection that is currently up; null while connecting
+    private volatile LinkMonitor monitor;
+    private PluginCall connectCall;
+    // Only used on the event loop thread
+    private final PayloadEncoder receiveEncoder = new PayloadEncoder(TcpConnection.READ_BUFFER_BYTES);
+
+    // Sends queued on the connection and not yet written, i.e. the write queue depth
+    private final AtomicInteger pendingSends = new AtomicInteger();
+    // Counters for the current connection; replaced on each connect
+    private volatile TransportMetrics metrics = createMetrics();
+    private final StatsReporter statsReporter = new StatsReporter(new Handler(Looper.getMainLooper()), this::emitStats);
+    private volatile boolean benchmarkRunning = false;
 
     @PluginMethod
     public void connect(final PluginCall call) {
-        call.setKeepAlive(true);
         final String ip = call.getString("ip");
 
         Integer portObj = call.getInt("port");
@@ -68,45 +137,45 @@ public class BetaflightTcpPlugin extends Plugin {
 
         if (ip == null || ip.isEmpty()) {
             call.reject(ERROR_IP_REQUIRED);
-            call.setKeepAlive(false);
+            return;
+        }
+        if (port < MIN_PORT || port > MAX_PORT) {
+            call.reject(ERROR_INVALID_PORT);
             return;
         }
 
         if (!compareAndSetState(ConnectionState.DISCONNECTED, ConnectionState.CONNECTING)) {
             call.reject(ERROR_ALREADY_CONNECTED);
-            call.setKeepAlive(false);
             return;
         }
 
-        new Thread(() -> {
-            socketLock.lock();
-            try {
-                socket = new Socket();
-                InetSocketAddress address = new InetSocketAddress(ip, port);
-                socket.connect(address, DEFAULT_TIMEOUT_MS);
-                socket.setSoTimeout(DEFAULT_TIMEOUT_MS);
-
-                input = socket.getInputStream();
-                output = socket.getOutputStream();
+        TcpEventLoop loop;
+        try {
+            loop = getEventLoop();
+        } catch (IOException e) {
+            state.set(ConnectionState.DISCONNECTED);
+            call.reject("Connection failed: " + e.getMessage());
+            Log.e(TAG, "Unable to start event loop", e);
+            return;
+        }
 
-                state.set(ConnectionState.CONNECTED);
-                JSObject result = new JSObject();
-                result.put("success", true);
-                call.resolve(result);
-                Log.d(TAG, "Connected to " + ip + (port != -1 ? (":" + port) : ""));
+        TcpSocketOptions socketOptions = TcpSocketOptions.from(call.getObject("socketOptions"));
+        int maxQueuedBytes = Math.max(MIN_MAX_QUEUED_BYTES, call.getInt("maxQueuedBytes", DEFAULT_MAX_QUEUED_BYTES));
+        boolean autoReconnect = call.getBoolean("autoReconnect", false);
+        ReconnectPolicy reconnectPolicy = autoReconnect ? ReconnectPolicy.from(call.getObject("reconnect")) : null;
+        LinkMonitor.Settings heartbeat = LinkMonitor.Settings.from(call.getObject("heartbeat"));
 
-                startReaderThread();
-            } catch (Exception e) {
-                state.set(ConnectionState.ERROR);
-                closeResourcesInternal();
-                state.set(ConnectionState.DISCONNECTED);
-                call.reject("Connection failed: " + e.getMessage());
-                Log.e(TAG, "Connection failed", e);
-            } finally {
-                socketLock.unlock();
-                call.setKeepAlive(false);
-            }
-        }).start();
+        call.setKeepAlive(true);
+        synchronized (this) {
+            connectCall = call;
+        }
+        metrics = createMetrics();
+        session = new Session(ip, port, socketOptions, maxQueuedBytes, reconnectPolicy, heartbeat);
+        TcpConnection created = new TcpConnection(loop, connectionListener, metrics, maxQueuedBytes);
+        created.setRetainUnsent(autoReconnect);
+        connection = created;
+        Log.d(TAG, "Connecting to " + ip + ":" + port);
+        created.connect(ip, port, DEFAULT_TIMEOUT_MS, socketOptions);
     }
 
     @PluginMethod
@@ -116,34 +185,123 @@ public class BetaflightTcpPlugin extends Plugin {
             call.reject(ERROR_DATA_REQUIRED);
             return;
         }
-        if (state.get() != ConnectionState.CONNECTED) {
+        TcpConnection current = connection;
+        if (!canSend() || current == null) {
             call.reject(ERROR_NOT_CONNECTED);
             return;
         }
+
+        final byte[] payload = Base64.decode(data, Base64.NO_WRAP);
+        final TransportMetrics sendMetrics = metrics;
+        final long start = System.nanoTime();
         call.setKeepAlive(true);
+        pendingSends.incrementAndGet();
+        boolean accepted = current.offer(new byte[][] {payload}, (index, error) -> {
+            pendingSends.decrementAndGet();
+            call.setKeepAlive(false);
+            if (error != null) {
+                sendMetrics.recordError("Send failed: " + error.getMessage());
+                call.reject(ERROR_CONNECTION_LOST + ": " + error.getMessage());
+                return;
+            }
+            sendMetrics.recordWrite(System.nanoTime() - start);
+            JSObject result = new JSObject();
+            result.put("success", true);
+            putQueueDepth(result, current);
+            call.resolve(result);
+        });
+        if (!accepted) {
+            pendingSends.decrementAndGet();
+            rejectQueueFull(call, current);
+            return;
+        }
+        notifySent(current, payload);
+    }
 
-        new Thread(() -> {
-            writerLock.lock();
-            try {
-                if (output == null || state.get() != ConnectionState.CONNECTED) {
-                    call.reject(ERROR_CONNECTION_LOST);
-                    return;
+    /**
+     * Queue several base64 frames with one bridge call. They are written in
+     * order, behind any earlier sends, and gathered into as few socket writes as
+     * the queue allows. With completion "batch" (the default) the call resolves
+     * once the last frame is written; with "frame" a "frameSent" event reports
+     * each frame as well. The batch is refused as a whole if it does not fit.
+     */
+    @PluginMethod
+    public void sendBatch(final PluginCall call) {
+        JSArray encodedFrames = call.getArray("frames");
+        if (encodedFrames == null || encodedFrames.length() == 0) {
+            call.reject(ERROR_FRAMES_REQUIRED);
+            return;
+        }
+        String completion = call.getString("completion", COMPLETION_BATCH);
+        if (!COMPLETION_BATCH.equals(completion) && !COMPLETION_FRAME.equals(completion)) {
+            call.reject("Invalid completion: " + completion);
+            return;
+        }
+        TcpConnection current = connection;
+        if (!canSend() || current == null) {
+            call.reject(ERROR_NOT_CONNECTED);
+            return;
+        }
+
+        final byte[][] frames = new byte[encodedFrames.length()][];
+        try {
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = Base64.decode(encodedFrames.getString(i), Base64.NO_WRAP);
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            call.reject("Invalid frame: " + e.getMessage());
+            return;
+        }
+
+        final boolean perFrame = COMPLETION_FRAME.equals(completion);
+        final String batchId = call.getString("batchId");
+        final TransportMetrics sendMetrics = metrics;
+        final long start = System.nanoTime();
+        // Only touched on the event loop thread
+        final long[] bytesSent = {0};
+        final IOException[] failure = {null};
+        call.setKeepAlive(true);
+        pendingSends.addAndGet(frames.length);
+        boolean accepted = current.offer(frames, (index, error) -> {
+            pendingSends.decrementAndGet();
+            if (error != null) {
+                failure[0] = error;
+            } else {
+                bytesSent[0] += frames[index].length;
+                if (perFrame) {
+                    JSObject sent = new JSObject();
+                    sent.put("batchId", batchId);
+                    sent.put("index", index);
+                    sent.put("bytesSent", frames[index].length);
+                    notifyListeners("frameSent", sent);
                 }
-                byte[] payload = Base64.decode(data, Base64.NO_WRAP);
-                output.write(payload);
-                output.flush();
+            }
+            if (index < frames.length - 1) {
+                return;
+            }
 
-                JSObject result = new JSObject();
-                result.put("success", true);
-                call.resolve(result);
-                Log.d(TAG, "Sent " + payload.length + " bytes");
-            } catch (Exception e) {
-                handleCommunicationError(e, "Send failed", call);
-            } finally {
-                writerLock.unlock();
-                call.setKeepAlive(false);
+            call.setKeepAlive(false);
+            if (failure[0] != null) {
+                sendMetrics.recordError("Send failed: " + failure[0].getMessage());
+                call.reject(ERROR_CONNECTION_LOST + ": " + failure[0].getMessage());
+                return;
             }
-        }).start();
+            sendMetrics.recordWrite(System.nanoTime() - start);
+            JSObject result = new JSObject();
+            result.put("success", true);
+            result.put("bytesSent", bytesSent[0]);
+            result.put("frames", frames.length);
+            putQueueDepth(result, current);
+            call.resolve(result);
+        });
+        if (!accepted) {
+            pendingSends.addAndGet(-frames.length);
+            rejectQueueFull(call, current);
+            return;
+        }
+        for (byte[] frame : frames) {
+            notifySent(current, frame);
+        }
     }
 
     @PluginMethod
@@ -167,34 +325,32 @@ public class BetaflightTcpPlugin extends Plugin {
             call.reject("Invalid state for disconnect: " + current);
             return;
         }
-        call.setKeepAlive(true);
 
-        new Thread(() -> {
-            socketLock.lock();
-            try {
-                closeResourcesInternal();
-                state.set(ConnectionState.DISCONNECTED);
-                JSObject result = new JSObject();
-                result.put("success", true);
-                call.resolve(result);
-                Log.d(TAG, "Disconnected successfully");
-            } catch (Exception e) {
-                state.set(ConnectionState.ERROR);
-                // Ensure cleanup completes even on error
-                try {
-                    closeResourcesInternal();
-                } catch (Exception ce) {
-                    Log.e(TAG, "Cleanup error during disconnect", ce);
-                }
-                call.reject("Disconnect failed: " + e.getMessage());
-                Log.e(TAG, "Disconnect failed", e);
-                // Reset to a clean disconnected state after handling error
-                state.set(ConnectionState.DISCONNECTED);
-            } finally {
-                socketLock.unlock();
-                call.setKeepAlive(false);
+        TcpConnection closing = connection;
+        if (closing == null) {
+            state.set(ConnectionState.DISCONNECTED);
+            JSObject result = new JSObject();
+            result.put("success", true);
+            call.resolve(result);
+            return;
+        }
+
+        call.setKeepAlive(true);
+        stopMonitor();
+        closing.close(() -> {
+            if (connection == closing) {
+                connection = null;
             }
-        }).start();
+            session = null;
+            // A connect still in progress ends here too
+            rejectConnect("Connection failed: disconnected");
+            state.set(ConnectionState.DISCONNECTED);
+            JSObject result = new JSObject();
+            result.put("success", true);
+            call.resolve(result);
+            call.setKeepAlive(false);
+            Log.d(TAG, "Disconnected successfully");
+        });
     }
 
     @PluginMethod
@@ -205,55 +361,363 @@ public class BetaflightTcpPlugin extends Plugin {
         call.resolve(result);
     }
 
+    /**
+     * Report throughput, latency histograms, errors and queue depth for the
+     * current connection. Pass reset: true to start a new measurement window afterwards.
+     */
+    @PluginMethod
+    public void getStats(final PluginCall call) {
+        TransportMetrics current = metrics;
+        JSObject stats = createStats(current);
+        if (call.getBoolean("reset", false)) {
+            current.reset();
+        }
+        call.resolve(stats);
+    }
+
+    /**
+     * Emit a "stats" event each intervalMs while connected; 0 turns it off.
+     */
+    @PluginMethod
+    public void setStatsInterval(final PluginCall call) {
+        int intervalMs = call.getInt("intervalMs", 0);
+        JSObject result = new JSObject();
+        result.put("intervalMs", statsReporter.setInterval(intervalMs));
+        call.resolve(result);
+    }
+
+    /**
+     * Change the heartbeat settings (mode "off", "passive" or "msp", intervalMs,
+     * timeoutMs, closeOnTimeout) of the current session, including later reconnects.
+     */
+    @PluginMethod
+    public void setHeartbeat(final PluginCall call) {
+        Session current = session;
+        if (current == null) {
+            call.reject(ERROR_NOT_CONNECTED);
+            return;
+        }
+        LinkMonitor.Settings heartbeat = LinkMonitor.Settings.from(call.getData());
+        current.heartbeat = heartbeat;
+        LinkMonitor currentMonitor = monitor;
+        if (currentMonitor != null) {
+            currentMonitor.configure(heartbeat);
+        }
+        call.resolve(heartbeat.toJSObject());
+    }
+
+    /**
+     * Compare the previous thread-per-send blocking socket with the event loop
+     * against an in-process loopback echo server: request/response latency
+     * percentiles, sends per second for a burst, and the threads each one needed.
+     */
+    @PluginMethod
+    public void benchmark(final PluginCall call) {
+        if (benchmarkRunning) {
+            call.reject("A benchmark is already running");
+            return;
+        }
+        int messages = Math.max(1, Math.min(100_000, call.getInt("messages", 2000)));
+        int payloadSize = Math.max(1, Math.min(TcpConnection.WRITE_BUFFER_BYTES, call.getInt("payloadSize", 16)));
+        benchmarkRunning = true;
+
+        new Thread(() -> {
+            try {
+                call.resolve(new TcpBenchmark(messages, payloadSize).run());
+            } catch (Exception e) {
+                Log.e(TAG, "TCP benchmark failed", e);
+                call.reject("Benchmark failed: " + e.getMessage());
+            } finally {
+                benchmarkRunning = false;
+            }
+        }, "TcpBenchmark").start();
+    }
+
+    /**
+     * Request/response round trip for small requests written as several frames,
+     * for each combination of TCP_NODELAY and gatherWrites, against a loopback server.
+     */
+    @PluginMethod
+    public void benchmarkRoundTrip(final PluginCall call) {
+        if (benchmarkRunning) {
+            call.reject("A benchmark is already running");
+            return;
+        }
+        int messages = Math.max(1, Math.min(10_000, call.getInt("messages", 200)));
+        int frameSize = Math.max(1, Math.min(TcpConnection.WRITE_BUFFER_BYTES, call.getInt("frameSize", 8)));
+        int framesPerRequest = Math.max(1, Math.min(16, call.getInt("framesPerRequest", 2)));
+        benchmarkRunning = true;
+
+        new Thread(() -> {
+            try {
+                call.resolve(new TcpBenchmark(messages, frameSize).runRoundTrip(framesPerRequest));
+            } catch (Exception e) {
+                Log.e(TAG, "TCP round trip benchmark failed", e);
+                call.reject("Benchmark failed: " + e.getMessage());
+            } finally {
+                benchmarkRunning = false;
+            }
+        }, "TcpBenchmark").start();
+    }
+
     @Override
     protected void handleOnDestroy() {
-        socketLock.lock();
-        try {
-            state.set(ConnectionState.DISCONNECTING);
-            closeResourcesInternal();
-            state.set(ConnectionState.DISCONNECTED);
-        } catch (Exception e) {
-            Log.e(TAG, "Error cleaning up resources on destroy", e);
-        } finally {
-            socketLock.unlock();
+        statsReporter.stop();
+        state.set(ConnectionState.DISCONNECTING);
+        stopMonitor();
+        TcpConnection closing = connection;
+        connection = null;
+        session = null;
+        synchronized (this) {
+            if (closing != null) {
+                closing.close(null);
+            }
+            if (eventLoop != null) {
+                // Runs after the close task queued above
+                TcpEventLoop loop = eventLoop;
+                loop.execute(loop::close);
+                eventLoop = null;
+            }
         }
+        state.set(ConnectionState.DISCONNECTED);
         super.handleOnDestroy();
     }
 
-    private void startReaderThread() {
-        if (readerThread != null && readerThread.isAlive()) return;
-        readerRunning = true;
-        readerThread = new Thread(() -> {
-            Log.d(TAG, "Reader thread started");
-            try {
-                byte[] buf = new byte[4096];
-                while (readerRunning && state.get() == ConnectionState.CONNECTED && input != null) {
-                    int read = input.read(buf);
-                    if (read == -1) {
-                        notifyDisconnectFromPeer();
-                        break;
-                    }
-                    if (read > 0) {
-                        byte[] chunk = Arrays.copyOf(buf, read);
-                        String b64 = Base64.encodeToString(chunk, Base64.NO_WRAP);
-                        JSObject payload = new JSObject();
-                        payload.put("data", b64);
-                        notifyListeners("dataReceived", payload);
-                    }
-                }
-            } catch (Exception e) {
-                if (readerRunning) {
-                    Log.e(TAG, "Reader thread error", e);
-                    JSObject err = new JSObject();
-                    err.put("error", e.getMessage());
-                    notifyListeners("dataReceivedError", err);
-                    handleCommunicationError(e, "Receive failed", null);
+    // ===== TcpConnection.Listener implementation =====
+
+    private final TcpConnection.Listener connectionListener = new TcpConnection.Listener() {
+        @Override
+        public void onConnected(TcpConnection connected) {
+            if (connected != connection) {
+                return;
+            }
+            if (compareAndSetState(ConnectionState.RECONNECTING, ConnectionState.CONNECTED)) {
+                startMonitor(connected);
+                notifyReconnected(connected);
+                return;
+            }
+            if (!compareAndSetState(ConnectionState.CONNECTING, ConnectionState.CONNECTED)) {
+                return;
+            }
+            startMonitor(connected);
+            PluginCall call = takeConnectCall();
+            if (call != null) {
+                Session current = session;
+                JSObject result = new JSObject();
+                result.put("success", true);
+                result.put("socketOptions", connected.describeOptions());
+                result.put("autoReconnect", current != null && current.reconnectPolicy != null);
+                if (current != null && current.reconnectPolicy != null) {
+                    result.put("reconnect", current.reconnectPolicy.toJSObject());
                 }
-            } finally {
-                Log.d(TAG, "Reader thread stopped");
+                call.resolve(result);
+                call.setKeepAlive(false);
+            }
+            Log.d(TAG, "Connected");
+        }
+
+        @Override
+        public void onData(TcpConnection source, byte[] data, int length) {
+            LinkMonitor currentMonitor = monitor;
+            if (currentMonitor != null && currentMonitor.connection == source) {
+                currentMonitor.onReceive(data, length);
+            }
+            JSObject payload = new JSObject();
+            payload.put("data", receiveEncoder.base64(data, 0, length));
+            long emitStart = System.nanoTime();
+            notifyListeners("dataReceived", payload);
+            metrics.recordEmit(System.nanoTime() - emitStart);
+        }
+
+        @Override
+        public void onClosed(TcpConnection closed, IOException error) {
+            if (closed != connection) {
+                return;
+            }
+            stopMonitor();
+            ConnectionState previous = state.get();
+            if ((previous == ConnectionState.CONNECTED || previous == ConnectionState.RECONNECTING)
+                    && scheduleReconnect(closed, error)) {
+                return;
+            }
+            connection = null;
+            previous = state.getAndSet(ConnectionState.ERROR);
+            closed.discardUnsent(error != null ? error : new IOException(ERROR_CONNECTION_CLOSED));
+            if (previous == ConnectionState.RECONNECTING) {
+                notifyReconnectFailed(error);
+            } else if (previous == ConnectionState.CONNECTING) {
+                metrics.recordError("Connection failed: " + (error != null ? error.getMessage() : "closed"));
+                rejectConnect("Connection failed: " + (error != null ? error.getMessage() : ERROR_CONNECTION_CLOSED));
+            } else if (error == null) {
+                notifyDisconnectFromPeer();
+            } else {
+                handleCommunicationError(error, "Receive failed");
             }
-        }, "SocketReaderThread");
-        readerThread.start();
+            state.set(ConnectionState.DISCONNECTED);
+        }
+
+        @Override
+        public void onWritable(TcpConnection writable) {
+            if (writable == connection) {
+                notifyBackpressure(writable, false);
+            }
+        }
+    };
+
+    private final LinkMonitor.Listener monitorListener = (source, linkState) -> {
+        if (source == monitor) {
+            notifyListeners("linkState", linkState);
+        }
+    };
+
+    // ===== Private helper methods =====
+
+    private boolean canSend() {
+        ConnectionState current = state.get();
+        // Sends made while reconnecting wait on the next connection
+        return current == ConnectionState.CONNECTED || current == ConnectionState.RECONNECTING;
+    }
+
+    /**
+     * Called on the event loop thread when an autoReconnect link drops or a
+     * reconnect attempt fails. Hands the unsent frames to a new connection and
+     * schedules its connect after the backoff delay. Returns false once the
+     * policy gives up, or if the session was never set to reconnect.
+     */
+    private boolean scheduleReconnect(TcpConnection failed, IOException error) {
+        Session current = session;
+        TcpEventLoop loop;
+        synchronized (this) {
+            loop = eventLoop;
+        }
+        if (current == null || current.reconnectPolicy == null || loop == null) {
+            return false;
+        }
+        ReconnectPolicy policy = current.reconnectPolicy;
+        long now = System.nanoTime();
+        boolean firstAttempt = state.get() == ConnectionState.CONNECTED;
+        int attempt = firstAttempt ? 1 : current.attempts + 1;
+        long downSinceNanos = firstAttempt ? now : current.downSinceNanos;
+        if (!policy.allowsAttempt(attempt, (now - downSinceNanos) / 1_000_000L)) {
+            return false;
+        }
+        if (firstAttempt ? !compareAndSetState(ConnectionState.CONNECTED, ConnectionState.RECONNECTING)
+                : state.get() != ConnectionState.RECONNECTING) {
+            // disconnect() got there first
+            return false;
+        }
+        current.attempts = attempt;
+        current.downSinceNanos = downSinceNanos;
+
+        String reason = error != null ? error.getMessage() : ERROR_CONNECTION_CLOSED;
+        if (firstAttempt) {
+            metrics.recordError(ERROR_CONNECTION_LOST + ": " + reason);
+        }
+        TcpConnection next = new TcpConnection(loop, connectionListener, metrics, current.maxQueuedBytes);
+        next.setRetainUnsent(true);
+        long pendingBytes = next.adoptUnsent(failed);
+        connection = next;
+
+        long delayMs = policy.delayMs(attempt);
+        Log.w(TAG, "Link down (" + reason + "); reconnect attempt " + attempt + " in " + delayMs + " ms");
+        JSObject evt = new JSObject();
+        evt.put("attempt", attempt);
+        evt.put("delayMs", delayMs);
+        evt.put("error", reason);
+        evt.put("pendingBytes", pendingBytes);
+        notifyListeners("reconnecting", evt);
+
+        loop.schedule(() -> {
+            if (connection == next && state.get() == ConnectionState.RECONNECTING) {
+                next.connect(current.host, current.port, policy.connectTimeoutMs, current.socketOptions);
+            }
+        }, delayMs);
+        return true;
+    }
+
+    /**
+     * Called on the event loop thread once a connection is up.
+     */
+    private void startMonitor(TcpConnection connected) {
+        Session current = session;
+        TcpEventLoop loop;
+        synchronized (this) {
+            loop = eventLoop;
+        }
+        if (current == null || loop == null) {
+            return;
+        }
+        LinkMonitor created = new LinkMonitor(loop, connected, current.heartbeat, monitorListener);
+        LinkMonitor previous = monitor;
+        monitor = created;
+        if (previous != null) {
+            previous.stop();
+        }
+        created.start();
+    }
+
+    private void stopMonitor() {
+        LinkMonitor stopping = monitor;
+        monitor = null;
+        if (stopping != null) {
+            stopping.stop();
+        }
+    }
+
+    private void notifySent(TcpConnection current, byte[] frame) {
+        LinkMonitor currentMonitor = monitor;
+        if (currentMonitor != null && currentMonitor.connection == current) {
+            currentMonitor.onSent(frame);
+        }
+    }
+
+    private void notifyReconnected(TcpConnection connected) {
+        Session current = session;
+        long downtimeNanos = current != null ? System.nanoTime() - current.downSinceNanos : 0;
+        metrics.histogram(RECONNECT_HISTOGRAM).recordNanos(downtimeNanos);
+        JSObject evt = new JSObject();
+        if (current != null) {
+            current.reconnects++;
+            evt.put("attempts", current.attempts);
+        }
+        evt.put("downtimeMs", downtimeNanos / 1_000_000.0);
+        evt.put("pendingBytes", connected.getQueuedBytes());
+        evt.put("socketOptions", connected.describeOptions());
+        Log.d(TAG, "Reconnected after " + downtimeNanos / 1_000_000L + " ms");
+        notifyListeners("reconnected", evt);
+    }
+
+    private void notifyReconnectFailed(IOException error) {
+        Session current = session;
+        String reason = error != null ? error.getMessage() : ERROR_CONNECTION_CLOSED;
+        Log.e(TAG, "Giving up reconnecting: " + reason);
+        JSObject evt = new JSObject();
+        evt.put("attempts", current != null ? current.attempts : 0);
+        evt.put("error", reason);
+        notifyListeners("reconnectFailed", evt);
+        handleCommunicationError(error != null ? error : new IOException(ERROR_CONNECTION_CLOSED), "Reconnect failed");
+    }
+
+    private synchronized TcpEventLoop getEventLoop() throws IOException {
+        if (eventLoop == null) {
+            eventLoop = new TcpEventLoop("TcpEventLoop");
+        }
+        return eventLoop;
+    }
+
+    private synchronized PluginCall takeConnectCall() {
+        PluginCall call = connectCall;
+        connectCall = null;
+        return call;
+    }
+
+    private void rejectConnect(String message) {
+        PluginCall call = takeConnectCall();
+        if (call != null) {
+            call.reject(message);
+            call.setKeepAlive(false);
+            Log.e(TAG, message);
+        }
     }
 
     private void notifyDisconnectFromPeer() {
@@ -261,66 +725,66 @@ public class BetaflightTcpPlugin extends Plugin {
         JSObject evt = new JSObject();
         evt.put("reason", "peer_closed");
         notifyListeners("connectionClosed", evt);
-        socketLock.lock();
-        try {
-            state.set(ConnectionState.ERROR);
-            closeResourcesInternal();
-            state.set(ConnectionState.DISCONNECTED);
-        } finally {
-            socketLock.unlock();
-        }
     }
 
-    private void stopReaderThread() {
-        readerRunning = false;
-        if (readerThread != null) {
-            try {
-                readerThread.interrupt();
-                readerThread.join(500);
-            } catch (InterruptedException ignored) {}
-            readerThread = null;
-        }
+    private void handleCommunicationError(Exception error, String message) {
+        String fullMsg = message + ": " + (error != null ? error.getMessage() : "unknown error");
+        metrics.recordError(fullMsg);
+        Log.e(TAG, fullMsg, error);
+        JSObject err = new JSObject();
+        err.put("error", error != null ? error.getMessage() : "unknown error");
+        notifyListeners("dataReceivedError", err);
     }
 
-    private void closeResourcesInternal() {
-        stopReaderThread();
-        if (input != null) { try { input.close(); } catch (IOException e) { Log.e(TAG, "Error closing input stream", e); } finally { input = null; } }
-        if (output != null) { try { output.close(); } catch (IOException e) { Log.e(TAG, "Error closing output stream", e); } finally { output = null; } }
-        if (socket != null) { try { socket.close(); } catch (IOException e) { Log.e(TAG, "Error closing socket", e); } finally { socket = null; } }
+    private void rejectQueueFull(PluginCall call, TcpConnection current) {
+        call.setKeepAlive(false);
+        call.reject(ERROR_QUEUE_FULL);
+        notifyBackpressure(current, true);
     }
 
-    private void handleCommunicationError(Exception error, String message, PluginCall call) {
-        socketLock.lock();
-        try {
-            state.set(ConnectionState.ERROR);
-            closeResourcesInternal();
-            state.set(ConnectionState.DISCONNECTED);
+    private void notifyBackpressure(TcpConnection current, boolean active) {
+        JSObject evt = new JSObject();
+        evt.put("active", active);
+        putQueueDepth(evt, current);
+        notifyListeners("writeBackpressure", evt);
+    }
 
-            String fullMsg = message + ": " + (error != null ? error.getMessage() : "unknown error");
-            if (call != null) {
-                call.reject(fullMsg);
-            } else {
-                // No PluginCall available (e.g., background reader thread). Log the error.
-                Log.e(TAG, fullMsg, error);
-                // Optionally notify listeners (commented to avoid duplicate notifications):
-                // JSObject err = new JSObject();
-                // err.put("error", fullMsg);
-                // notifyListeners("socketError", err);
-            }
-            Log.e(TAG, message, error);
-        } finally {
-            socketLock.unlock();
+    private static void putQueueDepth(JSObject target, TcpConnection current) {
+        target.put("queuedBytes", current.getQueuedBytes());
+        target.put("maxQueuedBytes", current.getMaxQueuedBytes());
+    }
+
+    private TransportMetrics createMetrics() {
+        TransportMetrics created = new TransportMetrics();
+        created.addGauge("pendingSends", pendingSends::get);
+        created.histogram(RECONNECT_HISTOGRAM);
+        created.addGauge("writeQueueBytes", () -> {
+            TcpConnection current = connection;
+            return current != null ? current.getQueuedBytes() : 0;
+        });
+        return created;
+    }
+
+    private JSObject createStats(TransportMetrics current) {
+        JSObject stats = current.toJSObject();
+        stats.put("connected", state.get() == ConnectionState.CONNECTED);
+        Session currentSession = session;
+        stats.put("reconnecting", state.get() == ConnectionState.RECONNECTING);
+        stats.put("reconnects", currentSession != null ? currentSession.reconnects : 0);
+        LinkMonitor currentMonitor = monitor;
+        if (currentMonitor != null) {
+            stats.put("link", currentMonitor.toJSObject());
         }
+        return stats;
     }
 
-    private boolean compareAndSetState(ConnectionState expected, ConnectionState newState) {
-        return state.compareAndSet(expected, newState);
+    private void emitStats() {
+        if (canSend()) {
+            notifyListeners("stats", createStats(metrics));
+        }
     }
 
-    private String truncateForLog(String data) {
-        if (data == null) return "null";
-        final int maxLen = 100;
-        if (data.length() <= maxLen) return data;
-        return data.substring(0, maxLen) + "... (" + data.length() + " chars)";
+    private boolean compareAndSetState(ConnectionState expected, ConnectionState newState) {
+        return state.compareAndSet(expected, newState);
     }
 }
@@ -0,0 +1,237 @@
+package betaflight.app.protocols.tcp;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import betaflight.app.protocols.MspExchangeTracker;
+
+/**
+ * Idle detection and RTT estimation for one TcpConnection.
+ *
+ * A single timer on the event loop ticks every intervalMs; nothing polls the
+ * socket. The link counts as stale once something has been sent and nothing
+ * at all has come back for timeoutMs, so a quiet link with nothing
+ * outstanding is not reported. In "msp" mode a link that has been silent for
+ * intervalMs also gets an MSP_API_VERSION request, at most one per interval,
+ * so a dead bridge is noticed even while JS sends nothing; that mode is off
+ * by default because the CLI shares the link and would see the replies.
+ * Either way a dead link is reported within timeoutMs + intervalMs.
+ *
+ * MSP requests and responses passing through feed an MspExchangeTracker,
+ * whose RTO (RFC 6298) is reported with every "linkState" so JS can size its
+ * own request timeout. A state is reported on every alive/stale transition
+ * and when the RTO moves by more than a quarter, at most once per tick.
+ */
+final class LinkMonitor {
+    private static final String TAG = "BetaflightTcp";
+    static final String MODE_OFF = "off";
+    static final String MODE_PASSIVE = "passive";
+    static final String MODE_MSP = "msp";
+
+    private static final byte[] MSP_API_VERSION_REQUEST = {'$', 'M', '<', 0, 1, 1};
+    private static final double RTO_REPORT_CHANGE = 0.25;
+
+    interface Listener {
+        /**
+         * Called on the loop thread.
+         */
+        void onLinkState(LinkMonitor monitor, JSObject state);
+    }
+
+    static final class Settings {
+        String mode = MODE_PASSIVE;
+        int intervalMs = 1000;
+        int timeoutMs = 3000;
+        // Fail the connection on timeout, which starts a reconnect when autoReconnect is on
+        boolean closeOnTimeout = false;
+
+        static Settings from(JSObject object) {
+            Settings settings = new Settings();
+            if (object == null) {
+                return settings;
+            }
+            String mode = object.optString("mode", settings.mode);
+            if (MODE_OFF.equals(mode) || MODE_PASSIVE.equals(mode) || MODE_MSP.equals(mode)) {
+                settings.mode = mode;
+            }
+            settings.intervalMs = Math.max(100, object.optInt("intervalMs", settings.intervalMs));
+            settings.timeoutMs = Math.max(settings.intervalMs, object.optInt("timeoutMs", settings.timeoutMs));
+            settings.closeOnTimeout = object.optBoolean("closeOnTimeout", settings.closeOnTimeout);
+            return settings;
+        }
+
+        JSObject toJSObject() {
+            JSObject result = new JSObject();
+            result.put("mode", mode);
+            result.put("intervalMs", intervalMs);
+            result.put("timeoutMs", timeoutMs);
+            result.put("closeOnTimeout", closeOnTimeout);
+            return result;
+        }
+    }
+
+    final TcpConnection connection;
+    private final TcpEventLoop loop;
+    private final Listener listener;
+    private final MspExchangeTracker tracker;
+    private volatile Settings settings;
+    private volatile boolean stopped = false;
+    // When the oldest send not followed by any received byte went out; 0 if none
+    private final AtomicLong awaitingSinceNanos = new AtomicLong();
+
+    // Written on the loop thread only
+    private volatile boolean alive = true;
+    private volatile long lastReceiveNanos;
+    private volatile long pings = 0;
+    private volatile long staleEvents = 0;
+    private long lastPingNanos = 0;
+    private double reportedRtoMs = -1;
+    private TcpEventLoop.Timer timer;
+
+    LinkMonitor(TcpEventLoop loop, TcpConnection connection, Settings settings, Listener listener) {
+        this.loop = loop;
+        this.connection = connection;
+        this.settings = settings;
+        this.listener = listener;
+        this.tracker = new MspExchangeTracker(settings.timeoutMs);
+        this.lastReceiveNanos = System.nanoTime();
+    }
+
+    /**
+     * Start ticking. Must be called on the loop thread.
+     */
+    void start() {
+        lastReceiveNanos = System.nanoTime();
+        reschedule();
+    }
+
+    /**
+     * Apply new settings; may be called from any thread.
+     */
+    void configure(Settings updated) {
+        loop.execute(() -> {
+            settings = updated;
+            if (!stopped) {
+                reschedule();
+            }
+        });
+    }
+
+    void stop() {
+        stopped = true;
+        loop.execute(() -> {
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+        });
+    }
+
+    /**
+     * Frames just offered to the connection; may be called from any thread.
+     */
+    void onSent(byte[] data) {
+        if (MODE_OFF.equals(settings.mode)) {
+            return;
+        }
+        awaitingSinceNanos.compareAndSet(0, System.nanoTime());
+        tracker.onSent(data, 0, data.length);
+    }
+
+    /**
+     * Bytes read from the connection. Must be called on the loop thread.
+     */
+    void onReceive(byte[] data, int length) {
+        if (MODE_OFF.equals(settings.mode)) {
+            return;
+        }
+        lastReceiveNanos = System.nanoTime();
+        awaitingSinceNanos.set(0);
+        tracker.onReceived(data, 0, length);
+        if (!alive) {
+            alive = true;
+            report();
+        }
+    }
+
+    JSObject toJSObject() {
+        Settings current = settings;
+        JSObject result = current.toJSObject();
+        result.put("alive", alive);
+        result.put("idleMs", (System.nanoTime() - lastReceiveNanos) / 1_000_000L);
+        result.put("pings", pings);
+        result.put("staleEvents", staleEvents);
+        result.put("rtoMs", tracker.getRtoMs());
+        result.put("exchanges", tracker.toJSObject(System.nanoTime()));
+        return result;
+    }
+
+    // ===== Private helper methods =====
+
+    private void reschedule() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        Settings current = settings;
+        if (!MODE_OFF.equals(current.mode)) {
+            timer = loop.schedule(this::tick, current.intervalMs);
+        }
+    }
+
+    private void tick() {
+        timer = null;
+        if (stopped) {
+            return;
+        }
+        Settings current = settings;
+        long now = System.nanoTime();
+        long intervalNanos = current.intervalMs * 1_000_000L;
+
+        if (MODE_MSP.equals(current.mode) && now - lastReceiveNanos >= intervalNanos
+                && now - lastPingNanos >= intervalNanos) {
+            ping(now);
+        }
+
+        long since = awaitingSinceNanos.get();
+        if (alive && since != 0 && now - since > current.timeoutMs * 1_000_000L) {
+            alive = false;
+            staleEvents++;
+            Log.w(TAG, "No reply for " + (now - since) / 1_000_000L + " ms; link is stale");
+            report();
+            if (current.closeOnTimeout) {
+                connection.abort(new SocketTimeoutException("No reply for " + current.timeoutMs + " ms"));
+                return;
+            }
+        } else if (rtoChanged()) {
+            report();
+        }
+        reschedule();
+    }
+
+    private void ping(long now) {
+        lastPingNanos = now;
+        pings++;
+        byte[] request = MSP_API_VERSION_REQUEST.clone();
+        if (connection.offer(new byte[][] {request}, (index, error) -> { })) {
+            onSent(request);
+        }
+    }
+
+    private boolean rtoChanged() {
+        double rtoMs = tracker.getRtoMs();
+        if (rtoMs < 0) {
+            return false;
+        }
+        return reportedRtoMs < 0 || Math.abs(rtoMs - reportedRtoMs) > reportedRtoMs * RTO_REPORT_CHANGE;
+    }
+
+    private void report() {
+        reportedRtoMs = tracker.getRtoMs();
+        listener.onLinkState(this, toJSObject());
+    }
+}
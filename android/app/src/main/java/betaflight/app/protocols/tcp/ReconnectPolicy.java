@@ -0,0 +1,61 @@
+package betaflight.app.protocols.tcp;
+
+import com.getcapacitor.JSObject;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Backoff settings for BetaflightTcpPlugin's autoReconnect mode.
+ *
+ * Attempt n waits initialDelayMs * multiplier^(n-1), capped at maxDelayMs,
+ * shortened by a random part of up to jitter (0..1) of itself, so several
+ * clients of one bridge do not retry in lockstep. Attempts stop after
+ * maxAttempts (0 for no limit) or once the link has been down for maxDownMs.
+ */
+final class ReconnectPolicy {
+    int initialDelayMs = 250;
+    int maxDelayMs = 5000;
+    double multiplier = 2.0;
+    double jitter = 0.5;
+    int maxAttempts = 0;
+    int maxDownMs = 60_000;
+    // Per attempt; a bridge that is gone should not hold an attempt for the full connect timeout
+    int connectTimeoutMs = 3000;
+
+    static ReconnectPolicy from(JSObject object) {
+        ReconnectPolicy policy = new ReconnectPolicy();
+        if (object == null) {
+            return policy;
+        }
+        policy.initialDelayMs = Math.max(0, object.optInt("initialDelayMs", policy.initialDelayMs));
+        policy.maxDelayMs = Math.max(policy.initialDelayMs, object.optInt("maxDelayMs", policy.maxDelayMs));
+        policy.multiplier = Math.max(1.0, object.optDouble("multiplier", policy.multiplier));
+        policy.jitter = Math.max(0.0, Math.min(1.0, object.optDouble("jitter", policy.jitter)));
+        policy.maxAttempts = Math.max(0, object.optInt("maxAttempts", policy.maxAttempts));
+        policy.maxDownMs = Math.max(0, object.optInt("maxDownMs", policy.maxDownMs));
+        policy.connectTimeoutMs = Math.max(100, object.optInt("connectTimeoutMs", policy.connectTimeoutMs));
+        return policy;
+    }
+
+    boolean allowsAttempt(int attempt, long downMs) {
+        return (maxAttempts == 0 || attempt <= maxAttempts) && downMs < maxDownMs;
+    }
+
+    long delayMs(int attempt) {
+        double delay = initialDelayMs * Math.pow(multiplier, Math.max(0, attempt - 1));
+        delay = Math.min(delay, maxDelayMs);
+        return Math.round(delay * (1.0 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    JSObject toJSObject() {
+        JSObject result = new JSObject();
+        result.put("initialDelayMs", initialDelayMs);
+        result.put("maxDelayMs", maxDelayMs);
+        result.put("multiplier", multiplier);
+        result.put("jitter", jitter);
+        result.put("maxAttempts", maxAttempts);
+        result.put("maxDownMs", maxDownMs);
+        result.put("connectTimeoutMs", connectTimeoutMs);
+        return result;
+    }
+}
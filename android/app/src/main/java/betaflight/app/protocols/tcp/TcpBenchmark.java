@@ -0,0 +1,374 @@
+package betaflight.app.protocols.tcp;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import betaflight.app.protocols.LatencyHistogram;
+import betaflight.app.protocols.TransportMetrics;
+
+/**
+ * Loopback benchmark for the TCP plugin's send path.
+ *
+ * Runs an echo server on 127.0.0.1 and measures two clients against it: the
+ * blocking Socket with a new thread per send that the plugin used before the
+ * event loop, and TcpConnection on a TcpEventLoop. Each gets a ping-pong pass
+ * (one message in flight, for latency percentiles) and a burst pass (all
+ * messages sent back to back, for sends per second). The peak number of live
+ * threads during each pass shows the cost of thread-per-send.
+ *
+ * runRoundTrip() measures request/response time for small requests written
+ * as several frames, against a server that answers only once the whole
+ * request has arrived, for each combination of TCP_NODELAY and gatherWrites.
+ * This is the pattern where Nagle and delayed ACK add their 40 ms.
+ */
+final class TcpBenchmark {
+    private static final long PASS_TIMEOUT_MS = 30_000;
+
+    private final int messages;
+    private final int payloadSize;
+    private final byte[] payload;
+
+    TcpBenchmark(int messages, int payloadSize) {
+        this.messages = messages;
+        this.payloadSize = payloadSize;
+        this.payload = new byte[payloadSize];
+        for (int i = 0; i < payloadSize; i++) {
+            payload[i] = (byte) ('$' + i % 64);
+        }
+    }
+
+    JSObject run() throws Exception {
+        try (EchoServer server = new EchoServer()) {
+            JSObject result = new JSObject();
+            result.put("messages", messages);
+            result.put("payloadSize", payloadSize);
+            result.put("threadPerSend", runThreadPerSend(server.getPort()));
+            result.put("eventLoop", runEventLoop(server.getPort()));
+            return result;
+        }
+    }
+
+    JSObject runRoundTrip(int framesPerRequest) throws Exception {
+        int requestBytes = payloadSize * framesPerRequest;
+        try (EchoServer server = new EchoServer(requestBytes)) {
+            JSObject result = new JSObject();
+            result.put("messages", messages);
+            result.put("frameSize", payloadSize);
+            result.put("framesPerRequest", framesPerRequest);
+            for (boolean noDelay : new boolean[] {false, true}) {
+                for (boolean gather : new boolean[] {false, true}) {
+                    TcpSocketOptions options = new TcpSocketOptions();
+                    options.tcpNoDelay = noDelay;
+                    options.gatherWrites = gather;
+                    String name = (noDelay ? "noDelay" : "nagle") + (gather ? "Gather" : "Single");
+                    result.put(name, runRoundTripPass(server.getPort(), options, framesPerRequest));
+                }
+            }
+            return result;
+        }
+    }
+
+    private JSObject runRoundTripPass(int port, TcpSocketOptions options, int framesPerRequest) throws Exception {
+        TcpEventLoop loop = new TcpEventLoop("TcpBenchmarkLoop");
+        EchoCounter echoed = new EchoCounter();
+        TcpConnection connection = connect(loop, port, options, echoed);
+        try {
+            LatencyHistogram latency = new LatencyHistogram();
+            long passStart = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                long target = echoed.get() + (long) payloadSize * framesPerRequest;
+                long start = System.nanoTime();
+                for (int frame = 0; frame < framesPerRequest; frame++) {
+                    connection.offer(new byte[][] {payload}, (index, error) -> { });
+                }
+                echoed.awaitAtLeast(target);
+                latency.recordNanos(System.nanoTime() - start);
+            }
+            long passNanos = System.nanoTime() - passStart;
+
+            JSObject pass = new JSObject();
+            pass.put("rtt", latency.toJSObject());
+            pass.put("requestsPerSecond", messages * 1e9 / passNanos);
+            return pass;
+        } finally {
+            close(loop, connection);
+        }
+    }
+
+    // ===== Thread-per-send client, as the plugin worked before the event loop =====
+
+    private JSObject runThreadPerSend(int port) throws Exception {
+        ThreadSampler threads = new ThreadSampler();
+        Thread reader;
+        JSObject pass;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            OutputStream output = socket.getOutputStream();
+            InputStream input = socket.getInputStream();
+            ReentrantLock writerLock = new ReentrantLock();
+            EchoCounter echoed = new EchoCounter();
+
+            reader = new Thread(() -> {
+                byte[] buf = new byte[4096];
+                try {
+                    int read;
+                    while ((read = input.read(buf)) != -1) {
+                        echoed.add(read);
+                    }
+                } catch (IOException ignored) {
+                    // Socket closed at the end of the passes
+                }
+            }, "TcpBenchmarkReader");
+            reader.start();
+
+            Runnable sendOne = () -> new Thread(() -> {
+                writerLock.lock();
+                try {
+                    output.write(payload);
+                    output.flush();
+                } catch (IOException ignored) {
+                    // Shows up as missing echo bytes
+                } finally {
+                    writerLock.unlock();
+                }
+            }).start();
+
+            pass = runPasses(sendOne, echoed, threads);
+        }
+        // Closing the socket ends the reader's blocking read
+        reader.join(1000);
+        return pass;
+    }
+
+    // ===== Event loop client =====
+
+    private JSObject runEventLoop(int port) throws Exception {
+        ThreadSampler threads = new ThreadSampler();
+        TcpEventLoop loop = new TcpEventLoop("TcpBenchmarkLoop");
+        EchoCounter echoed = new EchoCounter();
+        TcpConnection connection = connect(loop, port, new TcpSocketOptions(), echoed);
+        try {
+            byte[][] frames = {payload};
+            return runPasses(() -> connection.offer(frames, (index, error) -> { }), echoed, threads);
+        } finally {
+            close(loop, connection);
+        }
+    }
+
+    private static TcpConnection connect(TcpEventLoop loop, int port, TcpSocketOptions options, EchoCounter echoed)
+            throws Exception {
+        CountDownLatch connected = new CountDownLatch(1);
+        TcpConnection connection = new TcpConnection(loop, new TcpConnection.Listener() {
+            @Override
+            public void onConnected(TcpConnection connection) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onData(TcpConnection connection, byte[] data, int length) {
+                echoed.add(length);
+            }
+
+            @Override
+            public void onClosed(TcpConnection connection, IOException error) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onWritable(TcpConnection connection) {
+                // The queue is unbounded here
+            }
+        }, new TransportMetrics(), Long.MAX_VALUE);
+
+        connection.connect(InetAddress.getLoopbackAddress().getHostAddress(), port, (int) PASS_TIMEOUT_MS, options);
+        if (!connected.await(PASS_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            close(loop, connection);
+            throw new IOException("Benchmark connect timed out");
+        }
+        return connection;
+    }
+
+    private static void close(TcpEventLoop loop, TcpConnection connection) throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        connection.close(closed::countDown);
+        closed.await(1000, TimeUnit.MILLISECONDS);
+        loop.close();
+    }
+
+    // ===== Shared measurement =====
+
+    private JSObject runPasses(Runnable sendOne, EchoCounter echoed, ThreadSampler threads) throws Exception {
+        threads.start();
+        try {
+            // Ping-pong: one message in flight
+            LatencyHistogram latency = new LatencyHistogram();
+            long pingStart = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                long target = echoed.get() + payloadSize;
+                long start = System.nanoTime();
+                sendOne.run();
+                echoed.awaitAtLeast(target);
+                latency.recordNanos(System.nanoTime() - start);
+            }
+            long pingNanos = System.nanoTime() - pingStart;
+
+            // Burst: everything back to back
+            long burstTarget = echoed.get() + (long) messages * payloadSize;
+            long burstStart = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                sendOne.run();
+            }
+            echoed.awaitAtLeast(burstTarget);
+            long burstNanos = System.nanoTime() - burstStart;
+
+            JSObject pass = new JSObject();
+            pass.put("latency", latency.toJSObject());
+            pass.put("pingPongPerSecond", messages * 1e9 / pingNanos);
+            pass.put("burstSendsPerSecond", messages * 1e9 / burstNanos);
+            pass.put("burstMs", burstNanos / 1_000_000.0);
+            pass.put("peakThreads", threads.stop());
+            return pass;
+        } finally {
+            threads.stop();
+        }
+    }
+
+    private static final class EchoCounter {
+        private final AtomicLong bytes = new AtomicLong();
+        private final Semaphore signal = new Semaphore(0);
+
+        void add(int count) {
+            bytes.addAndGet(count);
+            signal.release();
+        }
+
+        long get() {
+            return bytes.get();
+        }
+
+        void awaitAtLeast(long target) throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + PASS_TIMEOUT_MS;
+            while (bytes.get() < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Echo timed out at " + bytes.get() + " of " + target + " bytes");
+                }
+                signal.tryAcquire(remaining, TimeUnit.MILLISECONDS);
+            }
+            signal.drainPermits();
+        }
+    }
+
+    /**
+     * Samples Thread.activeCount() every millisecond and keeps the peak.
+     */
+    private static final class ThreadSampler {
+        private volatile boolean running = false;
+        private volatile int peak = 0;
+        private Thread thread;
+
+        void start() {
+            running = true;
+            peak = Thread.activeCount();
+            thread = new Thread(() -> {
+                while (running) {
+                    peak = Math.max(peak, Thread.activeCount());
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "TcpBenchmarkSampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int stop() {
+            running = false;
+            return peak;
+        }
+    }
+
+    /**
+     * Echoes what it receives. With a request size, it answers only once a whole
+     * request has arrived, like an FC answering an MSP request.
+     */
+    private static final class EchoServer implements AutoCloseable {
+        private final ServerSocket server;
+        private final Thread acceptThread;
+        private final int requestBytes;
+
+        EchoServer() throws IOException {
+            this(0);
+        }
+
+        EchoServer(int requestBytes) throws IOException {
+            this.requestBytes = requestBytes;
+            server = new ServerSocket(0, 4, InetAddress.getLoopbackAddress());
+            acceptThread = new Thread(this::acceptLoop, "TcpBenchmarkEcho");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    Socket client = server.accept();
+                    client.setTcpNoDelay(true);
+                    Thread echo = new Thread(() -> echo(client, requestBytes), "TcpBenchmarkEchoClient");
+                    echo.setDaemon(true);
+                    echo.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private static void echo(Socket client, int requestBytes) {
+            byte[] buf = new byte[Math.max(4096, requestBytes)];
+            try (Socket socket = client) {
+                InputStream input = socket.getInputStream();
+                OutputStream output = socket.getOutputStream();
+                int read;
+                int buffered = 0;
+                while ((read = input.read(buf, buffered, buf.length - buffered)) != -1) {
+                    buffered += read;
+                    if (requestBytes == 0) {
+                        output.write(buf, 0, buffered);
+                        buffered = 0;
+                    } else if (buffered >= requestBytes) {
+                        // Whole requests only; a partial one waits for its remaining bytes
+                        int whole = buffered - buffered % requestBytes;
+                        output.write(buf, 0, whole);
+                        System.arraycopy(buf, whole, buf, 0, buffered - whole);
+                        buffered -= whole;
+                    }
+                }
+            } catch (IOException ignored) {
+                // Client went away
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package betaflight.app.protocols.tcp;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import betaflight.app.protocols.TransportMetrics;
+
+/**
+ * One non-blocking TCP connection driven by a TcpEventLoop.
+ *
+ * connect(), offer() and close() may be called from any thread; they are
+ * handed to the loop thread, which also delivers every Listener callback and
+ * Completion. Outgoing frames are copied in order into a reusable direct
+ * buffer and written as far as the socket accepts; the rest goes out when the
+ * selector reports OP_WRITE. With gatherWrites on, the write is deferred to
+ * the end of the current batch of loop tasks, so frames sent back to back
+ * (e.g. the pieces of one request) share one write call and leave in one
+ * segment. Reads land in a second direct buffer and are passed on as a
+ * reused byte array.
+ *
+ * The queue is bounded by maxQueuedBytes. offer() refuses a batch that does
+ * not fit (one larger than the whole queue is still taken when the queue is
+ * empty), and Listener.onWritable() reports when a refused sender may try
+ * again, once the queue has drained to half.
+ *
+ * Frames offered before the connection is established wait until it is. With
+ * retainUnsent set, frames not completely written when the connection fails
+ * or the peer closes it are kept instead of failed, for a replacement
+ * connection to take over with adoptUnsent().
+ */
+final class TcpConnection implements TcpEventLoop.Handler {
+    private static final String TAG = "BetaflightTcp";
+    static final int READ_BUFFER_BYTES = 16384;
+    static final int WRITE_BUFFER_BYTES = 16384;
+
+    interface Listener {
+        void onConnected(TcpConnection connection);
+
+        /**
+         * data is reused for the next read; copy what must be kept.
+         */
+        void onData(TcpConnection connection, byte[] data, int length);
+
+        /**
+         * The connection is gone: error is null if the peer closed it, and
+         * this is not called for close().
+         */
+        void onClosed(TcpConnection connection, IOException error);
+
+        /**
+         * The queue drained to half after offer() refused a batch.
+         */
+        void onWritable(TcpConnection connection);
+    }
+
+    interface Completion {
+        /**
+         * Called on the loop thread for each frame of a batch, in order. error is
+         * null once all of the frame's bytes were handed to the socket.
+         */
+        void onComplete(int index, IOException error);
+    }
+
+    private static final class PendingWrite {
+        final byte[] data;
+        final int index;
+        final Completion completion;
+        // Stream offset just past this frame, in bytes queued since connect
+        final long end;
+        int copied = 0;
+
+        PendingWrite(byte[] data, int index, Completion completion, long end) {
+            this.data = data;
+            this.index = index;
+            this.completion = completion;
+            this.end = end;
+        }
+    }
+
+    private final TcpEventLoop loop;
+    private final Listener listener;
+    private final TransportMetrics metrics;
+    private final long maxQueuedBytes;
+    // Bytes accepted by offer() and not yet written or failed
+    private final AtomicLong queuedBytes = new AtomicLong();
+    // Set when offer() refused a batch, until onWritable() has been reported
+    private final AtomicBoolean refused = new AtomicBoolean();
+    private volatile boolean retainUnsent = false;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+    private final byte[] readBytes = new byte[READ_BUFFER_BYTES];
+    // Always in fill mode between flushes
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+
+    // Everything below is only touched on the loop thread
+    private SocketChannel channel;
+    private SelectionKey key;
+    private TcpSocketOptions options = new TcpSocketOptions();
+    private TcpEventLoop.Timer connectTimer;
+    private boolean connected = false;
+    private boolean closed = false;
+    // Frames not yet completely copied into writeBuffer
+    private final ArrayDeque<PendingWrite> toCopy = new ArrayDeque<>();
+    // Frames copied into writeBuffer, waiting for their last byte to be written
+    private final ArrayDeque<PendingWrite> awaiting = new ArrayDeque<>();
+    private long bytesQueued = 0;
+    private long bytesWritten = 0;
+    private boolean flushScheduled = false;
+    // Frames kept by release() with retainUnsent, in send order
+    private final ArrayDeque<PendingWrite> unsent = new ArrayDeque<>();
+    private final Runnable scheduledFlush = () -> {
+        flushScheduled = false;
+        flush();
+    };
+
+    TcpConnection(TcpEventLoop loop, Listener listener, TransportMetrics metrics, long maxQueuedBytes) {
+        this.loop = loop;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.maxQueuedBytes = Math.max(1, maxQueuedBytes);
+    }
+
+    /**
+     * Keep unwritten frames on failure instead of failing them. Set before connect().
+     */
+    void setRetainUnsent(boolean retain) {
+        retainUnsent = retain;
+    }
+
+    /**
+     * Take over the frames a failed connection on the same loop kept with
+     * retainUnsent, ahead of anything offered here later. Must be called on the
+     * loop thread before anything is offered. Returns the number of bytes taken over.
+     */
+    long adoptUnsent(TcpConnection previous) {
+        long bytes = 0;
+        for (PendingWrite pending : previous.unsent) {
+            // Partly written frames go again from the start; the peer resynchronises on the frame header
+            bytesQueued += pending.data.length;
+            bytes += pending.data.length;
+            toCopy.add(new PendingWrite(pending.data, pending.index, pending.completion, bytesQueued));
+        }
+        previous.unsent.clear();
+        previous.queuedBytes.addAndGet(-bytes);
+        queuedBytes.addAndGet(bytes);
+        if (previous.refused.get()) {
+            refused.set(true);
+        }
+        return bytes;
+    }
+
+    /**
+     * Fail the frames kept with retainUnsent. Must be called on the loop thread.
+     */
+    void discardUnsent(IOException error) {
+        while (!unsent.isEmpty()) {
+            complete(unsent.poll(), error);
+        }
+    }
+
+    /**
+     * Start a non-blocking connect. Listener.onConnected() or onClosed() reports the outcome.
+     */
+    void connect(String host, int port, int timeoutMs, TcpSocketOptions socketOptions) {
+        boolean queued = loop.execute(() -> {
+            try {
+                options = socketOptions;
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                socketOptions.apply(channel);
+                if (channel.connect(new InetSocketAddress(host, port))) {
+                    key = loop.register(channel, SelectionKey.OP_READ, this);
+                    finishConnect();
+                } else {
+                    key = loop.register(channel, SelectionKey.OP_CONNECT, this);
+                    connectTimer = loop.schedule(() -> fail(new SocketTimeoutException("Connect timed out")),
+                        timeoutMs);
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e));
+            }
+        });
+        if (!queued) {
+            listener.onClosed(this, new IOException("Event loop closed"));
+        }
+    }
+
+    /**
+     * Queue a batch of frames, written in the order offer() was called.
+     *
+     * Returns false without queueing anything if the batch does not fit; the
+     * completion is not called in that case. Otherwise it is called once per frame.
+     */
+    boolean offer(byte[][] frames, Completion completion) {
+        long total = 0;
+        for (byte[] frame : frames) {
+            total += frame.length;
+        }
+        while (true) {
+            long current = queuedBytes.get();
+            if (current > 0 && current + total > maxQueuedBytes) {
+                refused.set(true);
+                return false;
+            }
+            if (queuedBytes.compareAndSet(current, current + total)) {
+                break;
+            }
+        }
+
+        boolean queued = loop.execute(() -> {
+            if (closed) {
+                IOException error = new IOException("Not connected");
+                for (int i = 0; i < frames.length; i++) {
+                    complete(frames[i].length, i, completion, error);
+                }
+                return;
+            }
+            for (int i = 0; i < frames.length; i++) {
+                bytesQueued += frames[i].length;
+                toCopy.add(new PendingWrite(frames[i], i, completion, bytesQueued));
+            }
+            if (!connected) {
+                // Written once the connection is established
+                return;
+            }
+            if (!options.gatherWrites) {
+                flush();
+            } else if (!flushScheduled) {
+                // Runs after the sends already queued behind this one
+                flushScheduled = loop.execute(scheduledFlush);
+            }
+        });
+        if (!queued) {
+            queuedBytes.addAndGet(-total);
+            IOException error = new IOException("Event loop closed");
+            for (int i = 0; i < frames.length; i++) {
+                completion.onComplete(i, error);
+            }
+        }
+        return true;
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    long getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    /**
+     * Close the connection. Queued frames fail; the listener is not called.
+     */
+    void close(Runnable onClosed) {
+        boolean queued = loop.execute(() -> {
+            release(new IOException("Connection closed"), false);
+            if (onClosed != null) {
+                onClosed.run();
+            }
+        });
+        if (!queued && onClosed != null) {
+            onClosed.run();
+        }
+    }
+
+    /**
+     * Fail the connection as if the socket had reported error; unlike close(),
+     * Listener.onClosed() follows and retainUnsent applies.
+     */
+    void abort(IOException error) {
+        loop.execute(() -> fail(error));
+    }
+
+    /**
+     * Socket options in effect. Must be called on the loop thread, e.g. from Listener.onConnected().
+     */
+    JSObject describeOptions() {
+        try {
+            return options.describe(channel);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read socket options", e);
+            return new JSObject();
+        }
+    }
+
+    // ===== TcpEventLoop.Handler implementation =====
+
+    @Override
+    public void onReady(SelectionKey readyKey) {
+        try {
+            if (readyKey.isConnectable()) {
+                channel.finishConnect();
+                readyKey.interestOps(SelectionKey.OP_READ);
+                finishConnect();
+                return;
+            }
+            if (readyKey.isWritable()) {
+                flush();
+            }
+            if (readyKey.isValid() && readyKey.isReadable()) {
+                read();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onFailed(SelectionKey readyKey, RuntimeException error) {
+        fail(new IOException("Connection handler failed: " + error, error));
+    }
+
+    // ===== Private helper methods =====
+
+    private void finishConnect() {
+        if (connectTimer != null) {
+            connectTimer.cancel();
+            connectTimer = null;
+        }
+        connected = true;
+        listener.onConnected(this);
+        if (!toCopy.isEmpty()) {
+            flush();
+        }
+    }
+
+    private void read() throws IOException {
+        while (!closed) {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read == -1) {
+                Log.d(TAG, "Peer closed connection");
+                release(null, retainUnsent);
+                listener.onClosed(this, null);
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+            metrics.recordRead(read);
+            readBuffer.flip();
+            readBuffer.get(readBytes, 0, read);
+            listener.onData(this, readBytes, read);
+            if (read < READ_BUFFER_BYTES) {
+                // Socket drained; no need for another read() call that returns 0
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copy queued frames into the write buffer and write until the socket is full or the queue is empty.
+     */
+    private void flush() {
+        if (!connected) {
+            return;
+        }
+        try {
+            while (!closed) {
+                while (writeBuffer.hasRemaining() && !toCopy.isEmpty()) {
+                    PendingWrite pending = toCopy.peek();
+                    if (!options.gatherWrites && pending.copied == 0 && writeBuffer.position() > 0) {
+                        // One frame per write call
+                        break;
+                    }
+                    int n = Math.min(writeBuffer.remaining(), pending.data.length - pending.copied);
+                    writeBuffer.put(pending.data, pending.copied, n);
+                    pending.copied += n;
+                    if (pending.copied == pending.data.length) {
+                        awaiting.add(toCopy.poll());
+                    }
+                }
+                if (writeBuffer.position() == 0) {
+                    // Nothing left to write
+                    setWriteInterest(false);
+                    return;
+                }
+
+                writeBuffer.flip();
+                long start = System.nanoTime();
+                int written = channel.write(writeBuffer);
+                writeBuffer.compact();
+                bytesWritten += written;
+                if (written > 0) {
+                    metrics.recordTransfer(written, System.nanoTime() - start);
+                }
+                while (!awaiting.isEmpty() && awaiting.peek().end <= bytesWritten) {
+                    complete(awaiting.poll(), null);
+                }
+                if (written == 0) {
+                    // Socket send buffer is full; continue on OP_WRITE
+                    setWriteInterest(true);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void complete(PendingWrite pending, IOException error) {
+        complete(pending.data.length, pending.index, pending.completion, error);
+    }
+
+    private void complete(int length, int index, Completion completion, IOException error) {
+        long remaining = queuedBytes.addAndGet(-length);
+        completion.onComplete(index, error);
+        if (remaining <= maxQueuedBytes / 2 && refused.compareAndSet(true, false)) {
+            listener.onWritable(this);
+        }
+    }
+
+    private void setWriteInterest(boolean enabled) {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int ops = key.interestOps();
+        int wanted = enabled ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE;
+        if (wanted != ops) {
+            key.interestOps(wanted);
+        }
+    }
+
+    private void fail(IOException error) {
+        if (closed) {
+            return;
+        }
+        Log.e(TAG, "Connection error", error);
+        release(error, retainUnsent);
+        listener.onClosed(this, error);
+    }
+
+    private void release(IOException error, boolean retain) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        connected = false;
+        if (connectTimer != null) {
+            connectTimer.cancel();
+            connectTimer = null;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing socket", e);
+            }
+        }
+        if (retain) {
+            unsent.addAll(awaiting);
+            unsent.addAll(toCopy);
+        } else {
+            IOException failure = error != null ? error : new IOException("Connection closed");
+            for (PendingWrite pending : awaiting) {
+                complete(pending, failure);
+            }
+            for (PendingWrite pending : toCopy) {
+                complete(pending, failure);
+            }
+        }
+        awaiting.clear();
+        toCopy.clear();
+        writeBuffer.clear();
+    }
+}
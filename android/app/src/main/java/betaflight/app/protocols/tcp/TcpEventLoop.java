@@ -0,0 +1,224 @@
+package betaflight.app.protocols.tcp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Single-threaded NIO event loop shared by the TCP connections of a plugin.
+ *
+ * All socket I/O, connect/write completion and timers run on one thread, so
+ * the number of threads stays constant however fast JS sends. Other threads
+ * hand work over with execute() or schedule(), which wake the selector.
+ */
+final class TcpEventLoop implements Runnable {
+    private static final String TAG = "BetaflightTcp";
+
+    interface Handler {
+        /**
+         * Called on the loop thread when the key is ready for one of its interest ops.
+         */
+        void onReady(SelectionKey key);
+
+        /**
+         * Called on the loop thread when onReady() threw; the handler gives up its channel.
+         */
+        void onFailed(SelectionKey key, RuntimeException error);
+    }
+
+    final class Timer implements Comparable<Timer> {
+        final long deadlineNanos;
+        final Runnable task;
+        private final long sequence;
+        private boolean cancelled = false;
+
+        private Timer(long deadlineNanos, Runnable task, long sequence) {
+            this.deadlineNanos = deadlineNanos;
+            this.task = task;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Must be called on the loop thread.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            if (deadlineNanos != other.deadlineNanos) {
+                return deadlineNanos < other.deadlineNanos ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Object lock = new Object();
+    // Tasks from other threads; drained on the loop thread
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    // Only touched on the loop thread
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private long timerSequence = 0;
+    private volatile boolean running = true;
+
+    TcpEventLoop(String threadName) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Run a task on the loop thread. Returns false if the loop has been closed.
+     */
+    boolean execute(Runnable task) {
+        synchronized (lock) {
+            if (!running) {
+                return false;
+            }
+            tasks.add(task);
+        }
+        selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Schedule a task on the loop thread. Must be called on the loop thread.
+     */
+    Timer schedule(Runnable task, long delayMs) {
+        Timer timer = new Timer(System.nanoTime() + delayMs * 1_000_000L, task, timerSequence++);
+        timers.add(timer);
+        return timer;
+    }
+
+    /**
+     * Register a channel with the selector. Must be called on the loop thread.
+     */
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws ClosedChannelException {
+        return channel.register(selector, ops, handler);
+    }
+
+    /**
+     * Stop the loop. Tasks still queued are dropped; owners close their channels first.
+     */
+    void close() {
+        synchronized (lock) {
+            running = false;
+            tasks.clear();
+        }
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                long timeoutMs = runTimers();
+                synchronized (lock) {
+                    if (!tasks.isEmpty()) {
+                        timeoutMs = -1;
+                    }
+                }
+                if (timeoutMs < 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select(timeoutMs);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        dispatch(key);
+                    }
+                }
+                runTasks();
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Event loop failed", e);
+        } finally {
+            // Refuse new work once the thread is gone, so callers see the loop as closed
+            synchronized (lock) {
+                running = false;
+                tasks.clear();
+            }
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing selector", e);
+            }
+        }
+    }
+
+    /**
+     * Hand a ready key to its handler; a handler that throws loses its connection rather than the loop.
+     */
+    private static void dispatch(SelectionKey key) {
+        Handler handler = (Handler) key.attachment();
+        try {
+            handler.onReady(key);
+        } catch (RuntimeException e) {
+            handler.onFailed(key, e);
+        }
+    }
+
+    private void runTasks() {
+        while (true) {
+            Runnable task;
+            synchronized (lock) {
+                task = tasks.poll();
+            }
+            if (task == null) {
+                return;
+            }
+            runSafely(task);
+        }
+    }
+
+    /**
+     * Run expired timers. Returns the select timeout until the next one, 0 for none.
+     */
+    private long runTimers() {
+        while (!timers.isEmpty()) {
+            Timer next = timers.peek();
+            if (next.cancelled) {
+                timers.poll();
+                continue;
+            }
+            long remaining = next.deadlineNanos - System.nanoTime();
+            if (remaining > 0) {
+                // select(0) would block forever, so round up to at least 1 ms
+                return Math.max(1, remaining / 1_000_000L);
+            }
+            timers.poll();
+            runSafely(next.task);
+        }
+        return 0;
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Event loop task failed", e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package betaflight.app.protocols.tcp;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Socket options accepted by BetaflightTcpPlugin.connect().
+ *
+ * TCP_NODELAY defaults to on: with Nagle enabled, a small MSP request written
+ * in more than one piece waits for the ACK of the first piece, which Wi-Fi
+ * bridges delay by up to 40 ms. Buffer sizes of 0 and a traffic class of -1
+ * leave the system defaults alone. gatherWrites lets the connection write all
+ * queued frames with one write call; with it off every frame gets its own.
+ */
+final class TcpSocketOptions {
+    boolean tcpNoDelay = true;
+    boolean keepAlive = false;
+    int sendBufferSize = 0;
+    int receiveBufferSize = 0;
+    int trafficClass = -1;
+    boolean gatherWrites = true;
+
+    static TcpSocketOptions from(JSObject object) {
+        TcpSocketOptions options = new TcpSocketOptions();
+        if (object == null) {
+            return options;
+        }
+        options.tcpNoDelay = object.optBoolean("tcpNoDelay", options.tcpNoDelay);
+        options.keepAlive = object.optBoolean("keepAlive", options.keepAlive);
+        options.sendBufferSize = Math.max(0, object.optInt("sendBufferSize", 0));
+        options.receiveBufferSize = Math.max(0, object.optInt("receiveBufferSize", 0));
+        options.trafficClass = Math.min(255, object.optInt("trafficClass", -1));
+        options.gatherWrites = object.optBoolean("gatherWrites", options.gatherWrites);
+        return options;
+    }
+
+    /**
+     * Apply to a channel that is not connected yet, so buffer sizes are in place for the handshake.
+     */
+    void apply(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+        if (sendBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        }
+        if (trafficClass >= 0) {
+            channel.setOption(StandardSocketOptions.IP_TOS, trafficClass);
+        }
+    }
+
+    /**
+     * The values in effect on a channel, as the kernel reports them (it may round buffer sizes).
+     */
+    JSObject describe(SocketChannel channel) throws IOException {
+        JSObject result = new JSObject();
+        result.put("tcpNoDelay", channel.getOption(StandardSocketOptions.TCP_NODELAY));
+        result.put("keepAlive", channel.getOption(StandardSocketOptions.SO_KEEPALIVE));
+        result.put("sendBufferSize", channel.getOption(StandardSocketOptions.SO_SNDBUF));
+        result.put("receiveBufferSize", channel.getOption(StandardSocketOptions.SO_RCVBUF));
+        result.put("trafficClass", channel.getOption(StandardSocketOptions.IP_TOS));
+        result.put("gatherWrites", gatherWrites);
+        return result;
+    }
+}
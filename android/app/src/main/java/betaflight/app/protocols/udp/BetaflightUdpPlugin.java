@@ -0,0 +1,262 @@
+package betaflight.app.protocols.udp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.Log;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import betaflight.app.protocols.ReceiveCoalescer;
+import betaflight.app.protocols.StatsReporter;
+import betaflight.app.protocols.TransportMetrics;
+
+import java.io.IOException;
+
+/**
+ * Capacitor plugin that provides a UDP link to MSP bridges (Wi-Fi modules,
+ * ELRS backpacks) that speak MSP over datagrams.
+ *
+ * The JS contract follows BetaflightTcpPlugin: connect({ip, port}), send({data})
+ * with base64 payloads, "dataReceived" events carrying {data}, and
+ * "dataReceivedError" when the link fails. UDP has no head-of-line blocking,
+ * so a lost datagram costs one MSP retry instead of stalling every reply
+ * behind it; getStats() reports the loss and reorder counters inferred from
+ * MSP request/response codes (see MspExchangeTracker).
+ */
+@CapacitorPlugin(name = "BetaflightUdp")
+public class BetaflightUdpPlugin extends Plugin implements UdpConnection.Events {
+    private static final String TAG = "BetaflightUdp";
+
+    // Error messages
+    private static final String ERROR_IP_REQUIRED = "IP address is required";
+    private static final String ERROR_INVALID_PORT = "Invalid port number";
+    private static final String ERROR_ALREADY_CONNECTED = "Already connected; please disconnect first";
+    private static final String ERROR_NOT_CONNECTED = "Not connected to any server";
+    private static final String ERROR_DATA_REQUIRED = "Data is required";
+
+    private static final int MIN_PORT = 1;
+    private static final int MAX_PORT = 65535;
+
+    private volatile UdpConnection connection;
+    // Counters for the current connection; replaced on each connect
+    private volatile TransportMetrics metrics = new TransportMetrics();
+    private final StatsReporter statsReporter = new StatsReporter(new Handler(Looper.getMainLooper()), this::emitStats);
+    private volatile boolean benchmarkRunning = false;
+
+    /**
+     * Open a channel to ip:port. Options: mspAligned (one datagram per MSP frame
+     * sent), flushBytes and flushIntervalMs (receive coalescing, immediate by
+     * default) and lossTimeoutMs (when an unanswered MSP request counts as lost).
+     */
+    @PluginMethod
+    public void connect(final PluginCall call) {
+        final String ip = call.getString("ip");
+        final int port = call.getInt("port", -1);
+        if (ip == null || ip.isEmpty()) {
+            call.reject(ERROR_IP_REQUIRED);
+            return;
+        }
+        if (port < MIN_PORT || port > MAX_PORT) {
+            call.reject(ERROR_INVALID_PORT);
+            return;
+        }
+
+        UdpConnection.Options options = new UdpConnection.Options();
+        options.mspAligned = call.getBoolean("mspAligned", false);
+        options.flushBytes = Math.max(1, call.getInt("flushBytes", ReceiveCoalescer.DEFAULT_FLUSH_BYTES));
+        options.flushIntervalMs = Math.max(0, call.getInt("flushIntervalMs", 0));
+        options.lossTimeoutMs = Math.max(1, call.getInt("lossTimeoutMs", UdpConnection.DEFAULT_LOSS_TIMEOUT_MS));
+
+        synchronized (this) {
+            if (connection != null) {
+                call.reject(ERROR_ALREADY_CONNECTED);
+                return;
+            }
+            TransportMetrics created = new TransportMetrics();
+            try {
+                connection = new UdpConnection(ip, port, options, created, this);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to open UDP channel to " + ip + ":" + port, e);
+                call.reject("Connection failed: " + e.getMessage());
+                return;
+            }
+            metrics = created;
+        }
+        Log.d(TAG, "Connected to " + ip + ":" + port);
+
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("mspAligned", options.mspAligned);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void send(final PluginCall call) {
+        String data = call.getString("data");
+        if (data == null || data.isEmpty()) {
+            call.reject(ERROR_DATA_REQUIRED);
+            return;
+        }
+        UdpConnection current = connection;
+        if (current == null) {
+            call.reject(ERROR_NOT_CONNECTED);
+            return;
+        }
+
+        byte[] payload = Base64.decode(data, Base64.NO_WRAP);
+        long start = System.nanoTime();
+        try {
+            int datagrams = current.send(payload);
+            current.metrics.recordWrite(System.nanoTime() - start);
+            JSObject result = new JSObject();
+            result.put("success", true);
+            result.put("datagrams", datagrams);
+            call.resolve(result);
+        } catch (IOException e) {
+            current.metrics.recordError("Send failed: " + e.getMessage());
+            Log.e(TAG, "Send failed", e);
+            call.reject("Send failed: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void disconnect(final PluginCall call) {
+        UdpConnection closing;
+        synchronized (this) {
+            closing = connection;
+            connection = null;
+        }
+        if (closing != null) {
+            closing.close();
+            Log.d(TAG, "Disconnected successfully");
+        }
+        JSObject result = new JSObject();
+        result.put("success", true);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void getStatus(final PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("connected", connection != null);
+        call.resolve(result);
+    }
+
+    /**
+     * Report throughput, latency histograms and errors for the current
+     * connection, plus a "link" block with datagram loss, reorder and MSP RTT.
+     * Pass reset: true to start a new measurement window afterwards.
+     */
+    @PluginMethod
+    public void getStats(final PluginCall call) {
+        UdpConnection current = connection;
+        TransportMetrics currentMetrics = metrics;
+        JSObject stats = createStats(current, currentMetrics);
+        if (call.getBoolean("reset", false)) {
+            currentMetrics.reset();
+            if (current != null) {
+                current.tracker.reset();
+            }
+        }
+        call.resolve(stats);
+    }
+
+    /**
+     * Emit a "stats" event each intervalMs while connected; 0 turns it off.
+     */
+    @PluginMethod
+    public void setStatsInterval(final PluginCall call) {
+        int intervalMs = call.getInt("intervalMs", 0);
+        JSObject result = new JSObject();
+        result.put("intervalMs", statsReporter.setInterval(intervalMs));
+        call.resolve(result);
+    }
+
+    /**
+     * Ping-pong MSP requests against an in-process UDP echo stand-in that can
+     * drop every dropEvery-th reply and hold back every reorderEvery-th one, and
+     * report RTT percentiles next to the loss and reorder counters it produced.
+     */
+    @PluginMethod
+    public void benchmark(final PluginCall call) {
+        if (benchmarkRunning) {
+            call.reject("A benchmark is already running");
+            return;
+        }
+        int messages = Math.max(1, Math.min(100_000, call.getInt("messages", 1000)));
+        int payloadSize = Math.max(0, Math.min(254, call.getInt("payloadSize", 16)));
+        int dropEvery = Math.max(0, call.getInt("dropEvery", 0));
+        int reorderEvery = Math.max(0, call.getInt("reorderEvery", 0));
+        boolean mspAligned = call.getBoolean("mspAligned", true);
+        benchmarkRunning = true;
+
+        new Thread(() -> {
+            try {
+                call.resolve(new UdpBenchmark(messages, payloadSize, dropEvery, reorderEvery, mspAligned).run());
+            } catch (Exception e) {
+                Log.e(TAG, "UDP benchmark failed", e);
+                call.reject("Benchmark failed: " + e.getMessage());
+            } finally {
+                benchmarkRunning = false;
+            }
+        }, "UdpBenchmark").start();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        statsReporter.stop();
+        UdpConnection closing;
+        synchronized (this) {
+            closing = connection;
+            connection = null;
+        }
+        if (closing != null) {
+            closing.close();
+        }
+        super.handleOnDestroy();
+    }
+
+    // ===== UdpConnection.Events implementation =====
+
+    @Override
+    public void emit(String eventName, JSObject data) {
+        notifyListeners(eventName, data);
+    }
+
+    @Override
+    public void onReceiveError(UdpConnection failed, IOException error) {
+        synchronized (this) {
+            if (failed != connection) {
+                return;
+            }
+            connection = null;
+        }
+        failed.close();
+        Log.e(TAG, "Receive failed", error);
+        JSObject err = new JSObject();
+        err.put("error", error.getMessage() != null ? error.getMessage() : "unknown error");
+        notifyListeners("dataReceivedError", err);
+    }
+
+    // ===== Private helper methods =====
+
+    private JSObject createStats(UdpConnection current, TransportMetrics currentMetrics) {
+        JSObject stats = currentMetrics.toJSObject();
+        stats.put("connected", current != null);
+        if (current != null) {
+            stats.put("link", current.getLinkStats());
+        }
+        return stats;
+    }
+
+    private void emitStats() {
+        UdpConnection current = connection;
+        if (current != null) {
+            notifyListeners("stats", createStats(current, current.metrics));
+        }
+    }
+}
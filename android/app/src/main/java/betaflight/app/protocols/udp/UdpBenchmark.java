@@ -0,0 +1,188 @@
+package betaflight.app.protocols.udp;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import betaflight.app.protocols.LatencyHistogram;
+import betaflight.app.protocols.TransportMetrics;
+
+/**
+ * Loopback test of the UDP transport against a local MSP echo stand-in.
+ *
+ * The stand-in answers each MSP request datagram with the same frame turned
+ * into a response, and can drop every Nth answer or hold one back until after
+ * the next, so the loss and reorder counters can be checked against what was
+ * actually done to the traffic. Requests go out one at a time (ping-pong) with
+ * codes cycling through a range, as MSP polling does.
+ */
+final class UdpBenchmark {
+    private static final int FIRST_CODE = 100;
+    private static final int CODE_COUNT = 32;
+    private static final int REPLY_WAIT_MS = 50;
+    private static final int LOSS_TIMEOUT_MS = 200;
+
+    private final int messages;
+    private final int payloadSize;
+    private final int dropEvery;
+    private final int reorderEvery;
+    private final boolean mspAligned;
+
+    UdpBenchmark(int messages, int payloadSize, int dropEvery, int reorderEvery, boolean mspAligned) {
+        this.messages = messages;
+        this.payloadSize = payloadSize;
+        this.dropEvery = dropEvery;
+        this.reorderEvery = reorderEvery;
+        this.mspAligned = mspAligned;
+    }
+
+    JSObject run() throws Exception {
+        try (EchoStandIn standIn = new EchoStandIn(dropEvery, reorderEvery)) {
+            Semaphore replies = new Semaphore(0);
+            UdpConnection.Options options = new UdpConnection.Options();
+            options.mspAligned = mspAligned;
+            options.lossTimeoutMs = LOSS_TIMEOUT_MS;
+            TransportMetrics metrics = new TransportMetrics();
+            UdpConnection connection = new UdpConnection(InetAddress.getLoopbackAddress().getHostAddress(),
+                standIn.getPort(), options, metrics, new UdpConnection.Events() {
+                    @Override
+                    public void emit(String eventName, JSObject data) {
+                        replies.release();
+                    }
+
+                    @Override
+                    public void onReceiveError(UdpConnection failed, IOException error) {
+                        replies.release();
+                    }
+                });
+
+            try {
+                LatencyHistogram latency = new LatencyHistogram();
+                int timeouts = 0;
+                long passStart = System.nanoTime();
+                for (int i = 0; i < messages; i++) {
+                    byte[] request = mspRequest(FIRST_CODE + i % CODE_COUNT, payloadSize);
+                    // Late replies to earlier requests must not count as this one's
+                    replies.drainPermits();
+                    long start = System.nanoTime();
+                    connection.send(request);
+                    if (replies.tryAcquire(REPLY_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                        latency.recordNanos(System.nanoTime() - start);
+                    } else {
+                        timeouts++;
+                    }
+                }
+                long passNanos = System.nanoTime() - passStart;
+                // Let the last held-back reply arrive and the last unanswered request expire
+                Thread.sleep(LOSS_TIMEOUT_MS + REPLY_WAIT_MS);
+
+                JSObject result = new JSObject();
+                result.put("messages", messages);
+                result.put("payloadSize", payloadSize);
+                result.put("mspAligned", mspAligned);
+                result.put("latency", latency.toJSObject());
+                result.put("requestsPerSecond", messages * 1e9 / passNanos);
+                result.put("replyTimeouts", timeouts);
+                result.put("injectedDrops", standIn.dropped);
+                result.put("injectedReorders", standIn.reordered);
+                result.put("link", connection.getLinkStats());
+                result.put("transport", metrics.toJSObject());
+                return result;
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * An MSP v1 request for code with payloadSize bytes of payload.
+     */
+    private static byte[] mspRequest(int code, int payloadSize) {
+        int length = Math.min(payloadSize, 254);
+        byte[] frame = new byte[length + 6];
+        frame[0] = '$';
+        frame[1] = 'M';
+        frame[2] = '<';
+        frame[3] = (byte) length;
+        frame[4] = (byte) code;
+        int checksum = length ^ code;
+        for (int i = 0; i < length; i++) {
+            frame[5 + i] = (byte) i;
+            checksum ^= i;
+        }
+        frame[5 + length] = (byte) checksum;
+        return frame;
+    }
+
+    /**
+     * Answers every request datagram with the same bytes as a '>' response. The
+     * direction is not part of the MSP checksum, so the frame stays valid.
+     */
+    private static final class EchoStandIn implements AutoCloseable {
+        private final DatagramSocket socket;
+        private final Thread thread;
+        private final int dropEvery;
+        private final int reorderEvery;
+        volatile int dropped = 0;
+        volatile int reordered = 0;
+
+        EchoStandIn(int dropEvery, int reorderEvery) throws IOException {
+            this.dropEvery = dropEvery;
+            this.reorderEvery = reorderEvery;
+            socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            thread = new Thread(this::serve, "UdpBenchmarkEcho");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return socket.getLocalPort();
+        }
+
+        private void serve() {
+            byte[] buffer = new byte[UdpConnection.MAX_DATAGRAM_BYTES];
+            DatagramPacket held = null;
+            long count = 0;
+            while (!socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    count++;
+                    byte[] reply = new byte[packet.getLength()];
+                    System.arraycopy(buffer, 0, reply, 0, reply.length);
+                    if (reply.length > 2 && reply[2] == '<') {
+                        reply[2] = '>';
+                    }
+                    SocketAddress client = packet.getSocketAddress();
+                    DatagramPacket answer = new DatagramPacket(reply, reply.length, client);
+
+                    if (dropEvery > 0 && count % dropEvery == 0) {
+                        dropped++;
+                    } else if (reorderEvery > 0 && count % reorderEvery == 0 && held == null) {
+                        held = answer;
+                    } else {
+                        socket.send(answer);
+                        if (held != null) {
+                            socket.send(held);
+                            held = null;
+                            reordered++;
+                        }
+                    }
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            socket.close();
+        }
+    }
+}
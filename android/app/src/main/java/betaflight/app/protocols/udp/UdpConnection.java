@@ -0,0 +1,198 @@
+package betaflight.app.protocols.udp;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+
+import betaflight.app.protocols.MspExchangeTracker;
+import betaflight.app.protocols.MspFrameDecoder;
+import betaflight.app.protocols.PayloadEncoder;
+import betaflight.app.protocols.ReceiveCoalescer;
+import betaflight.app.protocols.TransportMetrics;
+
+/**
+ * One connected UDP "link" to a Wi-Fi or backpack bridge.
+ *
+ * A DatagramChannel connected to the bridge is read by one thread into a
+ * reusable direct buffer; datagrams go through a ReceiveCoalescer (immediate
+ * by default, since a datagram is usually a whole reply) and are emitted as
+ * "dataReceived" events with the same {data} payload as the TCP plugin.
+ * Sends are written straight from the calling thread. With mspAligned on,
+ * every MSP frame in a send gets its own datagram, so a bridge that forwards
+ * datagram by datagram never sees half a frame. Request and response codes
+ * feed an MspExchangeTracker for loss and reorder counters.
+ */
+final class UdpConnection implements Runnable {
+    private static final String TAG = "BetaflightUdp";
+    // Largest payload an IPv4 datagram can carry
+    static final int MAX_DATAGRAM_BYTES = 65507;
+    static final int DEFAULT_LOSS_TIMEOUT_MS = 1000;
+
+    interface Events {
+        void emit(String eventName, JSObject data);
+
+        /**
+         * The receive loop failed; the connection should be closed and forgotten.
+         */
+        void onReceiveError(UdpConnection connection, IOException error);
+    }
+
+    static final class Options {
+        boolean mspAligned = false;
+        int flushBytes = ReceiveCoalescer.DEFAULT_FLUSH_BYTES;
+        // Datagrams already arrive in reply-sized pieces, so nothing is held back by default
+        int flushIntervalMs = 0;
+        int lossTimeoutMs = DEFAULT_LOSS_TIMEOUT_MS;
+    }
+
+    final Options options;
+    final TransportMetrics metrics;
+    final MspExchangeTracker tracker;
+
+    private final Events events;
+    private final DatagramChannel channel;
+    private final ReceiveCoalescer receiveCoalescer;
+    // Only used on the receive thread
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_BYTES);
+    private final byte[] receiveBytes = new byte[MAX_DATAGRAM_BYTES];
+    // Only used from the coalescer sink, which the coalescer serializes
+    private final PayloadEncoder receiveEncoder;
+    private final Thread receiveThread;
+    private volatile boolean closed = false;
+
+    /**
+     * Open a channel connected to host:port and start receiving. Resolving the host may block.
+     */
+    UdpConnection(String host, int port, Options options, TransportMetrics metrics, Events events)
+            throws IOException {
+        this.options = options;
+        this.metrics = metrics;
+        this.events = events;
+        this.tracker = new MspExchangeTracker(options.lossTimeoutMs);
+        this.receiveCoalescer = new ReceiveCoalescer(this::emitReceivedData, options.flushBytes,
+            options.flushIntervalMs);
+        this.receiveEncoder = new PayloadEncoder(Math.max(options.flushBytes, MAX_DATAGRAM_BYTES));
+
+        channel = DatagramChannel.open();
+        try {
+            channel.connect(new InetSocketAddress(host, port));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+        receiveThread = new Thread(this, "UdpReceiver");
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Send a payload as one datagram, or as one datagram per MSP frame with mspAligned.
+     * Returns the number of datagrams written.
+     */
+    int send(byte[] data) throws IOException {
+        if (closed) {
+            throw new IOException("Not connected");
+        }
+        tracker.onSent(data, 0, data.length);
+        if (!options.mspAligned) {
+            writeDatagram(data, 0, data.length);
+            return 1;
+        }
+
+        int datagrams = 0;
+        int offset = 0;
+        while (offset < data.length) {
+            int length = MspFrameDecoder.frameLength(data, offset, data.length - offset);
+            if (length <= 0 || offset + length > data.length) {
+                // Not a whole frame: everything up to the next frame start goes as is
+                length = 1;
+                while (offset + length < data.length && data[offset + length] != '$') {
+                    length++;
+                }
+            }
+            writeDatagram(data, offset, length);
+            offset += length;
+            datagrams++;
+        }
+        return datagrams;
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // Also wakes the receive thread out of read()
+            channel.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing channel", e);
+        }
+        receiveCoalescer.close();
+    }
+
+    JSObject getLinkStats() {
+        JSObject link = tracker.toJSObject(System.nanoTime());
+        link.put("mspAligned", options.mspAligned);
+        link.put("receive", receiveCoalescer.getStats());
+        return link;
+    }
+
+    // ===== Receive loop =====
+
+    @Override
+    public void run() {
+        while (!closed) {
+            try {
+                receiveBuffer.clear();
+                int read = channel.read(receiveBuffer);
+                if (read <= 0) {
+                    continue;
+                }
+                metrics.recordRead(read);
+                receiveBuffer.flip();
+                receiveBuffer.get(receiveBytes, 0, read);
+                tracker.onReceived(receiveBytes, 0, read);
+                receiveCoalescer.append(receiveBytes, 0, read);
+            } catch (PortUnreachableException e) {
+                // ICMP port unreachable for an earlier send: nothing listens yet, keep waiting
+                metrics.recordError("Port unreachable");
+            } catch (AsynchronousCloseException e) {
+                return;
+            } catch (IOException e) {
+                if (!closed) {
+                    metrics.recordError(e.getMessage());
+                    events.onReceiveError(this, e);
+                }
+                return;
+            }
+        }
+    }
+
+    // ===== Private helper methods =====
+
+    private void writeDatagram(byte[] data, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        int written = channel.write(ByteBuffer.wrap(data, offset, length));
+        metrics.recordTransfer(written, System.nanoTime() - start);
+    }
+
+    private void emitReceivedData(byte[] data, int length, ReceiveCoalescer.FlushReason reason) {
+        JSObject eventData = new JSObject();
+        eventData.put("data", receiveEncoder.base64(data, 0, length));
+        long start = System.nanoTime();
+        events.emit("dataReceived", eventData);
+        metrics.recordEmit(System.nanoTime() - start);
+    }
+}
@@ -269,6 +269,8 @@ export function useCli() {
 
         function sendCommandIterative(commandArray) {
             let processingDelay = state.lineDelayMs;
+            // A tick's lines go out in one write so a restore is paced by the FC, not per-line bridge calls
+            const frames = [];
 
             for (let n = 0; n < COMMANDS_PER_TICK && commandArray.length > 0; n++) {
                 const command = commandArray.shift();
@@ -282,11 +284,13 @@ export function useCli() {
                 const isProfile = line.toLowerCase().startsWith("profile");
                 if (isProfile) processingDelay = state.profileSwitchDelayMs;
 
-                sendLine(line);
+                frames.push(encoder.encode(`${line}\n`));
 
                 if (isLast || isProfile) break;
             }
 
+            serial.sendBatch(frames);
+
             if (commandArray.length > 0) {
                 GUI.timeout_add("CLI_send_slowly", () => sendCommandIterative(commandArray), processingDelay);
             }
@@ -668,7 +672,9 @@ export function useCli() {
         // Enter CLI mode
         GUI.timeout_add(
             "enter_cli",
-            function enter_cli() {
+            async function enter_cli() {
+                // An earlier MSP batch may have left native framing on; CLI text must stay raw
+                await serial.setFraming("raw");
                 const bufferOut = new ArrayBuffer(1);
                 const bufView = new Uint8Array(bufferOut);
                 bufView[0] = 0x23; // #
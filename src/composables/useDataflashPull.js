@@ -5,6 +5,7 @@ import { mspHelper } from "../js/msp/MSPHelper";
 import GUI from "../js/gui";
 import FC from "../js/fc";
 import { useConnectionStore } from "../stores/connection";
+import { serial } from "../js/serial";
 
 const BLOCK_SIZE = 4096;
 
@@ -40,6 +41,7 @@ export function useDataflashPull() {
 
         const cleanup = () => {
             pulling.value = false;
+            serial.setLinkProfile("balanced");
             connectionStore.resumeLiveData();
         };
 
@@ -50,6 +52,9 @@ export function useDataflashPull() {
             // just below (it settles errorAware entries with MspCancelledError) and abort the pull.
             await connectionStore.clearMspQueue();
 
+            // Shortest BLE connection interval for the download; no-op on other transports
+            await serial.setLinkProfile("bulk");
+
             // Refresh the occupied size before reading.
             await MSP.promise(MSPCodes.MSP_DATAFLASH_SUMMARY);
             const maxBytes = FC.DATAFLASH?.usedSize || 0;
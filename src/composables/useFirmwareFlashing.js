@@ -265,6 +265,7 @@ export function useFirmwareFlashing(params = {}) {
         const {
             firmware,
             eraseChip,
+            differentialFlash,
             noRebootSequence,
             flashManualBaud,
             flashManualBaudRate,
@@ -286,6 +287,8 @@ export function useFirmwareFlashing(params = {}) {
 
         if (eraseChip) {
             flashing_options.erase_chip = true;
+        } else if (differentialFlash) {
+            flashing_options.differential = true;
         }
 
         const port = DeviceHandler.devicePicker.selectedDevice;
@@ -370,6 +373,7 @@ export function useFirmwareFlashing(params = {}) {
             config,
             clearBoardConfig,
             eraseChip,
+            differentialFlash,
             noRebootSequence,
             flashManualBaud,
             flashManualBaudRate,
@@ -406,6 +410,7 @@ export function useFirmwareFlashing(params = {}) {
             await flashHexFirmware({
                 firmware: parsedHexData,
                 eraseChip,
+                differentialFlash,
                 noRebootSequence,
                 flashManualBaud,
                 flashManualBaudRate,
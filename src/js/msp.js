@@ -61,6 +61,9 @@ const MSP = {
     unsupported: 0,
 
     TIMEOUT: 1000,
+    DEFAULT_TIMEOUT: 1000,
+    // Upper bound for adaptTimeout(); it never goes below DEFAULT_TIMEOUT
+    MAX_TIMEOUT: 5000,
     MAX_RETRIES: 3,
 
     last_received_timestamp: null,
@@ -86,7 +89,13 @@ const MSP = {
             return;
         }
 
-        const data = new Uint8Array(readInfo.data ?? readInfo);
+        const raw = readInfo.data ?? readInfo;
+        if (raw?.mspFrame) {
+            this._read_frame(raw.mspFrame, raw);
+            return;
+        }
+
+        const data = new Uint8Array(raw);
 
         for (const chunk of data) {
             if (this.cli_discarding) {
@@ -276,6 +285,29 @@ const MSP = {
         }
         this.last_received_timestamp = Date.now();
     },
+    /**
+     * Dispatch a frame that the transport already delimited and checksummed natively
+     * (CapacitorSerial in "msp" framing mode), skipping the per-byte state machine.
+     *
+     * @param {object} frame - `direction`, `code`, `checksum` (received) and `computedChecksum`.
+     * @param {Uint8Array} payload - the frame payload.
+     */
+    _read_frame(frame, payload) {
+        if (this.cli_discarding) {
+            return;
+        }
+
+        this.message_direction = frame.direction === "<" ? 0 : 1;
+        this.unsupported = frame.direction === "!" ? 1 : 0;
+        this.code = frame.code;
+        this.message_length_expected = payload.byteLength;
+        this.message_length_received = payload.byteLength;
+        this._initialize_read_buffer();
+        this.message_buffer_uint8_view.set(payload);
+        this.message_checksum = frame.computedChecksum;
+        this._dispatch_message(frame.checksum);
+        this.last_received_timestamp = Date.now();
+    },
     _initialize_read_buffer() {
         this.message_buffer = new ArrayBuffer(this.message_length_expected);
         this.message_buffer_uint8_view = new Uint8Array(this.message_buffer);
@@ -316,6 +348,20 @@ const MSP = {
     clearListeners() {
         this.listeners = [];
     },
+    /**
+     * Size TIMEOUT from a transport's retransmission timeout estimate: twice the
+     * RTO, clamped to [DEFAULT_TIMEOUT, MAX_TIMEOUT]. A slow link raises it; a fast one
+     * never lowers it, since TIMEOUT also covers slow commands such as MSP_EEPROM_WRITE.
+     * null (or no estimate yet) restores the default.
+     */
+    adaptTimeout(rtoMs) {
+        if (!Number.isFinite(rtoMs) || rtoMs <= 0) {
+            this.TIMEOUT = this.DEFAULT_TIMEOUT;
+        } else {
+            this.TIMEOUT = Math.min(this.MAX_TIMEOUT, Math.max(this.DEFAULT_TIMEOUT, Math.ceil(rtoMs * 2)));
+        }
+        return this.TIMEOUT;
+    },
     crc8_dvb_s2(crc, ch) {
         crc ^= ch;
         for (let ii = 0; ii < 8; ii++) {
@@ -687,6 +733,52 @@ const MSP = {
             );
         });
     },
+    /**
+     * Request several codes at once. When the active transport has a native MSP scheduler
+     * (CapacitorSerial.mspBatch) the whole batch costs one bridge round trip; otherwise each
+     * request goes through promise(), one after another, as the tabs would await them.
+     *
+     * resolves: [{command: code, data: data, length: message_length}, ...] in request order
+     * rejects: MspTimeoutError, MspCancelledError or the first per-request error
+     */
+    async promiseBatch(requests) {
+        if (CONFIGURATOR.virtualMode) {
+            return [];
+        }
+
+        if (!serial.connected) {
+            throw new MspCancelledError("MSP request while disconnected", undefined, "disconnected");
+        }
+
+        const batch = requests.map((request) => (typeof request === "number" ? { code: request } : request));
+        const responses =
+            typeof serial._protocol?.mspBatch === "function"
+                ? await serial._protocol.mspBatch(batch, { timeoutMs: this.TIMEOUT, retries: this.MAX_RETRIES })
+                : null;
+
+        if (!responses) {
+            const results = [];
+            for (const { code, data } of batch) {
+                results.push(await this.promise(code, data));
+            }
+            return results;
+        }
+
+        return responses.map((response) => {
+            if (response.status === "timeout") {
+                throw new MspTimeoutError(`MSP request timed out: ${response.code}`, response.code);
+            }
+            if (response.status !== "ok" && response.status !== "unsupported") {
+                throw new MspCancelledError(`MSP request ${response.status}`, response.code, response.status);
+            }
+            const { data } = response;
+            return {
+                command: response.code,
+                data: new DataView(data.buffer, data.byteOffset, data.byteLength),
+                length: data.byteLength,
+            };
+        });
+    },
     callbacks_cleanup(error = new MspCancelledError("MSP queue cleared", undefined, "cleanup")) {
         const pending = this.callbacks;
         this.callbacks = [];
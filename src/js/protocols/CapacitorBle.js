@@ -21,6 +21,10 @@ class CapacitorBle extends EventTarget {
         this.bytesSent = 0;
         this.bytesReceived = 0;
         this.deviceDescription = null;
+        // Negotiated connection interval, PHY and MTU, as last reported by the plugin
+        this.link = null;
+        // The getDevices() scan in flight, shared by concurrent callers
+        this.scan = null;
 
         plugin.addListener("dataReceived", (event) => {
             const data = base64ToUint8Array(event?.data);
@@ -28,52 +32,178 @@ class CapacitorBle extends EventTarget {
             this.dispatchEvent(new CustomEvent("receive", { detail: data }));
         });
 
+        // framing: "msp" — the plugin decodes frames and sends one event per frame
+        plugin.addListener("mspFrame", (frame) => {
+            const payload = base64ToUint8Array(frame.payload);
+            this.bytesReceived += payload.byteLength;
+            // MSP.read recognises the attached frame and skips its byte-level decoder
+            payload.mspFrame = frame;
+            this.dispatchEvent(new CustomEvent("receive", { detail: payload }));
+        });
+
+        // Scans report each bridge as soon as it is seen, ahead of the getDevices() result
+        plugin.addListener("deviceFound", (found) => {
+            const device = this.toPort(found);
+            if (!this.devices.some((d) => d.path === device.path)) {
+                this.devices = [...this.devices, device];
+            }
+            this.dispatchEvent(new CustomEvent("deviceFound", { detail: device }));
+        });
+
         plugin.addListener("disconnected", () => {
             this.connected = false;
             this.connectionId = null;
+            this.link = null;
             this.dispatchEvent(new CustomEvent("disconnect", { detail: true }));
         });
+
+        plugin.addListener("linkUpdated", (link) => {
+            this.link = link;
+            this.dispatchEvent(new CustomEvent("linkUpdated", { detail: link }));
+        });
+
+        plugin.addListener("stats", (stats) => {
+            this.dispatchEvent(new CustomEvent("stats", { detail: this.withJsCounters(stats) }));
+        });
+    }
+
+    withJsCounters(stats) {
+        return { ...stats, js: { bytesSent: this.bytesSent, bytesReceived: this.bytesReceived } };
+    }
+
+    /**
+     * Native GATT counters: bytes in/out, write and emit latency percentiles, errors,
+     * pending writes, the negotiated MTU and the transmit counters (writer).
+     * @param {object} [options]
+     * @param {boolean} [options.reset] - start a new measurement window after reading.
+     * @returns {Promise<object|null>}
+     */
+    async getStats({ reset = false } = {}) {
+        if (!plugin) return null;
+
+        try {
+            return this.withJsCounters(await plugin.getStats({ reset }));
+        } catch (error) {
+            console.error(`${logHead} Failed to read stats`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Have the plugin emit a "stats" event every intervalMs while connected; 0 turns it off.
+     * @returns {Promise<number>} the interval in effect.
+     */
+    async setStatsInterval(intervalMs) {
+        if (!plugin) return 0;
+
+        try {
+            const result = await plugin.setStatsInterval({ intervalMs });
+            return result?.intervalMs ?? 0;
+        } catch (error) {
+            console.error(`${logHead} Failed to set stats interval`, error);
+            return 0;
+        }
     }
 
     getConnectedDevice() {
         return this.devices.find((d) => d.path === this.connectionId) || null;
     }
 
-    async getDevices() {
+    toPort(d) {
+        return {
+            path: `bluetooth-${d.address}`,
+            displayName: d.name || d.address,
+            vendorId: 0,
+            productId: 0,
+            address: d.address,
+            serviceUuid: d.serviceUuid,
+            writeCharacteristic: d.writeCharacteristic,
+            notifyCharacteristic: d.notifyCharacteristic,
+            rssi: d.rssi,
+        };
+    }
+
+    /**
+     * Scan for bridges. Devices are also announced one by one with "deviceFound" events while
+     * the scan runs; a call made during a scan joins it instead of starting another, and then
+     * gets that scan's result: its own stopOnFirst and targetAddress are ignored.
+     * The connected bridge stays listed, since it usually stops advertising while connected.
+     * @param {object} [options]
+     * @param {boolean} [options.stopOnFirst] - end the scan at the first bridge found.
+     * @param {string} [options.targetAddress] - end the scan once this address is found.
+     */
+    async getDevices({ stopOnFirst = false, targetAddress } = {}) {
         if (!plugin) return [];
 
+        if (!this.scan) {
+            this.scan = this.runScan({ stopOnFirst, targetAddress }).finally(() => {
+                this.scan = null;
+            });
+        }
+        return this.scan;
+    }
+
+    async runScan(options) {
+        const connected = this.getConnectedDevice();
         try {
             const serviceUuids = bluetoothDevices.map((d) => d.serviceUuid);
-            const result = await plugin.getDevices({ serviceUuids });
-            const devices = result?.devices || [];
-
-            this.devices = devices.map((d) => {
-                return {
-                    path: `bluetooth-${d.address}`,
-                    displayName: d.name || d.address,
-                    vendorId: 0,
-                    productId: 0,
-                    address: d.address,
-                    serviceUuid: d.serviceUuid,
-                    writeCharacteristic: d.writeCharacteristic,
-                    notifyCharacteristic: d.notifyCharacteristic,
-                    rssi: d.rssi,
-                };
-            });
+            this.devices = connected ? [connected] : [];
+            const result = await plugin.getDevices({ serviceUuids, ...options });
+            const devices = (result?.devices || []).map((d) => this.toPort(d));
+
+            this.devices =
+                connected && !devices.some((d) => d.path === connected.path) ? [connected, ...devices] : devices;
+            console.log(
+                `${logHead} Scan found ${this.devices.length} device(s) in ${result?.scanMs} ms, first after ${result?.firstDeviceMs} ms`,
+            );
 
             return this.devices;
         } catch (error) {
             console.error(`${logHead} Failed to get BLE devices`, error);
-            this.devices = [];
-            return [];
+            this.devices = connected ? [connected] : [];
+            return this.devices;
         }
     }
 
+    /**
+     * End a running scan early; its getDevices() resolves with the devices found so far.
+     */
+    async cancelScan() {
+        if (!plugin || !this.scan) return;
+        await plugin.cancelScan();
+    }
+
     async requestPermissionDevice() {
-        const devices = await this.getDevices();
+        const devices = await this.getDevices({ stopOnFirst: true });
         return devices[0] || null;
     }
 
+    /**
+     * Switch connection parameters, e.g. to "bulk" around a dataflash download and back.
+     * @param {"bulk"|"balanced"|"lowPower"} profile - bulk: high priority and LE 2M PHY; balanced
+     *   (the default on connect): 2M with a longer interval; lowPower: longest interval, 1M PHY.
+     * @returns {Promise<object|null>} the negotiated interval, PHY and MTU.
+     */
+    async setLinkProfile(profile) {
+        if (!plugin || !this.connected) return null;
+
+        try {
+            this.link = await plugin.setLinkProfile({ profile });
+            return this.link;
+        } catch (error) {
+            console.error(`${logHead} Failed to set link profile`, error);
+            return null;
+        }
+    }
+
+    /**
+     * @param {string} path
+     * @param {object} [options]
+     * @param {string} [options.linkProfile] - initial link profile, see setLinkProfile() (default "balanced").
+     * @param {number} [options.flushBytes] - notification coalescing size (default 4 KB).
+     * @param {number} [options.flushIntervalMs] - notification coalescing window (default 2 ms; 0 emits each one).
+     * @param {string} [options.framing] - "msp" decodes MSP frames natively; "raw" (default) keeps it in MSP.read.
+     */
     async connect(path, options) {
         if (!plugin) return false;
 
@@ -97,9 +227,14 @@ class CapacitorBle extends EventTarget {
                 serviceUuid: device.serviceUuid,
                 writeCharacteristic: device.writeCharacteristic,
                 notifyCharacteristic: device.notifyCharacteristic,
+                linkProfile: options?.linkProfile,
+                flushBytes: options?.flushBytes,
+                flushIntervalMs: options?.flushIntervalMs,
+                framing: options?.framing,
             });
 
             const success = !!result?.success;
+            this.link = result?.link ?? null;
             this.connected = success;
             this.connectionId = success ? device.path : null;
             this.bytesSent = 0;
@@ -145,6 +280,46 @@ class CapacitorBle extends EventTarget {
         return isBT11 && expectedChecksum === 0xff;
     }
 
+    /**
+     * Queue several frames with one bridge call. The native side merges them with
+     * anything else queued and writes MTU-sized chunks.
+     * @param {ArrayBuffer[]|Uint8Array[]} frames
+     * @returns {Promise<{bytesSent: number}>}
+     */
+    async sendBatch(frames) {
+        if (!plugin || !this.connected) {
+            return { bytesSent: 0 };
+        }
+
+        try {
+            const result = await plugin.sendBatch({
+                frames: frames.map((frame) => uint8ArrayToBase64(new Uint8Array(frame))),
+            });
+            const bytesSent = result?.bytesSent ?? 0;
+            this.bytesSent += bytesSent;
+            return { bytesSent };
+        } catch (error) {
+            console.error(`${logHead} Failed to send batch`, error);
+            return { bytesSent: 0 };
+        }
+    }
+
+    /**
+     * Native transmit counters: bursts, chunks per burst, bytes per chunk and the
+     * throughput reached while writing.
+     * @returns {Promise<object|null>}
+     */
+    async getWriteStats() {
+        if (!plugin || !this.connected) return null;
+
+        try {
+            return await plugin.getWriteStats();
+        } catch (error) {
+            console.error(`${logHead} Failed to read write stats`, error);
+            return null;
+        }
+    }
+
     async send(data, callback) {
         if (!plugin || !this.connected) {
             callback?.({ bytesSent: 0 });
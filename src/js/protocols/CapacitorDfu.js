@@ -1,9 +1,15 @@
 import { Capacitor } from "@capacitor/core";
-import { hexStringToUint8Array, uint8ArrayToHexString } from "../utils/bytes.js";
+import { decodePayload, encodePayload, uint8ArrayToBase64 } from "../utils/bytes.js";
 
 const logHead = "[CAPACITOR DFU]";
 const BetaflightDfu = Capacitor?.Plugins?.BetaflightDfu;
 
+// Control transfer payload encoding; replies that do not name one are hex
+const TRANSFER_ENCODING = "base64";
+const FALLBACK_ENCODING = "hex";
+// The plugin's per-call limit for controlTransferSequence
+const MAX_SEQUENCE_TRANSFERS = 256;
+
 /**
  * Capacitor DFU protocol adapter for Android.
  * Wraps the native BetaflightDfu plugin to provide USB DFU communication
@@ -12,6 +18,11 @@ const BetaflightDfu = Capacitor?.Plugins?.BetaflightDfu;
  * This class implements the same public interface as UsbDfuProtocol
  * (from usbdfu.js) so it can be used as a drop-in replacement on Android.
  * The DFU protocol state machine logic is shared via the transport abstraction.
+ *
+ * The native plugin can hold several devices open at once, each with its own
+ * USB worker. Every instance keeps the handle of the device it opened and
+ * sends it with each call, so separate instances (one per transport) flash
+ * separate boards in parallel.
  */
 class CapacitorDfu extends EventTarget {
     constructor() {
@@ -23,6 +34,8 @@ class CapacitorDfu extends EventTarget {
         }
 
         this.ports = [];
+        // Native handle of the device this instance opened
+        this.handle = null;
 
         BetaflightDfu.addListener("deviceAttached", this.handleDeviceAttached.bind(this));
         BetaflightDfu.addListener("deviceDetached", this.handleDeviceDetached.bind(this));
@@ -108,59 +121,227 @@ class CapacitorDfu extends EventTarget {
         return newPermissionPort;
     }
 
+    /**
+     * Native device table counters, including `lastReattachMs`: how long the last
+     * re-enumerating DFU device was gone.
+     */
+    getProbeStats() {
+        return BetaflightDfu.getProbeStats();
+    }
+
     // ===== Native USB operations (called by transport layer) =====
 
-    openDevice(deviceId) {
-        return BetaflightDfu.openDevice({ deviceId });
+    async openDevice(deviceId) {
+        const result = await BetaflightDfu.openDevice({ deviceId });
+        this.handle = result.handle ?? null;
+        return result;
     }
 
     claimInterface(interfaceNumber) {
-        return BetaflightDfu.claimInterface({ interfaceNumber });
+        return BetaflightDfu.claimInterface({ handle: this.handle, interfaceNumber });
     }
 
     releaseInterface(interfaceNumber) {
-        return BetaflightDfu.releaseInterface({ interfaceNumber });
+        return BetaflightDfu.releaseInterface({ handle: this.handle, interfaceNumber });
     }
 
+    // Without a handle the plugin would act on another instance's device; nothing of ours is open
     closeDevice() {
-        return BetaflightDfu.closeDevice();
+        const handle = this.handle;
+        if (handle === null) {
+            return Promise.resolve({ success: true });
+        }
+        this.handle = null;
+        return BetaflightDfu.closeDevice({ handle });
     }
 
     resetDevice() {
-        return BetaflightDfu.resetDevice();
+        const handle = this.handle;
+        if (handle === null) {
+            return Promise.resolve({ success: true });
+        }
+        this.handle = null;
+        return BetaflightDfu.resetDevice({ handle });
+    }
+
+    /**
+     * Devices the native plugin has open, across all instances: { handle, bus, productName, busy }.
+     */
+    async getOpenDevices() {
+        const result = await BetaflightDfu.getOpenDevices();
+        return result.devices;
+    }
+
+    /**
+     * Cap concurrent control transfers per USB bus for all open devices; omit the cap to
+     * only read the per-bus counters.
+     * @returns {Promise<{maxTransfersPerBus: number, buses: object[]}>}
+     */
+    setBusConcurrency(maxTransfersPerBus) {
+        return BetaflightDfu.setBusConcurrency({ maxTransfersPerBus });
     }
 
     async controlTransferIn(request, value, index, length, timeout) {
         const result = await BetaflightDfu.controlTransferIn({
+            handle: this.handle,
             request,
             value,
             index,
             length,
             timeout,
+            encoding: TRANSFER_ENCODING,
         });
-
-        if (result.status === "ok" && result.data) {
-            // Convert hex string to Uint8Array
-            const data = hexStringToUint8Array(result.data);
-            return { status: "ok", data };
-        }
-
-        return { status: result.status, data: new Uint8Array(0) };
+        return this.decodeTransferIn(result, result.encoding);
     }
 
     async controlTransferOut(request, value, index, data, timeout) {
-        const hexData = data ? uint8ArrayToHexString(new Uint8Array(data)) : "";
         return BetaflightDfu.controlTransferOut({
+            handle: this.handle,
             request,
             value,
             index,
-            data: hexData,
+            data: data ? encodePayload(new Uint8Array(data), TRANSFER_ENCODING) : "",
+            encoding: TRANSFER_ENCODING,
             timeout,
         });
     }
 
+    /**
+     * Run control transfers back to back in one native call, see
+     * BetaflightDfuPlugin.controlTransferSequence.
+     * @param {object[]} transfers - { direction: "in" | "out", request, value, index, length, data, timeout }
+     * @param {object} [options] - { stopOnError = true }
+     * @returns {Promise<{status: string, data?: Uint8Array}[]>} one result per transfer that ran.
+     */
+    async controlTransferSequence(transfers, { stopOnError = true } = {}) {
+        const result = await BetaflightDfu.controlTransferSequence({
+            handle: this.handle,
+            transfers: transfers.map(({ direction, request, value, index, length, data, timeout }) => ({
+                direction,
+                request,
+                value,
+                index,
+                length,
+                data: data ? encodePayload(new Uint8Array(data), TRANSFER_ENCODING) : "",
+                timeout,
+            })),
+            encoding: TRANSFER_ENCODING,
+            stopOnError,
+        });
+        return result.results.map((reply, i) =>
+            transfers[i].direction === "in"
+                ? this.decodeTransferIn(reply, result.encoding)
+                : { status: reply.status, length: reply.length },
+        );
+    }
+
+    decodeTransferIn(result, encoding) {
+        if (result.status === "ok" && result.data) {
+            return { status: "ok", data: decodePayload(result.data, encoding ?? FALLBACK_ENCODING) };
+        }
+        return { status: result.status, data: new Uint8Array(0) };
+    }
+
+    /**
+     * Per-transfer overhead on the open device: GETSTATUS natively (no bridge), one bridge
+     * call per transfer, and batched through controlTransferSequence, plus the native
+     * payload codec timings. The device must be open with its interface claimed.
+     * @returns {Promise<object>} native results and mean milliseconds per transfer for each path.
+     */
+    async benchmarkTransfers({ transfers = 200, payloadSize = 2048 } = {}) {
+        const GETSTATUS = 0x03;
+        const native = await BetaflightDfu.benchmarkTransfers({ handle: this.handle, transfers, payloadSize });
+
+        let start = performance.now();
+        for (let i = 0; i < transfers; i++) {
+            await this.controlTransferIn(GETSTATUS, 0, 0, 6);
+        }
+        const singleMs = (performance.now() - start) / transfers;
+
+        const getStatus = { direction: "in", request: GETSTATUS, value: 0, index: 0, length: 6 };
+        start = performance.now();
+        for (let done = 0; done < transfers; done += MAX_SEQUENCE_TRANSFERS) {
+            const count = Math.min(MAX_SEQUENCE_TRANSFERS, transfers - done);
+            await this.controlTransferSequence(Array(count).fill(getStatus));
+        }
+        const batchedMs = (performance.now() - start) / transfers;
+
+        const result = { ...native, singleMsPerTransfer: singleMs, batchedMsPerTransfer: batchedMs };
+        console.log(
+            `${logHead} Per transfer: native ${native.latency.meanMs.toFixed(3)} ms, single call ${singleMs.toFixed(3)} ms, batched ${batchedMs.toFixed(3)} ms`,
+        );
+        return result;
+    }
+
+    /**
+     * Erase and write a whole image natively, see BetaflightDfuPlugin.flashImage.
+     * @param {object} image - { segments: [{ address, data: Uint8Array }], sectors, transferSize, eraseChip,
+     *   differential, leave }
+     * @param {(progress: {phase: string, done: number, total: number}) => void} [onProgress]
+     * @returns {Promise<object>} page, byte and timing counts.
+     */
+    flashImage(
+        { segments, sectors, transferSize, eraseChip = false, differential = false, leave = false },
+        onProgress,
+    ) {
+        return this.runImageJob(
+            "flashImage",
+            { ...this.encodeImage(segments, sectors), transferSize, eraseChip, differential, leave },
+            onProgress,
+        );
+    }
+
+    /**
+     * Read the image back natively and compare, see BetaflightDfuPlugin.verifyImage.
+     * @param {object} image - { segments, sectors, transferSize, granularity: "byte" | "page", stopOnMismatch }
+     * @returns {Promise<{verified: boolean, bytesRead: number, mismatches: object[]}>}
+     */
+    verifyImage({ segments, sectors, transferSize, granularity = "byte", stopOnMismatch = false }, onProgress) {
+        return this.runImageJob(
+            "verifyImage",
+            { ...this.encodeImage(segments, sectors), transferSize, granularity, stopOnMismatch },
+            onProgress,
+        );
+    }
+
+    encodeImage(segments, sectors) {
+        return {
+            segments: segments.map((segment) => ({
+                address: segment.address,
+                data: uint8ArrayToBase64(segment.data),
+            })),
+            sectors: sectors.map(({ start_address, num_pages, page_size }) => ({
+                start_address,
+                num_pages,
+                page_size,
+            })),
+        };
+    }
+
+    async runImageJob(method, options, onProgress) {
+        const handle = this.handle;
+        // Other devices may be flashing at the same time; only follow this one
+        const listener = await BetaflightDfu.addListener("flashProgress", (progress) => {
+            if (!progress.handle || progress.handle === handle) {
+                onProgress?.(progress);
+            }
+        });
+        try {
+            return await BetaflightDfu[method]({ ...options, handle });
+        } finally {
+            listener.remove();
+        }
+    }
+
+    abortFlash() {
+        if (this.handle === null) {
+            return Promise.resolve({ success: false });
+        }
+        return BetaflightDfu.abortFlash({ handle: this.handle });
+    }
+
     async getStringDescriptor(descriptorIndex) {
-        const result = await BetaflightDfu.getStringDescriptor({ index: descriptorIndex });
+        const result = await BetaflightDfu.getStringDescriptor({ handle: this.handle, index: descriptorIndex });
         if (result.status === "ok") {
             return result.descriptor;
         }
@@ -168,7 +349,7 @@ class CapacitorDfu extends EventTarget {
     }
 
     async getInterfaceDescriptor(interfaceIndex) {
-        const result = await BetaflightDfu.getInterfaceDescriptor({ interfaceIndex });
+        const result = await BetaflightDfu.getInterfaceDescriptor({ handle: this.handle, interfaceIndex });
         if (result.status === "ok") {
             return result.descriptor;
         }
@@ -176,7 +357,7 @@ class CapacitorDfu extends EventTarget {
     }
 
     async getInterfaceDescriptors(interfaceNumber) {
-        const result = await BetaflightDfu.getInterfaceDescriptors({ interfaceNumber });
+        const result = await BetaflightDfu.getInterfaceDescriptors({ handle: this.handle, interfaceNumber });
         if (result.status === "ok") {
             return result.descriptors;
         }
@@ -184,7 +365,7 @@ class CapacitorDfu extends EventTarget {
     }
 
     async getFunctionalDescriptor() {
-        const result = await BetaflightDfu.getFunctionalDescriptor();
+        const result = await BetaflightDfu.getFunctionalDescriptor({ handle: this.handle });
         if (result.status === "ok") {
             return result.descriptor;
         }
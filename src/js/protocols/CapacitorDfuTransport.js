@@ -5,6 +5,10 @@ import CapacitorDfu from "./CapacitorDfu";
  * Wraps the CapacitorDfu native plugin adapter to provide the same
  * transport interface as WebUsbDfuTransport.
  *
+ * Each instance drives the one device it opened, through its own native
+ * handle and USB worker, so several UsbDfuProtocol instances with their own
+ * transports can flash boards on a hub in parallel.
+ *
  * Events: "addedDevice", "removedDevice"
  */
 class CapacitorDfuTransport extends EventTarget {
@@ -150,6 +154,44 @@ class CapacitorDfuTransport extends EventTarget {
         return { status: result.status };
     }
 
+    /**
+     * Run control transfers back to back in one native call instead of one call each.
+     * usbdfu.js uses this for DNLOAD + GETSTATUS pairs whenever the transport provides it.
+     * @param {{direction: string, setup: object, length?: number, data?: ArrayLike<number>}[]} transfers
+     * @returns {Promise<{status: string, data?: Uint8Array}[]>} one result per transfer that ran.
+     */
+    controlTransferSequence(transfers) {
+        return this.adapter.controlTransferSequence(
+            transfers.map(({ direction, setup, length, data }) => ({
+                direction,
+                request: setup.request,
+                value: setup.value,
+                index: setup.index,
+                length,
+                data,
+            })),
+        );
+    }
+
+    // ===== Native Image Download and Verify =====
+
+    /**
+     * Erase and write the image in one native call instead of a control transfer per block.
+     * usbdfu.js uses this whenever the transport provides it.
+     * @returns {Promise<object>} page, byte and timing counts from the plugin.
+     */
+    flashImage(image, onProgress) {
+        return this.adapter.flashImage(image, onProgress);
+    }
+
+    /**
+     * Read the image back and compare it natively; only mismatched ranges come back.
+     * @returns {Promise<{verified: boolean, bytesRead: number, mismatches: object[]}>}
+     */
+    verifyImage(image, onProgress) {
+        return this.adapter.verifyImage(image, onProgress);
+    }
+
     // ===== Descriptor Reading =====
 
     getString(index) {
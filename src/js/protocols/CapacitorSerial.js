@@ -1,9 +1,14 @@
 import { Capacitor } from "@capacitor/core";
-import { hexStringToUint8Array, uint8ArrayToHexString } from "../utils/bytes.js";
+import { decodePayload, encodePayload } from "../utils/bytes.js";
 
 const logHead = "[CAPACITORSERIAL]";
 const BetaflightSerial = Capacitor?.Plugins?.BetaflightSerial;
 
+// Preferred bridge encoding; the native plugin answers with what it actually uses,
+// and an older plugin that does not answer at all only speaks hex.
+const PREFERRED_ENCODING = "base64";
+const FALLBACK_ENCODING = "hex";
+
 /**
  * Capacitor Serial protocol implementation for Android
  * Wraps the native BetaflightSerial plugin to provide serial communication
@@ -30,19 +35,32 @@ class CapacitorSerial extends EventTarget {
         this.ports = [];
         this.currentDevice = null;
         this.connectionId = null;
+        // Handle of the open port in the native plugin, which can hold several at once
+        this.nativeConnectionId = null;
+        this.encoding = FALLBACK_ENCODING;
+        this.framing = "raw";
 
         this.connect = this.connect.bind(this);
         this.disconnect = this.disconnect.bind(this);
         this.handleDataReceived = this.handleDataReceived.bind(this);
+        this.handleFrameReceived = this.handleFrameReceived.bind(this);
         this.handleDeviceAttached = this.handleDeviceAttached.bind(this);
         this.handleDeviceDetached = this.handleDeviceDetached.bind(this);
+        this.handleReconnected = this.handleReconnected.bind(this);
+        this.handleStats = this.handleStats.bind(this);
 
         // Listen for data received from native plugin
         BetaflightSerial.addListener("dataReceived", this.handleDataReceived);
+        // Complete MSP frames, when native framing is enabled
+        BetaflightSerial.addListener("mspFrame", this.handleFrameReceived);
 
         // Listen for device attach/detach events
         BetaflightSerial.addListener("deviceAttached", this.handleDeviceAttached);
         BetaflightSerial.addListener("deviceDetached", this.handleDeviceDetached);
+        // The native side reopened a port after the FC re-enumerated (auto-reconnect)
+        BetaflightSerial.addListener("reconnected", this.handleReconnected);
+        // Periodic link counters, once setStatsInterval() has been called
+        BetaflightSerial.addListener("stats", this.handleStats);
 
         // Load initial device list
         this.loadDevices();
@@ -50,15 +68,37 @@ class CapacitorSerial extends EventTarget {
         console.log(`${logHead} CapacitorSerial initialized`);
     }
 
+    /**
+     * The plugin can have several ports open; only events for ours are ours.
+     * Events without a connectionId come from a plugin that predates connection handles.
+     */
+    isOwnEvent(event) {
+        return !event.connectionId || event.connectionId === this.nativeConnectionId;
+    }
+
     handleDataReceived(event) {
-        // Convert hex string to Uint8Array
-        const data = hexStringToUint8Array(event.data);
+        if (!this.isOwnEvent(event)) {
+            return;
+        }
+        const data = decodePayload(event.data, event.encoding ?? FALLBACK_ENCODING);
         this.bytesReceived += data.length;
 
         // Dispatch receive event with the data
         this.dispatchEvent(new CustomEvent("receive", { detail: data }));
     }
 
+    handleFrameReceived(frame) {
+        if (!this.isOwnEvent(frame)) {
+            return;
+        }
+        const payload = decodePayload(frame.payload, frame.encoding ?? FALLBACK_ENCODING);
+        this.bytesReceived += payload.length;
+
+        // MSP.read recognises the attached frame and skips its byte-level decoder
+        payload.mspFrame = frame;
+        this.dispatchEvent(new CustomEvent("receive", { detail: payload }));
+    }
+
     handleDeviceAttached(device) {
         const added = this.createPort(device);
         if (this.ports.some((port) => port.path === added.path)) {
@@ -96,6 +136,32 @@ class CapacitorSerial extends EventTarget {
         }
     }
 
+    /**
+     * The plugin has already reopened the re-enumerated FC. Nothing changes here yet: the
+     * normal reconnect cycle calls connect() for the returning device, and the plugin hands
+     * over the open port instead of opening it again. Re-dispatched for diagnostics.
+     */
+    handleReconnected(event) {
+        console.log(
+            `${logHead} Native reconnect ${event.previousConnectionId} -> ${event.connectionId} after ${event.downtimeMs} ms`,
+        );
+        this.dispatchEvent(new CustomEvent("reconnected", { detail: event }));
+    }
+
+    handleStats(stats) {
+        if (!this.isOwnEvent(stats)) {
+            return;
+        }
+        this.dispatchEvent(new CustomEvent("stats", { detail: this.withJsCounters(stats) }));
+    }
+
+    /**
+     * Add the JS-side byte counts, so bytes that reached the bridge but not the UI show up.
+     */
+    withJsCounters(stats) {
+        return { ...stats, js: { bytesSent: this.bytesSent, bytesReceived: this.bytesReceived } };
+    }
+
     createPort(device) {
         const deviceKey = this.getDeviceKey(device);
         const displayName = this.getDisplayName(device);
@@ -105,6 +171,8 @@ class CapacitorSerial extends EventTarget {
             displayName: displayName,
             vendorId: device.vendorId,
             productId: device.productId,
+            // Multi-port chips (FT4232, CP2105) expose more than one; pick with the portIndex connect option
+            portCount: device.portCount ?? 1,
             device: device,
         };
     }
@@ -187,19 +255,37 @@ class CapacitorSerial extends EventTarget {
 
             const result = await BetaflightSerial.connect({
                 deviceId: deviceId,
+                portIndex: options?.portIndex ?? 0,
                 baudRate: baudRate,
+                encoding: PREFERRED_ENCODING,
+                // Receive coalescing knobs; the native defaults (4 KB / 2 ms) apply when unset.
+                flushBytes: options?.flushBytes,
+                flushIntervalMs: options?.flushIntervalMs,
+                // "msp" moves MSP frame decoding to the native side; "raw" (default) keeps it in MSP.read
+                framing: options?.framing,
+                // Write queue sizing; the native defaults (4 KB transfers, 64 KB queued) apply when unset.
+                writeTransferBytes: options?.writeTransferBytes,
+                maxQueuedWriteBytes: options?.maxQueuedWriteBytes,
+                // Reopen natively when the FC comes back after a reboot. Opt-in: left on across a DFU
+                // reboot or flash, the reopen attempts would compete with the flasher for the port.
+                autoReconnect: options?.autoReconnect ?? false,
             });
 
             if (result.success) {
                 this.connected = true;
+                this.encoding = result.encoding ?? FALLBACK_ENCODING;
+                this.framing = result.framing ?? "raw";
                 this.connectionId = path;
+                this.nativeConnectionId = result.connectionId ?? null;
                 this.bitrate = baudRate;
                 this.bytesReceived = 0;
                 this.bytesSent = 0;
                 this.openRequested = false;
                 this.currentDevice = device;
 
-                console.log(`${logHead} Connection opened with ID: ${this.connectionId}, Baud: ${baudRate}`);
+                console.log(
+                    `${logHead} Connection ${result.reconnected ? "taken over" : "opened"} with ID: ${this.connectionId}, Baud: ${baudRate}, Encoding: ${this.encoding}`,
+                );
 
                 this.connectionInfo = {
                     usbVendorId: device.vendorId,
@@ -227,11 +313,14 @@ class CapacitorSerial extends EventTarget {
         this.connected = false;
         this.transmitting = false;
         this.connectionId = null;
+        this.nativeConnectionId = null;
         this.bitrate = 0;
         this.connectionInfo = null;
         this.currentDevice = null;
         this.bytesSent = 0;
         this.bytesReceived = 0;
+        this.encoding = FALLBACK_ENCODING;
+        this.framing = "raw";
     }
 
     async disconnect() {
@@ -240,7 +329,7 @@ class CapacitorSerial extends EventTarget {
         }
 
         try {
-            await BetaflightSerial.disconnect();
+            await BetaflightSerial.disconnect({ connectionId: this.nativeConnectionId ?? undefined });
 
             console.log(
                 `${logHead} Connection with ID: ${this.connectionId} closed, Sent: ${this.bytesSent} bytes, Received: ${this.bytesReceived} bytes`,
@@ -269,9 +358,11 @@ class CapacitorSerial extends EventTarget {
         data = new Uint8Array(data);
 
         try {
-            // Convert Uint8Array to hex string
-            const hexString = uint8ArrayToHexString(data);
-            const result = await BetaflightSerial.write({ data: hexString });
+            const result = await BetaflightSerial.write({
+                connectionId: this.nativeConnectionId ?? undefined,
+                data: encodePayload(data, this.encoding),
+                encoding: this.encoding,
+            });
 
             this.bytesSent += result.bytesSent;
 
@@ -288,9 +379,256 @@ class CapacitorSerial extends EventTarget {
         }
     }
 
+    /**
+     * Write several buffers with one bridge call. The plugin queues them behind any
+     * pending writes, merges them into larger USB transfers on its writer thread and
+     * resolves once the whole batch is on the wire.
+     * @param {Array<ArrayBuffer|ArrayLike<number>>} frames
+     * @returns {Promise<{bytesSent: number}>}
+     */
+    async sendBatch(frames) {
+        if (!this.connected) {
+            console.error(`${logHead} Failed to send batch, not connected`);
+            return { bytesSent: 0 };
+        }
+
+        try {
+            const result = await BetaflightSerial.writeBatch({
+                connectionId: this.nativeConnectionId ?? undefined,
+                frames: frames.map((frame) => encodePayload(new Uint8Array(frame), this.encoding)),
+                encoding: this.encoding,
+            });
+
+            this.bytesSent += result.bytesSent;
+            return { bytesSent: result.bytesSent };
+        } catch (error) {
+            console.error(`${logHead} Error sending batch:`, error);
+            return { bytesSent: 0 };
+        }
+    }
+
+    /**
+     * Native write queue counters for the open connection.
+     * @returns {Promise<object|null>} transfers, bytes per transfer and backpressure waits, or null when closed.
+     */
+    async getWriteStats() {
+        if (!this.connected) {
+            return null;
+        }
+        try {
+            return await BetaflightSerial.getWriteStats({ connectionId: this.nativeConnectionId ?? undefined });
+        } catch (error) {
+            console.error(`${logHead} Error reading write stats:`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Native link counters for the open connection: bytes in/out, latency percentiles for
+     * writes, USB transfers and event emission, errors and write queue depth.
+     * @param {object} [options]
+     * @param {boolean} [options.reset] - start a new measurement window after reading.
+     * @returns {Promise<object|null>} null when closed.
+     */
+    async getStats({ reset = false } = {}) {
+        if (!this.connected) {
+            return null;
+        }
+        try {
+            const stats = await BetaflightSerial.getStats({
+                connectionId: this.nativeConnectionId ?? undefined,
+                reset,
+            });
+            return this.withJsCounters(stats);
+        } catch (error) {
+            console.error(`${logHead} Error reading stats:`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Have the plugin emit a "stats" event every intervalMs; 0 turns it off.
+     * @param {number} intervalMs
+     * @returns {Promise<number>} the interval in effect.
+     */
+    async setStatsInterval(intervalMs) {
+        try {
+            const result = await BetaflightSerial.setStatsInterval({ intervalMs });
+            return result?.intervalMs ?? 0;
+        } catch (error) {
+            console.error(`${logHead} Error setting stats interval:`, error);
+            return 0;
+        }
+    }
+
     getConnectedDevice() {
         return this.currentDevice;
     }
+
+    /**
+     * Switch native MSP framing on ("msp") or off ("raw"), e.g. raw while the CLI is open.
+     * @param {string} framing - "msp" or "raw".
+     * @returns {Promise<boolean>} true when the plugin accepted the mode.
+     */
+    async setFraming(framing) {
+        if (!this.connected) {
+            return false;
+        }
+        try {
+            await BetaflightSerial.setFraming({ connectionId: this.nativeConnectionId ?? undefined, framing });
+            this.framing = framing;
+            return true;
+        } catch (error) {
+            console.error(`${logHead} Error setting framing:`, error);
+            return false;
+        }
+    }
+
+    /**
+     * Send several MSP requests in one bridge call. The native scheduler pipelines
+     * them, shares identical in-flight requests and retries timeouts itself.
+     *
+     * Each answered response also arrives as an "mspFrame" event before the batch resolves,
+     * so MSP.read and its listeners (MSPHelper) process it exactly once, like an individually
+     * requested one, and JS requests for the same code get the reply too.
+     *
+     * @param {Array<{code: number, data?: ArrayLike<number>}>} requests
+     * @param {object} [options] - `window`, `timeoutMs` and `retries` for the native scheduler.
+     * @returns {Promise<object[]|null>} per request: `code`, `status`, `data`, `attempts`, `latencyMs`.
+     */
+    async mspBatch(requests, { window, timeoutMs, retries } = {}) {
+        if (!this.connected) {
+            return null;
+        }
+        // Responses are matched from natively decoded frames. Framing then stays on for the
+        // session, since every switch risks splitting a frame; the CLI switches back to raw.
+        if (this.framing !== "msp" && !(await this.setFraming("msp"))) {
+            return null;
+        }
+
+        let result;
+        try {
+            result = await BetaflightSerial.mspBatch({
+                connectionId: this.nativeConnectionId ?? undefined,
+                requests: requests.map(({ code, data }) => ({
+                    code,
+                    payload: encodePayload(new Uint8Array(data ?? []), this.encoding),
+                    encoding: this.encoding,
+                })),
+                window,
+                timeoutMs,
+                retries,
+            });
+        } catch (error) {
+            // null sends MSP.promiseBatch down its per-request path
+            console.error(`${logHead} Error sending MSP batch:`, error);
+            return null;
+        }
+
+        return result.responses.map((response) => ({
+            ...response,
+            data: decodePayload(response.payload, response.encoding ?? this.encoding),
+        }));
+    }
+
+    /**
+     * Native receive coalescing counters for the open connection.
+     * @returns {Promise<object|null>} events emitted, bytes per event and flush reasons, or null when closed.
+     */
+    async getReceiveStats() {
+        if (!this.connected) {
+            return null;
+        }
+        try {
+            return await BetaflightSerial.getReceiveStats({ connectionId: this.nativeConnectionId ?? undefined });
+        } catch (error) {
+            console.error(`${logHead} Error reading receive stats:`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Compare allocations and GC activity of the native receive path with and without
+     * buffer pooling, streaming synthetic packets at `baudRate` (2 Mbaud by default).
+     * @param {object} [options] - `encoding`, `packetSize`, `baudRate` and `durationMs`.
+     * @returns {Promise<object|null>} `unpooled` and `pooled` results, or null on failure.
+     */
+    async benchmarkReadPath(options = {}) {
+        try {
+            return await BetaflightSerial.benchmarkReadPath(options);
+        } catch (error) {
+            console.error(`${logHead} Read path benchmark failed:`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Native auto-reconnect timings: downtime, reopen time and time to the first MSP
+     * response after the last reconnect (-1 until measured).
+     * @returns {Promise<object|null>}
+     */
+    async getReconnectStats() {
+        try {
+            return await BetaflightSerial.getReconnectStats();
+        } catch (error) {
+            console.error(`${logHead} Error reading reconnect stats:`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Native device table counters: probe timings, cache misses and `lastReattachMs`,
+     * how long the last re-enumerating device (e.g. a rebooting FC) was gone.
+     * @returns {Promise<object|null>}
+     */
+    async getProbeStats() {
+        try {
+            return await BetaflightSerial.getProbeStats();
+        } catch (error) {
+            console.error(`${logHead} Error reading probe stats:`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Measure bridge throughput for each payload encoding.
+     *
+     * The native side streams synthetic "benchmarkData" events; this side decodes
+     * them and times the whole run, so the result covers encode, bridge and decode.
+     *
+     * @param {object} [options]
+     * @param {string[]} [options.encodings] - encodings to compare.
+     * @param {number} [options.chunkSize] - bytes per event.
+     * @param {number} [options.totalBytes] - bytes per encoding.
+     * @returns {Promise<object[]>} one result per encoding, including bytesPerSecond.
+     */
+    async benchmarkBridge({ encodings = ["hex", "base64"], chunkSize = 4096, totalBytes = 1 << 20 } = {}) {
+        const results = [];
+
+        for (const encoding of encodings) {
+            let receivedBytes = 0;
+            const listener = await BetaflightSerial.addListener("benchmarkData", (event) => {
+                receivedBytes += decodePayload(event.data, event.encoding).length;
+            });
+
+            const start = performance.now();
+            try {
+                const nativeResult = await BetaflightSerial.benchmarkBridge({ encoding, chunkSize, totalBytes });
+                const elapsedMs = performance.now() - start;
+                results.push({
+                    ...nativeResult,
+                    receivedBytes,
+                    elapsedMs,
+                    bytesPerSecond: elapsedMs > 0 ? (receivedBytes * 1000) / elapsedMs : 0,
+                });
+            } finally {
+                await listener.remove();
+            }
+        }
+
+        console.table?.(results);
+        return results;
+    }
 }
 
 export default CapacitorSerial;
@@ -18,6 +18,12 @@ class CapacitorTcp extends EventTarget {
 
         this.logHead = "[TCP]";
 
+        // Native write queue is full; send() and sendBatch() are refused until it drains
+        this.backpressure = false;
+        this.nextBatchId = 0;
+        // onFrameSent callbacks of batches sent with completion "frame", by batchId
+        this.frameCallbacks = new Map();
+
         this.address = "http://localhost:5761";
 
         this.plugin = BetaflightTcp;
@@ -45,6 +51,82 @@ class CapacitorTcp extends EventTarget {
             console.log("TCP connection closed by peer");
             this.handleDisconnect();
         });
+
+        this.plugin.addListener("writeBackpressure", (ev) => {
+            this.backpressure = ev.active;
+            this.dispatchEvent(new CustomEvent("writeBackpressure", { detail: ev }));
+        });
+
+        // autoReconnect: the native side keeps the session and retries; sends keep queueing meanwhile
+        for (const eventName of ["reconnecting", "reconnected", "reconnectFailed"]) {
+            this.plugin.addListener(eventName, (ev) => {
+                console.log(`${this.logHead} ${eventName}`, ev);
+                this.dispatchEvent(new CustomEvent(eventName, { detail: ev }));
+            });
+        }
+
+        // Heartbeat: liveness transitions and RTT estimate changes
+        this.plugin.addListener("linkState", (ev) => {
+            if (!ev.alive) {
+                console.warn(`${this.logHead} no reply for ${ev.idleMs} ms`);
+            }
+            this.dispatchEvent(new CustomEvent("linkState", { detail: ev }));
+        });
+
+        this.plugin.addListener("frameSent", (ev) => {
+            this.frameCallbacks.get(ev.batchId)?.(ev);
+        });
+
+        this.plugin.addListener("stats", (stats) => {
+            this.dispatchEvent(new CustomEvent("stats", { detail: this.withJsCounters(stats) }));
+        });
+    }
+
+    withJsCounters(stats) {
+        return { ...stats, js: { bytesSent: this.bytesSent, bytesReceived: this.bytesReceived } };
+    }
+
+    /**
+     * Native socket counters: bytes in/out, write and emit latency percentiles, errors
+     * and the number of sends waiting to be written.
+     * @param {object} [options]
+     * @param {boolean} [options.reset] - start a new measurement window after reading.
+     * @returns {Promise<object|null>}
+     */
+    async getStats({ reset = false } = {}) {
+        try {
+            return this.withJsCounters(await this.plugin.getStats({ reset }));
+        } catch (e) {
+            console.error(`${this.logHead}Failed to read stats: ${e}`);
+            return null;
+        }
+    }
+
+    /**
+     * Have the plugin emit a "stats" event every intervalMs while connected; 0 turns it off.
+     * @returns {Promise<number>} the interval in effect.
+     */
+    async setStatsInterval(intervalMs) {
+        try {
+            const result = await this.plugin.setStatsInterval({ intervalMs });
+            return result?.intervalMs ?? 0;
+        } catch (e) {
+            console.error(`${this.logHead}Failed to set stats interval: ${e}`);
+            return 0;
+        }
+    }
+
+    /**
+     * Change the heartbeat of the current connection; see connect().
+     * @returns {Promise<object|null>} the settings in effect.
+     */
+    async setHeartbeat(heartbeat) {
+        try {
+            return await this.plugin.setHeartbeat(heartbeat);
+        } catch (e) {
+            console.error(`${this.logHead}Failed to set heartbeat: ${e}`);
+            return null;
+        }
     }
 
     handleReceiveBytes(info) {
@@ -76,11 +158,54 @@ class CapacitorTcp extends EventTarget {
         };
     }
 
+    /**
+     * Loopback benchmark of the native send path: the old thread-per-send socket against
+     * the event loop, with latency percentiles, sends per second and peak thread count.
+     * @param {object} [options]
+     * @param {number} [options.messages] - messages per pass.
+     * @param {number} [options.payloadSize] - bytes per message.
+     * @returns {Promise<object|null>}
+     */
+    async benchmark({ messages = 2000, payloadSize = 16 } = {}) {
+        try {
+            return await this.plugin.benchmark({ messages, payloadSize });
+        } catch (e) {
+            console.error(`${this.logHead}Benchmark failed: ${e}`);
+            return null;
+        }
+    }
+
+    /**
+     * Loopback request/response RTT for small multi-frame requests, with and without
+     * TCP_NODELAY and gathered writes.
+     * @returns {Promise<object|null>}
+     */
+    async benchmarkRoundTrip({ messages = 200, frameSize = 8, framesPerRequest = 2 } = {}) {
+        try {
+            return await this.plugin.benchmarkRoundTrip({ messages, frameSize, framesPerRequest });
+        } catch (e) {
+            console.error(`${this.logHead}Round trip benchmark failed: ${e}`);
+            return null;
+        }
+    }
+
     async getDevices() {
         return [];
     }
 
-    async connect(path, _options) {
+    /**
+     * @param {string} path - tcp://host:port
+     * @param {object} [options]
+     * @param {object} [options.socketOptions] - tcpNoDelay (default true), keepAlive,
+     *   sendBufferSize, receiveBufferSize, trafficClass and gatherWrites (default true).
+     * @param {number} [options.maxQueuedBytes] - bound of the native write queue (default 64 KiB).
+     * @param {boolean} [options.autoReconnect] - keep the session across link drops and reconnect natively.
+     * @param {object} [options.reconnect] - backoff: initialDelayMs, maxDelayMs, multiplier, jitter,
+     *   maxAttempts, maxDownMs and connectTimeoutMs.
+     * @param {object} [options.heartbeat] - idle detection: mode ("off", "passive" (default) or "msp",
+     *   which pings with MSP_API_VERSION), intervalMs, timeoutMs and closeOnTimeout.
+     */
+    async connect(path, options) {
         try {
             const url = new URL(path);
             // The native plugin connects to a bare address.
@@ -89,7 +214,15 @@ class CapacitorTcp extends EventTarget {
 
             console.log(`${this.logHead} Connecting to ${url}`);
 
-            const result = await this.plugin.connect({ ip: host, port });
+            const result = await this.plugin.connect({
+                ip: host,
+                port,
+                socketOptions: options?.socketOptions,
+                maxQueuedBytes: options?.maxQueuedBytes,
+                autoReconnect: options?.autoReconnect ?? false,
+                reconnect: options?.reconnect,
+                heartbeat: options?.heartbeat ?? { mode: "passive" },
+            });
             if (result?.success) {
                 // An IPv6 host gets its brackets again, so that host:port stays unambiguous.
                 this.address = `${bracketHost(host)}:${port}`;
@@ -107,6 +240,7 @@ class CapacitorTcp extends EventTarget {
 
     async disconnect() {
         this.connected = false;
+        this.backpressure = false;
         this.bytesReceived = 0;
         this.bytesSent = 0;
 
@@ -157,6 +291,43 @@ class CapacitorTcp extends EventTarget {
             bytesSent: actualBytesSent,
         };
     }
+
+    /**
+     * Queue several frames with one bridge call. The plugin writes them in order behind
+     * earlier sends and gathers them into as few socket writes as it can. The batch is
+     * refused as a whole when the native queue is full; wait for a "writeBackpressure"
+     * event with active false before retrying.
+     * @param {Array<ArrayBuffer|ArrayLike<number>>} frames
+     * @param {object} [options]
+     * @param {"batch"|"frame"} [options.completion] - "frame" also reports each frame to onFrameSent.
+     * @param {function({index: number, bytesSent: number})} [options.onFrameSent]
+     * @returns {Promise<{bytesSent: number}>}
+     */
+    async sendBatch(frames, { completion = "batch", onFrameSent } = {}) {
+        if (!this.connected) {
+            console.error(`${this.logHead}Failed to send batch, not connected`);
+            return { bytesSent: 0 };
+        }
+
+        const batchId = `${this.nextBatchId++}`;
+        if (completion === "frame" && onFrameSent) {
+            this.frameCallbacks.set(batchId, onFrameSent);
+        }
+        try {
+            const result = await this.plugin.sendBatch({
+                frames: frames.map((frame) => uint8ArrayToBase64(new Uint8Array(frame))),
+                completion,
+                batchId,
+            });
+            this.bytesSent += result.bytesSent;
+            return { bytesSent: result.bytesSent };
+        } catch (e) {
+            console.error(`${this.logHead}Failed to send batch: ${e}`);
+            return { bytesSent: 0 };
+        } finally {
+            this.frameCallbacks.delete(batchId);
+        }
+    }
 }
 
 export default CapacitorTcp;
@@ -0,0 +1,191 @@
+import { Capacitor } from "@capacitor/core";
+import { base64ToUint8Array, uint8ArrayToBase64 } from "../utils/bytes.js";
+import { bracketHost, unbracketHost } from "../utils/host.js";
+
+const BetaflightUdp = Capacitor?.Plugins?.BetaflightUdp;
+
+/**
+ * MSP over UDP through the native BetaflightUdp plugin, for Wi-Fi and backpack
+ * bridges that forward datagrams. Same surface as CapacitorTcp; addressed as udp://host:port.
+ */
+class CapacitorUdp extends EventTarget {
+    constructor() {
+        super();
+
+        this.connected = false;
+
+        this.bitrate = 0;
+        this.bytesSent = 0;
+        this.bytesReceived = 0;
+        this.failed = 0;
+
+        this.logHead = "[UDP]";
+
+        this.address = "udp://localhost:5761";
+
+        this.plugin = BetaflightUdp;
+
+        this.connect = this.connect.bind(this);
+
+        if (!this.plugin) {
+            console.warn(`${this.logHead} Native BetaflightUdp plugin is not available`);
+            return;
+        }
+
+        this.plugin.addListener("dataReceived", (ev) => {
+            const bytes = base64ToUint8Array(ev.data);
+            this.bytesReceived += bytes.byteLength;
+            this.dispatchEvent(new CustomEvent("receive", { detail: bytes }));
+        });
+
+        this.plugin.addListener("dataReceivedError", (ev) => {
+            console.warn(`${this.logHead} read error:`, ev.error);
+            this.disconnect();
+        });
+
+        this.plugin.addListener("stats", (stats) => {
+            this.dispatchEvent(new CustomEvent("stats", { detail: this.withJsCounters(stats) }));
+        });
+    }
+
+    withJsCounters(stats) {
+        return { ...stats, js: { bytesSent: this.bytesSent, bytesReceived: this.bytesReceived } };
+    }
+
+    /**
+     * Native counters: bytes in/out, latency percentiles, errors, and a link block
+     * with datagram loss, reordering and MSP round-trip time.
+     * @param {object} [options]
+     * @param {boolean} [options.reset] - start a new measurement window after reading.
+     * @returns {Promise<object|null>}
+     */
+    async getStats({ reset = false } = {}) {
+        try {
+            return this.withJsCounters(await this.plugin.getStats({ reset }));
+        } catch (e) {
+            console.error(`${this.logHead}Failed to read stats: ${e}`);
+            return null;
+        }
+    }
+
+    /**
+     * Have the plugin emit a "stats" event every intervalMs while connected; 0 turns it off.
+     * @returns {Promise<number>} the interval in effect.
+     */
+    async setStatsInterval(intervalMs) {
+        try {
+            const result = await this.plugin.setStatsInterval({ intervalMs });
+            return result?.intervalMs ?? 0;
+        } catch (e) {
+            console.error(`${this.logHead}Failed to set stats interval: ${e}`);
+            return 0;
+        }
+    }
+
+    /**
+     * Loopback test against a native UDP echo stand-in that drops every dropEvery-th
+     * reply and holds back every reorderEvery-th one.
+     * @returns {Promise<object|null>} RTT percentiles, the injected faults and the counters that saw them.
+     */
+    async benchmark({ messages = 1000, payloadSize = 16, dropEvery = 0, reorderEvery = 0, mspAligned = true } = {}) {
+        try {
+            return await this.plugin.benchmark({ messages, payloadSize, dropEvery, reorderEvery, mspAligned });
+        } catch (e) {
+            console.error(`${this.logHead}Benchmark failed: ${e}`);
+            return null;
+        }
+    }
+
+    createPort(url) {
+        this.address = url;
+        return {
+            path: url,
+            displayName: `Betaflight UDP`,
+            vendorId: 0,
+            productId: 0,
+            port: 0,
+        };
+    }
+
+    getConnectedDevice() {
+        return this.createPort(this.address);
+    }
+
+    async getDevices() {
+        return [];
+    }
+
+    /**
+     * @param {string} path - udp://host:port
+     * @param {object} [options]
+     * @param {boolean} [options.mspAligned] - send every MSP frame as its own datagram.
+     * @param {number} [options.flushBytes] - receive coalescing size.
+     * @param {number} [options.flushIntervalMs] - receive coalescing window; 0 (default) emits every datagram.
+     * @param {number} [options.lossTimeoutMs] - when an unanswered MSP request counts as lost.
+     */
+    async connect(path, options) {
+        try {
+            const url = new URL(path);
+            const host = unbracketHost(url.hostname);
+            const port = Number.parseInt(url.port, 10) || 5761;
+
+            console.log(`${this.logHead} Connecting to ${url}`);
+
+            const result = await this.plugin.connect({
+                ip: host,
+                port,
+                mspAligned: options?.mspAligned,
+                flushBytes: options?.flushBytes,
+                flushIntervalMs: options?.flushIntervalMs,
+                lossTimeoutMs: options?.lossTimeoutMs,
+            });
+            if (!result?.success) {
+                throw new Error("Connect failed");
+            }
+            this.address = `udp://${bracketHost(host)}:${port}`;
+            this.connected = true;
+            this.dispatchEvent(new CustomEvent("connect", { detail: this.address }));
+        } catch (e) {
+            console.error(`${this.logHead}Failed to open socket: ${e}`);
+            this.connected = false;
+            this.dispatchEvent(new CustomEvent("connect", { detail: false }));
+        }
+    }
+
+    async disconnect() {
+        this.connected = false;
+        this.bytesReceived = 0;
+        this.bytesSent = 0;
+
+        try {
+            const res = await this.plugin.disconnect();
+            if (res.success) {
+                this.dispatchEvent(new CustomEvent("disconnect", { detail: true }));
+            }
+        } catch (e) {
+            console.error(`${this.logHead}Failed to close socket: ${e}`);
+            this.dispatchEvent(new CustomEvent("disconnect", { detail: false }));
+        }
+    }
+
+    async send(data, cb) {
+        let bytesSent = 0;
+        let error = null;
+        if (this.connected) {
+            const bytes = new Uint8Array(data);
+            try {
+                await this.plugin.send({ data: uint8ArrayToBase64(bytes) });
+                bytesSent = bytes.byteLength;
+                this.bytesSent += bytesSent;
+            } catch (e) {
+                console.error(`${this.logHead}Failed to send data e: ${e}`);
+                error = e;
+            }
+            cb?.({ error, bytesSent });
+        }
+
+        return { bytesSent };
+    }
+}
+
+export default CapacitorUdp;
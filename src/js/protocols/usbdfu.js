@@ -162,6 +162,7 @@ export class UsbDfuProtocol extends EventTarget {
 
         this.options = {
             erase_chip: false,
+            differential: false,
             exitDfu: false,
             flashingMessage: options?.flashingMessage,
             flashProgress: options?.flashProgress,
@@ -172,6 +173,9 @@ export class UsbDfuProtocol extends EventTarget {
             this.options.exitDfu = true;
         } else if (options?.erase_chip) {
             this.options.erase_chip = true;
+        } else if (options?.differential) {
+            // only rewrite the pages that changed; needs a transport that flashes natively
+            this.options.differential = true;
         }
 
         // Calculate progress weight based on whether full-chip erase is enabled
@@ -550,6 +554,45 @@ export class UsbDfuProtocol extends EventTarget {
         }
     }
 
+    // DNLOAD followed straight away by GETSTATUS, which every DfuSe command and block write starts with.
+    // Transports that can batch control transfers (Capacitor) send both in one call instead of two;
+    // failures are handled as controlTransfer does: a failed DNLOAD never calls back, a failed
+    // GETSTATUS calls back with ([], 1).
+    downloadThenStatus(wBlockNum, data, callback) {
+        if (!this.transport.controlTransferSequence) {
+            this.controlTransfer("out", this.request.DNLOAD, wBlockNum, 0, 0, data, () => {
+                this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, callback);
+            });
+            return;
+        }
+
+        const setup = (request, value) => ({ requestType: "class", recipient: "interface", request, value, index: 0 });
+        this.transport
+            .controlTransferSequence([
+                { direction: "out", setup: setup(this.request.DNLOAD, wBlockNum), data },
+                { direction: "in", setup: setup(this.request.GETSTATUS, 0), length: 6 },
+            ])
+            .then(([download, status]) => {
+                if (download?.status !== "ok") {
+                    console.log(`${this.logHead} USB controlTransfer OUT failed for request: ${this.request.DNLOAD}`);
+                    if (this._connecting) {
+                        this.cleanup();
+                    }
+                } else if (status?.status === "ok") {
+                    callback(status.data, 0);
+                } else {
+                    console.log(`${this.logHead} USB controlTransfer IN failed for request: ${this.request.GETSTATUS}`);
+                    callback([], 1);
+                }
+            })
+            .catch((error) => {
+                console.log(`${this.logHead} USB controlTransfer sequence failed (${error})`);
+                if (this._connecting) {
+                    this.cleanup();
+                }
+            });
+    }
+
     // Routine that brings the device back to dfuIDLE before the next operation.
     //
     // Per the DFU spec, the request needed depends on the current state:
@@ -621,39 +664,30 @@ export class UsbDfuProtocol extends EventTarget {
     }
 
     loadAddress(address, callback, abort) {
-        this.controlTransfer(
-            "out",
-            this.request.DNLOAD,
-            0,
-            0,
-            0,
-            [0x21, address & 0xff, (address >> 8) & 0xff, (address >> 16) & 0xff, (address >> 24) & 0xff],
-            () => {
-                this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
-                    if (data[4] === this.state.dfuDNBUSY) {
-                        const delay = data[1] | (data[2] << 8) | (data[3] << 16);
-
-                        setTimeout(() => {
-                            this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
-                                if (data[4] === this.state.dfuDNLOAD_IDLE) {
-                                    callback(data);
-                                } else {
-                                    console.log(`${this.logHead} Failed to execute address load`);
-                                    if (abort === undefined || abort) {
-                                        this.cleanup();
-                                    } else {
-                                        callback(data);
-                                    }
-                                }
-                            });
-                        }, delay);
-                    } else {
-                        console.log(`${this.logHead} Failed to request address load`);
-                        this.cleanup();
-                    }
-                });
-            },
-        );
+        const cmd = [0x21, address & 0xff, (address >> 8) & 0xff, (address >> 16) & 0xff, (address >> 24) & 0xff];
+        this.downloadThenStatus(0, cmd, (data) => {
+            if (data[4] === this.state.dfuDNBUSY) {
+                const delay = data[1] | (data[2] << 8) | (data[3] << 16);
+
+                setTimeout(() => {
+                    this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
+                        if (data[4] === this.state.dfuDNLOAD_IDLE) {
+                            callback(data);
+                        } else {
+                            console.log(`${this.logHead} Failed to execute address load`);
+                            if (abort === undefined || abort) {
+                                this.cleanup();
+                            } else {
+                                callback(data);
+                            }
+                        }
+                    });
+                }, delay);
+            } else {
+                console.log(`${this.logHead} Failed to request address load`);
+                this.cleanup();
+            }
+        });
     }
 
     // first_array = usually hex_to_flash array
@@ -957,6 +991,12 @@ export class UsbDfuProtocol extends EventTarget {
                 break;
             }
             case 2: {
+                if (typeof this.transport.flashImage === "function") {
+                    // erase and write in one native call, then verify as usual
+                    this.flashImageNative();
+                    break;
+                }
+
                 // erase
                 // find out which pages to erase
                 const erase_pages = [];
@@ -1037,63 +1077,49 @@ export class UsbDfuProtocol extends EventTarget {
                         } @ 0x${page_addr.toString(16)}`,
                     );
 
-                    this.controlTransfer("out", this.request.DNLOAD, 0, 0, 0, cmd, () => {
-                        this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
-                            if (data[4] === this.state.dfuDNBUSY) {
-                                // completely normal
-                                const delay = data[1] | (data[2] << 8) | (data[3] << 16);
-
-                                setTimeout(() => {
-                                    this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
-                                        if (data[4] === this.state.dfuDNBUSY) {
-                                            // H743 Rev.V (probably other H7 Rev.Vs also) stays in
-                                            // dfuDNBUSY past the reported delay. clearStatus()
-                                            // unsticks it; the erase itself already completed.
-                                            console.log(
-                                                `${this.logHead} erase_page: dfuDNBUSY after timeout, clearing`,
-                                            );
-
-                                            this.clearStatus(() => {
-                                                this.controlTransfer(
-                                                    "in",
-                                                    this.request.GETSTATUS,
-                                                    0,
-                                                    0,
-                                                    6,
-                                                    0,
-                                                    (data) => {
-                                                        if (data[4] === this.state.dfuIDLE) {
-                                                            erase_page_next();
-                                                        } else {
-                                                            console.log(
-                                                                `${
-                                                                    this.logHead
-                                                                } Failed to erase page 0x${page_addr.toString(
-                                                                    16,
-                                                                )} (did not reach dfuIDLE after clearing`,
-                                                            );
-                                                            this.cleanup();
-                                                        }
-                                                    },
-                                                );
-                                            }, true);
-                                        } else if (data[4] === this.state.dfuDNLOAD_IDLE) {
-                                            erase_page_next();
-                                        } else {
-                                            console.log(
-                                                `${this.logHead} Failed to erase page 0x${page_addr.toString(16)}`,
-                                            );
-                                            this.cleanup();
-                                        }
-                                    });
-                                }, delay);
-                            } else {
-                                console.log(
-                                    `${this.logHead} Failed to initiate page erase, page 0x${page_addr.toString(16)}`,
-                                );
-                                this.cleanup();
-                            }
-                        });
+                    this.downloadThenStatus(0, cmd, (data) => {
+                        if (data[4] === this.state.dfuDNBUSY) {
+                            // completely normal
+                            const delay = data[1] | (data[2] << 8) | (data[3] << 16);
+
+                            setTimeout(() => {
+                                this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
+                                    if (data[4] === this.state.dfuDNBUSY) {
+                                        // H743 Rev.V (probably other H7 Rev.Vs also) stays in
+                                        // dfuDNBUSY past the reported delay. clearStatus()
+                                        // unsticks it; the erase itself already completed.
+                                        console.log(`${this.logHead} erase_page: dfuDNBUSY after timeout, clearing`);
+
+                                        this.clearStatus(() => {
+                                            this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
+                                                if (data[4] === this.state.dfuIDLE) {
+                                                    erase_page_next();
+                                                } else {
+                                                    console.log(
+                                                        `${
+                                                            this.logHead
+                                                        } Failed to erase page 0x${page_addr.toString(
+                                                            16,
+                                                        )} (did not reach dfuIDLE after clearing`,
+                                                    );
+                                                    this.cleanup();
+                                                }
+                                            });
+                                        }, true);
+                                    } else if (data[4] === this.state.dfuDNLOAD_IDLE) {
+                                        erase_page_next();
+                                    } else {
+                                        console.log(`${this.logHead} Failed to erase page 0x${page_addr.toString(16)}`);
+                                        this.cleanup();
+                                    }
+                                });
+                            }, delay);
+                        } else {
+                            console.log(
+                                `${this.logHead} Failed to initiate page erase, page 0x${page_addr.toString(16)}`,
+                            );
+                            this.cleanup();
+                        }
                     });
                 };
 
@@ -1131,45 +1157,43 @@ export class UsbDfuProtocol extends EventTarget {
                         bytes_flashed += bytes_to_write;
                         bytes_flashed_total += bytes_to_write;
 
-                        this.controlTransfer("out", this.request.DNLOAD, wBlockNum++, 0, 0, data_to_flash, () => {
-                            this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
-                                if (data[4] === this.state.dfuDNBUSY) {
-                                    const delay = data[1] | (data[2] << 8) | (data[3] << 16);
+                        this.downloadThenStatus(wBlockNum++, data_to_flash, (data) => {
+                            if (data[4] === this.state.dfuDNBUSY) {
+                                const delay = data[1] | (data[2] << 8) | (data[3] << 16);
 
-                                    setTimeout(() => {
-                                        this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
-                                            if (data[4] === this.state.dfuDNLOAD_IDLE) {
-                                                // update progress bar
-                                                const flashStart = this.progressWeights.flash[0];
-                                                const flashRange =
-                                                    this.progressWeights.flash[1] - this.progressWeights.flash[0];
-                                                const flashProgress =
-                                                    (bytes_flashed_total / this.hex.bytes_total) * flashRange;
-                                                this.flashProgress(flashStart + flashProgress);
-
-                                                // flash another page
-                                                write();
-                                            } else {
-                                                console.log(
-                                                    `${
-                                                        this.logHead
-                                                    } Failed to write ${bytes_to_write}bytes to 0x${address.toString(
-                                                        16,
-                                                    )}`,
-                                                );
-                                                this.cleanup();
-                                            }
-                                        });
-                                    }, delay);
-                                } else {
-                                    console.log(
-                                        `${
-                                            this.logHead
-                                        } Failed to initiate write ${bytes_to_write}bytes to 0x${address.toString(16)}`,
-                                    );
-                                    this.cleanup();
-                                }
-                            });
+                                setTimeout(() => {
+                                    this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, (data) => {
+                                        if (data[4] === this.state.dfuDNLOAD_IDLE) {
+                                            // update progress bar
+                                            const flashStart = this.progressWeights.flash[0];
+                                            const flashRange =
+                                                this.progressWeights.flash[1] - this.progressWeights.flash[0];
+                                            const flashProgress =
+                                                (bytes_flashed_total / this.hex.bytes_total) * flashRange;
+                                            this.flashProgress(flashStart + flashProgress);
+
+                                            // flash another page
+                                            write();
+                                        } else {
+                                            console.log(
+                                                `${
+                                                    this.logHead
+                                                } Failed to write ${bytes_to_write}bytes to 0x${address.toString(
+                                                    16,
+                                                )}`,
+                                            );
+                                            this.cleanup();
+                                        }
+                                    });
+                                }, delay);
+                            } else {
+                                console.log(
+                                    `${
+                                        this.logHead
+                                    } Failed to initiate write ${bytes_to_write}bytes to 0x${address.toString(16)}`,
+                                );
+                                this.cleanup();
+                            }
                         });
                     } else {
                         if (flashing_block < blocks) {
@@ -1201,6 +1225,12 @@ export class UsbDfuProtocol extends EventTarget {
                 console.log(`${this.logHead} Verifying data ...`);
                 this.flashingMessage(i18n.getMessage("stm32Verifying"), this.options?.flashMessageTypes?.VERIFYING);
 
+                if (typeof this.transport.verifyImage === "function") {
+                    // read back and compare natively; only mismatched ranges come back
+                    this.verifyImageNative();
+                    break;
+                }
+
                 blocks = this.hex.data.length - 1;
                 let reading_block = 0;
                 address = this.hex.data[reading_block].address;
@@ -1269,43 +1299,7 @@ export class UsbDfuProtocol extends EventTarget {
                                 if (!verify) break;
                             }
 
-                            if (verify) {
-                                console.log(`${this.logHead} Programming: SUCCESSFUL`);
-                                // update progress bar
-                                this.flashingMessage(
-                                    i18n.getMessage("stm32ProgrammingSuccessful"),
-                                    this.options?.flashMessageTypes?.VALID,
-                                );
-
-                                // Show notification
-                                if (getConfig("showNotifications").showNotifications) {
-                                    NotificationManager.showNotification("Betaflight App", {
-                                        body: i18n.getMessage("programmingSuccessfulNotification"),
-                                        icon: "/images/pwa/favicon.ico",
-                                    });
-                                }
-
-                                // proceed to next step
-                                this.leave();
-                            } else {
-                                console.log(`${this.logHead} Programming: FAILED`);
-                                // update progress bar
-                                this.flashingMessage(
-                                    i18n.getMessage("stm32ProgrammingFailed"),
-                                    this.options?.flashMessageTypes?.INVALID,
-                                );
-
-                                // Show notification
-                                if (getConfig("showNotifications").showNotifications) {
-                                    NotificationManager.showNotification("Betaflight App", {
-                                        body: i18n.getMessage("programmingFailedNotification"),
-                                        icon: "/images/pwa/favicon.ico",
-                                    });
-                                }
-
-                                // disconnect
-                                this.cleanup();
-                            }
+                            this.verifyDone(verify);
                         }
                     }
                 };
@@ -1314,6 +1308,125 @@ export class UsbDfuProtocol extends EventTarget {
         }
     }
 
+    // Erase + write through a transport that runs the whole DNLOAD/GETSTATUS loop natively
+    // (CapacitorDfuTransport), instead of two bridge calls per transferSize block.
+    async flashImageNative() {
+        this.flashingMessage(i18n.getMessage("stm32Erase"), this.options?.flashMessageTypes?.ERASING);
+        let phase = "erase";
+
+        const onProgress = (progress) => {
+            if (progress.phase === "write" && phase !== "write") {
+                this.flashingMessage(i18n.getMessage("stm32Flashing"), this.options?.flashMessageTypes?.FLASHING);
+            }
+            phase = progress.phase;
+            // the differential read-back shares the erase part of the bar
+            const [start, end] = phase === "write" ? this.progressWeights.flash : this.progressWeights.erase;
+            this.flashProgress(start + (progress.done / progress.total) * (end - start));
+        };
+
+        try {
+            const result = await this.transport.flashImage(
+                {
+                    segments: this.hex.data.map((block) => ({
+                        address: block.address,
+                        data: Uint8Array.from(block.data),
+                    })),
+                    sectors: this.flash_layout.sectors,
+                    transferSize: this.transferSize,
+                    eraseChip: this.options.erase_chip,
+                    differential: this.options.differential,
+                },
+                onProgress,
+            );
+
+            gui_log(i18n.getMessage("dfu_erased_kilobytes", (result.erasedBytes / 1024).toString()));
+            if (result.differential) {
+                gui_log(i18n.getMessage("dfu_differential_pages", [result.pagesSkipped, result.pagesErased]));
+            } else if (result.differentialFallback) {
+                console.log(`${this.logHead} Differential read-back failed, rewrote all: ${result.fallbackReason}`);
+                gui_log(i18n.getMessage("dfu_differential_fallback"));
+            }
+            console.log(
+                `${this.logHead} Native flash: erased ${result.pagesErased} pages in ${result.eraseMs} ms, wrote ${result.bytesWritten} bytes in ${result.writeMs} ms`,
+            );
+            this.upload_procedure(5);
+        } catch (error) {
+            console.log(`${this.logHead} Native flash failed: ${error?.message ?? error}`);
+            this.flashingMessage(i18n.getMessage("stm32ProgrammingFailed"), this.options?.flashMessageTypes?.INVALID);
+            this.cleanup();
+        }
+    }
+
+    // Verify through a transport that reads back and compares natively (CapacitorDfuTransport),
+    // instead of one UPLOAD bridge call per block and a JS copy of the whole image.
+    async verifyImageNative() {
+        const [start, end] = this.progressWeights.verify;
+        let verified = false;
+
+        try {
+            const result = await this.transport.verifyImage(
+                {
+                    segments: this.hex.data.map((block) => ({
+                        address: block.address,
+                        data: Uint8Array.from(block.data),
+                    })),
+                    sectors: this.flash_layout.sectors,
+                    transferSize: this.transferSize,
+                    stopOnMismatch: true,
+                },
+                (progress) => this.flashProgress(start + (progress.done / progress.total) * (end - start)),
+            );
+
+            verified = result.verified;
+            if (verified) {
+                console.log(`${this.logHead} Verification successful, matching: ${result.bytesRead} bytes`);
+            } else {
+                const first = result.mismatches[0];
+                console.log(
+                    `${this.logHead} Verification failed at 0x${first?.address.toString(16)} (${first?.length} bytes)`,
+                );
+            }
+        } catch (error) {
+            console.log(`${this.logHead} Native verify failed: ${error?.message ?? error}`);
+        }
+
+        this.verifyDone(verified);
+    }
+
+    verifyDone(verify) {
+        if (verify) {
+            console.log(`${this.logHead} Programming: SUCCESSFUL`);
+            // update progress bar
+            this.flashingMessage(i18n.getMessage("stm32ProgrammingSuccessful"), this.options?.flashMessageTypes?.VALID);
+
+            // Show notification
+            if (getConfig("showNotifications").showNotifications) {
+                NotificationManager.showNotification("Betaflight App", {
+                    body: i18n.getMessage("programmingSuccessfulNotification"),
+                    icon: "/images/pwa/favicon.ico",
+                });
+            }
+
+            // proceed to next step
+            this.leave();
+        } else {
+            console.log(`${this.logHead} Programming: FAILED`);
+            // update progress bar
+            this.flashingMessage(i18n.getMessage("stm32ProgrammingFailed"), this.options?.flashMessageTypes?.INVALID);
+
+            // Show notification
+            if (getConfig("showNotifications").showNotifications) {
+                NotificationManager.showNotification("Betaflight App", {
+                    body: i18n.getMessage("programmingFailedNotification"),
+                    icon: "/images/pwa/favicon.ico",
+                });
+            }
+
+            // disconnect
+            this.cleanup();
+        }
+    }
+
     leave() {
         // leave DFU
         const address = this.hex ? this.hex.data[0].address : 0x08000000;
@@ -1321,10 +1434,8 @@ export class UsbDfuProtocol extends EventTarget {
         this.clearStatus(() => {
             this.loadAddress(address, () => {
                 // 'downloading' 0 bytes to the program start address followed by a GETSTATUS is used to trigger DFU exit on STM32
-                this.controlTransfer("out", this.request.DNLOAD, 0, 0, 0, 0, () => {
-                    this.controlTransfer("in", this.request.GETSTATUS, 0, 0, 6, 0, () => {
-                        this.cleanup();
-                    });
+                this.downloadThenStatus(0, [], () => {
+                    this.cleanup();
                 });
             });
         });
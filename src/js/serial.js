@@ -6,6 +6,7 @@ import { isAndroid, isTauri, isTauriAndroid, isTauriIOS, isTauriMacOS } from "./
 import CapacitorSerial from "./protocols/CapacitorSerial.js";
 import CapacitorBle from "./protocols/CapacitorBle.js";
 import CapacitorTcp from "./protocols/CapacitorTcp.js";
+import CapacitorUdp from "./protocols/CapacitorUdp.js";
 import TauriSerial from "./protocols/TauriSerial.js";
 import TauriTcp from "./protocols/TauriTcp.js";
 import TauriBle from "./protocols/TauriBle.js";
@@ -23,6 +24,7 @@ const HOST = String.raw`(?:\[[0-9a-f:.]+\]|[a-z0-9._-]+)(?::\d+)?`;
 const urlPattern = (scheme) => new RegExp(`^(?:${scheme})://${HOST}(?:/.*)?$`, "i");
 const WEBSOCKET_URL = urlPattern("wss?");
 const TCP_URL = urlPattern("tcp");
+const UDP_URL = urlPattern("udp");
 const BARE_HOST = new RegExp(`^${HOST}$`, "i");
 
 /**
@@ -44,6 +46,7 @@ class Serial extends EventTarget {
                 { name: "serial", instance: new CapacitorSerial() },
                 { name: "bluetooth", instance: new CapacitorBle() },
                 { name: "tcp", instance: new CapacitorTcp() },
+                { name: "udp", instance: new CapacitorUdp() },
             ];
         } else if (isTauri()) {
             // Tauri shell: raw TCP via the Rust tcp_* commands (so the Betaflight bridge
@@ -90,7 +93,7 @@ class Serial extends EventTarget {
         // (e.g. a BLE link's gattserverdisconnected firing after the user switched
         // to a serial FC); forwarding it would run onClosed/read_serial against the
         // wrong connection and corrupt the live one.
-        const lifecycleEvents = new Set(["connect", "disconnect", "receive"]);
+        const lifecycleEvents = new Set(["connect", "disconnect", "receive", "stats", "linkState"]);
 
         for (const { name, instance } of this._protocols) {
             if (typeof instance?.addEventListener !== "function") {
@@ -168,6 +171,10 @@ class Serial extends EventTarget {
         if (s === "manual" || TCP_URL.test(s)) {
             return this._instance("tcp");
         }
+        // Only the Android shell has a UDP transport; elsewhere udp:// resolves to no protocol.
+        if (UDP_URL.test(s)) {
+            return this._instance("udp");
+        }
         if (s.startsWith("bluetooth")) {
             return this._instance("bluetooth");
         }
@@ -263,6 +270,96 @@ class Serial extends EventTarget {
         return result;
     }
 
+    /**
+     * Send several buffers in order with as few transport round trips as possible.
+     *
+     * Protocols with a native write queue (CapacitorSerial.sendBatch) take the whole
+     * list in one call; everything else gets one send() per buffer, awaited in turn.
+     * The callback follows the send() contract: invoked here, exactly once.
+     *
+     * @param {Array<ArrayBuffer|ArrayLike<number>>} frames
+     * @returns {Promise<{bytesSent: number}>} total bytes written
+     */
+    async sendBatch(frames, callback) {
+        let result;
+        try {
+            if (typeof this._protocol?.sendBatch === "function") {
+                result = (await this._protocol.sendBatch(frames)) ?? { bytesSent: 0 };
+            } else {
+                let bytesSent = 0;
+                for (const frame of frames) {
+                    bytesSent += ((await this._protocol?.send?.(frame)) ?? { bytesSent: 0 }).bytesSent;
+                }
+                result = { bytesSent };
+            }
+        } catch (error) {
+            result = { bytesSent: 0 };
+            console.error(`${this.logHead} Error sending batch:`, error);
+        }
+        callback?.(result);
+        return result;
+    }
+
+    /**
+     * Native link counters for the active connection: bytes in/out, write, transfer and
+     * bridge-emit latency percentiles, errors and queue depth.
+     * @param {object} [options]
+     * @param {boolean} [options.reset] - start a new measurement window after reading.
+     * @returns {Promise<object|null>} null when the protocol has no native counters.
+     */
+    async getStats(options) {
+        try {
+            return (await this._protocol?.getStats?.(options)) ?? null;
+        } catch (error) {
+            console.error(`${this.logHead} Error reading stats:`, error);
+            return null;
+        }
+    }
+
+    /**
+     * Ask the active protocol for a periodic "stats" event; 0 turns it off.
+     * @param {number} intervalMs
+     * @returns {Promise<number>} the interval in effect, 0 when unsupported.
+     */
+    async setStatsInterval(intervalMs) {
+        try {
+            return (await this._protocol?.setStatsInterval?.(intervalMs)) ?? 0;
+        } catch (error) {
+            console.error(`${this.logHead} Error setting stats interval:`, error);
+            return 0;
+        }
+    }
+
+    /**
+     * Switch native MSP framing ("msp") off again ("raw") on protocols that decode frames
+     * natively, e.g. before entering the CLI, whose text must reach JS byte for byte.
+     * @param {string} framing - "msp" or "raw".
+     * @returns {Promise<boolean>} true when the protocol switched; false when it has no framing.
+     */
+    async setFraming(framing) {
+        try {
+            return (await this._protocol?.setFraming?.(framing)) ?? false;
+        } catch (error) {
+            console.error(`${this.logHead} Error setting framing:`, error);
+            return false;
+        }
+    }
+
+    /**
+     * Ask the active protocol for other link parameters: "bulk" around long transfers such as
+     * dataflash downloads and CLI dumps, "balanced" afterwards. Only BLE has link profiles.
+     * @param {string} profile
+     * @returns {Promise<object|null>} the negotiated link, or null when the protocol has none.
+     */
+    async setLinkProfile(profile) {
+        try {
+            return (await this._protocol?.setLinkProfile?.(profile)) ?? null;
+        } catch (error) {
+            console.error(`${this.logHead} Error setting link profile:`, error);
+            return null;
+        }
+    }
+
     /**
      * Get devices from a specific protocol type or current protocol
      * @param {string} protocolType - Optional protocol type ('serial', 'bluetooth', 'tcp', 'virtual')
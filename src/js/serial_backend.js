@@ -129,6 +129,11 @@ function disconnectHandler(event) {
     onClosed(event.detail);
 }
 
+// Transports with a native heartbeat (Capacitor TCP) report an RTT estimate; size MSP.TIMEOUT to it.
+function linkStateHandler(event) {
+    MSP.adaptTimeout(event.detail?.rtoMs);
+}
+
 export function initializeSerialBackend() {
     // Exposed via EventBus so modules that can't import serial_backend directly
     // (notably gui.js, which is on the other side of an import cycle) can still
@@ -672,6 +677,8 @@ function resetConnection() {
 
     MSP.clearListeners();
     MSP.onTimeout = null;
+    MSP.adaptTimeout(null);
+    serial.removeEventListener("linkState", linkStateHandler);
     // Clear the FC-liveness timestamp so the next connection can't inherit stale traffic state
     // from this one and mis-classify a fresh link as still-alive in handleConnectionTimeout.
     MSP.last_received_timestamp = null;
@@ -822,6 +829,8 @@ function onOpen(openInfo) {
         mspHelper = new MspHelper();
         MSP.listen(mspHelper.process_data.bind(mspHelper));
         MSP.onTimeout = handleConnectionTimeout;
+        serial.removeEventListener("linkState", linkStateHandler);
+        serial.addEventListener("linkState", linkStateHandler);
 
         console.log(`${logHead} Requesting configuration data`);
 
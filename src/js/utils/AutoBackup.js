@@ -183,6 +183,8 @@ class AutoBackup {
         console.log("Running backup");
 
         await this.activateCliMode();
+        // Bulk BLE link parameters for the dump; the backup disconnects when it ends
+        await serial.setLinkProfile("bulk");
         this.waitForCommandCompletion("diff all");
     }
 
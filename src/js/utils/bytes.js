@@ -75,3 +75,25 @@ export function uint8ArrayToHexString(uint8Array) {
         .map((byte) => byte.toString(16).padStart(2, "0"))
         .join("");
 }
+
+/**
+ * Decode a native bridge payload in the given encoding.
+ *
+ * @param {string} data - The encoded payload.
+ * @param {string} [encoding="hex"] - "base64" or "hex"; anything else is treated as hex.
+ * @returns {Uint8Array} The decoded bytes.
+ */
+export function decodePayload(data, encoding = "hex") {
+    return encoding === "base64" ? base64ToUint8Array(data) : hexStringToUint8Array(data);
+}
+
+/**
+ * Encode bytes for the native bridge in the given encoding.
+ *
+ * @param {Uint8Array} bytes - The bytes to encode.
+ * @param {string} [encoding="hex"] - "base64" or "hex"; anything else is treated as hex.
+ * @returns {string} The encoded payload.
+ */
+export function encodePayload(bytes, encoding = "hex") {
+    return encoding === "base64" ? uint8ArrayToBase64(bytes) : uint8ArrayToHexString(bytes);
+}
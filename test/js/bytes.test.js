@@ -4,6 +4,8 @@ import {
     uint8ArrayToBase64,
     hexStringToUint8Array,
     uint8ArrayToHexString,
+    decodePayload,
+    encodePayload,
 } from "../../src/js/utils/bytes.js";
 
 describe("bytes base64 helpers", () => {
@@ -58,3 +60,22 @@ describe("bytes hex helpers", () => {
         expect(() => hexStringToUint8Array("abc")).toThrow();
     });
 });
+
+describe("bytes payload helpers", () => {
+    const original = new Uint8Array([0x24, 0x58, 0x3e, 0x00, 0xff]);
+
+    it("round-trips through base64", () => {
+        expect(encodePayload(original, "base64")).toBe(uint8ArrayToBase64(original));
+        expect(decodePayload(encodePayload(original, "base64"), "base64")).toEqual(original);
+    });
+
+    it("round-trips through hex", () => {
+        expect(encodePayload(original, "hex")).toBe("24583e00ff");
+        expect(decodePayload("24583e00ff", "hex")).toEqual(original);
+    });
+
+    it("falls back to hex when no encoding is given", () => {
+        expect(encodePayload(original)).toBe("24583e00ff");
+        expect(decodePayload("24583e00ff")).toEqual(original);
+    });
+});
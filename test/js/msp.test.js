@@ -122,4 +122,63 @@ describe("MSP", () => {
             }
         });
     });
+
+    describe("read with a natively decoded frame", () => {
+        it("dispatches the frame without the byte-level decoder", () => {
+            const seen = [];
+            const listener = (msp) =>
+                seen.push({ code: msp.code, crcError: msp.crcError, bytes: new Uint8Array(msp.dataView.buffer) });
+            try {
+                MSP.listen(listener);
+                const payload = new Uint8Array([1, 2, 3]);
+                payload.mspFrame = { direction: ">", code: 108, checksum: 0x55, computedChecksum: 0x55 };
+
+                MSP.read({ data: payload });
+
+                expect(seen).toEqual([{ code: 108, crcError: false, bytes: new Uint8Array([1, 2, 3]) }]);
+                expect(MSP.state).toBe(MSP.decoder_states.IDLE);
+            } finally {
+                MSP.clearListeners();
+            }
+        });
+
+        it("counts a checksum mismatch reported by the native decoder", () => {
+            try {
+                MSP.packet_error = 0;
+                const payload = new Uint8Array([9]);
+                payload.mspFrame = { direction: ">", code: 1, checksum: 0x10, computedChecksum: 0x11 };
+
+                MSP.read(payload);
+
+                expect(MSP.packet_error).toBe(1);
+                expect(MSP.dataView.byteLength).toBe(0);
+            } finally {
+                MSP.packet_error = 0;
+            }
+        });
+    });
+
+    describe("adaptTimeout", () => {
+        it("sizes TIMEOUT from the RTO within bounds and restores the default", () => {
+            try {
+                expect(MSP.adaptTimeout(1200)).toBe(2400);
+                expect(MSP.adaptTimeout(60000)).toBe(MSP.MAX_TIMEOUT);
+                expect(MSP.adaptTimeout(-1)).toBe(MSP.DEFAULT_TIMEOUT);
+                MSP.adaptTimeout(1200);
+                expect(MSP.adaptTimeout(null)).toBe(MSP.DEFAULT_TIMEOUT);
+            } finally {
+                MSP.adaptTimeout(null);
+            }
+        });
+
+        it("never lowers TIMEOUT below the default for a fast link", () => {
+            try {
+                expect(MSP.adaptTimeout(12)).toBe(MSP.DEFAULT_TIMEOUT);
+                expect(MSP.adaptTimeout(400)).toBe(MSP.DEFAULT_TIMEOUT);
+                expect(MSP.TIMEOUT).toBe(MSP.DEFAULT_TIMEOUT);
+            } finally {
+                MSP.adaptTimeout(null);
+            }
+        });
+    });
 });
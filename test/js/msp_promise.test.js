@@ -301,4 +301,54 @@ describe("MSP promise semantics", () => {
             expect(MSP.callbacks.some((entry) => entry.errorAware && entry.code === EEPROM_WRITE_CODE)).toBe(false);
         });
     });
+
+    describe("promiseBatch", () => {
+        it("resolves every request from one native batch call", async () => {
+            const mspBatch = vi.fn(async (requests) =>
+                requests.map(({ code }) => ({ code, status: "ok", data: new Uint8Array([code]) })),
+            );
+            serial._protocol = { connected: true, mspBatch };
+
+            const responses = await MSP.promiseBatch([EEPROM_WRITE_CODE, { code: 1, data: [2] }]);
+
+            expect(mspBatch).toHaveBeenCalledTimes(1);
+            expect(mspBatch.mock.calls[0][0]).toEqual([{ code: EEPROM_WRITE_CODE }, { code: 1, data: [2] }]);
+            expect(serialSendSpy).not.toHaveBeenCalled();
+            expect(responses.map((response) => response.command)).toEqual([EEPROM_WRITE_CODE, 1]);
+            expect(responses[1].data.getUint8(0)).toBe(1);
+        });
+
+        it("rejects with MspTimeoutError when the native scheduler gave up", async () => {
+            serial._protocol = {
+                connected: true,
+                mspBatch: async () => [{ code: EEPROM_WRITE_CODE, status: "timeout", data: new Uint8Array(0) }],
+            };
+
+            await expect(MSP.promiseBatch([EEPROM_WRITE_CODE])).rejects.toBeInstanceOf(MspTimeoutError);
+        });
+
+        it("falls back to one promise per request without a native scheduler", async () => {
+            const pending = MSP.promiseBatch([EEPROM_WRITE_CODE]);
+            await vi.advanceTimersByTimeAsync(0);
+            expect(serialSendSpy).toHaveBeenCalledTimes(1);
+
+            readFrame(v1ResponseFrame(EEPROM_WRITE_CODE));
+            const [response] = await pending;
+            expect(response.command).toBe(EEPROM_WRITE_CODE);
+        });
+
+        it("sends fallback requests one at a time", async () => {
+            const pending = MSP.promiseBatch([EEPROM_WRITE_CODE, 1]);
+            await vi.advanceTimersByTimeAsync(0);
+            expect(serialSendSpy).toHaveBeenCalledTimes(1);
+
+            readFrame(v1ResponseFrame(EEPROM_WRITE_CODE));
+            await vi.advanceTimersByTimeAsync(0);
+            expect(serialSendSpy).toHaveBeenCalledTimes(2);
+
+            readFrame(v1ResponseFrame(1, [0, 1, 47]));
+            const responses = await pending;
+            expect(responses.map((response) => response.command)).toEqual([EEPROM_WRITE_CODE, 1]);
+        });
+    });
 });
@@ -3,10 +3,10 @@ import { describe, expect, it, vi, beforeEach } from "vitest";
 // Force the Tauri shell so the protocol list registers both the Rust-backed raw-TCP
 // slot and the WebSocket slot — the case the ws/wss vs tcp routing fix is about.
 // Mutable so a second block can pin the Tauri Android slot table.
-const platform = vi.hoisted(() => ({ isTauriIOS: true, isTauriAndroid: false, isTauriMacOS: false }));
+const platform = vi.hoisted(() => ({ isAndroid: false, isTauriIOS: true, isTauriAndroid: false, isTauriMacOS: false }));
 
 vi.mock("../../src/js/utils/checkCompatibility.js", () => ({
-    isAndroid: () => false,
+    isAndroid: () => platform.isAndroid,
     isTauri: () => true,
     isTauriIOS: () => platform.isTauriIOS,
     isTauriAndroid: () => platform.isTauriAndroid,
@@ -27,6 +27,7 @@ vi.mock("../../src/js/protocols/VirtualSerial.js", () => ({ default: stub("Virtu
 vi.mock("../../src/js/protocols/CapacitorSerial.js", () => ({ default: stub("CapacitorSerial") }));
 vi.mock("../../src/js/protocols/CapacitorBle.js", () => ({ default: stub("CapacitorBle") }));
 vi.mock("../../src/js/protocols/CapacitorTcp.js", () => ({ default: stub("CapacitorTcp") }));
+vi.mock("../../src/js/protocols/CapacitorUdp.js", () => ({ default: stub("CapacitorUdp") }));
 vi.mock("../../src/js/protocols/TauriSerial.js", () => ({ default: stub("TauriSerial") }));
 vi.mock("../../src/js/protocols/TauriTcp.js", () => ({ default: stub("TauriTcp") }));
 vi.mock("../../src/js/protocols/TauriBle.js", () => ({ default: stub("TauriBle") }));
@@ -36,12 +37,14 @@ let serial;
 /**
  * Rebuilds the serial singleton on the given Tauri platform. It builds its slot table at
  * module load, so the registry has to be reset for a changed platform to take effect.
- * @param {{ios?: boolean, android?: boolean, macos?: boolean}} on - the platform to report;
- *   everything omitted is false, which is desktop Linux/Windows.
+ * @param {{ios?: boolean, android?: boolean, macos?: boolean, capacitor?: boolean}} on - the platform
+ *   to report; everything omitted is false, which is desktop Linux/Windows. capacitor selects the
+ *   Capacitor Android shell, which takes precedence over Tauri.
  * @returns {void}
  */
 function usePlatform(on = {}) {
     beforeEach(async () => {
+        platform.isAndroid = on.capacitor ?? false;
         platform.isTauriIOS = on.ios ?? false;
         platform.isTauriAndroid = on.android ?? false;
         platform.isTauriMacOS = on.macos ?? false;
@@ -138,3 +141,21 @@ describe("serial protocol slots — Tauri desktop (Linux/Windows)", () => {
         expect(serial.selectProtocol("bluetooth_AA:BB:CC:DD:EE:FF").constructor.name).toBe("WebBluetooth");
     });
 });
+
+describe("serial protocol slots — Capacitor Android", () => {
+    usePlatform({ capacitor: true });
+
+    it("routes udp:// to the native UDP transport and tcp:// to the TCP one", () => {
+        expect(serial.selectProtocol("udp://192.168.4.1:5761").constructor.name).toBe("CapacitorUdp");
+        expect(serial.selectProtocol("udp://[fe80::1]:5761").constructor.name).toBe("CapacitorUdp");
+        expect(serial.selectProtocol("tcp://192.168.4.1:5761").constructor.name).toBe("CapacitorTcp");
+    });
+});
+
+describe("serial protocol slots — no UDP transport", () => {
+    usePlatform();
+
+    it("resolves udp:// to no protocol instead of the serial slot", () => {
+        expect(serial.selectProtocol("udp://192.168.4.1:5761")).toBeUndefined();
+    });
+});
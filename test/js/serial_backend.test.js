@@ -84,6 +84,7 @@ vi.mock("../../src/js/msp", () => ({
         promise: vi.fn(() => Promise.resolve()),
         listen: vi.fn(),
         clearListeners: vi.fn(),
+        adaptTimeout: vi.fn(),
         disconnect_cleanup: vi.fn(),
         read: vi.fn(),
     },
@@ -32,6 +32,7 @@ vi.mock("../../src/js/protocols/VirtualSerial.js", () => ({ default: stub("Virtu
 vi.mock("../../src/js/protocols/CapacitorSerial.js", () => ({ default: stub("CapacitorSerial") }));
 vi.mock("../../src/js/protocols/CapacitorBle.js", () => ({ default: stub("CapacitorBle") }));
 vi.mock("../../src/js/protocols/CapacitorTcp.js", () => ({ default: stub("CapacitorTcp") }));
+vi.mock("../../src/js/protocols/CapacitorUdp.js", () => ({ default: stub("CapacitorUdp") }));
 vi.mock("../../src/js/protocols/TauriSerial.js", () => ({ default: stub("TauriSerial") }));
 vi.mock("../../src/js/protocols/TauriTcp.js", () => ({ default: stub("TauriTcp") }));
 vi.mock("../../src/js/protocols/TauriBle.js", () => ({ default: stub("TauriBle") }));
@@ -127,6 +128,55 @@ describe("serial.send callback contract", () => {
     });
 });
 
+describe("serial.sendBatch", () => {
+    beforeEach(async () => {
+        await loadSerial();
+        vi.spyOn(console, "error").mockImplementation(() => {});
+    });
+
+    afterEach(() => {
+        vi.restoreAllMocks();
+    });
+
+    it("hands the whole batch to a protocol with a native sendBatch", async () => {
+        const proto = fakeProtocol();
+        proto.sendBatch = vi.fn(async () => ({ bytesSent: 7 }));
+        serial._protocol = proto;
+        const callback = vi.fn();
+
+        const result = await serial.sendBatch([new Uint8Array(3), new Uint8Array(4)], callback);
+
+        expect(proto.sendBatch).toHaveBeenCalledTimes(1);
+        expect(proto.send).not.toHaveBeenCalled();
+        expect(result).toEqual({ bytesSent: 7 });
+        expect(callback).toHaveBeenCalledTimes(1);
+    });
+
+    it("falls back to one send per frame and sums the byte counts", async () => {
+        const proto = fakeProtocol({ bytesSent: 5 });
+        serial._protocol = proto;
+
+        const result = await serial.sendBatch([new Uint8Array(5), new Uint8Array(5), new Uint8Array(5)]);
+
+        expect(proto.send).toHaveBeenCalledTimes(3);
+        expect(result).toEqual({ bytesSent: 15 });
+    });
+
+    it("invokes the callback exactly once with zero bytes when the batch fails", async () => {
+        const proto = fakeProtocol();
+        proto.sendBatch = vi.fn(async () => {
+            throw new Error("queue full");
+        });
+        serial._protocol = proto;
+        const callback = vi.fn();
+
+        const result = await serial.sendBatch([new Uint8Array(2)], callback);
+
+        expect(callback).toHaveBeenCalledTimes(1);
+        expect(result).toEqual({ bytesSent: 0 });
+    });
+});
+
 describe("WebBluetooth.send return value", () => {
     // The facade's `?? { bytesSent: 0 }` is now the only value the caller sees,
     // so a transport that returns undefined would silently report every send as
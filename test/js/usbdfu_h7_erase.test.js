@@ -153,6 +153,30 @@ class MockH7Transport extends EventTarget {
     }
 }
 
+/**
+ * The same bootloader behind a transport that batches control transfers, as the
+ * Capacitor one does: each sequence runs through the single-transfer handlers in order.
+ */
+class MockBatchingH7Transport extends MockH7Transport {
+    constructor(descriptorStrings, wedgePages = []) {
+        super(descriptorStrings, wedgePages);
+        this.sequenceCount = 0;
+    }
+
+    async controlTransferSequence(transfers) {
+        this.sequenceCount++;
+        const results = [];
+        for (const { direction, setup, length, data } of transfers) {
+            results.push(
+                direction === "in"
+                    ? await this.controlTransferIn(setup, length)
+                    : await this.controlTransferOut(setup, data),
+            );
+        }
+        return results;
+    }
+}
+
 /**
  * Build a minimal parsed-hex object for the flasher (one block at the flash base).
  * @param {number} byteCount - Size of the firmware image in bytes.
@@ -233,6 +257,19 @@ describe("STM32H7 DFU flashing", () => {
         expect(transport.erasedPages).toEqual([0, 1, 2, 3]);
         expect(transport.clrStatusCount).toBe(0);
     });
+
+    it("sends DNLOAD + GETSTATUS as one sequence when the transport batches transfers", async () => {
+        const transport = new MockBatchingH7Transport(LAYOUT, [2, 3]);
+        const dfu = new UsbDfuProtocol(transport);
+
+        await flashWithTimeout(dfu, makeHex(4096), options);
+
+        expect(messages.at(-1).msg).toBe("stm32ProgrammingSuccessful");
+        expect(transport.erasedPages).toEqual([0, 1, 2, 3]);
+        expect(transport.written).toHaveLength(4096);
+        // Four page erases and two 2 KiB blocks, plus the load address before each
+        expect(transport.sequenceCount).toBeGreaterThanOrEqual(6);
+    });
 });
 
 /**
@@ -309,3 +346,155 @@ describe("UsbDfuProtocol.clearStatus", () => {
         expect(transport.clrStatusCount).toBe(2);
     });
 });
+
+/**
+ * The bootloader behind a transport that erases and writes natively, as the Capacitor one
+ * does: flashImage() stores the segments and reports progress. With `verify`, verifyImage()
+ * compares natively too and reports that result; otherwise JS reads the image back.
+ */
+class MockNativeH7Transport extends MockH7Transport {
+    constructor(descriptorStrings, { flashError = null, verify = null } = {}) {
+        super(descriptorStrings);
+        this.flashError = flashError;
+        this.flashCalls = [];
+        this.verifyCalls = [];
+        if (verify) {
+            this.verifyImage = async (image, onProgress) => {
+                this.verifyCalls.push(image);
+                onProgress({ phase: "verify", done: 1, total: 1 });
+                return verify;
+            };
+        }
+    }
+
+    async flashImage(image, onProgress) {
+        this.flashCalls.push(image);
+        if (this.flashError) {
+            throw this.flashError;
+        }
+        onProgress({ phase: "erase", done: 1, total: 2 });
+        onProgress({ phase: "erase", done: 2, total: 2 });
+        for (const segment of image.segments) {
+            this.written.push(...segment.data);
+        }
+        onProgress({ phase: "write", done: 1, total: 2 });
+        onProgress({ phase: "write", done: 2, total: 2 });
+        return {
+            differential: image.differential,
+            pagesErased: 2,
+            pagesSkipped: image.differential ? 2 : 0,
+            erasedBytes: 2 * PAGE_SIZE,
+            bytesWritten: this.written.length,
+            eraseMs: 1,
+            writeMs: 1,
+        };
+    }
+}
+
+describe("native DFU flashing", () => {
+    const LAYOUT = ["@Internal Flash /0x08000000/04*016Kg"];
+    let options;
+    let messages;
+
+    beforeEach(() => {
+        messages = [];
+        options = {
+            erase_chip: true,
+            flashingMessage: (msg, type) => messages.push({ msg, type }),
+            flashProgress: vi.fn(),
+            flashMessageTypes: FLASH_MESSAGE_TYPES,
+        };
+    });
+
+    it("erases and writes in one flashImage call instead of the JS erase/write phases", async () => {
+        const transport = new MockNativeH7Transport(LAYOUT);
+        const dfu = new UsbDfuProtocol(transport);
+
+        await flashWithTimeout(dfu, makeHex(4096), options);
+
+        expect(transport.flashCalls).toHaveLength(1);
+        expect(transport.flashCalls[0]).toMatchObject({ eraseChip: true, differential: false, transferSize: 2048 });
+        // No page erase or block write went through the single-transfer path
+        expect(transport.erasedPages).toEqual([]);
+        expect(transport.written).toHaveLength(4096);
+        expect(messages.map(({ msg }) => msg)).toEqual(
+            expect.arrayContaining(["stm32Erase", "stm32Flashing", "stm32Verifying"]),
+        );
+        expect(messages.at(-1)).toEqual({ msg: "stm32ProgrammingSuccessful", type: FLASH_MESSAGE_TYPES.VALID });
+    });
+
+    it("maps native erase and write progress onto the erase and flash parts of the bar", async () => {
+        const transport = new MockNativeH7Transport(LAYOUT);
+        const dfu = new UsbDfuProtocol(transport);
+
+        await flashWithTimeout(dfu, makeHex(4096), options);
+
+        // Full chip erase: erase 0-33, flash 33-66
+        expect(options.flashProgress).toHaveBeenCalledWith(16.5);
+        expect(options.flashProgress).toHaveBeenCalledWith(33);
+        expect(options.flashProgress).toHaveBeenCalledWith(49.5);
+        expect(options.flashProgress).toHaveBeenCalledWith(66);
+    });
+
+    it("reports ProgrammingFailed and cleans up when flashImage rejects", async () => {
+        const transport = new MockNativeH7Transport(LAYOUT, { flashError: new Error("USB transfer failed") });
+        const dfu = new UsbDfuProtocol(transport);
+        const cleanup = vi.spyOn(dfu, "cleanup");
+
+        await flashWithTimeout(dfu, makeHex(4096), options);
+
+        expect(cleanup).toHaveBeenCalledTimes(1);
+        expect(messages.at(-1)).toEqual({ msg: "stm32ProgrammingFailed", type: FLASH_MESSAGE_TYPES.INVALID });
+        expect(messages.map(({ msg }) => msg)).not.toContain("stm32Verifying");
+        expect(dfu._connecting).toBe(false);
+    });
+
+    it("passes differential through to flashImage when the chip is not fully erased", async () => {
+        const transport = new MockNativeH7Transport(LAYOUT);
+        const dfu = new UsbDfuProtocol(transport);
+
+        await flashWithTimeout(dfu, makeHex(4096), { ...options, erase_chip: false, differential: true });
+
+        expect(transport.flashCalls[0]).toMatchObject({ eraseChip: false, differential: true });
+        expect(messages.at(-1).msg).toBe("stm32ProgrammingSuccessful");
+    });
+
+    it("ignores differential for a full chip erase", async () => {
+        const transport = new MockNativeH7Transport(LAYOUT);
+        const dfu = new UsbDfuProtocol(transport);
+
+        await flashWithTimeout(dfu, makeHex(4096), { ...options, differential: true });
+
+        expect(transport.flashCalls[0]).toMatchObject({ eraseChip: true, differential: false });
+    });
+
+    it("finishes through verifyDone when verifyImage reports a match", async () => {
+        const transport = new MockNativeH7Transport(LAYOUT, {
+            verify: { verified: true, bytesRead: 4096, mismatches: [] },
+        });
+        const dfu = new UsbDfuProtocol(transport);
+        const verifyDone = vi.spyOn(dfu, "verifyDone");
+
+        await flashWithTimeout(dfu, makeHex(4096), options);
+
+        expect(transport.verifyCalls).toHaveLength(1);
+        expect(transport.verifyCalls[0]).toMatchObject({ transferSize: 2048, stopOnMismatch: true });
+        // Verified natively: nothing was read back through UPLOAD
+        expect(transport.readCursor).toBe(0);
+        expect(verifyDone).toHaveBeenCalledWith(true);
+        expect(options.flashProgress).toHaveBeenCalledWith(100);
+        expect(messages.at(-1)).toEqual({ msg: "stm32ProgrammingSuccessful", type: FLASH_MESSAGE_TYPES.VALID });
+    });
+
+    it("reports ProgrammingFailed when verifyImage returns mismatched ranges", async () => {
+        const mismatch = { verified: false, bytesRead: 2048, mismatches: [{ address: FLASH_BASE + 2048, length: 16 }] };
+        const transport = new MockNativeH7Transport(LAYOUT, { verify: mismatch });
+        const dfu = new UsbDfuProtocol(transport);
+        const verifyDone = vi.spyOn(dfu, "verifyDone");
+
+        await flashWithTimeout(dfu, makeHex(4096), options);
+
+        expect(verifyDone).toHaveBeenCalledWith(false);
+        expect(messages.at(-1)).toEqual({ msg: "stm32ProgrammingFailed", type: FLASH_MESSAGE_TYPES.INVALID });
+    });
+});